@@ -0,0 +1,152 @@
+package com.nononsenseapps.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in memory SQLite database with the app's schema and triggers, from
+ * schema.sql. Inserts go through the same triggers as on a device, so the
+ * nested set positions and the search index are kept up to date.
+ */
+public class JvmDatabase {
+
+	public static final String SCHEMA = "schema.sql";
+	// Statements of Task which need no Android to build
+	public static final String MOVE_ITEM = "move_item.sql";
+
+	public final Connection connection;
+
+	private final PreparedStatement insertList;
+	private final PreparedStatement insertTask;
+	private final PreparedStatement lastId;
+
+	public JvmDatabase() throws SQLException, IOException {
+		try {
+			Class.forName("org.sqlite.JDBC");
+		}
+		catch (ClassNotFoundException e) {
+			throw new SQLException("No SQLite driver: " + e.getMessage());
+		}
+		connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		final Statement st = connection.createStatement();
+		try {
+			// As in DatabaseHandler.onOpen
+			st.execute("PRAGMA foreign_keys=ON");
+			for (final String sql : readSchema()) {
+				try {
+					st.execute(sql);
+				}
+				catch (SQLException e) {
+					// A schema dump lists the tables of the search index too
+					if (!e.getMessage().contains("already exists")) {
+						throw new SQLException(e.getMessage() + ": " + sql);
+					}
+				}
+			}
+		}
+		finally {
+			st.close();
+		}
+
+		insertList = connection
+				.prepareStatement("INSERT INTO tasklist (title) VALUES (?)");
+		insertTask = connection
+				.prepareStatement("INSERT INTO task (dblist, title, note) VALUES (?, ?, ?)");
+		lastId = connection.prepareStatement("SELECT last_insert_rowid()");
+	}
+
+	static List<String> readSchema() throws IOException {
+		return readStatements(SCHEMA);
+	}
+
+	/**
+	 * Statements of a file next to this class. Those may span lines and end
+	 * with a semicolon, or END; for triggers.
+	 */
+	public static List<String> readStatements(final String name)
+			throws IOException {
+		final InputStream in = JvmDatabase.class.getResourceAsStream(name);
+		if (in == null) {
+			throw new IOException(name + " is not on the classpath");
+		}
+		final List<String> statements = new ArrayList<String>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				in, "UTF-8"));
+		try {
+			StringBuilder sb = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String trimmed = line.trim();
+				if (sb.length() == 0
+						&& (trimmed.isEmpty() || trimmed.startsWith("--") || trimmed
+								.startsWith("/*"))) {
+					continue;
+				}
+				sb.append(line).append('\n');
+				final String sql = sb.toString().trim();
+				if (!sql.endsWith(";")) {
+					continue;
+				}
+				if (sql.toUpperCase().startsWith("CREATE TRIGGER")
+						&& !sql.toUpperCase().endsWith("END;")) {
+					continue;
+				}
+				// Made by SQLite itself
+				if (!sql.contains(" sqlite_")) {
+					statements.add(sql);
+				}
+				sb = new StringBuilder();
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return statements;
+	}
+
+	public long insertList(final String title) throws SQLException {
+		insertList.setString(1, title);
+		insertList.executeUpdate();
+		return lastInsertId();
+	}
+
+	/**
+	 * Inserted at the top of the list, as the provider does by default.
+	 */
+	public long insertTask(final long listId, final String title,
+			final String note) throws SQLException {
+		insertTask.setLong(1, listId);
+		insertTask.setString(2, title);
+		insertTask.setString(3, note);
+		insertTask.executeUpdate();
+		return lastInsertId();
+	}
+
+	private long lastInsertId() throws SQLException {
+		final ResultSet rs = lastId.executeQuery();
+		try {
+			rs.next();
+			return rs.getLong(1);
+		}
+		finally {
+			rs.close();
+		}
+	}
+
+	public void close() throws SQLException {
+		insertList.close();
+		insertTask.close();
+		lastId.close();
+		connection.close();
+	}
+}
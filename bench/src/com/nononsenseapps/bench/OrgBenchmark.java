@@ -0,0 +1,57 @@
+package com.nononsenseapps.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.cowboyprogrammer.org.OrgFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reading and writing org files, which the org synchronizers do for every
+ * list on every sync.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrgBenchmark {
+
+	// Nodes in the file
+	@Param({ "100", "1000" })
+	public int nodes;
+
+	private String text;
+	private OrgFile file;
+
+	@Setup
+	public void setup() throws Exception {
+		// As written by OrgConverter
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < nodes; i++) {
+			sb.append("* ").append(i % 3 == 0 ? "DONE" : "TODO")
+					.append(" Task ").append(i).append('\n');
+			sb.append("  DEADLINE: <2014-03-").append(10 + i % 18)
+					.append(" Mon>\n");
+			sb.append("  Some note of task ").append(i).append('\n');
+			sb.append("  # NONSENSEID: ").append(Integer.toHexString(i))
+					.append('\n');
+		}
+		text = sb.toString();
+		file = OrgFile.createFromString("bench.org", text);
+	}
+
+	@Benchmark
+	public OrgFile parse() throws Exception {
+		return OrgFile.createFromString("bench.org", text);
+	}
+
+	@Benchmark
+	public String write() {
+		return file.treeToString();
+	}
+}
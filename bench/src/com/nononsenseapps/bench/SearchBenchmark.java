@@ -0,0 +1,108 @@
+package com.nononsenseapps.bench;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Full text search of tasks, with the query of MyContentProvider.searchTasks
+ * including snippets and matchinfo. All hits are read, as the ranking does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+	private static final String[] WORDS = { "buy", "milk", "call", "mom",
+			"work", "meeting", "report", "world", "word", "garden", "paint",
+			"fence", "book", "flight", "dentist", "project", "review", "bank" };
+
+	// Same as in MyContentProvider, snippet and matchinfo from Task
+	private static final String SEARCH = "SELECT _id,title,snippet,completed,"
+			+ "due,updated,lft,rgt,dblist,locked,matchinfo FROM task"
+			+ " JOIN (SELECT docid,snippet(fts3_task, '', '', '\u2026', 1, 16)"
+			+ " AS snippet,matchinfo(fts3_task, 'pcnalx') AS matchinfo"
+			+ " FROM fts3_task WHERE fts3_task MATCH ?) ON _id = docid";
+
+	@Param({ "1000", "10000" })
+	public int tasks;
+
+	private JvmDatabase db;
+	private PreparedStatement search;
+
+	@Setup
+	public void setup() throws Exception {
+		db = new JvmDatabase();
+		final long list = db.insertList("Bench");
+		// Same data every time
+		final Random random = new Random(42);
+		db.connection.setAutoCommit(false);
+		for (int i = 0; i < tasks; i++) {
+			db.insertTask(list, words(random, 4), words(random, 30));
+		}
+		db.connection.commit();
+		db.connection.setAutoCommit(true);
+		search = db.connection.prepareStatement(SEARCH);
+	}
+
+	private static String words(final Random random, final int count) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sb.toString();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		search.close();
+		db.close();
+	}
+
+	private int search(final String query) throws Exception {
+		search.setString(1, query);
+		final ResultSet rs = search.executeQuery();
+		int hits = 0;
+		try {
+			while (rs.next()) {
+				rs.getString(3);
+				rs.getBytes(11);
+				hits++;
+			}
+		}
+		finally {
+			rs.close();
+		}
+		return hits;
+	}
+
+	@Benchmark
+	public int word() throws Exception {
+		return search("dentist");
+	}
+
+	// Uses the prefix index, matches both world and word
+	@Benchmark
+	public int prefix() throws Exception {
+		return search("wor*");
+	}
+
+	@Benchmark
+	public int twoWords() throws Exception {
+		return search("dentist flight");
+	}
+}
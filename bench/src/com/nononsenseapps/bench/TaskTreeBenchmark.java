@@ -0,0 +1,138 @@
+package com.nononsenseapps.bench;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Position updates of the nested set of tasks, done by the triggers of the
+ * task table and by the move statements of Task. Every insert, delete and move
+ * shifts the rest of the list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskTreeBenchmark {
+
+	// Tasks in the list
+	@Param({ "100", "1000" })
+	public int tasks;
+
+	private JvmDatabase db;
+	private long list;
+	private long otherList;
+	private long moved;
+
+	private PreparedStatement delete;
+	private PreparedStatement move;
+	private PreparedStatement emptyTrash;
+	private PreparedStatement moveLeft;
+	private PreparedStatement moveRight;
+
+	@Setup
+	public void setup() throws Exception {
+		db = new JvmDatabase();
+		list = db.insertList("Bench");
+		otherList = db.insertList("Other");
+		db.connection.setAutoCommit(false);
+		for (int i = 0; i < tasks; i++) {
+			moved = db.insertTask(list, "Task " + i, "Note " + i);
+		}
+		db.insertTask(otherList, "Other task", "");
+		db.connection.commit();
+		db.connection.setAutoCommit(true);
+
+		delete = db.connection.prepareStatement("DELETE FROM task WHERE _id IS ?");
+		move = db.connection
+				.prepareStatement("UPDATE task SET dblist = ? WHERE _id IS ?");
+		// Its trigger empties the search index of the trash too
+		emptyTrash = db.connection.prepareStatement("DELETE FROM deleted_task");
+		final List<String> moves = JvmDatabase
+				.readStatements(JvmDatabase.MOVE_ITEM);
+		moveLeft = db.connection.prepareStatement(moves.get(0));
+		moveRight = db.connection.prepareStatement(moves.get(1));
+	}
+
+	/**
+	 * Every delete copies the task to the trash, which is emptied so every
+	 * iteration starts alike.
+	 */
+	@Setup(Level.Iteration)
+	public void setupIteration() throws Exception {
+		emptyTrash.executeUpdate();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		delete.close();
+		move.close();
+		emptyTrash.close();
+		moveLeft.close();
+		moveRight.close();
+		db.close();
+	}
+
+	/**
+	 * A new task at the top, then deleted into the trash.
+	 */
+	@Benchmark
+	public long insertAndDelete() throws Exception {
+		final long id = db.insertTask(list, "New", "");
+		delete.setLong(1, id);
+		return delete.executeUpdate();
+	}
+
+	/**
+	 * The top task to another list and back, where it is put at the top
+	 * again. Both leaving and coming back shift the whole list.
+	 */
+	@Benchmark
+	public long moveToListAndBack() throws Exception {
+		move.setLong(1, otherList);
+		move.setLong(2, moved);
+		move.executeUpdate();
+		move.setLong(1, list);
+		return move.executeUpdate();
+	}
+
+	/**
+	 * The bottom task to the top, as dragging it there does. Every other task
+	 * moves down.
+	 */
+	@Benchmark
+	public long moveLeft() throws Exception {
+		// In a flat list, the bottom task always has these positions
+		return moveItem(moveLeft, 2 * tasks - 1, 2 * tasks, 1);
+	}
+
+	/**
+	 * The top task to the bottom. Every other task moves up.
+	 */
+	@Benchmark
+	public long moveRight() throws Exception {
+		return moveItem(moveRight, 1, 2, 2 * tasks);
+	}
+
+	/**
+	 * Binds as Task.bindMoveItem
+	 */
+	private long moveItem(final PreparedStatement stmt, final long left,
+			final long right, final long target) throws Exception {
+		stmt.setLong(1, left);
+		stmt.setLong(2, right);
+		stmt.setLong(3, target);
+		stmt.setLong(4, list);
+		return stmt.executeUpdate();
+	}
+}
@@ -0,0 +1,58 @@
+package com.nononsenseapps.bench;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.nononsenseapps.utils.time.RFC3339Codec;
+import com.nononsenseapps.utils.time.RFC3339Date;
+import com.nononsenseapps.utils.time.WeekdayRepeat;
+
+/**
+ * Date conversions done for every task of a Google Tasks sync, and the
+ * repeat times computed for every reminder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeBenchmark {
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	private final String text = "2014-03-28T13:34:56.789Z";
+	private final long time = RFC3339Codec.parse(text);
+	private final TimeZone tz = TimeZone.getTimeZone("Europe/Stockholm");
+
+	@Benchmark
+	public long parse() {
+		return RFC3339Codec.parse(text);
+	}
+
+	// Used by the sync code, also creates a Date
+	@Benchmark
+	public Object parseDate() {
+		return RFC3339Date.parseRFC3339Date(text);
+	}
+
+	@Benchmark
+	public String formatUTC() {
+		return RFC3339Codec.formatUTC(time);
+	}
+
+	@Benchmark
+	public String format() {
+		return RFC3339Codec.format(time, tz);
+	}
+
+	@Benchmark
+	public long nextRepeat() {
+		return WeekdayRepeat.next(WeekdayRepeat.MONDAY | WeekdayRepeat.FRIDAY,
+				time, time + 3 * DAY, tz);
+	}
+}
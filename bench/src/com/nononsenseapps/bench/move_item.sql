@@ -0,0 +1,7 @@
+-- Task.SQL_MOVE_ITEM_LEFT and Task.SQL_MOVE_ITEM_RIGHT, in that order, which
+-- move a task within its list. The arguments are the task's left and right,
+-- the target position and the list, as bound by Task.bindMoveItem.
+-- SchemaTest in full/test fails when these differ from Task's.
+
+UPDATE task SET lft = lft +  CASE  WHEN lft IS ?1  THEN  (?3 - ?1)  WHEN lft BETWEEN (?1 + 1) AND (?2 - 1)  THEN  1  WHEN lft BETWEEN ?3 AND ?1 THEN  2  ELSE 0 END,  rgt = rgt +  CASE  WHEN rgt IS ?2  THEN  (?3 - ?2 +1)  WHEN rgt BETWEEN (?1 + 1) AND (?2 - 1)  THEN  1  WHEN rgt BETWEEN ?3 AND ?1 THEN  2  ELSE 0 END  WHERE dblist IS ?4;
+UPDATE task SET lft = lft +  CASE  WHEN lft IS ?1  THEN  (?3 - ?1 -1)  WHEN lft BETWEEN (?1 + 1) AND (?2 - 1)  THEN  -1  WHEN lft BETWEEN ?2 AND ?3 THEN  -2  ELSE 0 END,  rgt = rgt +  CASE  WHEN rgt IS ?2  THEN  (?3 - ?2)  WHEN rgt BETWEEN (?1 + 1) AND (?2 - 1)  THEN  -1  WHEN rgt BETWEEN ?2 AND ?3 THEN  -2  ELSE 0 END  WHERE dblist IS ?4;
@@ -0,0 +1,41 @@
+-- What DatabaseHandler.onCreate creates, version 21, for running on the JVM.
+-- One statement per line. After a schema change, create a new database with
+-- the app, pull it and replace everything below with the output of:
+--     sqlite3 nononsense_notes.db .schema
+-- Statements may then span lines, and the search shadow tables are skipped.
+-- SchemaTest in full/test fails when this differs from what the app creates.
+
+CREATE TABLE tasklist(_id INTEGER PRIMARY KEY,title TEXT NOT NULL DEFAULT '',updated INTEGER,tasktype TEXT DEFAULT NULL,sorting TEXT DEFAULT NULL);
+CREATE TABLE task(_id INTEGER PRIMARY KEY,title TEXT NOT NULL DEFAULT '',note TEXT NOT NULL DEFAULT '',completed INTEGER DEFAULT NULL,updated INTEGER DEFAULT NULL,due INTEGER DEFAULT NULL,locked INTEGER NOT NULL DEFAULT 0,lft INTEGER NOT NULL DEFAULT 1,rgt INTEGER NOT NULL DEFAULT 2,dblist INTEGER NOT NULL, CHECK(lft > 0),  CHECK(rgt > 1), FOREIGN KEY(dblist) REFERENCES tasklist(_id) ON DELETE CASCADE);
+CREATE TABLE deleted_task(_id INTEGER PRIMARY KEY,title TEXT NOT NULL DEFAULT '',note TEXT NOT NULL DEFAULT '',completed INTEGER DEFAULT NULL,due INTEGER DEFAULT NULL,dblist INTEGER DEFAULT NULL,deletedtime TIMESTAMP NOT NULL DEFAULT current_timestamp);
+CREATE INDEX IF NOT EXISTS deleted_task_deletedtime_idx ON deleted_task(deletedtime);
+CREATE INDEX IF NOT EXISTS task_due_idx ON task(completed,due);
+CREATE INDEX IF NOT EXISTS task_dblist_idx ON task(dblist,lft);
+CREATE TABLE history(_id INTEGER PRIMARY KEY,taskid INTEGER NOT NULL,title TEXT NOT NULL DEFAULT '',note TEXT NOT NULL DEFAULT '',updated TIMESTAMP NOT NULL DEFAULT current_timestamp, FOREIGN KEY(taskid ) REFERENCES task ( _id) ON DELETE CASCADE  );
+CREATE TABLE notification(_id INTEGER PRIMARY KEY,time INTEGER,permanent INTEGER NOT NULL DEFAULT 0,taskid INTEGER,repeats INTEGER NOT NULL DEFAULT 0,locationname TEXT,latitude REAL, longitude REAL, radius REAL, FOREIGN KEY(taskid) REFERENCES task(_id) ON DELETE CASCADE);
+CREATE INDEX IF NOT EXISTS notification_time_idx ON notification(radius,time);
+CREATE INDEX IF NOT EXISTS notification_taskid_idx ON notification(taskid,time);
+CREATE TABLE remotetasklist(_id INTEGER PRIMARY KEY,account TEXT NOT NULL,service TEXT NOT NULL,dbid INTEGER NOT NULL,updated INTEGER NOT NULL,remoteid TEXT NOT NULL,field1 TEXT,field2 TEXT,field3 TEXT,field4 TEXT,field5 TEXT);
+CREATE TABLE remotetask(_id INTEGER PRIMARY KEY,account TEXT NOT NULL,service TEXT NOT NULL,dbid INTEGER NOT NULL,updated INTEGER NOT NULL,remoteid TEXT NOT NULL,listdbid INTEGER NOT NULL,field1 TEXT,field2 TEXT,field3 TEXT,field4 TEXT,field5 TEXT);
+CREATE TABLE syncmetric(_id INTEGER PRIMARY KEY,run INTEGER NOT NULL,service TEXT NOT NULL,name TEXT NOT NULL,value INTEGER NOT NULL);
+CREATE INDEX IF NOT EXISTS syncmetric_run_idx ON syncmetric(run);
+CREATE TEMP VIEW IF NOT EXISTS notification_with_tasks AS  SELECT notification._id,notification.time,notification.permanent,notification.taskid,notification.repeats,notification.locationname,notification.latitude,notification.longitude,notification.radius,t._id AS t__id,t.title AS t_title,t.note AS t_note,t.dblist AS t_dblist,t.completed AS t_completed,t.due AS t_due,t.updated AS t_updated,t.locked AS t_locked,l._id AS l__id,l.title AS l_title,l.updated AS l_updated FROM notification,task AS t,tasklist AS l  WHERE notification.taskid = t._id AND t.dblist = l._id;
+CREATE TRIGGER task_pre_insert BEFORE INSERT ON task BEGIN  UPDATE task SET rgt = rgt + 2, lft = lft + 2 WHERE lft >= new.lft AND dblist IS new.dblist; END;
+CREATE TRIGGER task_pre_delete BEFORE DELETE ON task BEGIN  INSERT INTO deleted_task (title,note,completed,due,dblist)  VALUES(old.title,old.note,old.completed,old.due,old.dblist);  END;
+CREATE TRIGGER task_post_delete AFTER DELETE ON task BEGIN  UPDATE task SET lft = lft - 2 WHERE lft > old.rgt AND dblist IS old.dblist; UPDATE task SET rgt = rgt - 2 WHERE rgt > old.rgt AND dblist IS old.dblist; SELECT CASE WHEN ((SELECT COUNT(DISTINCT _id) AS ColCount FROM task WHERE dblist=old.dblist) != (SELECT COUNT(DISTINCT lft) AS ColCount FROM task WHERE dblist=old.dblist) OR (SELECT COUNT(DISTINCT _id) AS ColCount FROM task WHERE dblist=old.dblist) != (SELECT COUNT(DISTINCT rgt) AS ColCount FROM task WHERE dblist=old.dblist)) THEN  RAISE (ABORT, 'pos not unique post delete') END; END;
+CREATE TRIGGER trigger_post_move_list_task AFTER UPDATE OF dblist ON task WHEN old.dblist IS NOT new.dblist BEGIN UPDATE task SET lft = lft + 2, rgt = rgt + 2 WHERE dblist IS new.dblist AND _id IS NOT new._id;UPDATE task SET lft = lft - 2, rgt = rgt - 2 WHERE lft > old.rgt AND dblist IS old.dblist;UPDATE task SET lft = 1, rgt = 2 WHERE _id IS new._id; SELECT CASE WHEN ((SELECT COUNT(DISTINCT _id) AS ColCount FROM task WHERE dblist=new.dblist) != (SELECT COUNT(DISTINCT lft) AS ColCount FROM task WHERE dblist=new.dblist) OR (SELECT COUNT(DISTINCT _id) AS ColCount FROM task WHERE dblist=new.dblist) != (SELECT COUNT(DISTINCT rgt) AS ColCount FROM task WHERE dblist=new.dblist)) THEN  RAISE (ABORT, 'Moving list, new positions not unique/ordered') END; SELECT CASE WHEN ((SELECT COUNT(DISTINCT _id) AS ColCount FROM task WHERE dblist=old.dblist) != (SELECT COUNT(DISTINCT lft) AS ColCount FROM task WHERE dblist=old.dblist) OR (SELECT COUNT(DISTINCT _id) AS ColCount FROM task WHERE dblist=old.dblist) != (SELECT COUNT(DISTINCT rgt) AS ColCount FROM task WHERE dblist=old.dblist)) THEN  RAISE (ABORT, 'Moving list, old positions not unique/ordered') END; END;
+CREATE TRIGGER trigger_insert_history AFTER INSERT ON task BEGIN  INSERT INTO history (taskid,title,note) VALUES (new._id,new.title,new.note); END;
+CREATE TRIGGER trigger_update_history AFTER UPDATE OF title,note ON task WHEN old.title IS NOT new.title OR old.note IS NOT new.note BEGIN  INSERT INTO history (taskid,title,note) VALUES (new._id,new.title,new.note); END;
+CREATE TRIGGER cascade_trigger_delete_remotetask AFTER DELETE ON remotetasklist BEGIN  DELETE FROM remotetask WHERE listdbid IS old.dbid AND account IS old.account AND service IS old.service; END;
+CREATE TRIGGER trigger_real_deletemark_remotetask AFTER DELETE ON task BEGIN  UPDATE remotetask SET field1 = 'deleted'  WHERE dbid IS old._id; END;
+CREATE TRIGGER trigger_real_deletemark_remotetasklist AFTER DELETE ON tasklist BEGIN  UPDATE remotetasklist SET field1 = 'deleted'  WHERE dbid IS old._id; END;
+CREATE TRIGGER trigger_move_list_remotetask AFTER UPDATE OF dblist ON task WHEN old.dblist IS NOT new.dblist BEGIN  UPDATE remotetask SET field1 = 'deleted', dbid = -99  WHERE dbid IS old._id; END;
+CREATE VIRTUAL TABLE fts3_task USING FTS4(title, note, content="task", prefix="1,2,3");
+CREATE TRIGGER task_fts3_insert AFTER INSERT ON task BEGIN  INSERT INTO fts3_task (docid,title,note) VALUES (new._id,new.title,new.note); END;
+CREATE TRIGGER task_fts3_pre_update BEFORE UPDATE OF title,note ON task BEGIN  DELETE FROM fts3_task WHERE docid = old._id; END;
+CREATE TRIGGER task_fts3_update AFTER UPDATE OF title,note ON task BEGIN  INSERT INTO fts3_task (docid,title,note) VALUES (new._id,new.title,new.note); END;
+CREATE TRIGGER task_fts3_delete BEFORE DELETE ON task BEGIN  DELETE FROM fts3_task WHERE docid = old._id; END;
+CREATE VIRTUAL TABLE fts3_deleted_task USING FTS3(_id, title, note);
+CREATE TRIGGER deletedtask_fts3_insert AFTER INSERT ON deleted_task BEGIN  INSERT INTO fts3_deleted_task (_id,title,note) VALUES (new._id,new.title,new.note); END;
+CREATE TRIGGER deletedtask_fts3_update AFTER UPDATE OF title,note ON deleted_task BEGIN  UPDATE fts3_deleted_task SET title = new.title,note = new.note WHERE _id IS new._id; END;
+CREATE TRIGGER deletedtask_fts3_delete AFTER DELETE ON deleted_task BEGIN  DELETE FROM fts3_deleted_task WHERE _id IS old._id; END;
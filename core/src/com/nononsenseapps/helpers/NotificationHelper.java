@@ -9,7 +9,7 @@ import java.util.List;
 import com.nononsenseapps.notepad.ActivityMain;
 import com.nononsenseapps.notepad.core.R;
 import com.nononsenseapps.notepad.database.Task;
-import com.nononsenseapps.util.GeofenceRemover;
+import com.nononsenseapps.util.GeofenceManager;
 
 import android.app.AlarmManager;
 import android.app.Notification;
@@ -21,6 +21,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.ContentObserver;
 import android.database.Cursor;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Handler;
@@ -58,8 +59,14 @@ public class NotificationHelper extends BroadcastReceiver {
 	 */
 	@Override
 	public void onReceive(Context context, Intent intent) {
-		if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())
-				|| Intent.ACTION_RUN.equals(intent.getAction())) {
+		if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+			// Geofences do not survive a reboot
+			GeofenceManager.reset(context);
+			GeofenceManager.update(context);
+			// Neither do notifications
+			ReminderPresenter.clear(context);
+		}
+		else if (Intent.ACTION_RUN.equals(intent.getAction())) {
 			// Can't cancel anything. Just schedule and notify at end
 		}
 		else {
@@ -173,213 +180,82 @@ public class NotificationHelper extends BroadcastReceiver {
 		// For any geofence ids that were not found in the database, unregister
 		// monitoring of their location. They must have been deleted somehow
 		if (geofenceIdsToRemove.size() > 0) {
-			GeofenceRemover.removeFences(context, geofenceIdsToRemove);
+			GeofenceManager.update(context);
 		}
 
 		final NotificationManager notificationManager = (NotificationManager) context
 				.getSystemService(Context.NOTIFICATION_SERVICE);
 
 		Log.d(TAG, "geofence: Number of notifications: " + notifications.size());
-		// Fetch sound and vibrate settings
-		final SharedPreferences prefs = PreferenceManager
-				.getDefaultSharedPreferences(context);
-
-		// Always use default lights
-		int lightAndVibrate = Notification.DEFAULT_LIGHTS;
-		// If vibrate on, use default vibration pattern also
-		if (prefs.getBoolean(context.getString(R.string.key_pref_vibrate),
-				false)) lightAndVibrate |= Notification.DEFAULT_VIBRATE;
-
-		// Need to get a new one because the action buttons will duplicate
-		// otherwise
-		NotificationCompat.Builder builder;
+		if (notifications.isEmpty()) {
+			return;
+		}
+		final Style style = new Style(context);
 		for (com.nononsenseapps.notepad.database.Notification note : notifications) {
-			builder = getNotificationBuilder(context,
-					Integer.parseInt(prefs.getString(
-							context.getString(R.string.key_pref_prio), "0")),
-					lightAndVibrate, Uri.parse(prefs.getString(
-							context.getString(R.string.key_pref_ringtone),
-							"DEFAULT_NOTIFICATION_URI")), false);
-
-			notifyBigText(context, notificationManager, builder, note);
+			notifyBigText(context, notificationManager,
+					getNotificationBuilder(context, style, false), note);
 		}
 	}
 
 	/**
-	 * Displays notifications that have a time occurring in the past (and no
-	 * location). If no notifications like that exist, will make sure to cancel
-	 * any notifications showing.
+	 * Settings shared by all notifications, read once per batch.
 	 */
-	private static void notifyPast(Context context, boolean alertOnce) {
-		// Get list of past notifications
-		final Calendar now = Calendar.getInstance();
-
-		final List<com.nononsenseapps.notepad.database.Notification> notifications = com.nononsenseapps.notepad.database.Notification
-				.getNotificationsWithTime(context, now.getTimeInMillis(), true);
-
-		// Remove duplicates
-		makeUnique(context, notifications);
-
-		final NotificationManager notificationManager = (NotificationManager) context
-				.getSystemService(Context.NOTIFICATION_SERVICE);
-
-		Log.d(TAG, "Number of notifications: " + notifications.size());
+	static class Style {
+		final int priority;
+		final int lightAndVibrate;
+		final Uri ringtone;
+		final Bitmap largeIcon;
 
-		// If empty, cancel
-		if (notifications.isEmpty()) {
-			// cancelAll permanent notifications here if/when that is
-			// implemented. Don't touch others.
-			// Dont do this, it clears location
-			// notificationManager.cancelAll();
-		}
-		else {
-			// else, notify
+		Style(final Context context) {
 			// Fetch sound and vibrate settings
 			final SharedPreferences prefs = PreferenceManager
 					.getDefaultSharedPreferences(context);
-
+			priority = Integer.parseInt(prefs.getString(
+					context.getString(R.string.key_pref_prio), "0"));
 			// Always use default lights
-			int lightAndVibrate = Notification.DEFAULT_LIGHTS;
+			int defaults = Notification.DEFAULT_LIGHTS;
 			// If vibrate on, use default vibration pattern also
 			if (prefs.getBoolean(context.getString(R.string.key_pref_vibrate),
-					false)) lightAndVibrate |= Notification.DEFAULT_VIBRATE;
-
-			// Need to get a new one because the action buttons will duplicate
-			// otherwise
-			NotificationCompat.Builder builder;
-
-			// if (false)
-			// //
-			// prefs.getBoolean(context.getString(R.string.key_pref_group_on_lists),
-			// // false))
-			// {
-			// // Group together notes contained in the same list.
-			// // Always use listid
-			// for (long listId : getRelatedLists(notifications)) {
-			// builder = getNotificationBuilder(context,
-			// Integer.parseInt(prefs.getString(
-			// context.getString(R.string.key_pref_prio),
-			// "0")), lightAndVibrate,
-			// Uri.parse(prefs.getString(context
-			// .getString(R.string.key_pref_ringtone),
-			// "DEFAULT_NOTIFICATION_URI")), alertOnce);
-			//
-			// List<com.nononsenseapps.notepad.database.Notification> subList =
-			// getSubList(
-			// listId, notifications);
-			// if (subList.size() == 1) {
-			// // Notify as single
-			// notifyBigText(context, notificationManager, builder,
-			// listId, subList.get(0));
-			// }
-			// else {
-			// notifyInboxStyle(context, notificationManager, builder,
-			// listId, subList);
-			// }
-			// }
-			// }
-			// else {
-			// Notify for each individually
-			for (com.nononsenseapps.notepad.database.Notification note : notifications) {
-				builder = getNotificationBuilder(
-						context,
-						Integer.parseInt(prefs.getString(
-								context.getString(R.string.key_pref_prio), "0")),
-						lightAndVibrate, Uri.parse(prefs.getString(
-								context.getString(R.string.key_pref_ringtone),
-								"DEFAULT_NOTIFICATION_URI")), alertOnce);
-
-				notifyBigText(context, notificationManager, builder, note);
-			}
-			// }
+					false)) defaults |= Notification.DEFAULT_VIBRATE;
+			lightAndVibrate = defaults;
+			ringtone = Uri.parse(prefs.getString(
+					context.getString(R.string.key_pref_ringtone),
+					"DEFAULT_NOTIFICATION_URI"));
+			largeIcon = BitmapFactory.decodeResource(context.getResources(),
+					R.drawable.app_icon);
 		}
 	}
 
 	/**
-	 * Returns a notification builder set with non-item specific properties.
-	 */
-	private static NotificationCompat.Builder getNotificationBuilder(
-			final Context context, final int priority,
-			final int lightAndVibrate, final Uri ringtone,
-			final boolean alertOnce) {
-		final NotificationCompat.Builder builder = new NotificationCompat.Builder(
-				context)
-				.setWhen(0)
-				.setSmallIcon(R.drawable.ic_stat_notification_edit)
-				.setLargeIcon(
-						BitmapFactory.decodeResource(context.getResources(),
-								R.drawable.app_icon)).setPriority(priority)
-				.setDefaults(lightAndVibrate).setAutoCancel(true)
-				.setOnlyAlertOnce(alertOnce).setSound(ringtone);
-		return builder;
-	}
-
-	/**
-	 * Remove from the database, and the specified list, duplicate
-	 * notifications. The result is that each note is only associated with ONE
-	 * EXPIRED notification.
-	 * 
-	 * @param context
-	 * @param notifications
+	 * Displays notifications that have a time occurring in the past (and no
+	 * location), and cancels the ones no longer due. Only what changed since
+	 * the last call is posted.
 	 */
-	private static void makeUnique(
-			final Context context,
-			final List<com.nononsenseapps.notepad.database.Notification> notifications) {
-		// get duplicates and iterate over them
-		for (com.nononsenseapps.notepad.database.Notification noti : getLatestOccurence(notifications)) {
-			// remove all but the first one from database, and big list
-			for (com.nononsenseapps.notepad.database.Notification dupNoti : getDuplicates(
-					noti, notifications)) {
-				notifications.remove(dupNoti);
-				cancelNotification(context, dupNoti);
-				// Cancelled called in delete
-				dupNoti.deleteOrReschedule(context);
-			}
-		}
-
+	private static void notifyPast(Context context, boolean alertOnce) {
+		ReminderPresenter.present(context, alertOnce);
 	}
 
 	/**
-	 * Returns the first occurrence of each note's notification. Effectively the
-	 * returned list has unique elements with regard to the note id.
-	 * 
-	 * @param notifications
-	 * @return
+	 * Returns a notification builder set with non-item specific properties.
+	 * Need to get a new one for each notification because the action buttons
+	 * will duplicate otherwise.
 	 */
-	private static List<com.nononsenseapps.notepad.database.Notification> getLatestOccurence(
-			final List<com.nononsenseapps.notepad.database.Notification> notifications) {
-		final ArrayList<Long> seenIds = new ArrayList<Long>();
-		final ArrayList<com.nononsenseapps.notepad.database.Notification> firsts = new ArrayList<com.nononsenseapps.notepad.database.Notification>();
-
-		com.nononsenseapps.notepad.database.Notification noti;
-		for (int i = notifications.size() - 1; i >= 0; i--) {
-			noti = notifications.get(i);
-			if (!seenIds.contains(noti.taskID)) {
-				seenIds.add(noti.taskID);
-				firsts.add(noti);
-			}
-		}
-		return firsts;
-	}
-
-	private static List<com.nononsenseapps.notepad.database.Notification> getDuplicates(
-			final com.nononsenseapps.notepad.database.Notification first,
-			final List<com.nononsenseapps.notepad.database.Notification> notifications) {
-		final ArrayList<com.nononsenseapps.notepad.database.Notification> dups = new ArrayList<com.nononsenseapps.notepad.database.Notification>();
-
-		for (com.nononsenseapps.notepad.database.Notification noti : notifications) {
-			if (noti.taskID == first.taskID && noti._id != first._id) {
-				dups.add(noti);
-			}
-		}
-		return dups;
+	static NotificationCompat.Builder getNotificationBuilder(
+			final Context context, final Style style, final boolean alertOnce) {
+		final NotificationCompat.Builder builder = new NotificationCompat.Builder(
+				context).setWhen(0)
+				.setSmallIcon(R.drawable.ic_stat_notification_edit)
+				.setLargeIcon(style.largeIcon).setPriority(style.priority)
+				.setDefaults(style.lightAndVibrate).setAutoCancel(true)
+				.setOnlyAlertOnce(alertOnce).setSound(style.ringtone);
+		return builder;
 	}
 
 	/**
 	 * Needs the builder that contains non-note specific values.
 	 * 
 	 */
-	private static void notifyBigText(final Context context,
+	static void notifyBigText(final Context context,
 			final NotificationManager notificationManager,
 			final NotificationCompat.Builder builder,
 			final com.nononsenseapps.notepad.database.Notification note) {
@@ -633,6 +509,7 @@ public class NotificationHelper extends BroadcastReceiver {
 		final NotificationManager notificationManager = (NotificationManager) context
 				.getSystemService(Context.NOTIFICATION_SERVICE);
 		notificationManager.cancel(notId);
+		ReminderPresenter.forget(context, notId);
 	}
 
 	/**
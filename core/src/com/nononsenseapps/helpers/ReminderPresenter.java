@@ -0,0 +1,159 @@
+package com.nononsenseapps.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.nononsenseapps.notepad.database.Notification;
+
+/**
+ * Shows the reminders whose time has passed, one per task. Which ones are
+ * showing, and what they showed, is kept in preferences. A pass only posts,
+ * updates or cancels what changed since the last one, so when nothing
+ * changed it costs one query.
+ *
+ * A force stop or an update removes the notifications without telling the
+ * app, so the first pass of a process posts all of them again.
+ */
+public class ReminderPresenter {
+
+	private static final String TAG = "nononsenseapps ReminderPresenter";
+
+	private static final String PREFS_NAME = "posted_reminders";
+
+	// If a pass already ran in this process
+	private static boolean sPresented = false;
+
+	/**
+	 * Shows past reminders that changed. Replaced reminders of a task are
+	 * deleted or rescheduled. Returns the number of notifications posted.
+	 */
+	public static synchronized int present(final Context context,
+			final boolean alertOnce) {
+		final long now = Calendar.getInstance().getTimeInMillis();
+		final Cursor c = Notification.queryPast(context, now);
+		if (c == null) {
+			return 0;
+		}
+
+		final NotificationManager notificationManager = (NotificationManager) context
+				.getSystemService(Context.NOTIFICATION_SERVICE);
+		final SharedPreferences posted = getPrefs(context);
+		final Map<String, ?> shown = posted.getAll();
+		final HashSet<String> due = new HashSet<String>();
+		final ArrayList<Notification> replaced = new ArrayList<Notification>();
+		SharedPreferences.Editor editor = null;
+		// Only read if something is posted
+		NotificationHelper.Style style = null;
+		int count = 0;
+		final boolean trustPosted = sPresented;
+		sPresented = true;
+
+		try {
+			final int latestIndex = c.getColumnCount() - 1;
+			while (c.moveToNext()) {
+				final Notification note = new Notification(c);
+				if (c.getInt(latestIndex) == 0) {
+					replaced.add(note);
+					continue;
+				}
+
+				final String key = Long.toString(note._id);
+				final int signature = getSignature(note);
+				due.add(key);
+				final Object old = shown.get(key);
+				final boolean unchanged = old instanceof Integer
+						&& (Integer) old == signature;
+				if (unchanged && trustPosted) {
+					continue;
+				}
+
+				if (style == null) {
+					style = new NotificationHelper.Style(context);
+					editor = posted.edit();
+				}
+				NotificationHelper.notifyBigText(context, notificationManager,
+						NotificationHelper.getNotificationBuilder(context,
+								style, alertOnce || unchanged), note);
+				editor.putInt(key, signature);
+				count++;
+			}
+		}
+		finally {
+			c.close();
+		}
+
+		// Snoozed, deleted or otherwise no longer due
+		for (final String key : shown.keySet()) {
+			if (!due.contains(key)) {
+				notificationManager.cancel(Integer.parseInt(key));
+				if (editor == null) {
+					editor = posted.edit();
+				}
+				editor.remove(key);
+			}
+		}
+		if (editor != null) {
+			editor.apply();
+		}
+
+		// Changes the database, so done last
+		if (!replaced.isEmpty()) {
+			Notification.deleteOrReschedule(context, replaced);
+		}
+
+		Log.d(TAG, "Due: " + due.size() + ", posted: " + count
+				+ ", replaced: " + replaced.size());
+		return count;
+	}
+
+	/**
+	 * Everything a notification shows, or its actions depend on
+	 */
+	private static int getSignature(final Notification note) {
+		return Arrays.hashCode(new Object[] { note.taskID, note.time,
+				note.repeats, note.permanent, note.taskTitle, note.taskNote });
+	}
+
+	private static SharedPreferences getPrefs(final Context context) {
+		return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+	}
+
+	/**
+	 * Ids of the notifications showing
+	 */
+	public static Set<Long> getPosted(final Context context) {
+		final HashSet<Long> result = new HashSet<Long>();
+		for (final String key : getPrefs(context).getAll().keySet()) {
+			result.add(Long.parseLong(key));
+		}
+		return result;
+	}
+
+	/**
+	 * Call when a notification was cancelled elsewhere
+	 */
+	static synchronized void forget(final Context context, final int notId) {
+		final SharedPreferences posted = getPrefs(context);
+		final String key = Integer.toString(notId);
+		if (posted.contains(key)) {
+			posted.edit().remove(key).apply();
+		}
+	}
+
+	/**
+	 * Call when no notifications are showing, like after a reboot.
+	 */
+	public static synchronized void clear(final Context context) {
+		getPrefs(context).edit().clear().apply();
+	}
+}
@@ -0,0 +1,213 @@
+package com.nononsenseapps.helpers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.os.Build;
+import android.os.Trace;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * The work of an activity start, split so that only what the first frame
+ * needs runs before it. Critical steps run at once. Deferred steps wait until
+ * the first frame has been drawn, then run one after the other on a
+ * background thread, or on the main thread if they touch views or must stay
+ * in order with the activity's callbacks.
+ *
+ * Every step is a trace section named "startup name", visible with systrace
+ * on Android 4.3 and later, and its time is logged.
+ *
+ * Also keeps the time from the start to the first loaded task list, which is
+ * what StartupTest measures.
+ */
+public class StartupPipeline {
+
+	private static final String TAG = "nononsenseapps startup";
+	static final String SECTION_PREFIX = "startup ";
+
+	private static final ExecutorService sExecutor = Executors
+			.newSingleThreadExecutor();
+
+	// Of the latest pipeline, in System.nanoTime
+	private static volatile long sStartNanos = 0;
+	private static volatile long sFirstListNanos = 0;
+
+	private static class Step {
+		final String name;
+		final Runnable runnable;
+		final boolean onMain;
+
+		Step(final String name, final Runnable runnable, final boolean onMain) {
+			this.name = name;
+			this.runnable = runnable;
+			this.onMain = onMain;
+		}
+	}
+
+	private final ArrayList<Step> deferred = new ArrayList<Step>();
+	private boolean waiting = false;
+
+	public StartupPipeline() {
+		sStartNanos = System.nanoTime();
+		sFirstListNanos = 0;
+	}
+
+	/**
+	 * Runs step now, on this thread.
+	 */
+	public void critical(final String name, final Runnable step) {
+		run(name, step);
+	}
+
+	/**
+	 * Runs step on a background thread after the first frame. Nothing is
+	 * added if a step of the same name is still waiting.
+	 */
+	public void defer(final String name, final Runnable step) {
+		if (!isDeferred(name)) {
+			deferred.add(new Step(name, step, false));
+		}
+	}
+
+	/**
+	 * Runs step on the main thread after the first frame. Nothing is added if
+	 * a step of the same name is still waiting.
+	 */
+	public void deferOnMain(final String name, final Runnable step) {
+		if (!isDeferred(name)) {
+			deferred.add(new Step(name, step, true));
+		}
+	}
+
+	private boolean isDeferred(final String name) {
+		for (final Step step : deferred) {
+			if (step.name.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops the main thread steps which have not run yet. Call from onPause,
+	 * so steps deferred in onResume can not run after it.
+	 */
+	public void cancelOnMain() {
+		final Iterator<Step> it = deferred.iterator();
+		while (it.hasNext()) {
+			if (it.next().onMain) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Runs the deferred steps once view has drawn its next frame. Steps
+	 * deferred later wait for the next call.
+	 */
+	public void startAfterDraw(final View view) {
+		if (waiting || deferred.isEmpty()) {
+			return;
+		}
+		waiting = true;
+		view.getViewTreeObserver().addOnPreDrawListener(
+				new ViewTreeObserver.OnPreDrawListener() {
+					@Override
+					public boolean onPreDraw() {
+						view.getViewTreeObserver().removeOnPreDrawListener(
+								this);
+						// Posted, so it runs after this frame is drawn
+						view.post(new Runnable() {
+							@Override
+							public void run() {
+								waiting = false;
+								runDeferred();
+							}
+						});
+						return true;
+					}
+				});
+	}
+
+	private void runDeferred() {
+		final ArrayList<Step> background = new ArrayList<Step>();
+		for (final Step step : deferred) {
+			if (step.onMain) {
+				run(step.name, step.runnable);
+			}
+			else {
+				background.add(step);
+			}
+		}
+		deferred.clear();
+		if (background.isEmpty()) {
+			return;
+		}
+
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (final Step step : background) {
+					try {
+						StartupPipeline.run(step.name, step.runnable);
+					}
+					catch (RuntimeException e) {
+						// The other steps must still run
+						Log.e(TAG, step.name + " failed", e);
+					}
+				}
+			}
+		});
+	}
+
+	private static void run(final String name, final Runnable step) {
+		final long start = System.nanoTime();
+		beginSection(name);
+		try {
+			step.run();
+		}
+		finally {
+			endSection();
+		}
+		Log.d(TAG, name + ": " + (System.nanoTime() - start) / 1000 + " us");
+	}
+
+	public static void beginSection(final String name) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+			Trace.beginSection(SECTION_PREFIX + name);
+		}
+	}
+
+	public static void endSection() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+			Trace.endSection();
+		}
+	}
+
+	/**
+	 * Called when a task list has been loaded. Only the first call after a
+	 * start counts.
+	 */
+	public static void firstListLoaded() {
+		if (sStartNanos == 0 || sFirstListNanos != 0) {
+			return;
+		}
+		sFirstListNanos = System.nanoTime();
+		Log.d(TAG, "First list after " + getTimeToFirstList() + " us");
+	}
+
+	/**
+	 * Returns the microseconds from the latest start to its first loaded
+	 * list, or -1 if no list was loaded yet.
+	 */
+	public static long getTimeToFirstList() {
+		final long first = sFirstListNanos;
+		if (first == 0) {
+			return -1;
+		}
+		return (first - sStartNanos) / 1000;
+	}
+}
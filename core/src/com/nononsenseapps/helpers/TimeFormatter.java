@@ -3,21 +3,183 @@ package com.nononsenseapps.helpers;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.regex.Pattern;
 
 import com.nononsenseapps.notepad.core.R;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.preference.PreferenceManager;
 
 /**
  * A class that helps with displaying locale and preference specific dates
  * 
+ * Formatters are cached by locale and pattern, and the preferences are only
+ * read again when they change. SimpleDateFormat is not thread safe, so the
+ * cached formatters are never handed out. Methods returning a string format
+ * with a copy kept per thread, methods returning a formatter return a new copy
+ * which the caller owns.
  */
 public class TimeFormatter {
 
 	public static String WEEKDAY_SHORTEST_FORMAT = "E";
 
+	private static final Pattern LOCALTIME_SPACE = Pattern
+			.compile("\\s*localtime\\s*");
+
+	/**
+	 * The preferences used for formatting
+	 */
+	private static class Prefs {
+		final String lang;
+		// Null if the device locale is used
+		final Locale locale;
+		final String longFormat;
+		final String shortFormat;
+
+		Prefs(final Context context, final SharedPreferences sp) {
+			lang = sp.getString(context.getString(R.string.pref_locale), "");
+			locale = lang.isEmpty() ? null : TimeFormatter.getLocale(lang);
+			longFormat = sp.getString(
+					context.getString(R.string.key_pref_dateformat_long),
+					context.getString(R.string.dateformat_long_1));
+			shortFormat = sp.getString(
+					context.getString(R.string.key_pref_dateformat_short),
+					context.getString(R.string.dateformat_short_1));
+		}
+
+		Locale getLocale() {
+			return locale == null ? Locale.getDefault() : locale;
+		}
+	}
+
+	private static volatile Prefs sPrefs = null;
+	// Bumped when the preferences change
+	private static volatile int sGeneration = 0;
+	// Kept here since preferences only hold weak references to listeners
+	private static OnSharedPreferenceChangeListener sPrefListener = null;
+
+	// Formatters by locale and pattern. Only used to make copies.
+	private static final HashMap<String, SimpleDateFormat> sFormatters = new HashMap<String, SimpleDateFormat>();
+
+	private static class ThreadFormatters {
+		int generation = -1;
+		final HashMap<String, SimpleDateFormat> formatters = new HashMap<String, SimpleDateFormat>();
+	}
+
+	private static final ThreadLocal<ThreadFormatters> sThreadFormatters = new ThreadLocal<ThreadFormatters>() {
+		@Override
+		protected ThreadFormatters initialValue() {
+			return new ThreadFormatters();
+		}
+	};
+
+	private static Prefs getPrefs(final Context context) {
+		final Prefs prefs = sPrefs;
+		if (prefs != null) {
+			return prefs;
+		}
+
+		final Context appContext = context.getApplicationContext();
+		final SharedPreferences sp = PreferenceManager
+				.getDefaultSharedPreferences(appContext);
+		synchronized (TimeFormatter.class) {
+			if (sPrefListener == null) {
+				final String[] keys = {
+						appContext.getString(R.string.pref_locale),
+						appContext.getString(R.string.key_pref_dateformat_long),
+						appContext.getString(R.string.key_pref_dateformat_short) };
+				sPrefListener = new OnSharedPreferenceChangeListener() {
+					@Override
+					public void onSharedPreferenceChanged(
+							final SharedPreferences prefs, final String key) {
+						for (final String k : keys) {
+							if (k.equals(key)) {
+								invalidate();
+								return;
+							}
+						}
+					}
+				};
+				sp.registerOnSharedPreferenceChangeListener(sPrefListener);
+			}
+		}
+
+		final int generation = sGeneration;
+		final Prefs result = new Prefs(appContext, sp);
+		synchronized (TimeFormatter.class) {
+			// Don't keep it if it changed while reading
+			if (generation == sGeneration) {
+				sPrefs = result;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops all cached formatters and preferences. Is called when the
+	 * preferences change.
+	 */
+	public static void invalidate() {
+		synchronized (TimeFormatter.class) {
+			sGeneration++;
+			sPrefs = null;
+			sFormatters.clear();
+		}
+	}
+
+	/**
+	 * The cached formatter. Must not be used to format, only copied.
+	 */
+	private static SimpleDateFormat getCached(final Locale locale,
+			final String pattern, final String key) {
+		synchronized (TimeFormatter.class) {
+			SimpleDateFormat result = sFormatters.get(key);
+			if (result == null) {
+				result = new SimpleDateFormat(pattern, locale);
+				sFormatters.put(key, result);
+			}
+			return result;
+		}
+	}
+
+	private static String getKey(final Locale locale, final String pattern) {
+		return locale.toString() + "\n" + pattern;
+	}
+
+	/**
+	 * A formatter which the caller owns
+	 */
+	private static SimpleDateFormat newFormatter(final Locale locale,
+			final String pattern) {
+		return (SimpleDateFormat) getCached(locale, pattern,
+				getKey(locale, pattern)).clone();
+	}
+
+	/**
+	 * Formats with the copy kept for this thread
+	 */
+	private static String formatTime(final Locale locale, final String pattern,
+			final long time) {
+		final ThreadFormatters local = sThreadFormatters.get();
+		final int generation = sGeneration;
+		if (local.generation != generation) {
+			local.formatters.clear();
+			local.generation = generation;
+		}
+		final String key = getKey(locale, pattern);
+		SimpleDateFormat formatter = local.formatters.get(key);
+		if (formatter == null) {
+			formatter = (SimpleDateFormat) getCached(locale, pattern, key)
+					.clone();
+			local.formatters.put(key, formatter);
+		}
+		return formatter.format(new Date(time));
+	}
+
 	public static Locale getLocale(final String lang) {
 		final Locale locale;
 		if (lang == null || lang.isEmpty()) {
@@ -37,8 +199,8 @@ public class TimeFormatter {
 	 */
 	public static String getLocalDateString(final Context context,
 			final String lang, final String format, final long timeInMillis) {
-		return getLocalFormatter(context, lang, format).format(
-				new Date(timeInMillis));
+		return formatTime(getLocale(lang), withSuitableTime(context, format),
+				timeInMillis);
 	}
 
 	/**
@@ -46,24 +208,22 @@ public class TimeFormatter {
 	 */
 	public static String getLocalDateString(final Context context,
 			final String format, final long timeInMillis) {
-		return getLocalDateString(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
-				format, timeInMillis);
+		return formatTime(getPrefs(context).getLocale(),
+				withSuitableTime(context, format), timeInMillis);
 	}
 
-	/**
-	 * Dont use for performance critical settings
-	 */
 	public static String getLocalDateStringLong(final Context context,
 			final long time) {
-		return getLocalFormatterLong(context).format(new Date(time));
+		final Prefs prefs = getPrefs(context);
+		return formatTime(prefs.getLocale(),
+				withSuitableTime(context, prefs.longFormat), time);
 	}
 
 	public static String getLocalDateOnlyStringLong(final Context context,
 			final long time) {
-		return getLocalFormatterLongDateOnly(context).format(new Date(time));
+		final Prefs prefs = getPrefs(context);
+		return formatTime(prefs.getLocale(),
+				withSuitableDateOnly(context, prefs.longFormat), time);
 	}
 
 	public static String getLocalTimeOnlyString(final Context context,
@@ -77,18 +237,14 @@ public class TimeFormatter {
 			// 12:59 am
 			format = "h:mm a";
 		}
-		return new SimpleDateFormat(format, getLocale(PreferenceManager
-				.getDefaultSharedPreferences(context).getString(
-						context.getString(R.string.pref_locale), "")))
-				.format(new Date(time));
+		return formatTime(getPrefs(context).getLocale(), format, time);
 	}
 
-	/**
-	 * Dont use for performance critical settings
-	 */
 	public static String getLocalDateStringShort(final Context context,
 			final long time) {
-		return getLocalFormatterShort(context).format(new Date(time));
+		final Prefs prefs = getPrefs(context);
+		return formatTime(prefs.getLocale(),
+				withSuitableTime(context, prefs.shortFormat), time);
 	}
 
 	/**
@@ -97,14 +253,21 @@ public class TimeFormatter {
 	 */
 	private static String withSuitableTime(final Context context,
 			final String formatString) {
+		final int i = formatString.indexOf("localtime");
+		if (i < 0) {
+			return formatString;
+		}
+		final String time;
 		if (android.text.format.DateFormat.is24HourFormat(context)) {
 			// 00:59
-			return formatString.replaceFirst("localtime", "HH:mm");
+			time = "HH:mm";
 		}
 		else {
 			// 12:59 am
-			return formatString.replaceFirst("localtime", "h:mm a");
+			time = "h:mm a";
 		}
+		return formatString.substring(0, i) + time
+				+ formatString.substring(i + "localtime".length());
 	}
 
 	/**
@@ -112,101 +275,56 @@ public class TimeFormatter {
 	 */
 	private static String withSuitableDateOnly(final Context context,
 			final String formatString) {
-		return formatString.replaceAll("\\s*localtime\\s*", " ");
+		if (!formatString.contains("localtime")) {
+			return formatString;
+		}
+		return LOCALTIME_SPACE.matcher(formatString).replaceAll(" ");
 	}
 
 	private static SimpleDateFormat getLocalFormatter(final Context context,
-			final String lang, final String format) {
-		final Locale locale = getLocale(lang);
-		return new SimpleDateFormat(withSuitableTime(context, format), locale);
+			final String format) {
+		return newFormatter(getPrefs(context).getLocale(),
+				withSuitableTime(context, format));
 	}
 
 	public static GregorianCalendar getLocalCalendar(final Context context) {
-		final Locale locale = getLocale(PreferenceManager
-				.getDefaultSharedPreferences(context).getString(
-						context.getString(R.string.pref_locale), ""));
-		return new GregorianCalendar(locale);
+		return new GregorianCalendar(getPrefs(context).getLocale());
 	}
 
 	/**
 	 * Good for performance critical situations, like lists
 	 */
 	public static SimpleDateFormat getLocalFormatterLong(final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
-				withSuitableTime(
-						context,
-						PreferenceManager
-								.getDefaultSharedPreferences(context)
-								.getString(
-										context.getString(R.string.key_pref_dateformat_long),
-										context.getString(R.string.dateformat_long_1))));
+		return getLocalFormatter(context, getPrefs(context).longFormat);
 	}
 
 	public static SimpleDateFormat getDateFormatter(final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
+		return getLocalFormatter(context,
 				context.getString(R.string.dateformat_just_date));
 	}
 
 	public static SimpleDateFormat getLocalFormatterLongDateOnly(
 			final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
-				withSuitableDateOnly(
-						context,
-						PreferenceManager
-								.getDefaultSharedPreferences(context)
-								.getString(
-										context.getString(R.string.key_pref_dateformat_long),
-										context.getString(R.string.dateformat_long_1))));
+		return getLocalFormatter(context,
+				withSuitableDateOnly(context, getPrefs(context).longFormat));
 	}
 
 	/**
 	 * Good for performance critical situations, like lists
 	 */
 	public static SimpleDateFormat getLocalFormatterShort(final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
-				withSuitableTime(
-						context,
-						PreferenceManager
-								.getDefaultSharedPreferences(context)
-								.getString(
-										context.getString(R.string.key_pref_dateformat_short),
-										context.getString(R.string.dateformat_short_1))));
+		return getLocalFormatter(context, getPrefs(context).shortFormat);
 	}
 
 	public static SimpleDateFormat getLocalFormatterShortDateOnly(
 			final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
-				withSuitableDateOnly(
-						context,
-						PreferenceManager
-								.getDefaultSharedPreferences(context)
-								.getString(
-										context.getString(R.string.key_pref_dateformat_short),
-										context.getString(R.string.dateformat_short_1))));
+		return getLocalFormatter(context,
+				withSuitableDateOnly(context, getPrefs(context).shortFormat));
 	}
 
 	public static SimpleDateFormat getLocalFormatterMicro(final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
-				withSuitableTime(context,
-						context.getString(R.string.dateformat_micro)));
+		return getLocalFormatter(context,
+				context.getString(R.string.dateformat_micro));
 	}
 
 	/**
@@ -214,10 +332,7 @@ public class TimeFormatter {
 	 */
 	public static SimpleDateFormat getLocalFormatterWeekday(
 			final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
+		return getLocalFormatter(context,
 				context.getString(R.string.dateformat_weekday));
 	}
 
@@ -226,10 +341,6 @@ public class TimeFormatter {
 	 */
 	public static SimpleDateFormat getLocalFormatterWeekdayShort(
 			final Context context) {
-		return getLocalFormatter(
-				context,
-				PreferenceManager.getDefaultSharedPreferences(context)
-						.getString(context.getString(R.string.pref_locale), ""),
-				WEEKDAY_SHORTEST_FORMAT);
+		return getLocalFormatter(context, WEEKDAY_SHORTEST_FORMAT);
 	}
 }
@@ -1,7 +1,6 @@
 package com.nononsenseapps.notepad;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -18,7 +17,6 @@ import org.androidannotations.annotations.ViewById;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GooglePlayServicesUtil;
-import com.google.android.gms.location.Geofence;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.GoogleMap.OnMapClickListener;
@@ -56,10 +54,8 @@ import com.nononsenseapps.helpers.ActivityHelper;
 import com.nononsenseapps.notepad.ActivityLocation.GeofenceSampleReceiver;
 import com.nononsenseapps.notepad.core.R;
 import com.nononsenseapps.notepad.database.Notification;
-import com.nononsenseapps.util.GeofenceRemover;
-import com.nononsenseapps.util.GeofenceRequester;
+import com.nononsenseapps.util.GeofenceManager;
 import com.nononsenseapps.util.GeofenceUtils;
-import com.nononsenseapps.util.GeofenceUtils.REMOVE_TYPE;
 import com.nononsenseapps.util.GeofenceUtils.REQUEST_TYPE;
 import com.nononsenseapps.util.LocationSuggestionsProvider;
 
@@ -67,6 +63,7 @@ import android.app.ActionBar;
 import android.app.Activity;
 import android.app.Dialog;
 import android.app.DialogFragment;
+import android.app.PendingIntent;
 import android.app.SearchManager;
 import android.content.BroadcastReceiver;
 import android.content.ComponentName;
@@ -74,6 +71,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.IntentSender.SendIntentException;
 
 @EActivity(resName="activity_map")
 public class ActivityLocation extends Activity {
@@ -87,9 +85,6 @@ public class ActivityLocation extends Activity {
 	final static int fillColor = 0xaa33b5e5;
 	final static int lineColor = 0xff33b5e5;
 
-	// Millisecond delay of the responsiveness of geofences.
-	final static int LOCATION_PERIOD = 5 * 1000;
-	
 	double startLatitude = -999;
 	double startLongitude = -999;
 	double startRadius = -999;
@@ -127,14 +122,6 @@ public class ActivityLocation extends Activity {
 	private long mId = -1L;
 
 	private REQUEST_TYPE mRequestType;
-	private REMOVE_TYPE mRemoveType;
-
-	private GeofenceRequester mGeofenceRequester;
-
-	private GeofenceRemover mGeofenceRemover;
-
-	private List<Geofence> mCurrentGeofences;
-	private List<String> mGeofenceIdsToRemove;
 
 	private GeofenceSampleReceiver mBroadcastReceiver;
 
@@ -171,15 +158,6 @@ public class ActivityLocation extends Activity {
 			}
 		}
 
-		mCurrentGeofences = new ArrayList<Geofence>();
-		mGeofenceIdsToRemove = new ArrayList<String>();
-
-		// Instantiate a Geofence requester
-		mGeofenceRequester = new GeofenceRequester(this);
-
-		// Instantiate a Geofence remover
-		mGeofenceRemover = new GeofenceRemover(this);
-
 		// Need to know when we have success
 		// Create a new broadcast receiver to receive updates from the listeners
 		// and service
@@ -200,6 +178,10 @@ public class ActivityLocation extends Activity {
 		// errors
 		mIntentFilter.addAction(GeofenceUtils.ACTION_GEOFENCE_ERROR);
 
+		// Action for broadcast Intents reporting that Location Services could
+		// not be reached
+		mIntentFilter.addAction(GeofenceUtils.ACTION_CONNECTION_ERROR);
+
 		// All Location Services sample apps use this category
 		mIntentFilter.addCategory(GeofenceUtils.CATEGORY_LOCATION_SERVICES);
 	}
@@ -621,37 +603,15 @@ public class ActivityLocation extends Activity {
 			return;
 		}
 
-		final Geofence gf = new Geofence.Builder()
-				.setCircularRegion(marker.getPosition().latitude,
-						marker.getPosition().longitude, (float) radius)
-				.setRequestId(Long.toString(mId))
-				.setNotificationResponsiveness(LOCATION_PERIOD)
-				// Detect both entry and exit transitions
-				.setTransitionTypes(
-						Geofence.GEOFENCE_TRANSITION_ENTER
-								| Geofence.GEOFENCE_TRANSITION_EXIT)
-				.setExpirationDuration(Geofence.NEVER_EXPIRE).build();
-
-		mCurrentGeofences.add(gf);
-		// Start the request. Fail if there's already a request in progress
-		try {
-			mGeofenceRequester.addGeofences(mCurrentGeofences);
-		}
-		catch (UnsupportedOperationException e) {
-			// Notify user that previous request hasn't finished.
-			Toast.makeText(this,
-					R.string.add_geofences_already_requested_error,
-					Toast.LENGTH_LONG).show();
-		}
+		// Registers it if it is among the nearest, and finishes on the result
+		GeofenceManager.update(this);
 	}
 
 	/*
 	 * Handle results returned to this Activity by other Activities started with
-	 * startActivityForResult(). In particular, the method onConnectionFailed()
-	 * in GeofenceRemover and GeofenceRequester may call
-	 * startResolutionForResult() to start an Activity that handles Google Play
-	 * services problems. The result of this call returns here, to
-	 * onActivityResult. calls
+	 * startActivityForResult(). In particular, handleConnectionError() may
+	 * start an Activity that handles Google Play services problems. The result
+	 * of that Activity returns here.
 	 */
 	@Override
 	protected void onActivityResult(int requestCode, int resultCode,
@@ -659,7 +619,7 @@ public class ActivityLocation extends Activity {
 		// Choose what to do based on the request code
 		switch (requestCode) {
 
-		// If the request code matches the code sent in onConnectionFailed
+		// If the request code matches the code sent in handleConnectionError
 		case GeofenceUtils.CONNECTION_FAILURE_RESOLUTION_REQUEST:
 
 			switch (resultCode) {
@@ -669,36 +629,8 @@ public class ActivityLocation extends Activity {
 				// If the request was to add geofences
 				if (GeofenceUtils.REQUEST_TYPE.ADD == mRequestType) {
 
-					// Toggle the request flag and send a new request
-					mGeofenceRequester.setInProgressFlag(false);
-
 					// Restart the process of adding the current geofences
-					mGeofenceRequester.addGeofences(mCurrentGeofences);
-
-					// If the request was to remove geofences
-				}
-				else if (GeofenceUtils.REQUEST_TYPE.REMOVE == mRequestType) {
-
-					// Toggle the removal flag and send a new removal request
-					mGeofenceRemover.setInProgressFlag(false);
-
-					// If the removal was by Intent
-					if (GeofenceUtils.REMOVE_TYPE.INTENT == mRemoveType) {
-
-						// Restart the removal of all geofences for the
-						// PendingIntent
-						mGeofenceRemover
-								.removeGeofencesByIntent(mGeofenceRequester
-										.getRequestPendingIntent());
-
-						// If the removal was by a List of geofence IDs
-					}
-					else {
-
-						// Restart the removal of the geofence list
-						mGeofenceRemover
-								.removeGeofencesById(mGeofenceIdsToRemove);
-					}
+					GeofenceManager.update(this);
 				}
 				break;
 
@@ -709,6 +641,7 @@ public class ActivityLocation extends Activity {
 				// problem.
 				Log.d(GeofenceUtils.APPTAG, getString(R.string.no_resolution));
 			}
+			break;
 
 			// If any other request code was received
 		default:
@@ -779,6 +712,13 @@ public class ActivityLocation extends Activity {
 
 				handleGeofenceError(context, intent);
 
+				// Intent contains the error of connecting to Location Services
+			}
+			else if (TextUtils.equals(action,
+					GeofenceUtils.ACTION_CONNECTION_ERROR)) {
+
+				handleConnectionError(intent);
+
 				// Intent contains information about successful addition or
 				// removal of geofences
 			}
@@ -835,6 +775,51 @@ public class ActivityLocation extends Activity {
 			 */
 		}
 
+		/**
+		 * Let Google Play services resolve the error if it can, otherwise
+		 * show its error dialog. A resolved error retries the request in
+		 * onActivityResult.
+		 * 
+		 * @param intent
+		 *        A broadcast Intent sent by GeofenceManager
+		 */
+		private void handleConnectionError(Intent intent) {
+			final int errorCode = intent.getIntExtra(
+					GeofenceUtils.EXTRA_CONNECTION_ERROR_CODE,
+					ConnectionResult.INTERNAL_ERROR);
+			final PendingIntent resolution = intent
+					.getParcelableExtra(GeofenceUtils.EXTRA_CONNECTION_RESOLUTION);
+			Log.e(GeofenceUtils.APPTAG,
+					getString(R.string.connection_error_code, errorCode));
+
+			final ConnectionResult result = new ConnectionResult(errorCode,
+					resolution);
+			if (result.hasResolution()) {
+				try {
+					result.startResolutionForResult(ActivityLocation.this,
+							GeofenceUtils.CONNECTION_FAILURE_RESOLUTION_REQUEST);
+					return;
+				}
+				catch (SendIntentException e) {
+					// The resolution was canceled, show the dialog instead
+					Log.e(GeofenceUtils.APPTAG, e.getMessage());
+				}
+			}
+
+			Dialog dialog = GooglePlayServicesUtil.getErrorDialog(errorCode,
+					ActivityLocation.this,
+					GeofenceUtils.CONNECTION_FAILURE_RESOLUTION_REQUEST);
+			if (dialog != null) {
+				ErrorDialogFragment errorFragment = new ErrorDialogFragment();
+				errorFragment.setDialog(dialog);
+				errorFragment.show(getFragmentManager(), GeofenceUtils.APPTAG);
+			}
+			else {
+				Toast.makeText(ActivityLocation.this, R.string.no_resolution,
+						Toast.LENGTH_LONG).show();
+			}
+		}
+
 		/**
 		 * Report addition or removal errors to the UI, using a Toast
 		 * 
@@ -844,6 +829,10 @@ public class ActivityLocation extends Activity {
 		private void handleGeofenceError(Context context, Intent intent) {
 			String msg = intent
 					.getStringExtra(GeofenceUtils.EXTRA_GEOFENCE_STATUS);
+			if (msg == null) {
+				msg = getString(R.string.add_geofences_result_failure,
+						GeofenceUtils.INVALID_INT_VALUE, "");
+			}
 			Log.e(GeofenceUtils.APPTAG, msg);
 			Toast.makeText(context, msg, Toast.LENGTH_LONG).show();
 		}
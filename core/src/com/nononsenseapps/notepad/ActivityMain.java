@@ -18,6 +18,7 @@ package com.nononsenseapps.notepad;
 
 import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
@@ -60,10 +61,12 @@ import com.nononsenseapps.billing.Inventory;
 import com.nononsenseapps.billing.Purchase;
 import com.nononsenseapps.helpers.ActivityHelper;
 import com.nononsenseapps.helpers.NotificationHelper;
+import com.nononsenseapps.helpers.StartupPipeline;
 import com.nononsenseapps.helpers.SyncHelper;
 import com.nononsenseapps.helpers.SyncStatusMonitor;
 import com.nononsenseapps.helpers.SyncStatusMonitor.OnSyncStartStopListener;
 import com.nononsenseapps.notepad.core.R;
+import com.nononsenseapps.notepad.database.DraftJournal;
 import com.nononsenseapps.notepad.database.LegacyDBHelper;
 import com.nononsenseapps.notepad.database.LegacyDBHelper.NotePad;
 import com.nononsenseapps.notepad.database.Notification;
@@ -82,6 +85,7 @@ import com.nononsenseapps.notepad.legacy.DonateMigrator;
 import com.nononsenseapps.notepad.legacy.DonateMigrator_;
 import com.nononsenseapps.notepad.prefs.MainPrefs;
 import com.nononsenseapps.notepad.prefs.PrefsActivity;
+import com.nononsenseapps.notepad.services.TrashPurgeService;
 import com.nononsenseapps.notepad.sync.orgsync.OrgSyncService;
 import com.nononsenseapps.ui.ExtraTypesCursorAdapter;
 import com.nononsenseapps.utils.ViewsHelper;
@@ -182,12 +186,22 @@ public class ActivityMain extends FragmentActivity implements
 	ListOpener listOpener = null;
 	private Bundle state;
 	private PullToRefreshAttacher pullToRefreshAttacher;
+	// Work of onCreate and onResume which can wait for the first frame
+	private StartupPipeline startup;
 
 	@Override
 	public void onCreate(Bundle b) {
+		startup = new StartupPipeline();
 		// Must do this before super.onCreate
-		ActivityHelper.readAndSetSettings(this);
+		startup.critical("settings", new Runnable() {
+			@Override
+			public void run() {
+				ActivityHelper.readAndSetSettings(ActivityMain.this);
+			}
+		});
+		StartupPipeline.beginSection("onCreate");
 		super.onCreate(b);
+		StartupPipeline.endSection();
 
 		syncStatusReceiver = new SyncStatusMonitor();
 
@@ -227,15 +241,43 @@ public class ActivityMain extends FragmentActivity implements
 			this.state = b;
 		}
 
-		// Create a PullToRefreshAttacher instance
-		pullToRefreshAttacher = PullToRefreshAttacher.get(this);
+		// Create a PullToRefreshAttacher instance, the lists need it
+		startup.critical("pull to refresh", new Runnable() {
+			@Override
+			public void run() {
+				pullToRefreshAttacher = PullToRefreshAttacher
+						.get(ActivityMain.this);
+			}
+		});
 
 		// Clear possible notifications, schedule future ones
 		final Intent intent = getIntent();
 		// Clear notification if present
 		clearNotification(intent);
+
+		// Nothing below is needed to show the lists
+		final Context appContext = getApplicationContext();
 		// Schedule notifications
-		NotificationHelper.schedule(this);
+		startup.defer("notifications", new Runnable() {
+			@Override
+			public void run() {
+				NotificationHelper.schedule(appContext);
+			}
+		});
+		// Keep the trash from growing forever
+		startup.defer("trash purge", new Runnable() {
+			@Override
+			public void run() {
+				TrashPurgeService.schedule(appContext);
+			}
+		});
+		// Save what was being typed if we crashed last time
+		startup.defer("drafts", new Runnable() {
+			@Override
+			public void run() {
+				DraftJournal.recover(appContext);
+			}
+		});
 	}
 
     @Background
@@ -337,14 +379,27 @@ public class ActivityMain extends FragmentActivity implements
 			syncStatusReceiver.startMonitoring(this);
 		}
 
-		// Sync if appropriate
-        if (SyncHelper.enoughTimeSinceLastSync(this)) {
-            SyncHelper.requestSyncIf(this, SyncHelper.ONAPPSTART);
-            OrgSyncService.start(this);
-        }
+		// Sync if appropriate. On the main thread, so the service gets
+		// start and pause in order.
+		startup.deferOnMain("sync", new Runnable() {
+			@Override
+			public void run() {
+				if (SyncHelper.enoughTimeSinceLastSync(ActivityMain.this)) {
+					SyncHelper.requestSyncIf(ActivityMain.this,
+							SyncHelper.ONAPPSTART);
+					OrgSyncService.start(ActivityMain.this);
+				}
+			}
+		});
 
-        // Check any upgrades
-        checkPremium();
+		// Check any upgrades
+		startup.deferOnMain("premium", new Runnable() {
+			@Override
+			public void run() {
+				checkPremium();
+			}
+		});
+		startup.startAfterDraw(getWindow().getDecorView());
 	}
 
 	private void restartAndRefresh() {
@@ -368,6 +423,8 @@ public class ActivityMain extends FragmentActivity implements
 		if (pullToRefreshAttacher != null) {
 			pullToRefreshAttacher.setRefreshComplete();
 		}
+		// Steps of onResume which did not run yet would run after the pause
+		startup.cancelOnMain();
         // Pause sync monitors
         OrgSyncService.pause(this);
 	}
@@ -719,11 +776,18 @@ public class ActivityMain extends FragmentActivity implements
 	 */
 	@AfterViews
 	protected void loadContent() {
+		StartupPipeline.beginSection("content");
 		loadLeftDrawer();
 		loadFragments();
+		StartupPipeline.endSection();
 
 		if (!showingEditor || fragment2 != null) {
-			showcaseDrawer();
+			startup.deferOnMain("showcase", new Runnable() {
+				@Override
+				public void run() {
+					showcaseDrawer();
+				}
+			});
 		}
 	}
 
@@ -1,6 +1,6 @@
 package com.nononsenseapps.notepad.dashclock;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 
@@ -12,6 +12,7 @@ import android.preference.PreferenceManager;
 import com.google.android.apps.dashclock.api.DashClockExtension;
 import com.google.android.apps.dashclock.api.ExtensionData;
 import com.nononsenseapps.notepad.core.R;
+import com.nononsenseapps.notepad.database.MyContentProvider;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
 
@@ -33,6 +34,9 @@ public class TasksExtension extends DashClockExtension {
 			.append(Task.Columns.DUE).append(" <= ? ").toString();
 	private static final String WHERE_ALL_NOTDONE = Task.Columns.COMPLETED
 			+ " IS NULL";
+	private static final String WHERE_NOT_OVERDUE = new StringBuilder(
+			" AND (").append(Task.Columns.DUE).append(" IS NULL OR ")
+			.append(Task.Columns.DUE).append(" >= ?)").toString();
 
 	private String[] toA(final String... args) {
 		return args;
@@ -49,8 +53,27 @@ public class TasksExtension extends DashClockExtension {
 		return result;
 	}
 
-	final static String[] NOTEFIELDS = new String[] { "_id", "title", "note",
-			"duedate" };
+	// Titles shown in the expanded body
+	static final int MAX_TITLES = 10;
+
+	final static String[] TITLEFIELDS = new String[] { Task.Columns._ID,
+			Task.Columns.TITLE, Task.Columns.DBLIST };
+	final static String[] NOTEFIELDS = new String[] { Task.Columns._ID,
+			Task.Columns.TITLE, Task.Columns.DBLIST, Task.Columns.NOTE };
+	final static String[] COUNTFIELDS = new String[] { "COUNT(1)" };
+	// Changes if any task in the list is added, removed or saved. The sums
+	// catch saves which do not raise the latest time, like a sync writing an
+	// older remote time. SUM is exact, unlike TOTAL which sums doubles.
+	final static String[] FINGERPRINTFIELDS = new String[] { "COUNT(1)",
+			"MAX(" + Task.Columns.UPDATED + ")",
+			"SUM(" + Task.Columns.UPDATED + ")",
+			"SUM(" + Task.Columns.DUE + ")",
+			"SUM(" + Task.Columns.COMPLETED + ")" };
+
+	// What was published last, and what it was made from
+	private String mCacheQuery = null;
+	private String mCacheFingerprint = null;
+	private ExtensionData mCachedData = null;
 
 	@Override
 	protected void onInitialize(boolean isReconnect) {
@@ -78,127 +101,183 @@ public class TasksExtension extends DashClockExtension {
 
 		final boolean showHeader = prefs.getBoolean("show_header", true);
 
-		final ArrayList<Task> notes = getNotesFromDB(listId, upperLimit);
-
-		// Show overdue?
+		// Build the query
+		String where = "";
+		String[] whereArgs = new String[0];
+		if (listId > -1) {
+			where += WHERE_LIST_IS_AND;
+			whereArgs = appendTo(whereArgs, Long.toString(listId));
+		}
+		where += getUpperQueryLimitWhere(upperLimit);
+		whereArgs = getUpperQueryLimitWhereArgs(whereArgs, upperLimit);
 		if (!showOverdue) {
-			removeOverdue(notes);
+			// Whole minutes, so the query stays the same for a while
+			final long now = Calendar.getInstance().getTimeInMillis();
+			where += WHERE_NOT_OVERDUE;
+			whereArgs = appendTo(whereArgs, Long.toString(now - now % 60000));
 		}
 
-		if (showSingle && notes.size() > 1) {
-			final Task first = notes.get(0);
-			notes.clear();
-			notes.add(first);
+		final String query = new StringBuilder().append(showSingle)
+				.append(showHeader).append(where)
+				.append(Arrays.toString(whereArgs)).toString();
+
+		// Only changes to the data can change the result, as the time limits
+		// are part of the query
+		if (reason != UPDATE_REASON_CONTENT_CHANGED
+				&& query.equals(mCacheQuery)) {
+			publishUpdate(mCachedData);
+			return;
 		}
 
-		if (notes.isEmpty()) {
-			publishUpdate(null);
+		// Something changed, but maybe not in the list we show
+		final String fingerprint = getFingerprint(listId, showHeader);
+		if (query.equals(mCacheQuery) && fingerprint.equals(mCacheFingerprint)) {
+			publishUpdate(mCachedData);
+			return;
 		}
-		else {
 
-			final String short_header = getString(
-					R.string.dashclock_tasks_count, notes.size());
+		mCachedData = getData(listId, where, whereArgs, showSingle, showHeader);
+		mCacheQuery = query;
+		mCacheFingerprint = fingerprint;
+		publishUpdate(mCachedData);
+	}
 
-			final String long_header;
+	/**
+	 * Returns null if there is nothing to show
+	 */
+	private ExtensionData getData(final long listId, final String where,
+			final String[] whereArgs, final boolean showSingle,
+			final boolean showHeader) {
+		final int count = showSingle ? Math.min(1, count(where, whereArgs))
+				: count(where, whereArgs);
+		if (count == 0) {
+			return null;
+		}
 
-			// If no header is to be displayed, show title of first
-			if (showHeader) {
-				long_header = getHeader(listId);
-			}
-			else {
-				long_header = notes.get(0).title;
-			}
+		// The note is only shown if there is a single task
+		final Cursor cursor = getContentResolver().query(
+				Task.URI.buildUpon()
+						.appendQueryParameter(MyContentProvider.QUERY_LIMIT,
+								Integer.toString(Math.min(count, MAX_TITLES)))
+						.build(), count == 1 ? NOTEFIELDS : TITLEFIELDS, where,
+				whereArgs, getSortOrder(where));
+		if (cursor == null) {
+			return null;
+		}
 
-			final Intent noteIntent = new Intent();
-			if (notes.size() > 1) {
-				noteIntent
-						.setAction(Intent.ACTION_VIEW)
-						.setData(
-								TaskList.getUri(notes.get(0).dblist.longValue()))
-						.putExtra(Task.TABLE_NAME, notes.get(0)._id);
+		final long firstId;
+		final long firstList;
+		final String firstTitle;
+		final StringBuilder body = new StringBuilder();
+		try {
+			if (!cursor.moveToFirst()) {
+				// Changed since counting
+				return null;
+			}
+			firstId = cursor.getLong(0);
+			firstTitle = cursor.getString(1);
+			firstList = cursor.getLong(2);
+
+			if (count == 1) {
+				if (showHeader) {
+					// Skip title if no header as the title is the header
+					body.append(firstTitle).append("\n");
+				}
+				body.append(cursor.getString(3));
 			}
 			else {
-				noteIntent
-						.setAction(Intent.ACTION_EDIT)
-						.setData(Task.getUri(notes.get(0)._id))
-						.putExtra(Task.Columns.DBLIST,
-								notes.get(0).dblist.longValue());
+				// Skip first if no header, as it is the header
+				if (showHeader) {
+					body.append(firstTitle);
+				}
+				while (cursor.moveToNext()) {
+					if (body.length() > 0) {
+						body.append("\n");
+					}
+					body.append(cursor.getString(1));
+				}
 			}
-
-			// Publish the extension data update.
-			publishUpdate(new ExtensionData().visible(true)
-					.icon(R.drawable.ic_stat_notification_edit)
-					.status(short_header).expandedTitle(long_header)
-					.expandedBody(getBody(notes, showHeader))
-					.clickIntent(noteIntent));
+		}
+		finally {
+			cursor.close();
 		}
 
-	}
+		final String short_header = getString(R.string.dashclock_tasks_count,
+				count);
 
-	@SuppressWarnings("unchecked")
-	private void removeOverdue(final ArrayList<Task> notes) {
-		for (Task note : (ArrayList<Task>) notes.clone()) {
-			if (note.due != null
-					&& note.due < Calendar.getInstance().getTimeInMillis())
-				notes.remove(note);
+		// If no header is to be displayed, show title of first
+		final String long_header = showHeader ? getHeader(listId) : firstTitle;
+
+		final Intent noteIntent = new Intent();
+		if (count > 1) {
+			noteIntent.setAction(Intent.ACTION_VIEW)
+					.setData(TaskList.getUri(firstList))
+					.putExtra(Task.TABLE_NAME, firstId);
 		}
+		else {
+			noteIntent.setAction(Intent.ACTION_EDIT)
+					.setData(Task.getUri(firstId))
+					.putExtra(Task.Columns.DBLIST, firstList);
+		}
+
+		return new ExtensionData().visible(true)
+				.icon(R.drawable.ic_stat_notification_edit)
+				.status(short_header).expandedTitle(long_header)
+				.expandedBody(body.toString()).clickIntent(noteIntent);
 	}
 
-	private String getBody(final ArrayList<Task> notes, final boolean showHeader) {
-		String result = "";
-		if (notes.size() == 1) {
-			if (showHeader) {
-				// Skip title if no header as the title is the header
-				result += notes.get(0).title;
-				result += "\n";
-			}
-			result += notes.get(0).note;
+	private int count(final String where, final String[] whereArgs) {
+		final Cursor cursor = getContentResolver().query(Task.URI,
+				COUNTFIELDS, where, whereArgs, null);
+		if (cursor == null) {
+			return 0;
 		}
-		else {
-			boolean first = true;
-			boolean skippable = true;
-			for (Task note : notes) {
-				if (!showHeader && skippable) {
-					// Skip first
-					skippable = false;
-					continue;
-				}
-				if (!first) result += "\n";
-				result += note.title;
-				first = false;
-			}
+		try {
+			return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+		}
+		finally {
+			cursor.close();
 		}
-		return result;
 	}
 
 	/**
-	 * Return a list of notes respecting the constraints set in preferences.
+	 * Tasks with a due date limit all have due dates, so the index gives the
+	 * order.
 	 */
-	private ArrayList<Task> getNotesFromDB(final long list,
-			final String upperLimit) {
-		// WHERE_LIST_IS, toA(list)
-		String where = "";
-		String[] whereArgs = new String[0];
-		if (list > -1) {
-			where += WHERE_LIST_IS_AND;
-			whereArgs = appendTo(whereArgs, Long.toString(list));
-		}
-
-		where += getUpperQueryLimitWhere(upperLimit);
-		whereArgs = getUpperQueryLimitWhereArgs(whereArgs, upperLimit);
+	private String getSortOrder(final String where) {
+		return where.contains(WHERE_DATE_IS) ? Task.Columns.DUE
+				: DUEDATE_SORT_TYPE;
+	}
 
+	/**
+	 * Something which changes if the tasks of the list, or its name, change.
+	 * Cheaper than running the queries again.
+	 */
+	private String getFingerprint(final long list, final boolean showHeader) {
+		final StringBuilder result = new StringBuilder();
 		final Cursor cursor = getContentResolver().query(Task.URI,
-				Task.Columns.FIELDS, where, whereArgs, DUEDATE_SORT_TYPE);
-
-		final ArrayList<Task> result = new ArrayList<Task>();
+				FINGERPRINTFIELDS, list > -1 ? Task.Columns.DBLIST + " IS ?"
+						: null,
+				list > -1 ? new String[] { Long.toString(list) } : null, null);
 		if (cursor != null) {
-			while (cursor.moveToNext()) {
-				result.add(new Task(cursor));
+			try {
+				if (cursor.moveToFirst()) {
+					for (int i = 0; i < FINGERPRINTFIELDS.length; i++) {
+						if (i > 0) {
+							result.append(":");
+						}
+						result.append(cursor.getLong(i));
+					}
+				}
+			}
+			finally {
+				cursor.close();
 			}
-			cursor.close();
 		}
-
-		return result;
+		if (showHeader) {
+			result.append(":").append(getHeader(list));
+		}
+		return result.toString();
 	}
 
 	/**
@@ -208,16 +287,14 @@ public class TasksExtension extends DashClockExtension {
 		String header = getString(R.string.dashclock_tasks);
 
 		if (list > -1) {
-			final Cursor cursor = getContentResolver().query(TaskList.URI,
-					TaskList.Columns.FIELDS, TaskList.Columns._ID + " IS ?",
-					new String[] { Long.toString(list) }, null);
+			final Cursor cursor = getContentResolver().query(
+					TaskList.getUri(list),
+					new String[] { TaskList.Columns._ID,
+							TaskList.Columns.TITLE }, null, null, null);
 			if (cursor != null) {
-				if (!cursor.isClosed() && !cursor.isAfterLast()) {
-					if (cursor.moveToNext()) {
-						header = cursor.getString(1);
-					}
+				if (cursor.moveToFirst()) {
+					header = cursor.getString(1);
 				}
-
 				cursor.close();
 			}
 		}
@@ -238,6 +315,8 @@ public class TasksExtension extends DashClockExtension {
 		final GregorianCalendar gc = new GregorianCalendar();
 		gc.set(GregorianCalendar.HOUR_OF_DAY, 23);
 		gc.set(GregorianCalendar.MINUTE, 59);
+		gc.set(GregorianCalendar.SECOND, 59);
+		gc.set(GregorianCalendar.MILLISECOND, 999);
 		final long base = gc.getTimeInMillis();
 		final long day = 24 * 60 * 60 * 1000;
 		if (getString(R.string.dashclock_pref_today).equals(upperLimit)) {
@@ -196,6 +196,39 @@ public abstract class DAO {
 
 	public long _id = -1;
 
+	// Content as last read from or written to the database, null if unknown
+	private ContentValues savedContent = null;
+
+	/**
+	 * Remember the current content as what the database has. Call when the
+	 * object has been read from, or written to, the database.
+	 */
+	public void setContentSaved() {
+		savedContent = getContent();
+	}
+
+	/**
+	 * Returns the content which has changed since it was last read or saved.
+	 * Everything if that is unknown.
+	 */
+	public ContentValues getChangedContent() {
+		final ContentValues values = getContent();
+		if (savedContent != null) {
+			for (final String key : values.keySet().toArray(
+					new String[values.size()])) {
+				if (savedContent.containsKey(key)
+						&& isEqual(savedContent.get(key), values.get(key))) {
+					values.remove(key);
+				}
+			}
+		}
+		return values;
+	}
+
+	private static boolean isEqual(final Object a, final Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
 	public synchronized boolean update(final Context context,
 			final SQLiteDatabase db) {
 		int result = 0;
@@ -204,8 +237,11 @@ public abstract class DAO {
 		try {
 
 			if (_id > 0) {
-				result += db.update(getTableName(), getContent(), whereIdIs,
-						whereIdArg());
+				final ContentValues values = getChangedContent();
+				if (values.size() > 0) {
+					result += db.update(getTableName(), values, whereIdIs,
+							whereIdArg());
+				}
 			}
 
 			if (result > 0) {
@@ -221,6 +257,7 @@ public abstract class DAO {
 		}
 
 		if (result > 0) {
+			setContentSaved();
 			notifyProviderOnChange(context);
 		}
 
@@ -229,18 +266,29 @@ public abstract class DAO {
 
 	public synchronized Uri insert(final Context context,
 			final SQLiteDatabase db) {
+		return insert(context, db, null);
+	}
+
+	/**
+	 * Insert using a compiled statement from the cache, if not null.
+	 */
+	public synchronized Uri insert(final Context context,
+			final SQLiteDatabase db, final StatementCache statements) {
 		Uri retval = null;
 		db.beginTransaction();
 		try {
 			beforeInsert(context, db);
 
-			final long id = db.insert(getTableName(), null, getContent());
+			final long id = statements == null ? db.insert(getTableName(),
+					null, getContent()) : statements.insert(db, getTableName(),
+					getContent());
 
 			if (id == -1) {
 				throw new SQLException("Insert failed in " + getTableName());
 			}
 			else {
 				_id = id;
+				setContentSaved();
 				afterInsert(context, db);
 				db.setTransactionSuccessful();
 				retval = getUri();
@@ -253,7 +301,8 @@ public abstract class DAO {
 			db.endTransaction();
 		}
 
-		if (retval != null) {
+		// Null context means the caller notifies
+		if (retval != null && context != null) {
 			notifyProviderOnChange(context);
 		}
 		return retval;
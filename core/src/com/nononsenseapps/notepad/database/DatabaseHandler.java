@@ -31,7 +31,7 @@ public class DatabaseHandler extends SQLiteOpenHelper {
 		return singleton;
 	}
 
-	private static final int DATABASE_VERSION = 15;
+	private static final int DATABASE_VERSION = 21;
 	public static final String DATABASE_NAME = "nononsense_notes.db";
 
 	private final Context context;
@@ -48,7 +48,8 @@ public class DatabaseHandler extends SQLiteOpenHelper {
 	 * Use only for JUNIT tests
 	 */
 	public DatabaseHandler(Context context, String testPrefix) {
-		super(context, testPrefix + DATABASE_NAME, null, DATABASE_VERSION);
+		super(context, testPrefix + DATABASE_NAME,
+				QueryProfiler.CURSOR_FACTORY, DATABASE_VERSION);
 		// Good idea to have the context that doesn't die with the window
 		this.context = context.getApplicationContext();
 		this.testPrefix = testPrefix;
@@ -71,10 +72,17 @@ public class DatabaseHandler extends SQLiteOpenHelper {
 		db.execSQL(TaskList.CREATE_TABLE);
 		db.execSQL(Task.CREATE_TABLE);
 		db.execSQL(Task.CREATE_DELETE_TABLE);
+		db.execSQL(Task.CREATE_DELETE_TABLE_TIME_INDEX);
+		db.execSQL(Task.CREATE_DUE_INDEX);
+		db.execSQL(Task.CREATE_LIST_INDEX);
 		db.execSQL(Task.CREATE_HISTORY_TABLE);
 		db.execSQL(Notification.CREATE_TABLE);
+		db.execSQL(Notification.CREATE_TIME_INDEX);
+		db.execSQL(Notification.CREATE_TASK_INDEX);
 		db.execSQL(RemoteTaskList.CREATE_TABLE);
 		db.execSQL(RemoteTask.CREATE_TABLE);
+		db.execSQL(SyncMetrics.CREATE_TABLE);
+		db.execSQL(SyncMetrics.CREATE_RUN_INDEX);
 
 		db.execSQL(Notification.CREATE_JOINED_VIEW);
 
@@ -93,10 +101,7 @@ public class DatabaseHandler extends SQLiteOpenHelper {
 		db.execSQL(RemoteTask.TRIGGER_MOVE_LIST);
 
 		// Search tables
-		db.execSQL(Task.CREATE_FTS3_TABLE);
-		db.execSQL(Task.CREATE_FTS3_INSERT_TRIGGER);
-		db.execSQL(Task.CREATE_FTS3_UPDATE_TRIGGER);
-		db.execSQL(Task.CREATE_FTS3_DELETE_TRIGGER);
+		createSearchTable(db);
 
 		// Delete search tables
 		db.execSQL(Task.CREATE_FTS3_DELETE_TABLE);
@@ -107,6 +112,17 @@ public class DatabaseHandler extends SQLiteOpenHelper {
 		initializedDB(db);
 	}
 
+	/**
+	 * Creates the FTS4 search table and the triggers which keep it up to date.
+	 */
+	private static void createSearchTable(final SQLiteDatabase db) {
+		db.execSQL(Task.getCREATE_FTS4_TABLE(SQLUtils.supportsFTS4Options(db)));
+		db.execSQL(Task.CREATE_FTS3_INSERT_TRIGGER);
+		db.execSQL(Task.CREATE_FTS3_PRE_UPDATE_TRIGGER);
+		db.execSQL(Task.CREATE_FTS3_UPDATE_TRIGGER);
+		db.execSQL(Task.CREATE_FTS3_DELETE_TRIGGER);
+	}
+
 	public static Cursor getLegacyLists(final SQLiteDatabase legacyDB) {
 		return legacyDB.rawQuery("SELECT lists."
 										+ BaseColumns._ID
@@ -334,6 +350,37 @@ public class DatabaseHandler extends SQLiteOpenHelper {
 			// Drop view, changing to temporary view instead
 			db.execSQL("DROP VIEW IF EXISTS " + Notification.WITH_TASK_VIEW_NAME);
 		}
+		if (oldVersion < 16) {
+			// Trash is purged by age
+			db.execSQL(Task.CREATE_DELETE_TABLE_TIME_INDEX);
+		}
+		if (oldVersion < 17) {
+			// Replace FTS3 search table with FTS4
+			db.execSQL("DROP TRIGGER IF EXISTS " + Task.FTS3_INSERT_TRIGGER_NAME);
+			db.execSQL("DROP TRIGGER IF EXISTS " + Task.FTS3_UPDATE_TRIGGER_NAME);
+			db.execSQL("DROP TRIGGER IF EXISTS " + Task.FTS3_DELETE_TRIGGER_NAME);
+			db.execSQL("DROP TABLE IF EXISTS " + Task.FTS3_TABLE_NAME);
+			createSearchTable(db);
+			db.execSQL(Task.FILL_FTS4_TABLE);
+		}
+		if (oldVersion < 18) {
+			// Due date queries of the dashclock extension and date lists
+			db.execSQL(Task.CREATE_DUE_INDEX);
+		}
+		if (oldVersion < 19) {
+			// Past reminders and the latest of each task
+			db.execSQL(Notification.CREATE_TIME_INDEX);
+			db.execSQL(Notification.CREATE_TASK_INDEX);
+		}
+		if (oldVersion < 20) {
+			// Timings and counts of recent syncs
+			db.execSQL(SyncMetrics.CREATE_TABLE);
+			db.execSQL(SyncMetrics.CREATE_RUN_INDEX);
+		}
+		if (oldVersion < 21) {
+			// Pages of a list in manual order
+			db.execSQL(Task.CREATE_LIST_INDEX);
+		}
 	}
 
 }
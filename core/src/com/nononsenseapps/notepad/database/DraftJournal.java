@@ -0,0 +1,345 @@
+package com.nononsenseapps.notepad.database;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+import android.util.Log;
+
+/**
+ * Keeps what is typed in the editor in a file, so nothing is lost if the app
+ * dies before the task is saved. Writing a draft does not touch the database,
+ * so there are no history rows, search updates or widget refreshes.
+ *
+ * There is one file per open editor. It is replaced as a whole each time, by
+ * writing a new file and renaming it. The editor saves the task and discards
+ * the draft when it is paused. Drafts still around on next launch were left
+ * by a crash, and recover() saves them into their tasks.
+ *
+ * Writes and discards are done in order on a background thread. Editors
+ * claim their keys so recovery leaves them alone.
+ */
+public class DraftJournal {
+
+	private static final String TAG = "nononsenseapps DraftJournal";
+
+	static final String DIR = "drafts";
+	static final int VERSION = 1;
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private static final ExecutorService sExecutor = Executors
+			.newSingleThreadExecutor();
+	// Keys of editors which are open in this process
+	private static final HashSet<String> sClaimed = new HashSet<String>();
+	private static int sNewCount = 0;
+
+	public static class Draft {
+		public final long taskId;
+		public final long listId;
+		public final long time;
+		public final String text;
+
+		public Draft(final long taskId, final long listId, final long time,
+				final String text) {
+			this.taskId = taskId;
+			this.listId = listId;
+			this.time = time;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Key of the draft of an existing task
+	 */
+	public static String getKey(final long taskId) {
+		return "task" + taskId;
+	}
+
+	/**
+	 * Key for the draft of a task which has not been saved yet
+	 */
+	public static synchronized String getNewKey() {
+		return "new" + System.currentTimeMillis() + "_" + (sNewCount++);
+	}
+
+	/**
+	 * Marks key as being edited, so recover() will not touch it. Returns the
+	 * draft left from before, if any.
+	 */
+	public static synchronized Draft claim(final Context context,
+			final String key) {
+		sClaimed.add(key);
+		return read(getFile(context, key));
+	}
+
+	public static synchronized void release(final String key) {
+		sClaimed.remove(key);
+	}
+
+	/**
+	 * Replaces the draft of key in the background.
+	 */
+	public static void write(final Context context, final String key,
+			final long taskId, final long listId, final String text) {
+		final Context appContext = context.getApplicationContext();
+		final Draft draft = new Draft(taskId, listId,
+				System.currentTimeMillis(), text);
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				writeNow(appContext, key, draft);
+			}
+		});
+	}
+
+	/**
+	 * Removes the draft of key in the background, after any pending writes.
+	 */
+	public static void discard(final Context context, final String key) {
+		final Context appContext = context.getApplicationContext();
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				discardNow(appContext, key);
+			}
+		});
+	}
+
+	/**
+	 * Saves drafts left by a crash into their tasks, in the background.
+	 */
+	public static void recover(final Context context) {
+		final Context appContext = context.getApplicationContext();
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				recoverNow(appContext);
+			}
+		});
+	}
+
+	/**
+	 * Same as write(), on the calling thread
+	 */
+	public static synchronized void writeNow(final Context context,
+			final String key, final Draft draft) {
+		final File file = getFile(context, key);
+		final File tmp = new File(file.getPath() + TMP_SUFFIX);
+		file.getParentFile().mkdirs();
+
+		FileOutputStream fos = null;
+		try {
+			fos = new FileOutputStream(tmp);
+			final DataOutputStream out = new DataOutputStream(fos);
+			final byte[] text = draft.text.getBytes("UTF-8");
+			out.writeInt(VERSION);
+			out.writeLong(draft.taskId);
+			out.writeLong(draft.listId);
+			out.writeLong(draft.time);
+			out.writeInt(text.length);
+			out.write(text);
+			out.flush();
+			fos.getFD().sync();
+			out.close();
+			fos = null;
+
+			if (!tmp.renameTo(file)) {
+				Log.e(TAG, "Could not replace draft " + key);
+			}
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Could not write draft " + key + ": " + e.getMessage());
+		}
+		finally {
+			if (fos != null) {
+				try {
+					fos.close();
+				}
+				catch (IOException ignored) {
+				}
+				tmp.delete();
+			}
+		}
+	}
+
+	public static synchronized void discardNow(final Context context,
+			final String key) {
+		getFile(context, key).delete();
+	}
+
+	/**
+	 * Same as recover(), on the calling thread. Returns the number of tasks
+	 * saved.
+	 */
+	public static synchronized int recoverNow(final Context context) {
+		final File[] files = getDir(context).listFiles();
+		if (files == null) {
+			return 0;
+		}
+
+		int result = 0;
+		for (final File file : files) {
+			if (file.getName().endsWith(TMP_SUFFIX)) {
+				// Died while writing, the previous draft is still there
+				file.delete();
+				continue;
+			}
+			if (sClaimed.contains(file.getName())) {
+				continue;
+			}
+
+			final Draft draft = read(file);
+			if (draft != null) {
+				try {
+					result += promote(context, draft);
+				}
+				catch (Exception e) {
+					// Don't crash the app again
+					Log.e(TAG, "Could not recover draft: " + e.getMessage());
+				}
+			}
+			file.delete();
+		}
+		if (result > 0) {
+			Log.d(TAG, "Recovered " + result + " drafts");
+		}
+		return result;
+	}
+
+	/**
+	 * Saves the draft into its task, or a new task if it had none. Returns
+	 * number of tasks saved.
+	 */
+	static int promote(final Context context, final Draft draft) {
+		Task task = null;
+		if (draft.taskId > 0) {
+			final Cursor c = context.getContentResolver().query(
+					Task.getUri(draft.taskId), Task.Columns.FIELDS, null,
+					null, null);
+			if (c != null) {
+				try {
+					if (c.moveToFirst()) {
+						task = new Task(c);
+					}
+				}
+				finally {
+					c.close();
+				}
+			}
+			if (task == null) {
+				// Was deleted
+				return 0;
+			}
+		}
+		else {
+			if (draft.text.length() == 0) {
+				return 0;
+			}
+			task = new Task();
+			task.dblist = getExistingList(context, draft.listId);
+			if (task.dblist < 1) {
+				return 0;
+			}
+		}
+
+		final String title = task.title;
+		final String note = task.note;
+		task.setText(draft.text);
+		if (task._id > 0 && TextUtils.equals(title, task.title)
+				&& TextUtils.equals(note, task.note)) {
+			// Was saved before the crash
+			return 0;
+		}
+		return task.save(context, draft.time);
+	}
+
+	/**
+	 * Returns listId if it still exists, else some other list, or -1 if there
+	 * are no lists.
+	 */
+	private static long getExistingList(final Context context,
+			final long listId) {
+		final Cursor c = context.getContentResolver().query(TaskList.URI,
+				new String[] { TaskList.Columns._ID }, null, null, null);
+		if (c == null) {
+			return -1;
+		}
+		try {
+			long result = -1;
+			while (c.moveToNext()) {
+				if (c.getLong(0) == listId) {
+					return listId;
+				}
+				if (result < 1) {
+					result = c.getLong(0);
+				}
+			}
+			return result;
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	/**
+	 * Returns null if there is no draft, or if it is incomplete
+	 */
+	static Draft read(final File file) {
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			if (in.readInt() != VERSION) {
+				return null;
+			}
+			final long taskId = in.readLong();
+			final long listId = in.readLong();
+			final long time = in.readLong();
+			final int length = in.readInt();
+			if (length < 0 || length > file.length()) {
+				return null;
+			}
+			final byte[] text = new byte[length];
+			in.readFully(text);
+			return new Draft(taskId, listId, time, new String(text, "UTF-8"));
+		}
+		catch (EOFException e) {
+			Log.d(TAG, "Incomplete draft " + file.getName());
+			return null;
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Could not read draft " + file.getName() + ": "
+					+ e.getMessage());
+			return null;
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+	static File getDir(final Context context) {
+		return new File(context.getFilesDir(), DIR);
+	}
+
+	public static File getFile(final Context context, final String key) {
+		return new File(getDir(context), key);
+	}
+}
@@ -0,0 +1,122 @@
+package com.nononsenseapps.notepad.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.Cursor;
+import android.provider.BaseColumns;
+
+/**
+ * A sort order that can be continued after a given row, so a long result can
+ * be read a page at a time without OFFSET. The terms are compared in order and
+ * the id breaks ties, so every row has exactly one place.
+ *
+ * Follows how SQLite sorts: NULL before everything ascending, after
+ * everything descending.
+ */
+public class Keyset {
+
+	// Expression sorted on, and the result column holding its value
+	private final ArrayList<String> expressions = new ArrayList<String>();
+	private final ArrayList<String> columns = new ArrayList<String>();
+	private final ArrayList<Boolean> descending = new ArrayList<Boolean>();
+
+	public Keyset() {
+	}
+
+	public Keyset asc(final String column) {
+		return add(column, column, false);
+	}
+
+	public Keyset desc(final String column) {
+		return add(column, column, true);
+	}
+
+	/**
+	 * Expression is what is sorted on, like "title COLLATE NOCASE", column
+	 * the result column it is computed from.
+	 */
+	public Keyset add(final String expression, final String column,
+			final boolean desc) {
+		expressions.add(expression);
+		columns.add(column);
+		descending.add(desc);
+		return this;
+	}
+
+	/**
+	 * The ORDER BY clause, ending with the id.
+	 */
+	public String getSortOrder() {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < expressions.size(); i++) {
+			sb.append(expressions.get(i));
+			if (descending.get(i)) {
+				sb.append(" DESC");
+			}
+			sb.append(",");
+		}
+		return sb.append(BaseColumns._ID).toString();
+	}
+
+	/**
+	 * Returns a where clause matching the rows sorted after the current row
+	 * of c. Text values are added to args, numbers are written out since
+	 * the columns of a view have no type to convert arguments to.
+	 */
+	public String after(final Cursor c, final List<String> args) {
+		final StringBuilder sb = new StringBuilder();
+		after(0, c, args, sb);
+		return sb.toString();
+	}
+
+	private void after(final int term, final Cursor c,
+			final List<String> args, final StringBuilder sb) {
+		if (term == expressions.size()) {
+			sb.append(BaseColumns._ID).append(" > ")
+					.append(c.getLong(c.getColumnIndexOrThrow(BaseColumns._ID)));
+			return;
+		}
+		final String expression = expressions.get(term);
+		final int index = c.getColumnIndexOrThrow(columns.get(term));
+		final String value = literal(c, index, args);
+
+		sb.append("(");
+		if (value == null) {
+			// Only non null values come after null ascending, none descending
+			sb.append(descending.get(term) ? "0" : expression + " IS NOT NULL");
+			sb.append(" OR (").append(expression).append(" IS NULL AND ");
+		}
+		else {
+			if (descending.get(term)) {
+				sb.append("(").append(expression).append(" < ").append(value)
+						.append(" OR ").append(expression).append(" IS NULL)");
+			}
+			else {
+				sb.append(expression).append(" > ").append(value);
+			}
+			sb.append(" OR (").append(expression).append(" = ")
+					.append(literal(c, index, args)).append(" AND ");
+		}
+		after(term + 1, c, args, sb);
+		sb.append("))");
+	}
+
+	/**
+	 * Returns the value in sql, or null for NULL.
+	 */
+	private static String literal(final Cursor c, final int index,
+			final List<String> args) {
+		switch (c.getType(index)) {
+		case Cursor.FIELD_TYPE_NULL:
+			return null;
+		case Cursor.FIELD_TYPE_INTEGER:
+			return Long.toString(c.getLong(index));
+		case Cursor.FIELD_TYPE_FLOAT:
+			return Double.toString(c.getDouble(index));
+		default:
+			args.add(c.getString(index));
+			return "?";
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.nononsenseapps.notepad.database;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.nononsenseapps.notepad.database.LegacyDBHelper.NotePad;
+import com.nononsenseapps.utils.time.RFC3339Date;
+
+/**
+ * Tasks as the legacy URIs return them. Due dates are RFC3339 strings and the
+ * status is "completed" or "needsAction". Values are converted when they are
+ * read, so the rows are never copied.
+ *
+ * The numeric getters return the values as stored.
+ */
+class LegacyTaskCursor extends CursorWrapper {
+
+	// The task table with the legacy column names added, so selections
+	// and sort orders with either kind of names work in SQL. Flags which no
+	// longer exist are always 0: tasks are deleted at once, never hidden, and
+	// not nested.
+	static final String TABLE = "(SELECT *, " + Task.Columns.DBLIST + " AS "
+			+ NotePad.Notes.COLUMN_NAME_LIST + ", " + Task.Columns.DUE
+			+ " AS " + NotePad.Notes.COLUMN_NAME_DUE_DATE + ", "
+			+ Task.Columns.COMPLETED + " AS "
+			+ NotePad.Notes.COLUMN_NAME_GTASKS_STATUS + ", "
+			+ Task.Columns.UPDATED + " AS "
+			+ NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE + ", "
+			+ Task.Columns.LEFT + " AS "
+			+ NotePad.Notes.COLUMN_NAME_POSSUBSORT + ", 0 AS "
+			+ NotePad.Notes.COLUMN_NAME_DELETED + ", 0 AS "
+			+ NotePad.Notes.COLUMN_NAME_HIDDEN + ", 0 AS "
+			+ NotePad.Notes.COLUMN_NAME_LOCALHIDDEN + ", 0 AS "
+			+ NotePad.Notes.COLUMN_NAME_MODIFIED + ", 0 AS "
+			+ NotePad.Notes.COLUMN_NAME_INDENTLEVEL + " FROM "
+			+ Task.TABLE_NAME + ")";
+
+	static final String[] DEFAULT_PROJECTION = new String[] {
+			Task.Columns._ID, NotePad.Notes.COLUMN_NAME_TITLE,
+			NotePad.Notes.COLUMN_NAME_NOTE, NotePad.Notes.COLUMN_NAME_LIST,
+			NotePad.Notes.COLUMN_NAME_DUE_DATE,
+			NotePad.Notes.COLUMN_NAME_GTASKS_STATUS };
+
+	private static final int PLAIN = 0;
+	private static final int DUE = 1;
+	private static final int STATUS = 2;
+
+	private final int[] kinds;
+
+	/**
+	 * Ordered by due date if sortOrder is null. Limit may be null.
+	 */
+	static Cursor query(final SQLiteDatabase db, final String[] projection,
+			final String selection, final String[] selectionArgs,
+			final String sortOrder, final String limit) {
+		return new LegacyTaskCursor(db.query(TABLE,
+				projection == null ? DEFAULT_PROJECTION : projection,
+				selection, selectionArgs, null, null,
+				sortOrder == null ? Task.Columns.DUE : sortOrder, limit));
+	}
+
+	LegacyTaskCursor(final Cursor cursor) {
+		super(cursor);
+		kinds = new int[cursor.getColumnCount()];
+		for (int i = 0; i < kinds.length; i++) {
+			final String name = cursor.getColumnName(i);
+			if (NotePad.Notes.COLUMN_NAME_DUE_DATE.equals(name)
+					|| Task.Columns.DUE.equals(name)) {
+				kinds[i] = DUE;
+			}
+			else if (NotePad.Notes.COLUMN_NAME_GTASKS_STATUS.equals(name)
+					|| Task.Columns.COMPLETED.equals(name)) {
+				kinds[i] = STATUS;
+			}
+			else {
+				kinds[i] = PLAIN;
+			}
+		}
+	}
+
+	@Override
+	public String getString(final int columnIndex) {
+		switch (kinds[columnIndex]) {
+		case DUE:
+			return super.isNull(columnIndex) ? "" : RFC3339Date
+					.asRFC3339(super.getLong(columnIndex));
+		case STATUS:
+			return super.isNull(columnIndex) ? "needsAction" : "completed";
+		default:
+			return super.getString(columnIndex);
+		}
+	}
+
+	@Override
+	public void copyStringToBuffer(final int columnIndex,
+			final CharArrayBuffer buffer) {
+		if (kinds[columnIndex] == PLAIN) {
+			super.copyStringToBuffer(columnIndex, buffer);
+			return;
+		}
+		final String value = getString(columnIndex);
+		if (buffer.data == null || buffer.data.length < value.length()) {
+			buffer.data = value.toCharArray();
+		}
+		else {
+			value.getChars(0, value.length(), buffer.data, 0);
+		}
+		buffer.sizeCopied = value.length();
+	}
+
+	@Override
+	public int getType(final int columnIndex) {
+		if (kinds[columnIndex] != PLAIN) {
+			return Cursor.FIELD_TYPE_STRING;
+		}
+		return super.getType(columnIndex);
+	}
+
+	@Override
+	public boolean isNull(final int columnIndex) {
+		if (kinds[columnIndex] != PLAIN) {
+			return false;
+		}
+		return super.isNull(columnIndex);
+	}
+}
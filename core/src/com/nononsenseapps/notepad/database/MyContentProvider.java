@@ -1,11 +1,17 @@
 package com.nononsenseapps.notepad.database;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
 import android.app.SearchManager;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
@@ -16,16 +22,32 @@ import com.nononsenseapps.helpers.UpdateNotifier;
 
 public class MyContentProvider extends ContentProvider {
 	public static final String AUTHORITY = "com.nononsenseapps.NotePad";
+	// Optional max number of rows, for queries on Task.URI and
+	// Task.URI_SECTIONED_BY_DATE
+	public static final String QUERY_LIMIT = "limit";
 	public static final String SCHEME = "content://";
 	private static final UriMatcher sURIMatcher = new UriMatcher(
 			UriMatcher.NO_MATCH);
 
+	// Last search suggestions, cleared on any change
+	private final SearchNarrower suggestionsNarrower = new SearchNarrower();
+
+	// Changed uris while applying a batch, null otherwise
+	private HashSet<Uri> batchUris = null;
+
+	// Compiled statements of frequent writes
+	private final StatementCache statements = new StatementCache();
+
+	// Opt-in timing of all operations
+	private final QueryProfiler profiler = QueryProfiler.getInstance();
+
     static {
         TaskList.addMatcherUris(sURIMatcher);
         Task.addMatcherUris(sURIMatcher);
         Notification.addMatcherUris(sURIMatcher);
         RemoteTaskList.addMatcherUris(sURIMatcher);
         RemoteTask.addMatcherUris(sURIMatcher);
+        SyncMetrics.addMatcherUris(sURIMatcher);
     }
 
     public MyContentProvider() {
@@ -57,6 +79,8 @@ public class MyContentProvider extends ContentProvider {
 		case Task.SEARCHCODE:
 		case Task.SEARCHSUGGESTIONSCODE:
 			return Task.CONTENT_TYPE;
+		case SyncMetrics.BASEURICODE:
+			return SyncMetrics.CONTENT_TYPE;
 		default:
 			// throw new IllegalArgumentException("Unknown URI " + uri);
 		}
@@ -82,11 +106,92 @@ public class MyContentProvider extends ContentProvider {
 
 	@Override
 	public boolean onCreate() {
+		profiler.load(getContext());
 		return true;
 	}
 
+	@Override
+	synchronized public void shutdown() {
+		statements.close();
+		super.shutdown();
+	}
+
+	/**
+	 * Update of a single item. Uses a compiled statement unless there is an
+	 * extra selection.
+	 */
+	private int updateItem(final SQLiteDatabase db, final String table,
+			final ContentValues values, final long id, final String selection,
+			final String[] selectionArgs) {
+		if (selection == null && values.size() > 0) {
+			return statements.updateById(db, table, values, id);
+		}
+		return db.update(table, values, DAO.whereIdIs(selection),
+				DAO.whereIdArg(id, selectionArgs));
+	}
+
+	/**
+	 * Applies all operations in one transaction. Observers and widgets are
+	 * notified once when all are done, instead of once per operation.
+	 */
+	@Override
+	synchronized public ContentProviderResult[] applyBatch(
+			final ArrayList<ContentProviderOperation> operations)
+			throws OperationApplicationException {
+		final SQLiteDatabase db = DatabaseHandler.getInstance(getContext())
+				.getWritableDatabase();
+		final HashSet<Uri> changed = new HashSet<Uri>();
+		final ContentProviderResult[] results;
+
+		batchUris = changed;
+		db.beginTransaction();
+		try {
+			results = super.applyBatch(operations);
+			db.setTransactionSuccessful();
+		}
+		finally {
+			db.endTransaction();
+			batchUris = null;
+		}
+
+		if (!changed.isEmpty()) {
+			notifyChange(changed.toArray(new Uri[changed.size()]));
+		}
+		return results;
+	}
+
+	/**
+	 * Notify observers and widgets of a change, or remember it until the
+	 * current batch is done.
+	 */
+	private void notifyChange(final Uri... uris) {
+		suggestionsNarrower.clear();
+		if (batchUris != null) {
+			Collections.addAll(batchUris, uris);
+			return;
+		}
+		for (final Uri uri : uris) {
+			DAO.notifyProviderOnChange(getContext(), uri);
+		}
+		UpdateNotifier.updateWidgets(getContext());
+	}
+
 	@Override
 	synchronized public Uri insert(Uri uri, ContentValues values) {
+		if (!profiler.isEnabled()) {
+			return insertImpl(uri, values);
+		}
+		final long start = System.nanoTime();
+		try {
+			return insertImpl(uri, values);
+		}
+		finally {
+			profiler.record("insert", sURIMatcher.match(uri), uri, null, null,
+					null, System.nanoTime() - start, null);
+		}
+	}
+
+	private Uri insertImpl(Uri uri, ContentValues values) {
 		final SQLiteDatabase db = DatabaseHandler.getInstance(getContext())
 				.getWritableDatabase();
 
@@ -118,7 +223,9 @@ public class MyContentProvider extends ContentProvider {
 						"Faulty insertURI provided: " + uri.toString());
 			}
 
-			result = item.insert(getContext(), db);
+			// Without context, the item does not notify by itself
+			result = item.insert(batchUris == null ? getContext() : null, db,
+					statements);
 			db.setTransactionSuccessful();
 		}
 		catch (SQLException e) {
@@ -129,9 +236,7 @@ public class MyContentProvider extends ContentProvider {
 		}
 
 		if (result != null) {
-			DAO.notifyProviderOnChange(getContext(), uri);
-			DAO.notifyProviderOnChange(getContext(), TaskList.URI_WITH_COUNT);
-			UpdateNotifier.updateWidgets(getContext());
+			notifyChange(uri, TaskList.URI_WITH_COUNT);
 		}
 
 		return result;
@@ -140,6 +245,21 @@ public class MyContentProvider extends ContentProvider {
 	@Override
 	synchronized public int update(Uri uri, ContentValues values,
 			String selection, String[] selectionArgs) {
+		if (!profiler.isEnabled()) {
+			return updateImpl(uri, values, selection, selectionArgs);
+		}
+		final long start = System.nanoTime();
+		try {
+			return updateImpl(uri, values, selection, selectionArgs);
+		}
+		finally {
+			profiler.record("update", sURIMatcher.match(uri), uri, selection,
+					selectionArgs, null, System.nanoTime() - start, null);
+		}
+	}
+
+	private int updateImpl(Uri uri, ContentValues values, String selection,
+			String[] selectionArgs) {
 		final SQLiteDatabase db = DatabaseHandler.getInstance(getContext())
 				.getWritableDatabase();
 		int result = 0;
@@ -161,7 +281,8 @@ public class MyContentProvider extends ContentProvider {
 				t = new Task(values);
 				sql = t.getSQLMoveItemLeft(values);
 				if (sql != null) {
-					stmt = db.compileStatement(sql);
+					stmt = statements.get(db, sql);
+					t.bindMoveItem(stmt, values);
 					result += stmt.executeUpdateDelete();
 				}
 				break;
@@ -169,19 +290,28 @@ public class MyContentProvider extends ContentProvider {
 				t = new Task(values);
 				sql = t.getSQLMoveItemRight(values);
 				if (sql != null) {
-					stmt = db.compileStatement(sql);
+					stmt = statements.get(db, sql);
+					t.bindMoveItem(stmt, values);
 					result += stmt.executeUpdateDelete();
 				}
 				break;
 			case Task.BASEITEMCODE:
 				// regular update
 				t = new Task(uri, values);
-				if (t.getContent().size() > 0) {
+				final ContentValues content = t.getContent();
+				// Only write given columns. Text triggers (search, history)
+				// then only run if title or note is part of the update.
+				for (final String key : content.keySet().toArray(
+						new String[content.size()])) {
+					if (!values.containsKey(key)) {
+						content.remove(key);
+					}
+				}
+				if (content.size() > 0) {
 					// Something changed in task
 
-					result += db.update(Task.TABLE_NAME, t.getContent(),
-							Task.whereIdIs(selection),
-							Task.whereIdArg(t._id, selectionArgs));
+					result += updateItem(db, Task.TABLE_NAME, content, t._id,
+							selection, selectionArgs);
 				}
 				break;
 			case Task.BASEURICODE:
@@ -192,10 +322,9 @@ public class MyContentProvider extends ContentProvider {
 			case Notification.BASEITEMCODE:
 			case Notification.WITHTASKQUERYITEMCODE:
 				// final Notification n = new Notification(uri, values);
-				result += db.update(Notification.TABLE_NAME, values,
-						Notification.whereIdIs(selection), Notification
-								.whereIdArg(Long.parseLong(uri
-										.getLastPathSegment()), selectionArgs));
+				result += updateItem(db, Notification.TABLE_NAME, values,
+						Long.parseLong(uri.getLastPathSegment()), selection,
+						selectionArgs);
 				break;
 			case Notification.BASEURICODE:
 				// No checks
@@ -210,11 +339,9 @@ public class MyContentProvider extends ContentProvider {
                 );
                 break;
                 case RemoteTask.BASEITEMCODE:
-                    result += db.update(RemoteTask.TABLE_NAME, values,
-                            RemoteTask.whereIdIs(selection),
-                            RemoteTask.whereIdArg(Long.parseLong(uri
-                                    .getLastPathSegment()), selectionArgs)
-                    );
+                    result += updateItem(db, RemoteTask.TABLE_NAME, values,
+                            Long.parseLong(uri.getLastPathSegment()),
+                            selection, selectionArgs);
                     break;
                 default:
 				throw new IllegalArgumentException("Faulty URI provided: "
@@ -230,8 +357,7 @@ public class MyContentProvider extends ContentProvider {
 		}
 
 		if (result >= 0) {
-			DAO.notifyProviderOnChange(getContext(), uri);
-			UpdateNotifier.updateWidgets(getContext());
+			notifyChange(uri);
 		}
 
 		return result;
@@ -260,6 +386,20 @@ public class MyContentProvider extends ContentProvider {
 	@Override
 	synchronized public int delete(Uri uri, String selection,
 			String[] selectionArgs) {
+		if (!profiler.isEnabled()) {
+			return deleteImpl(uri, selection, selectionArgs);
+		}
+		final long start = System.nanoTime();
+		try {
+			return deleteImpl(uri, selection, selectionArgs);
+		}
+		finally {
+			profiler.record("delete", sURIMatcher.match(uri), uri, selection,
+					selectionArgs, null, System.nanoTime() - start, null);
+		}
+	}
+
+	private int deleteImpl(Uri uri, String selection, String[] selectionArgs) {
 		final SQLiteDatabase db = DatabaseHandler.getInstance(getContext())
 				.getWritableDatabase();
 		int result = 0;
@@ -312,15 +452,17 @@ public class MyContentProvider extends ContentProvider {
 			result += safeDeleteItem(db, Task.DELETE_TABLE_NAME, uri,
 					selection, selectionArgs);
 			break;
+		case SyncMetrics.BASEURICODE:
+			result += db.delete(SyncMetrics.TABLE_NAME, selection,
+					selectionArgs);
+			break;
 		default:
 			throw new IllegalArgumentException("Faulty delete-URI provided: "
 					+ uri.toString());
 		}
 
 		if (result > 0) {
-			DAO.notifyProviderOnChange(getContext(), uri);
-			DAO.notifyProviderOnChange(getContext(), TaskList.URI_WITH_COUNT);
-			UpdateNotifier.updateWidgets(getContext());
+			notifyChange(uri, TaskList.URI_WITH_COUNT);
 		}
 		return result;
 	}
@@ -328,6 +470,30 @@ public class MyContentProvider extends ContentProvider {
 	@Override
 	synchronized public Cursor query(Uri uri, String[] projection,
 			String selection, String[] selectionArgs, String sortOrder) {
+		if (!profiler.isEnabled()) {
+			return queryImpl(uri, projection, selection, selectionArgs,
+					sortOrder);
+		}
+		final long start = System.nanoTime();
+		try {
+			final Cursor result = queryImpl(uri, projection, selection, selectionArgs,
+					sortOrder);
+			// Fill the window here, so the time is counted
+			if (result != null) {
+				result.getCount();
+			}
+			return result;
+		}
+		finally {
+			profiler.record("query", sURIMatcher.match(uri), uri, selection,
+					selectionArgs, sortOrder, System.nanoTime() - start,
+					DatabaseHandler.getInstance(getContext())
+							.getReadableDatabase());
+		}
+	}
+
+	private Cursor queryImpl(Uri uri, String[] projection, String selection,
+			String[] selectionArgs, String sortOrder) {
 		Cursor result = null;
 		final long id;
 		// if (selection != null) Log.d("nononsenseapps", selection);
@@ -395,7 +561,8 @@ public class MyContentProvider extends ContentProvider {
 					.getInstance(getContext())
 					.getReadableDatabase()
 					.query(Task.TABLE_NAME, projection, selection,
-							selectionArgs, null, null, sortOrder);
+							selectionArgs, null, null, sortOrder,
+							uri.getQueryParameter(QUERY_LIMIT));
 
 			result.setNotificationUri(getContext().getContentResolver(),
 					Task.URI);
@@ -437,8 +604,11 @@ public class MyContentProvider extends ContentProvider {
 							selectionArgs,
 							null,
 							null,
+							// Id last so pages can continue after any row
 							Task.SECRET_TYPEID + "," + Task.Columns.DUE + ","
-									+ Task.SECRET_TYPEID2);
+									+ Task.SECRET_TYPEID2 + ","
+									+ Task.Columns._ID,
+							uri.getQueryParameter(QUERY_LIMIT));
 
 			result.setNotificationUri(getContext().getContentResolver(),
 					Task.URI);
@@ -518,17 +688,16 @@ public class MyContentProvider extends ContentProvider {
 							selectionArgs, null, null, sortOrder);
 			result.setNotificationUri(getContext().getContentResolver(), uri);
 			break;
-		case Task.SEARCHCODE:
+		case SyncMetrics.BASEURICODE:
+			// Written outside the provider, so nothing to observe
 			result = DatabaseHandler
 					.getInstance(getContext())
 					.getReadableDatabase()
-					.query(Task.TABLE_NAME,
-							Task.Columns.FIELDS,
-							Task.Columns._ID + " IN (SELECT "
-									+ Task.Columns._ID + " FROM "
-									+ Task.FTS3_TABLE_NAME + " WHERE "
-									+ Task.FTS3_TABLE_NAME + " MATCH ?)",
-							sanitize(selectionArgs), null, null, sortOrder);
+					.query(SyncMetrics.TABLE_NAME, projection, selection,
+							selectionArgs, null, null, sortOrder);
+			break;
+		case Task.SEARCHCODE:
+			result = searchTasks(projection, selectionArgs, sortOrder);
 			result.setNotificationUri(getContext().getContentResolver(),
 					Task.URI_SEARCH);
 			break;
@@ -561,43 +730,16 @@ public class MyContentProvider extends ContentProvider {
 			break;
 		case Task.LEGACYBASEURICODE:
 		case Task.LEGACYVISIBLEURICODE:
-			final Cursor c = DatabaseHandler
-					.getInstance(getContext())
-					.getReadableDatabase()
-					.query(Task.TABLE_NAME,
-							LegacyDBHelper.convertLegacyColumns(projection),
-							null, null, null, null, Task.Columns.DUE);
-			result = new MatrixCursor(projection);
-			while (c.moveToNext()) {
-				((MatrixCursor) result).addRow(LegacyDBHelper
-						.convertLegacyTaskValues(c));
-			}
-			c.close();
+			result = LegacyTaskCursor.query(DatabaseHandler
+					.getInstance(getContext()).getReadableDatabase(),
+					projection, selection, selectionArgs, sortOrder,
+					uri.getQueryParameter(QUERY_LIMIT));
 
 			result.setNotificationUri(getContext().getContentResolver(),
 					Task.URI);
 			break;
 		case Task.SEARCHSUGGESTIONSCODE:
-			final String limit = uri
-					.getQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT);
-			result = DatabaseHandler
-					.getInstance(getContext())
-					.getReadableDatabase()
-					.query(Task.FTS3_TABLE_NAME,
-							new String[] {
-									Task.Columns._ID,
-									Task.Columns._ID
-											+ " AS "
-											+ SearchManager.SUGGEST_COLUMN_INTENT_DATA_ID,
-									Task.Columns.TITLE
-											+ " AS "
-											+ SearchManager.SUGGEST_COLUMN_TEXT_1,
-									Task.Columns.NOTE
-											+ " AS "
-											+ SearchManager.SUGGEST_COLUMN_TEXT_2 },
-							Task.FTS3_TABLE_NAME + " MATCH ?",
-							sanitize(selectionArgs), null, null,
-							SearchManager.SUGGEST_COLUMN_TEXT_1, limit);
+			result = searchSuggestions(uri, selectionArgs);
 			result.setNotificationUri(getContext().getContentResolver(),
 					Task.URI_SEARCH);
 			break;
@@ -617,6 +759,104 @@ public class MyContentProvider extends ContentProvider {
 		return result;
 	}
 
+	/**
+	 * Full text search of tasks. The snippet column is available in addition
+	 * to the task columns. If sortOrder is null, results are ordered by
+	 * relevance.
+	 */
+	private Cursor searchTasks(final String[] projection,
+			final String[] selectionArgs, final String sortOrder) {
+		final boolean ranked = sortOrder == null;
+		final StringBuilder sql = new StringBuilder("SELECT ")
+				.append(DAO.arrayToCommaString(projection == null ? Task.Columns.SEARCH_FIELDS
+						: projection));
+		if (ranked) {
+			sql.append(",").append(MATCHINFO);
+		}
+		sql.append(" FROM ").append(Task.TABLE_NAME)
+				// Snippet and matchinfo only work in the matching query
+				.append(" JOIN (SELECT docid,").append(Task.FTS4_SNIPPET)
+				.append(" AS ").append(Task.Columns.SNIPPET).append(",")
+				.append(Task.FTS4_MATCHINFO).append(" AS ").append(MATCHINFO)
+				.append(" FROM ").append(Task.FTS3_TABLE_NAME)
+				.append(" WHERE ").append(Task.FTS3_TABLE_NAME)
+				.append(" MATCH ?) ON ").append(Task.Columns._ID)
+				.append(" = docid");
+		if (!ranked) {
+			sql.append(" ORDER BY ").append(sortOrder);
+		}
+
+		final Cursor c = DatabaseHandler.getInstance(getContext())
+				.getReadableDatabase()
+				.rawQuery(sql.toString(), sanitize(selectionArgs));
+
+		if (ranked) {
+			return SearchRanker.rank(c, MATCHINFO, SearchRanker.TASK_WEIGHTS);
+		}
+		return c;
+	}
+
+	private static final String MATCHINFO = "matchinfo";
+
+	/**
+	 * The search dialog asks for suggestions on every key press. Extending
+	 * the last query is answered from memory when possible.
+	 */
+	private Cursor searchSuggestions(final Uri uri, final String[] selectionArgs) {
+		final String query = selectionArgs == null
+				|| selectionArgs.length == 0 ? "" : selectionArgs[0];
+		final Cursor narrowed = suggestionsNarrower.narrow(query);
+		if (narrowed != null) {
+			return narrowed;
+		}
+
+		final String limit = uri
+				.getQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT);
+		final SQLiteDatabase db = DatabaseHandler.getInstance(getContext())
+				.getReadableDatabase();
+		final Cursor result = db.query(Task.FTS3_TABLE_NAME, new String[] {
+				"docid AS " + Task.Columns._ID,
+				"docid AS " + SearchManager.SUGGEST_COLUMN_INTENT_DATA_ID,
+				Task.Columns.TITLE + " AS "
+						+ SearchManager.SUGGEST_COLUMN_TEXT_1,
+				Task.FTS4_SNIPPET + " AS "
+						+ SearchManager.SUGGEST_COLUMN_TEXT_2 },
+				Task.FTS3_TABLE_NAME + " MATCH ?", sanitize(selectionArgs),
+				null, null, SearchManager.SUGGEST_COLUMN_TEXT_1, limit);
+
+		// A result cut off by the limit can't be narrowed
+		if (selectionArgs != null && selectionArgs.length == 1
+				&& (limit == null || result.getCount() < Integer.parseInt(limit))
+				&& result.getCount() <= SearchNarrower.MAX_ROWS) {
+			final Cursor texts = db.query(Task.TABLE_NAME,
+					SearchNarrower.TEXT_FIELDS, getIdsIn(result), null, null,
+					null, null);
+			try {
+				suggestionsNarrower.remember(query, result, texts);
+			}
+			finally {
+				texts.close();
+			}
+		}
+		else {
+			suggestionsNarrower.clear();
+		}
+		return result;
+	}
+
+	/**
+	 * _id IN (...) of the ids in column 0 of the cursor
+	 */
+	private static String getIdsIn(final Cursor c) {
+		final long[] ids = new long[c.getCount()];
+		c.moveToPosition(-1);
+		while (c.moveToNext()) {
+			ids[c.getPosition()] = c.getLong(0);
+		}
+		c.moveToPosition(-1);
+		return Task.Columns._ID + " IN (" + DAO.arrayToCommaString(ids) + ")";
+	}
+
 	private String[] sanitize(final String... args) {
 		if (args.length == 0) return new String[] { "" };
 
@@ -6,6 +6,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.TimeZone;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -14,9 +15,12 @@ import com.nononsenseapps.helpers.NotificationHelper;
 import com.nononsenseapps.helpers.TimeFormatter;
 import com.nononsenseapps.notepad.core.R;
 import com.nononsenseapps.ui.WeekDaysView;
-import com.nononsenseapps.util.GeofenceRemover;
+import com.nononsenseapps.util.GeofenceManager;
+import com.nononsenseapps.utils.time.RFC3339Codec;
+import com.nononsenseapps.utils.time.WeekdayRepeat;
 import com.nononsenseapps.utils.views.GreyableToggleButton;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -174,6 +178,27 @@ public class Notification extends DAO {
 									.append(Task.Columns.DBLIST).append(" = l.")
 									.append(TaskList.Columns._ID).append(";").toString();
 
+	// Reminders without a location due before a time
+	public static final String TIME_INDEX_NAME = TABLE_NAME + "_"
+			+ Columns.TIME + "_idx";
+	public static final String CREATE_TIME_INDEX = new StringBuilder(
+			"CREATE INDEX IF NOT EXISTS ").append(TIME_INDEX_NAME)
+			.append(" ON ").append(TABLE_NAME).append("(")
+			.append(Columns.RADIUS).append(",").append(Columns.TIME)
+			.append(")").toString();
+
+	// Reminders of a task, in time order
+	public static final String TASK_INDEX_NAME = TABLE_NAME + "_"
+			+ Columns.TASKID + "_idx";
+	public static final String CREATE_TASK_INDEX = new StringBuilder(
+			"CREATE INDEX IF NOT EXISTS ").append(TASK_INDEX_NAME)
+			.append(" ON ").append(TABLE_NAME).append("(")
+			.append(Columns.TASKID).append(",").append(Columns.TIME)
+			.append(")").toString();
+
+	// Last column of queryPast()
+	public static final String LATEST = "latest";
+
 	// milliseconds since 1970-01-01 UTC
 	public Long time = null;
 	public boolean permanent = false;
@@ -356,9 +381,10 @@ public class Notification extends DAO {
 	public int delete(final Context context) {
 		// Make sure existing notifications are cancelled.
 		NotificationHelper.cancelNotification(context, this);
-		// Also remove any associated geofences
-		GeofenceRemover.removeFences(context, Long.toString(_id));
-		return super.delete(context);
+		final int result = super.delete(context);
+		// Also remove any associated geofence, which may make room for others
+		GeofenceManager.update(context);
+		return result;
 	}
 
 	public void saveInBackground(final Context context, final boolean schedule) {
@@ -466,7 +492,7 @@ public class Notification extends DAO {
 
 					if (idsToClear.size() > 0) {
 						// Remove geofences as well
-						GeofenceRemover.removeFences(context, idsToClear);
+						GeofenceManager.update(context);
 					}
 
 					// context.getContentResolver().delete(URI,
@@ -552,6 +578,38 @@ public class Notification extends DAO {
 																		.toString());
 	}
 
+	/**
+	 * Notifications without a location at or before time, with their task
+	 * fields. The last column is LATEST: 1 for the latest of each task, 0 for
+	 * the ones it replaces. Sorted by time ascending. May return null.
+	 */
+	public static Cursor queryPast(final Context context, final long time) {
+		final String[] projection = new String[ColumnsWithTask.FIELDS.length + 1];
+		System.arraycopy(ColumnsWithTask.FIELDS, 0, projection, 0,
+				ColumnsWithTask.FIELDS.length);
+		// No later notification of the same task, the id breaks ties
+		projection[projection.length - 1] = new StringBuilder(
+				"NOT EXISTS (SELECT 1 FROM ").append(TABLE_NAME)
+				.append(" AS n WHERE n.").append(Columns.TASKID).append(" = ")
+				.append(WITH_TASK_VIEW_NAME).append(".").append(Columns.TASKID)
+				.append(" AND n.").append(Columns.RADIUS)
+				.append(" IS NULL AND n.").append(Columns.TIME).append(" <= ")
+				.append(time).append(" AND (n.").append(Columns.TIME)
+				.append(" > ").append(WITH_TASK_VIEW_NAME).append(".")
+				.append(Columns.TIME).append(" OR (n.").append(Columns.TIME)
+				.append(" = ").append(WITH_TASK_VIEW_NAME).append(".")
+				.append(Columns.TIME).append(" AND n.").append(Columns._ID)
+				.append(" > ").append(WITH_TASK_VIEW_NAME).append(".")
+				.append(Columns._ID).append("))) AS ").append(LATEST)
+				.toString();
+
+		return context.getContentResolver().query(
+				URI_WITH_TASK_PATH,
+				projection,
+				Columns.TIME + " <= ? AND " + Columns.RADIUS + " IS NULL",
+				new String[] { Long.toString(time) }, Columns.TIME);
+	}
+
 	public static List<Notification> getNotificationsWithTasks(final Context context,
 									final String where, final String[] whereArgs,
 									final String sortOrder) {
@@ -665,47 +723,92 @@ public class Notification extends DAO {
 		return (0 < (day & repeats));
 	}
 
+	/**
+	 * Repeated weekdays as a WeekdayRepeat mask
+	 */
+	public int getWeekdays() {
+		int days = 0;
+		// One hex digit per day, starting with monday
+		for (int i = 0; i < 7; i++) {
+			if (0 < (repeats & (1L << (4 * i)))) {
+				days |= 1 << i;
+			}
+		}
+		return days;
+	}
+
+	/**
+	 * The next time this repeats after now, at the same time of day.
+	 * RFC3339Codec.INVALID if it does not repeat on any weekday.
+	 */
+	public long getNextTime(final long now) {
+		if (time == null) {
+			return RFC3339Codec.INVALID;
+		}
+		return WeekdayRepeat.next(getWeekdays(), time, now,
+				TimeZone.getDefault());
+	}
+
 	public void deleteOrReschedule(final Context context) {
 		if (isLocationRepeat()) {
 			return;
 		}
 
-		if (repeats == 0 || time == null) {
+		// No sense in setting reminders in the past
+		final long next = repeats == 0 ? RFC3339Codec.INVALID
+				: getNextTime(Calendar.getInstance().getTimeInMillis());
+		// Also in case of faulty repeat codes
+		if (next == RFC3339Codec.INVALID) {
 			delete(context);
-		} else {
-			// Need to set the correct time, but using today as the date
-			// Because no sense in setting reminders in the past
-			GregorianCalendar gcOrgTime = new GregorianCalendar();
-			gcOrgTime.setTimeInMillis(time);
-			// Use today's date
-			GregorianCalendar gc = new GregorianCalendar();
-			final long now = gc.getTimeInMillis();
-			// With original time
-			gc.set(GregorianCalendar.HOUR_OF_DAY, gcOrgTime.get(GregorianCalendar.HOUR_OF_DAY));
-			gc.set(GregorianCalendar.MINUTE, gcOrgTime.get(GregorianCalendar.MINUTE));
-			// Save as base
-			final long base = gc.getTimeInMillis();
-
-			// Check today if the time is actually in the future
-			final int start = now < base ? 0 : 1;
-			final long oneDay = 24 * 60 * 60 * 1000;
-			boolean done = false;
-			for (int i = start; i <= 7; i++) {
-				gc.setTimeInMillis(base + i * oneDay);
-
-				if (repeatsOn(gc.get(GregorianCalendar.DAY_OF_WEEK))) {
-					done = true;
-					time = gc.getTimeInMillis();
-					save(context);
-					break;
-				}
+		}
+		else {
+			time = next;
+			save(context);
+		}
+	}
 
+	/**
+	 * Same as deleteOrReschedule on each, but in one transaction.
+	 */
+	public static void deleteOrReschedule(final Context context,
+			final List<Notification> notifications) {
+		final long now = Calendar.getInstance().getTimeInMillis();
+		final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		boolean geofences = false;
+		for (final Notification not : notifications) {
+			if (not.isLocationRepeat()) {
+				continue;
+			}
+			final long next = not.repeats == 0 ? RFC3339Codec.INVALID : not
+					.getNextTime(now);
+			if (next == RFC3339Codec.INVALID) {
+				NotificationHelper.cancelNotification(context, not);
+				ops.add(ContentProviderOperation.newDelete(not.getUri())
+						.build());
+				geofences |= not.radius != null;
 			}
-			// Just in case of faulty repeat codes
-			if (!done) {
-				delete(context);
+			else {
+				not.time = next;
+				ops.add(ContentProviderOperation.newUpdate(not.getUri())
+						.withValue(Columns.TIME, next).build());
 			}
 		}
+		if (ops.isEmpty()) {
+			return;
+		}
+
+		try {
+			context.getContentResolver().applyBatch(MyContentProvider.AUTHORITY,
+					ops);
+		}
+		catch (Exception e) {
+			// Batch is rolled back as a whole
+			Log.e("nononsenseapps Notification",
+					"Reschedule failed: " + e.getMessage());
+		}
+		if (geofences) {
+			GeofenceManager.update(context);
+		}
 	}
 
 	public String getRepeatAsText(final Context context) {
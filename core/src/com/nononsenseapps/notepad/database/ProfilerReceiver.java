@@ -0,0 +1,85 @@
+package com.nononsenseapps.notepad.database;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Controls the QueryProfiler from adb. Only the shell may send these, see the
+ * manifest:
+ *
+ * adb shell am broadcast -a com.nononsenseapps.notepad.debug.PROFILER_START
+ * [--ei slow_ms 20]
+ *
+ * adb shell am broadcast -a com.nononsenseapps.notepad.debug.PROFILER_DUMP
+ *
+ * A dump goes to the log and to provider_profile.txt in the app's external
+ * files directory, so it can be pulled and attached to a bug report.
+ */
+public class ProfilerReceiver extends BroadcastReceiver {
+
+	private static final String TAG = "nononsenseapps ProfilerReceiver";
+
+	public static final String ACTION_START = "com.nononsenseapps.notepad.debug.PROFILER_START";
+	public static final String ACTION_STOP = "com.nononsenseapps.notepad.debug.PROFILER_STOP";
+	public static final String ACTION_RESET = "com.nononsenseapps.notepad.debug.PROFILER_RESET";
+	public static final String ACTION_DUMP = "com.nononsenseapps.notepad.debug.PROFILER_DUMP";
+	public static final String EXTRA_SLOW_MS = "slow_ms";
+
+	public static final String DUMP_FILE = "provider_profile.txt";
+
+	@Override
+	public void onReceive(final Context context, final Intent intent) {
+		final QueryProfiler profiler = QueryProfiler.getInstance();
+		final String action = intent.getAction();
+		if (ACTION_START.equals(action)) {
+			profiler.setEnabled(context, true, intent.getIntExtra(
+					EXTRA_SLOW_MS, QueryProfiler.DEFAULT_SLOW_MS));
+		}
+		else if (ACTION_STOP.equals(action)) {
+			profiler.setEnabled(context, false, 0);
+		}
+		else if (ACTION_RESET.equals(action)) {
+			profiler.reset();
+		}
+		else if (ACTION_DUMP.equals(action)) {
+			dump(context, profiler.dump());
+		}
+	}
+
+	private static void dump(final Context context, final String dump) {
+		// Log lines are truncated if too long
+		for (final String line : dump.split("\n")) {
+			Log.i(TAG, line);
+		}
+
+		final File dir = context.getExternalFilesDir(null);
+		if (dir == null) {
+			return;
+		}
+		final File file = new File(dir, DUMP_FILE);
+		FileWriter writer = null;
+		try {
+			writer = new FileWriter(file);
+			writer.write(dump);
+			Log.i(TAG, "Written to " + file.getPath());
+		}
+		catch (IOException e) {
+			Log.e(TAG, "Could not write dump: " + e.getLocalizedMessage());
+		}
+		finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				}
+				catch (IOException ignored) {
+				}
+			}
+		}
+	}
+}
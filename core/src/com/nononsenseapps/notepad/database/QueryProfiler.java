@@ -0,0 +1,252 @@
+package com.nononsenseapps.notepad.database;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+/**
+ * Opt-in timing of provider operations, for bug reports. Keeps a latency
+ * histogram per operation and uri code, and the latest slow operations with
+ * their selection, sort order and, for queries, the query plan.
+ *
+ * Started, stopped and dumped by ProfilerReceiver. Costs one check per
+ * operation while stopped.
+ */
+public class QueryProfiler {
+
+	private static final String TAG = "nononsenseapps QueryProfiler";
+
+	public static final String PREF_ENABLED = "debug_provider_profiler";
+
+	// Upper bounds of the histogram buckets in ms, the last one is open
+	static final int[] BUCKETS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024 };
+
+	public static final int DEFAULT_SLOW_MS = 50;
+	// Slow operations kept
+	static final int MAX_SLOW = 50;
+
+	private static final QueryProfiler singleton = new QueryProfiler();
+
+	public static QueryProfiler getInstance() {
+		return singleton;
+	}
+
+	/**
+	 * Remembers the sql of the latest query on each thread while enabled.
+	 * The database does not give it out otherwise.
+	 */
+	public static final SQLiteDatabase.CursorFactory CURSOR_FACTORY = new SQLiteDatabase.CursorFactory() {
+		@Override
+		public Cursor newCursor(final SQLiteDatabase db,
+				final SQLiteCursorDriver masterQuery, final String editTable,
+				final SQLiteQuery query) {
+			if (singleton.enabled) {
+				singleton.lastSql.set(query.toString());
+			}
+			return new SQLiteCursor(masterQuery, editTable, query);
+		}
+	};
+
+	/**
+	 * Latencies of one operation on one uri code
+	 */
+	static class Histogram {
+		final long[] counts = new long[BUCKETS.length + 1];
+		long total = 0;
+		long totalNanos = 0;
+		long maxNanos = 0;
+
+		void add(final long nanos) {
+			final long ms = nanos / 1000000;
+			int i = 0;
+			while (i < BUCKETS.length && ms >= BUCKETS[i]) {
+				i++;
+			}
+			counts[i]++;
+			total++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+	}
+
+	private volatile boolean enabled = false;
+	private volatile int slowMs = DEFAULT_SLOW_MS;
+	private boolean loaded = false;
+
+	private final ThreadLocal<String> lastSql = new ThreadLocal<String>();
+	// Sorted so dumps are easy to compare
+	private final TreeMap<String, Histogram> histograms = new TreeMap<String, Histogram>();
+	private final ArrayDeque<String> slow = new ArrayDeque<String>();
+	private long since = 0;
+
+	QueryProfiler() {
+	}
+
+	/**
+	 * Reads the enabled state once, so profiling survives restarts.
+	 */
+	public synchronized void load(final Context context) {
+		if (!loaded) {
+			loaded = true;
+			if (PreferenceManager.getDefaultSharedPreferences(context)
+					.getBoolean(PREF_ENABLED, false)) {
+				start(DEFAULT_SLOW_MS);
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public synchronized void setEnabled(final Context context,
+			final boolean enable, final int slowMs) {
+		PreferenceManager.getDefaultSharedPreferences(context).edit()
+				.putBoolean(PREF_ENABLED, enable).commit();
+		loaded = true;
+		if (enable) {
+			start(slowMs);
+		}
+		else {
+			enabled = false;
+		}
+	}
+
+	private void start(final int slowMs) {
+		this.slowMs = slowMs;
+		if (!enabled) {
+			reset();
+			enabled = true;
+		}
+	}
+
+	public synchronized void reset() {
+		histograms.clear();
+		slow.clear();
+		since = System.currentTimeMillis();
+	}
+
+	/**
+	 * Call after the operation, with the time it took. Queries should have
+	 * been filled already, or the time is only the preparation.
+	 */
+	void record(final String op, final int code, final Uri uri,
+			final String selection, final String[] selectionArgs,
+			final String sortOrder, final long nanos, final SQLiteDatabase db) {
+		final long ms = nanos / 1000000;
+		String plan = null;
+		if (ms >= slowMs && "query".equals(op)) {
+			plan = explain(db, lastSql.get(), selectionArgs);
+		}
+		lastSql.remove();
+
+		synchronized (this) {
+			final String key = op + " " + code;
+			Histogram h = histograms.get(key);
+			if (h == null) {
+				h = new Histogram();
+				histograms.put(key, h);
+			}
+			h.add(nanos);
+
+			if (ms >= slowMs) {
+				final StringBuilder sb = new StringBuilder();
+				sb.append(new SimpleDateFormat("HH:mm:ss.SSS", Locale.US)
+						.format(new Date())).append(' ').append(op).append(' ')
+						.append(uri).append(' ').append(ms).append(" ms")
+						.append("\n  selection: ").append(selection)
+						.append("\n  sort: ").append(sortOrder);
+				if (plan != null) {
+					sb.append("\n  plan:").append(plan);
+				}
+				if (slow.size() >= MAX_SLOW) {
+					slow.removeFirst();
+				}
+				slow.addLast(sb.toString());
+				Log.d(TAG, sb.toString());
+			}
+		}
+	}
+
+	/**
+	 * Query plan of the sql, one step per line. Arguments are only bound if
+	 * they all fit, the plan rarely depends on them.
+	 */
+	static String explain(final SQLiteDatabase db, final String query,
+			final String[] selectionArgs) {
+		if (db == null || query == null) {
+			return null;
+		}
+		// Looks like "SQLiteQuery: SELECT ..."
+		final String sql = query.substring(query.indexOf(':') + 1).trim();
+		final int params = sql.length() - sql.replace("?", "").length();
+		final String[] args = selectionArgs != null
+				&& selectionArgs.length <= params ? selectionArgs : null;
+
+		final StringBuilder sb = new StringBuilder();
+		Cursor c = null;
+		try {
+			c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+			while (c.moveToNext()) {
+				// Last column is the detail
+				sb.append("\n    ").append(c.getString(c.getColumnCount() - 1));
+			}
+		}
+		catch (Exception e) {
+			sb.append("\n    ").append(e.getLocalizedMessage());
+		}
+		finally {
+			if (c != null) {
+				c.close();
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Everything recorded since started or reset, as text.
+	 */
+	public synchronized String dump() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Provider profile since ")
+				.append(new Date(since))
+				.append(enabled ? "" : " (stopped)")
+				.append(", slow is ").append(slowMs).append(" ms\n\n");
+
+		sb.append("op code: count, avg ms, max ms | buckets <");
+		for (final int bound : BUCKETS) {
+			sb.append(' ').append(bound);
+		}
+		sb.append(" >=").append(BUCKETS[BUCKETS.length - 1]).append('\n');
+		for (final Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			final Histogram h = entry.getValue();
+			sb.append(entry.getKey()).append(": ").append(h.total).append(", ")
+					.append(String.format(Locale.US, "%.2f",
+							h.totalNanos / 1000000.0 / h.total)).append(", ")
+					.append(h.maxNanos / 1000000).append(" |");
+			for (final long count : h.counts) {
+				sb.append(' ').append(count);
+			}
+			sb.append('\n');
+		}
+
+		sb.append("\nSlow operations, oldest first\n");
+		for (final String entry : slow) {
+			sb.append(entry).append('\n');
+		}
+		return sb.toString();
+	}
+}
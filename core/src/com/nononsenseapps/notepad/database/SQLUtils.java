@@ -1,5 +1,8 @@
 package com.nononsenseapps.notepad.database;
 
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 public class SQLUtils {
@@ -18,4 +21,47 @@ public class SQLUtils {
 		
 		return result;
 	}
+
+	/**
+	 * Returns true if the sqlite library is at least the specified version.
+	 */
+	public static boolean isSQLiteVersionAtLeast(final SQLiteDatabase db,
+			final int... version) {
+		final String[] actual = DatabaseUtils.stringForQuery(db,
+				"SELECT sqlite_version()", null).split("\\.");
+		for (int i = 0; i < version.length; i++) {
+			final int part = i < actual.length ? Integer.parseInt(actual[i]) : 0;
+			if (part != version[i]) {
+				return part > version[i];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * External content and prefix indices were added to FTS4 in sqlite 3.7.9.
+	 * That is Android 4.1. Android 4.0 has 3.7.4.
+	 */
+	public static boolean supportsFTS4Options(final SQLiteDatabase db) {
+		return isSQLiteVersionAtLeast(db, 3, 7, 9);
+	}
+
+	/**
+	 * Returns the value of column i in the current row, as the type it is
+	 * stored as. Useful when copying rows to a MatrixCursor.
+	 */
+	public static Object getValue(final Cursor c, final int i) {
+		switch (c.getType(i)) {
+		case Cursor.FIELD_TYPE_NULL:
+			return null;
+		case Cursor.FIELD_TYPE_INTEGER:
+			return c.getLong(i);
+		case Cursor.FIELD_TYPE_FLOAT:
+			return c.getDouble(i);
+		case Cursor.FIELD_TYPE_BLOB:
+			return c.getBlob(i);
+		default:
+			return c.getString(i);
+		}
+	}
 }
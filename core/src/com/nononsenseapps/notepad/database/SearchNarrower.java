@@ -0,0 +1,206 @@
+package com.nononsenseapps.notepad.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+/**
+ * Remembers the last, small, search result so that a query which only extends
+ * the previous one (typing one more letter) can be answered by filtering the
+ * previous rows in memory, instead of another full text search.
+ *
+ * Matching mirrors what the search table does with the queries built by the
+ * provider: words are split like the "simple" tokenizer does, every word must
+ * be present and the last word is a prefix. Queries using any FTS syntax are
+ * never narrowed.
+ *
+ * Rows keep the order of the query they were narrowed from. Remember to
+ * clear() when the data changes.
+ */
+public class SearchNarrower {
+
+	// Only results this small are kept in memory
+	public static final int MAX_ROWS = 250;
+
+	// Projection of the cursor given to remember() for texts
+	public static final String[] TEXT_FIELDS = { Task.Columns._ID,
+			Task.Columns.TITLE, Task.Columns.NOTE };
+
+	private String query = null;
+	private String[] columns = null;
+	private List<Object[]> rows = null;
+	private List<String> texts = null;
+
+	/**
+	 * Returns the rows of the last result which match query, or null if the
+	 * last result can't be used for this query.
+	 */
+	public synchronized Cursor narrow(final String newQuery) {
+		if (!canNarrow(query, newQuery)) {
+			return null;
+		}
+
+		final String[] words = tokenize(newQuery);
+		final MatrixCursor result = new MatrixCursor(columns);
+		for (int i = 0; i < rows.size(); i++) {
+			if (matches(words, texts.get(i))) {
+				result.addRow(rows.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Keep the result of query in memory if it is small enough. Texts must
+	 * have the TEXT_FIELDS projection and contain title and note of every task
+	 * in result. Column 0 of result must be the task id. Result is moved back
+	 * to before the first row.
+	 */
+	public synchronized void remember(final String query, final Cursor result,
+			final Cursor texts) {
+		clear();
+		if (result.getCount() > MAX_ROWS || !isPlainWords(query)) {
+			return;
+		}
+
+		final HashMap<Long, String> textById = new HashMap<Long, String>();
+		while (texts.moveToNext()) {
+			textById.put(texts.getLong(0),
+					texts.getString(1) + "\n" + texts.getString(2));
+		}
+
+		final ArrayList<Object[]> newRows = new ArrayList<Object[]>(
+				result.getCount());
+		final ArrayList<String> newTexts = new ArrayList<String>(
+				result.getCount());
+		result.moveToPosition(-1);
+		while (result.moveToNext()) {
+			final String text = textById.get(result.getLong(0));
+			if (text == null) {
+				// Changed under our feet, can't trust this
+				result.moveToPosition(-1);
+				return;
+			}
+			final Object[] row = new Object[result.getColumnCount()];
+			for (int i = 0; i < row.length; i++) {
+				row[i] = SQLUtils.getValue(result, i);
+			}
+			newRows.add(row);
+			newTexts.add(text);
+		}
+		result.moveToPosition(-1);
+
+		this.query = query;
+		this.columns = result.getColumnNames();
+		this.rows = newRows;
+		this.texts = newTexts;
+	}
+
+	public synchronized void clear() {
+		query = null;
+		columns = null;
+		rows = null;
+		texts = null;
+	}
+
+	/**
+	 * Every result of newQuery is in the result of oldQuery if it starts with
+	 * it.
+	 */
+	static boolean canNarrow(final String oldQuery, final String newQuery) {
+		return oldQuery != null && newQuery != null
+				&& newQuery.length() > oldQuery.length()
+				&& newQuery.startsWith(oldQuery) && isPlainWords(newQuery);
+	}
+
+	/**
+	 * Only queries ending with a word are searched for as a prefix.
+	 */
+	static boolean isPlainWords(final String query) {
+		return query.length() > 0 && !isSyntax(query)
+				&& isTokenChar(query.charAt(query.length() - 1));
+	}
+
+	/**
+	 * True if the query might be parsed as something other than plain words
+	 * by the search table.
+	 */
+	static boolean isSyntax(final String query) {
+		for (int i = 0; i < query.length(); i++) {
+			switch (query.charAt(i)) {
+			case '"':
+			case '\'':
+			case '(':
+			case ')':
+			case '-':
+			case '*':
+			case ':':
+			case '^':
+				return true;
+			}
+		}
+		for (final String word : query.split("\\s+")) {
+			if ("OR".equals(word) || "AND".equals(word) || "NOT".equals(word)
+					|| word.startsWith("NEAR")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * All words must be present, the last only as a prefix.
+	 */
+	static boolean matches(final String[] words, final String text) {
+		final String[] tokens = tokenize(text);
+		final HashSet<String> tokenSet = new HashSet<String>(tokens.length);
+		for (final String token : tokens) {
+			tokenSet.add(token);
+		}
+
+		for (int i = 0; i < words.length - 1; i++) {
+			if (!tokenSet.contains(words[i])) {
+				return false;
+			}
+		}
+		final String last = words[words.length - 1];
+		for (final String token : tokens) {
+			if (token.startsWith(last)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Same as sqlite's simple tokenizer: ascii letters and digits, and
+	 * anything non-ascii, are part of words. Only ascii is lower cased.
+	 */
+	static String[] tokenize(final String text) {
+		final ArrayList<String> tokens = new ArrayList<String>();
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (isTokenChar(c)) {
+				sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+			}
+			else if (sb.length() > 0) {
+				tokens.add(sb.toString());
+				sb.setLength(0);
+			}
+		}
+		if (sb.length() > 0) {
+			tokens.add(sb.toString());
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	static boolean isTokenChar(final char c) {
+		return c >= 0x80 || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9');
+	}
+}
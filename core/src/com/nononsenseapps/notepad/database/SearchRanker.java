@@ -0,0 +1,124 @@
+package com.nononsenseapps.notepad.database;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+/**
+ * Orders search hits by relevance. Sqlite on Android can't have custom
+ * functions registered from Java, so the score is calculated here from the
+ * matchinfo(table, 'pcnalx') blob of each hit.
+ */
+public class SearchRanker {
+
+	// Okapi BM25 tuning, the usual values
+	static final double K1 = 1.2;
+	static final double B = 0.75;
+	// Keep very common terms from lowering the score
+	static final double MIN_IDF = 1e-6;
+
+	// Hits in title count double
+	public static final double[] TASK_WEIGHTS = { 2.0, 1.0 };
+
+	/**
+	 * Calculates the BM25 score from a matchinfo blob with format 'pcnalx'.
+	 * Weights are per column, missing weights count as 1.
+	 */
+	public static double bm25(final byte[] matchinfo, final double... weights) {
+		// 32 bit unsigned integers in machine byte order
+		final IntBuffer info = ByteBuffer.wrap(matchinfo)
+				.order(ByteOrder.nativeOrder()).asIntBuffer();
+
+		final int phrases = info.get(0);
+		final int cols = info.get(1);
+		final int docs = info.get(2);
+		final int avgOffset = 3;
+		final int lenOffset = avgOffset + cols;
+		final int hitOffset = lenOffset + cols;
+
+		double score = 0.0;
+		for (int p = 0; p < phrases; p++) {
+			for (int c = 0; c < cols; c++) {
+				final int x = hitOffset + 3 * (p * cols + c);
+				final int hitsInRow = info.get(x);
+				if (hitsInRow == 0) {
+					continue;
+				}
+				final int rowsWithHits = info.get(x + 2);
+				final double avgLen = Math.max(1, info.get(avgOffset + c));
+				final int len = info.get(lenOffset + c);
+
+				final double idf = Math.max(MIN_IDF, Math.log((docs
+						- rowsWithHits + 0.5)
+						/ (rowsWithHits + 0.5)));
+				final double tf = (hitsInRow * (K1 + 1))
+						/ (hitsInRow + K1 * (1 - B + B * len / avgLen));
+				final double weight = c < weights.length ? weights[c] : 1.0;
+
+				score += weight * idf * tf;
+			}
+		}
+		return score;
+	}
+
+	/**
+	 * Reads the cursor and returns its rows ordered by descending score. The
+	 * matchinfo column is not included in the result. Closes the cursor.
+	 */
+	public static Cursor rank(final Cursor c, final String matchinfoColumn,
+			final double... weights) {
+		try {
+			final int infoIndex = c.getColumnIndexOrThrow(matchinfoColumn);
+			final String[] columns = new String[c.getColumnCount() - 1];
+			for (int i = 0, j = 0; i < c.getColumnCount(); i++) {
+				if (i != infoIndex) {
+					columns[j++] = c.getColumnName(i);
+				}
+			}
+
+			final ArrayList<Hit> hits = new ArrayList<Hit>(c.getCount());
+			while (c.moveToNext()) {
+				final Object[] row = new Object[columns.length];
+				for (int i = 0, j = 0; i < c.getColumnCount(); i++) {
+					if (i != infoIndex) {
+						row[j++] = SQLUtils.getValue(c, i);
+					}
+				}
+				hits.add(new Hit(bm25(c.getBlob(infoIndex), weights), row));
+			}
+			Collections.sort(hits, Hit.BEST_FIRST);
+
+			final MatrixCursor result = new MatrixCursor(columns, hits.size());
+			for (final Hit hit : hits) {
+				result.addRow(hit.row);
+			}
+			return result;
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	private static class Hit {
+		static final Comparator<Hit> BEST_FIRST = new Comparator<Hit>() {
+			@Override
+			public int compare(Hit lhs, Hit rhs) {
+				return Double.compare(rhs.score, lhs.score);
+			}
+		};
+
+		final double score;
+		final Object[] row;
+
+		Hit(final double score, final Object[] row) {
+			this.score = score;
+			this.row = row;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package com.nononsenseapps.notepad.database;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+
+/**
+ * Keeps compiled statements for the writes the provider does over and over:
+ * moving tasks, and updates and inserts of single items. The sql only has
+ * placeholders, so one statement serves every call with the same columns.
+ *
+ * Statements belong to one database connection. If another database object is
+ * given, the old statements are closed first. Not thread safe, the provider
+ * synchronizes all calls.
+ */
+public class StatementCache {
+
+	// Different column combinations are few, this is plenty
+	static final int MAX_STATEMENTS = 32;
+
+	private SQLiteDatabase db = null;
+	private final LinkedHashMap<String, SQLiteStatement> statements = new LinkedHashMap<String, SQLiteStatement>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<String, SQLiteStatement> eldest) {
+			if (size() > MAX_STATEMENTS) {
+				eldest.getValue().close();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	// Sql of updates and inserts by table and columns
+	private final HashMap<String, String> sqlCache = new HashMap<String, String>();
+
+	/**
+	 * Returns a compiled statement for the sql, with no arguments bound.
+	 */
+	public SQLiteStatement get(final SQLiteDatabase db, final String sql) {
+		if (db != this.db) {
+			close();
+			this.db = db;
+		}
+		SQLiteStatement stmt = statements.get(sql);
+		if (stmt == null) {
+			stmt = db.compileStatement(sql);
+			statements.put(sql, stmt);
+		}
+		else {
+			stmt.clearBindings();
+		}
+		return stmt;
+	}
+
+	/**
+	 * Same as db.update(table, values, "_id IS ?", id). Returns number of rows
+	 * updated.
+	 */
+	public int updateById(final SQLiteDatabase db, final String table,
+			final ContentValues values, final long id) {
+		final String[] columns = getSortedColumns(values);
+		final String key = "U" + table + Arrays.toString(columns);
+		String sql = sqlCache.get(key);
+		if (sql == null) {
+			final StringBuilder sb = new StringBuilder("UPDATE ").append(table)
+					.append(" SET ");
+			for (int i = 0; i < columns.length; i++) {
+				sb.append(i > 0 ? "," : "").append(columns[i]).append("=?");
+			}
+			sb.append(" WHERE ").append(BaseColumns._ID).append(" IS ?");
+			sql = sb.toString();
+			sqlCache.put(key, sql);
+		}
+
+		final SQLiteStatement stmt = get(db, sql);
+		bind(stmt, values, columns);
+		stmt.bindLong(columns.length + 1, id);
+		return stmt.executeUpdateDelete();
+	}
+
+	/**
+	 * Same as db.insert(table, null, values), but throws on failure. Returns
+	 * the row id.
+	 */
+	public long insert(final SQLiteDatabase db, final String table,
+			final ContentValues values) {
+		final String[] columns = getSortedColumns(values);
+		final String key = "I" + table + Arrays.toString(columns);
+		String sql = sqlCache.get(key);
+		if (sql == null) {
+			final StringBuilder sb = new StringBuilder("INSERT INTO ")
+					.append(table);
+			if (columns.length == 0) {
+				sb.append(" DEFAULT VALUES");
+			}
+			else {
+				sb.append(" (").append(DAO.arrayToCommaString(columns))
+						.append(") VALUES (");
+				for (int i = 0; i < columns.length; i++) {
+					sb.append(i > 0 ? ",?" : "?");
+				}
+				sb.append(")");
+			}
+			sql = sb.toString();
+			sqlCache.put(key, sql);
+		}
+
+		final SQLiteStatement stmt = get(db, sql);
+		bind(stmt, values, columns);
+		return stmt.executeInsert();
+	}
+
+	/**
+	 * Closes all statements. The cache can still be used afterwards.
+	 */
+	public void close() {
+		for (final SQLiteStatement stmt : statements.values()) {
+			stmt.close();
+		}
+		statements.clear();
+		db = null;
+	}
+
+	private static String[] getSortedColumns(final ContentValues values) {
+		final String[] columns = values.keySet().toArray(
+				new String[values.size()]);
+		Arrays.sort(columns);
+		return columns;
+	}
+
+	private static void bind(final SQLiteStatement stmt,
+			final ContentValues values, final String[] columns) {
+		for (int i = 0; i < columns.length; i++) {
+			DatabaseUtils.bindObjectToProgram(stmt, i + 1,
+					values.get(columns[i]));
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package com.nononsenseapps.notepad.database;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.UriMatcher;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+/**
+ * Counters and phase timings of one sync run. Saved to a table which keeps
+ * the latest runs only, readable through URI. Each row is one value of a run,
+ * so services can record whatever they like.
+ *
+ * Not thread safe, use one per run.
+ */
+public class SyncMetrics {
+
+	private static final String TAG = "nononsenseapps SyncMetrics";
+
+	// SQL convention says Table name should be "singular"
+	public static final String TABLE_NAME = "syncmetric";
+
+	public static final String CONTENT_TYPE = "vnd.android.cursor.item/vnd.nononsenseapps."
+			+ TABLE_NAME;
+
+	public static final Uri URI = Uri.withAppendedPath(
+			Uri.parse(MyContentProvider.SCHEME + MyContentProvider.AUTHORITY),
+			TABLE_NAME);
+
+	public static final int BASEURICODE = 601;
+
+	public static void addMatcherUris(UriMatcher sURIMatcher) {
+		sURIMatcher
+				.addURI(MyContentProvider.AUTHORITY, TABLE_NAME, BASEURICODE);
+	}
+
+	public static class Columns implements BaseColumns {
+
+		private Columns() {
+		}
+
+		// Start of the run, milliseconds since 1970-01-01 UTC
+		public static final String RUN = "run";
+		public static final String SERVICE = "service";
+		public static final String NAME = "name";
+		public static final String VALUE = "value";
+
+		public static final String[] FIELDS = { _ID, RUN, SERVICE, NAME, VALUE };
+	}
+
+	public static final String CREATE_TABLE = new StringBuilder("CREATE TABLE ")
+			.append(TABLE_NAME).append("(").append(Columns._ID)
+			.append(" INTEGER PRIMARY KEY,").append(Columns.RUN)
+			.append(" INTEGER NOT NULL,").append(Columns.SERVICE)
+			.append(" TEXT NOT NULL,").append(Columns.NAME)
+			.append(" TEXT NOT NULL,").append(Columns.VALUE)
+			.append(" INTEGER NOT NULL").append(")").toString();
+
+	// Latest runs are found and trimmed by this
+	public static final String CREATE_RUN_INDEX = new StringBuilder(
+			"CREATE INDEX IF NOT EXISTS ").append(TABLE_NAME)
+			.append("_run_idx ON ").append(TABLE_NAME).append("(")
+			.append(Columns.RUN).append(")").toString();
+
+	// Runs kept, of all services together
+	public static final int MAX_RUNS = 50;
+
+	// Common names
+	public static final String PHASE_SUFFIX = " ms";
+	public static final String TOTAL = "total" + PHASE_SUFFIX;
+	public static final String HTTP_REQUESTS = "http requests";
+	public static final String HTTP_BYTES_SENT = "http bytes sent";
+	public static final String HTTP_BYTES_RECEIVED = "http bytes received";
+	public static final String DB_TIME = "db" + PHASE_SUFFIX;
+	public static final String DB_READS = "db reads";
+	public static final String DB_WRITES = "db writes";
+	public static final String FILES_PARSED = "files parsed";
+	public static final String FILES_WRITTEN = "files written";
+	public static final String ERRORS = "errors";
+
+	public final long run;
+	public final String service;
+
+	// In the order they were first recorded
+	private final LinkedHashMap<String, Long> values = new LinkedHashMap<String, Long>();
+	private final long startNanos;
+	private String phase = null;
+	private long phaseNanos;
+
+	public SyncMetrics(final String service) {
+		this(service, Calendar.getInstance().getTimeInMillis());
+	}
+
+	public SyncMetrics(final String service, final long run) {
+		this.service = service;
+		this.run = run;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Ends the running phase, if any, and starts the named one. Time of
+	 * phases with the same name is added up.
+	 */
+	public void startPhase(final String name) {
+		final long now = System.nanoTime();
+		if (phase != null) {
+			add(phase + PHASE_SUFFIX, (now - phaseNanos) / 1000000);
+		}
+		phase = name;
+		phaseNanos = now;
+	}
+
+	public void endPhase() {
+		if (phase != null) {
+			add(phase + PHASE_SUFFIX, (System.nanoTime() - phaseNanos) / 1000000);
+			phase = null;
+		}
+	}
+
+	public void add(final String name, final long value) {
+		set(name, get(name) + value);
+	}
+
+	public void set(final String name, final long value) {
+		values.put(name, value);
+	}
+
+	public long get(final String name) {
+		final Long value = values.get(name);
+		return value == null ? 0 : value;
+	}
+
+	/**
+	 * Ends the running phase and writes everything, with the total time. Old
+	 * runs are removed. Writes the database directly, so observers are not
+	 * notified. Errors are logged only, metrics must not fail a sync.
+	 */
+	public void save(final Context context) {
+		endPhase();
+		set(TOTAL, (System.nanoTime() - startNanos) / 1000000);
+		try {
+			final SQLiteDatabase db = DatabaseHandler.getInstance(context)
+					.getWritableDatabase();
+			final ContentValues row = new ContentValues();
+			db.beginTransaction();
+			try {
+				for (final Map.Entry<String, Long> entry : values.entrySet()) {
+					row.put(Columns.RUN, run);
+					row.put(Columns.SERVICE, service);
+					row.put(Columns.NAME, entry.getKey());
+					row.put(Columns.VALUE, entry.getValue());
+					db.insert(TABLE_NAME, null, row);
+				}
+				trim(db, MAX_RUNS);
+				db.setTransactionSuccessful();
+			}
+			finally {
+				db.endTransaction();
+			}
+		}
+		catch (Exception e) {
+			Log.e(TAG, "Could not save: " + e.getLocalizedMessage());
+		}
+		Log.d(TAG, service + ": " + values);
+	}
+
+	/**
+	 * Deletes all but the latest maxRuns runs. Returns number of deleted
+	 * rows.
+	 */
+	public static int trim(final SQLiteDatabase db, final int maxRuns) {
+		return db.delete(TABLE_NAME, Columns.RUN + " NOT IN (SELECT DISTINCT "
+				+ Columns.RUN + " FROM " + TABLE_NAME + " ORDER BY "
+				+ Columns.RUN + " DESC LIMIT " + maxRuns + ")", null);
+	}
+}
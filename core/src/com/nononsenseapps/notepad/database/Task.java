@@ -12,6 +12,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.provider.BaseColumns;
@@ -234,6 +235,12 @@ public class Task extends DAO {
 		public static final String[] HISTORY_COLUMNS_UPDATED = { Columns.HIST_TASK_ID,
 			Columns.TITLE, Columns.NOTE, Columns.UPDATED };
 
+		// Only available in search results
+		public static final String SNIPPET = "snippet";
+		// Same order as FIELDS, but with a snippet instead of the note
+		public static final String[] SEARCH_FIELDS = { _ID, TITLE, SNIPPET,
+				COMPLETED, DUE, UPDATED, LEFT, RIGHT, DBLIST, LOCKED };
+
 	}
 
 	public static final String CREATE_TABLE = new StringBuilder("CREATE TABLE ")
@@ -298,6 +305,34 @@ public class Task extends DAO {
 			.append(" TIMESTAMP NOT NULL DEFAULT current_timestamp")
 			.append(")").toString();
 
+	// The trash is purged oldest first, see TrashPurger
+	public static final String DELETE_TABLE_TIME_INDEX_NAME = DELETE_TABLE_NAME
+			+ "_" + Columns.TRIG_DELETED + "_idx";
+	public static final String CREATE_DELETE_TABLE_TIME_INDEX = new StringBuilder(
+			"CREATE INDEX IF NOT EXISTS ")
+			.append(DELETE_TABLE_TIME_INDEX_NAME).append(" ON ")
+			.append(DELETE_TABLE_NAME).append("(")
+			.append(Columns.TRIG_DELETED).append(")").toString();
+
+	// Tasks due before a time, which are not completed
+	public static final String DUE_INDEX_NAME = TABLE_NAME + "_"
+			+ Columns.DUE + "_idx";
+	public static final String CREATE_DUE_INDEX = new StringBuilder(
+			"CREATE INDEX IF NOT EXISTS ").append(DUE_INDEX_NAME)
+			.append(" ON ").append(TABLE_NAME).append("(")
+			.append(Columns.COMPLETED).append(",").append(Columns.DUE)
+			.append(")").toString();
+
+	// Tasks of a list in manual order, read a page at a time. Also finds the
+	// rows the position triggers shift.
+	public static final String LIST_INDEX_NAME = TABLE_NAME + "_"
+			+ Columns.DBLIST + "_idx";
+	public static final String CREATE_LIST_INDEX = new StringBuilder(
+			"CREATE INDEX IF NOT EXISTS ").append(LIST_INDEX_NAME)
+			.append(" ON ").append(TABLE_NAME).append("(")
+			.append(Columns.DBLIST).append(",").append(Columns.LEFT)
+			.append(")").toString();
+
 	// Every change to a note gets saved here
 	public static final String CREATE_HISTORY_TABLE = new StringBuilder(
 			"CREATE TABLE ").append(HISTORY_TABLE_NAME).append("(")
@@ -378,42 +413,93 @@ public class Task extends DAO {
 			.append(" WHERE ").append(Columns._ID).append(" IS old.")
 			.append(Columns._ID).append(";").append(" END;").toString();
 
-	// Search table
-	public static final String CREATE_FTS3_TABLE = "CREATE VIRTUAL TABLE "
-			+ FTS3_TABLE_NAME + " USING FTS3(" + Columns._ID + ", "
-			+ Columns.TITLE + ", " + Columns.NOTE + ");";
+	// Search table. Name kept from the FTS3 days since it is part of
+	// URI_SEARCH. Rows are keyed on docid, which is the task _id.
+	// If the sqlite version supports it (Android 4.1+), the table is an
+	// external content table reading title and note from the task table, and
+	// has prefix indices for the 'term*' queries built by the provider.
+	public static String getCREATE_FTS4_TABLE(final boolean withOptions) {
+		final StringBuilder sb = new StringBuilder("CREATE VIRTUAL TABLE ")
+				.append(FTS3_TABLE_NAME).append(" USING FTS4(")
+				.append(Columns.TITLE).append(", ").append(Columns.NOTE);
+		if (withOptions) {
+			sb.append(", content=\"").append(TABLE_NAME).append("\"")
+					.append(", prefix=\"1,2,3\"");
+		}
+		return sb.append(");").toString();
+	}
 
-	public static final String CREATE_FTS3_INSERT_TRIGGER = new StringBuilder()
-			.append("CREATE TRIGGER task_fts3_insert AFTER INSERT ON ")
-			.append(TABLE_NAME)
-			.append(" BEGIN ")
+	// Fills the search table with existing tasks
+	public static final String FILL_FTS4_TABLE = new StringBuilder()
+			.append("INSERT INTO ").append(FTS3_TABLE_NAME).append(" (docid,")
+			.append(arrayToCommaString(Columns.TITLE, Columns.NOTE))
+			.append(") SELECT ")
+			.append(arrayToCommaString(Columns._ID, Columns.TITLE,
+					Columns.NOTE)).append(" FROM ").append(TABLE_NAME)
+			.append(";").toString();
+
+	public static final String FTS3_INSERT_TRIGGER_NAME = "task_fts3_insert";
+	public static final String FTS3_PRE_UPDATE_TRIGGER_NAME = "task_fts3_pre_update";
+	public static final String FTS3_UPDATE_TRIGGER_NAME = "task_fts3_update";
+	public static final String FTS3_DELETE_TRIGGER_NAME = "task_fts3_delete";
+
+	private static final String FTS4_INSERT_NEW = new StringBuilder()
 			.append(" INSERT INTO ")
 			.append(FTS3_TABLE_NAME)
-			.append(" (")
-			.append(arrayToCommaString(Columns._ID, Columns.TITLE, Columns.NOTE))
+			.append(" (docid,")
+			.append(arrayToCommaString(Columns.TITLE, Columns.NOTE))
 			.append(") VALUES (")
 			.append(arrayToCommaString("new.", new String[] { Columns._ID,
-					Columns.TITLE, Columns.NOTE })).append(");")
-			.append(" END;").toString();
+					Columns.TITLE, Columns.NOTE })).append(");").toString();
+
+	// With external content, old values must be removed from the index
+	// before they are changed in the task table
+	private static final String FTS4_DELETE_OLD = new StringBuilder()
+			.append(" DELETE FROM ").append(FTS3_TABLE_NAME)
+			.append(" WHERE docid = old.").append(Columns._ID).append(";")
+			.toString();
+
+	public static final String CREATE_FTS3_INSERT_TRIGGER = new StringBuilder()
+			.append("CREATE TRIGGER ").append(FTS3_INSERT_TRIGGER_NAME)
+			.append(" AFTER INSERT ON ").append(TABLE_NAME).append(" BEGIN ")
+			.append(FTS4_INSERT_NEW).append(" END;").toString();
+
+	public static final String CREATE_FTS3_PRE_UPDATE_TRIGGER = new StringBuilder()
+			.append("CREATE TRIGGER ")
+			.append(FTS3_PRE_UPDATE_TRIGGER_NAME)
+			.append(" BEFORE UPDATE OF ")
+			.append(arrayToCommaString(new String[] { Columns.TITLE,
+					Columns.NOTE })).append(" ON ").append(TABLE_NAME)
+			.append(" BEGIN ").append(FTS4_DELETE_OLD).append(" END;")
+			.toString();
 
 	public static final String CREATE_FTS3_UPDATE_TRIGGER = new StringBuilder()
-			.append("CREATE TRIGGER task_fts3_update AFTER UPDATE OF ")
+			.append("CREATE TRIGGER ")
+			.append(FTS3_UPDATE_TRIGGER_NAME)
+			.append(" AFTER UPDATE OF ")
 			.append(arrayToCommaString(new String[] { Columns.TITLE,
 					Columns.NOTE })).append(" ON ").append(TABLE_NAME)
-			.append(" BEGIN ").append(" UPDATE ").append(FTS3_TABLE_NAME)
-			.append(" SET ").append(Columns.TITLE).append(" = new.")
-			.append(Columns.TITLE).append(",").append(Columns.NOTE)
-			.append(" = new.").append(Columns.NOTE).append(" WHERE ")
-			.append(Columns._ID).append(" IS new.").append(Columns._ID)
-			.append(";").append(" END;").toString();
+			.append(" BEGIN ").append(FTS4_INSERT_NEW).append(" END;")
+			.toString();
 
 	public static final String CREATE_FTS3_DELETE_TRIGGER = new StringBuilder()
-			.append("CREATE TRIGGER task_fts3_delete AFTER DELETE ON ")
-			.append(TABLE_NAME).append(" BEGIN ").append(" DELETE FROM ")
-			.append(FTS3_TABLE_NAME).append(" WHERE ").append(Columns._ID)
-			.append(" IS old.").append(Columns._ID).append(";").append(" END;")
+			.append("CREATE TRIGGER ").append(FTS3_DELETE_TRIGGER_NAME)
+			.append(" BEFORE DELETE ON ").append(TABLE_NAME)
+			.append(" BEGIN ").append(FTS4_DELETE_OLD).append(" END;")
 			.toString();
 
+	/**
+	 * Ranking information about a search hit, see SearchRanker. 'pcnalx'
+	 * requires FTS4.
+	 */
+	public static final String FTS4_MATCHINFO = "matchinfo(" + FTS3_TABLE_NAME
+			+ ", 'pcnalx')";
+	/**
+	 * Part of the note surrounding the hit, instead of the entire note.
+	 */
+	public static final String FTS4_SNIPPET = "snippet(" + FTS3_TABLE_NAME
+			+ ", '', '', '\u2026', 1, 16)";
+
 	/**
 	 * This is a view which returns the tasks in the specified list with headers
 	 * suitable for dates, if any tasks would be sorted under them. Provider
@@ -772,6 +858,9 @@ public class Task extends DAO {
 		right = c.getLong(7);
 		dblist = c.getLong(8);
 		locked = c.getInt(9) == 1;
+
+		// So saving only writes what is changed
+		setContentSaved();
 	}
 
 	public Task(final long id, final ContentValues values) {
@@ -797,7 +886,9 @@ public class Task extends DAO {
 				this.completed = values.getAsLong(Columns.COMPLETED);
 				this.due = values.getAsLong(Columns.DUE);
 				this.updated = values.getAsLong(Columns.UPDATED);
-				this.locked = values.getAsLong(Columns.LOCKED) == 1;
+				// Not present in partial updates
+				final Long lockedValue = values.getAsLong(Columns.LOCKED);
+				this.locked = lockedValue != null && lockedValue == 1;
 
 				this.dblist = values.getAsLong(Columns.DBLIST);
 				this.left = values.getAsLong(Columns.LEFT);
@@ -895,6 +986,9 @@ public class Task extends DAO {
 	/**
 	 * Convenience method for normal operations. Updates "updated" field to
 	 * specified Returns number of db-rows affected. Fail if < 1
+	 * 
+	 * Only changed columns are written if the task was read from a cursor, so
+	 * completing a task does not rewrite its title and note.
 	 */
 	public int save(final Context context, final long updated) {
 		int result = 0;
@@ -909,7 +1003,10 @@ public class Task extends DAO {
 		}
 		else {
 			result += context.getContentResolver().update(getUri(),
-					getContent(), null, null);
+					getChangedContent(), null, null);
+		}
+		if (result > 0) {
+			setContentSaved();
 		}
 		return result;
 	}
@@ -1048,20 +1145,40 @@ public class Task extends DAO {
 
 					+ " END;", TABLE_NAME, DELETE_TABLE_NAME);
 
+	/**
+	 * Returns the sql of the move, or null if it is not a move left. Bind the
+	 * arguments with bindMoveItem.
+	 */
 	public String getSQLMoveItemLeft(final ContentValues values) {
 		if (!values.containsKey(TARGETPOS)
 				|| values.getAsLong(TARGETPOS) >= left) {
 			return null;
 		}
-		return getSQLMoveItem(Columns.LEFT, values.getAsLong(TARGETPOS));
+		return SQL_MOVE_ITEM_LEFT;
 	}
 
+	/**
+	 * Returns the sql of the move, or null if it is not a move right. Bind the
+	 * arguments with bindMoveItem.
+	 */
 	public String getSQLMoveItemRight(final ContentValues values) {
 		if (!values.containsKey(TARGETPOS)
 				|| values.getAsLong(TARGETPOS) <= right) {
 			return null;
 		}
-		return getSQLMoveItem(Columns.RIGHT, values.getAsLong(TARGETPOS));
+		return SQL_MOVE_ITEM_RIGHT;
+	}
+
+	/**
+	 * Binds the positions of this task and the target position from
+	 * getMoveValues to a move statement.
+	 */
+	public void bindMoveItem(final SQLiteStatement stmt,
+			final ContentValues values) {
+		stmt.bindLong(1, left);
+		stmt.bindLong(2, right);
+		stmt.bindLong(3, values.getAsLong(TARGETPOS));
+		stmt.bindLong(4, dblist);
 	}
 
 	/*
@@ -1104,13 +1221,14 @@ public class Task extends DAO {
 			.append(" END;").toString();
 
 	/**
-	 * If moving left, then edgeCol is left and vice-versa. Values should come
-	 * from getMoveValues
+	 * If moving left, then edgeCol is left and vice-versa. The positions are
+	 * arguments, so the same statement can be used for every move.
 	 * 
-	 * 1 = table name 2 = left 3 = right 4 = edgecol 5 = old.left 6 = old.right
-	 * 7 = target.pos (actually target.edgecol) 8 = dblist 9 = old.dblist
+	 * 1 = table name 2 = left 3 = right 4 = edgecol 5 = ?1 old.left 6 = ?2
+	 * old.right 7 = ?3 target.pos (actually target.edgecol) 8 = dblist 9 = ?4
+	 * old.dblist
 	 */
-	private String getSQLMoveItem(final String edgeCol, final Long edgeVal) {
+	private static String getSQLMoveItem(final String edgeCol) {
 		boolean movingLeft = Columns.LEFT.equals(edgeCol);
 		return String
 				.format(new StringBuilder("UPDATE %1$s SET ")
@@ -1120,26 +1238,26 @@ public class Task extends DAO {
 						.append("%2$s = %2$s + ")
 						.append(" CASE ")
 						// Moving item jumps to target pos
-						.append(" WHEN %2$s IS %5$d ")
+						.append(" WHEN %2$s IS %5$s ")
 						// ex: left = 5, target = 2, --> left = 5 + (2 - 5) == 2
 						// ex left = 5, target = 9(right), --> left = 5 + (9 - 5
 						// - 1) = 8
 						.append(" THEN ")
-						.append(" (%7$d - %5$d")
+						.append(" (%7$s - %5$s")
 						.append(movingLeft ? ") " : " -1) ")
 						// Sub items take one step opposite
 						// Careful if moving inside subtree, which can only
 						// happen when moving right.
 						// Then only left position changes
-						.append(" WHEN %2$s BETWEEN (%5$d + 1) AND (%6$d - 1) ")
+						.append(" WHEN %2$s BETWEEN (%5$s + 1) AND (%6$s - 1) ")
 						.append(" THEN ")
 						.append(movingLeft ? " 1 " : " -1 ")
 						// Items in between from and to positions take two steps
 						// opposite
 						.append(" WHEN %2$s BETWEEN ")
-						.append(movingLeft ? "%7$d" : "%6$d")
+						.append(movingLeft ? "%7$s" : "%6$s")
 						.append(" AND ")
-						.append(movingLeft ? "%5$d" : "%7$d")
+						.append(movingLeft ? "%5$s" : "%7$s")
 						.append(" THEN ")
 						.append(movingLeft ? " 2 " : " -2 ")
 						// Not in target range, no change
@@ -1150,32 +1268,35 @@ public class Task extends DAO {
 						.append(" %3$s = %3$s + ")
 						.append(" CASE ")
 						// Moving item jumps to target pos
-						.append(" WHEN %3$s IS %6$d ")
+						.append(" WHEN %3$s IS %6$s ")
 						// ex: right = 7, target = 3(left), --> right = 7 + (3 -
 						// 7 + 1) == 4
 						// ex right = 2, target = 9(right), --> right = 2 + (9 -
 						// 2) = 9
 						.append(" THEN ")
-						.append(" (%7$d - %6$d")
+						.append(" (%7$s - %6$s")
 						.append(movingLeft ? " +1) " : ") ")
 						// Sub items take one step opposite
-						.append(" WHEN %3$s BETWEEN (%5$d + 1) AND (%6$d - 1) ")
+						.append(" WHEN %3$s BETWEEN (%5$s + 1) AND (%6$s - 1) ")
 						.append(" THEN ")
 						.append(movingLeft ? " 1 " : " -1 ")
 						// Items in between from and to positions take two steps
 						// opposite
 						.append(" WHEN %3$s BETWEEN ")
-						.append(movingLeft ? "%7$d" : "%6$d").append(" AND ")
-						.append(movingLeft ? "%5$d" : "%7$d").append(" THEN ")
+						.append(movingLeft ? "%7$s" : "%6$s").append(" AND ")
+						.append(movingLeft ? "%5$s" : "%7$s").append(" THEN ")
 						.append(movingLeft ? " 2 " : " -2 ")
 						// Not in target range, no change
 						.append(" ELSE 0 END ")
 						// And limit to the list in question
-						.append(" WHERE %8$s IS %9$d;").toString(), TABLE_NAME,
-						Columns.LEFT, Columns.RIGHT, edgeCol, left, right,
-						edgeVal, Columns.DBLIST, dblist);
+						.append(" WHERE %8$s IS %9$s;").toString(), TABLE_NAME,
+						Columns.LEFT, Columns.RIGHT, edgeCol, "?1", "?2",
+						"?3", Columns.DBLIST, "?4");
 	}
 
+	public static final String SQL_MOVE_ITEM_LEFT = getSQLMoveItem(Columns.LEFT);
+	public static final String SQL_MOVE_ITEM_RIGHT = getSQLMoveItem(Columns.RIGHT);
+
 	/*
 	 * @SuppressLint("DefaultLocale") public String getSQLMoveSubTree(final
 	 * ContentValues values) { return
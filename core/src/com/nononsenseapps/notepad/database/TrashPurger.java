@@ -0,0 +1,135 @@
+package com.nononsenseapps.notepad.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * Keeps the deleted_task table, and its search table, from growing forever.
+ * Tasks are removed oldest first if they are older than the age limit or if
+ * there are more of them than the count limit.
+ *
+ * Rows are removed in small batches, each in its own transaction, so the
+ * database is never locked for long.
+ */
+public class TrashPurger {
+
+	private static final String TAG = "nononsenseapps TrashPurger";
+
+	// Keep deleted tasks for two months
+	public static final int DEFAULT_MAX_AGE_DAYS = 60;
+	// But never more than this many
+	public static final int DEFAULT_MAX_COUNT = 1000;
+	// Rows deleted per transaction
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	// Values of PRAGMA auto_vacuum
+	private static final int AUTO_VACUUM_INCREMENTAL = 2;
+	// Free pages released per purge
+	private static final int VACUUM_PAGES = 500;
+
+	private final SQLiteDatabase db;
+	private final int maxAgeDays;
+	private final int maxCount;
+	private final int batchSize;
+
+	public TrashPurger(final SQLiteDatabase db) {
+		this(db, DEFAULT_MAX_AGE_DAYS, DEFAULT_MAX_COUNT, DEFAULT_BATCH_SIZE);
+	}
+
+	public TrashPurger(final SQLiteDatabase db, final int maxAgeDays,
+			final int maxCount, final int batchSize) {
+		this.db = db;
+		this.maxAgeDays = maxAgeDays;
+		this.maxCount = maxCount;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Selects a batch of rows which violate the policy. The newest maxCount
+	 * rows are safe from the count limit.
+	 */
+	String getBatchWhere() {
+		return new StringBuilder(Task.Columns._ID).append(" IN (SELECT ")
+				.append(Task.Columns._ID).append(" FROM ")
+				.append(Task.DELETE_TABLE_NAME).append(" WHERE ")
+				.append(Task.Columns.TRIG_DELETED)
+				.append(" < datetime('now', '-").append(maxAgeDays)
+				.append(" days') OR ").append(Task.Columns._ID)
+				.append(" NOT IN (SELECT ").append(Task.Columns._ID)
+				.append(" FROM ").append(Task.DELETE_TABLE_NAME)
+				.append(" ORDER BY ").append(Task.Columns.TRIG_DELETED)
+				.append(" DESC, ").append(Task.Columns._ID)
+				.append(" DESC LIMIT ").append(maxCount).append(")")
+				.append(" ORDER BY ").append(Task.Columns.TRIG_DELETED)
+				.append(" LIMIT ").append(batchSize).append(")").toString();
+	}
+
+	/**
+	 * Delete everything the policy says should go. Returns number of deleted
+	 * tasks. Do not call this on the main thread.
+	 */
+	public int purge() {
+		final String where = getBatchWhere();
+		int total = 0;
+		int deleted;
+		do {
+			db.beginTransaction();
+			try {
+				// FTS trigger removes the search entry as well
+				deleted = db.delete(Task.DELETE_TABLE_NAME, where, null);
+				db.setTransactionSuccessful();
+			}
+			finally {
+				db.endTransaction();
+			}
+			total += deleted;
+		} while (deleted >= batchSize);
+
+		if (total > 0) {
+			Log.d(TAG, "Purged " + total + " deleted tasks");
+			compact();
+		}
+		return total;
+	}
+
+	/**
+	 * Merge the search index segments and give freed pages back to the file
+	 * system.
+	 */
+	void compact() {
+		db.execSQL("INSERT INTO " + Task.FTS3_DELETE_TABLE_NAME + "("
+				+ Task.FTS3_DELETE_TABLE_NAME + ") VALUES('optimize')");
+
+		if (getAutoVacuum() != AUTO_VACUUM_INCREMENTAL) {
+			// Only takes effect after a full vacuum, which is done once
+			db.execSQL("PRAGMA auto_vacuum = " + AUTO_VACUUM_INCREMENTAL);
+			db.execSQL("VACUUM");
+		}
+		else {
+			// Returns a row per page, must be stepped through
+			final Cursor c = db.rawQuery("PRAGMA incremental_vacuum("
+					+ VACUUM_PAGES + ")", null);
+			try {
+				while (c.moveToNext()) {
+				}
+			}
+			finally {
+				c.close();
+			}
+		}
+	}
+
+	private int getAutoVacuum() {
+		final Cursor c = db.rawQuery("PRAGMA auto_vacuum", null);
+		try {
+			if (c.moveToFirst()) {
+				return c.getInt(0);
+			}
+			return 0;
+		}
+		finally {
+			c.close();
+		}
+	}
+}
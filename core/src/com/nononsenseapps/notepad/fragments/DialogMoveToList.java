@@ -4,19 +4,16 @@ import java.util.HashMap;
 
 import org.androidannotations.annotations.AfterTextChange;
 import org.androidannotations.annotations.AfterViews;
-import org.androidannotations.annotations.Background;
 import org.androidannotations.annotations.Click;
 import org.androidannotations.annotations.EFragment;
 import org.androidannotations.annotations.UiThread;
 import org.androidannotations.annotations.ViewById;
 import com.nononsenseapps.notepad.ActivityMain;
 import com.nononsenseapps.notepad.core.R;
-import com.nononsenseapps.notepad.database.DAO;
-import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
 import com.nononsenseapps.notepad.fragments.DialogConfirmBase.DialogConfirmedListener;
+import com.nononsenseapps.notepad.services.TaskBulkService;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
@@ -148,39 +145,6 @@ public class DialogMoveToList extends DialogFragment {
 				});
 	}
 
-	@Background
-	void moveItems(final long toListId, final long[] taskIds) {
-
-		// for (long id: taskIds) {
-		// final Cursor c =
-		// getActivity().getContentResolver().query(Task.getUri(id),
-		// Task.Columns.FIELDS, null, null, null);
-		//
-		// if (c.moveToFirst()) {
-		// Task t = new Task(c);
-		// // Remove from old location
-		// t.delete(getActivity());
-		// // Reset, and set new list
-		// t.resetForInsertion();
-		// t.dblist = toListId;
-		// // And save anew
-		// t.save(getActivity());
-		// }
-		//
-		// c.close();
-		// }
-
-		final ContentValues val = new ContentValues();
-		val.put(Task.Columns.DBLIST, toListId);
-
-		// where _ID in (1, 2, 3)
-		final String whereId = new StringBuilder(Task.Columns._ID)
-				.append(" IN (").append(DAO.arrayToCommaString(taskIds))
-				.append(")").toString();
-
-		getActivity().getContentResolver().update(Task.URI, val, whereId, null);
-	}
-
 	@Click(resName="dialog_no")
 	void cancelClicked() {
 		dismiss();
@@ -200,7 +164,7 @@ public class DialogMoveToList extends DialogFragment {
 			final String targetListTitle = c.getString(1);
 
 			if (taskIds.length > 0 && targetListId > 0) {
-				moveItems(targetListId, taskIds);
+				TaskBulkService.move(getActivity(), targetListId, taskIds);
 			}
 
 			try {
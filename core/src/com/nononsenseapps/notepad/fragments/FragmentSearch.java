@@ -4,16 +4,23 @@ import org.androidannotations.annotations.AfterViews;
 import org.androidannotations.annotations.EFragment;
 import org.androidannotations.annotations.SystemService;
 import org.androidannotations.annotations.ViewById;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.nononsenseapps.notepad.core.R;
+import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.SearchNarrower;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.utils.views.TitleNoteTextView;
 
 import android.app.SearchManager;
+import android.content.ContentResolver;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
@@ -35,6 +42,9 @@ public class FragmentSearch extends Fragment {
 	
 	public final static String QUERY  = "query";
 
+	// Wait for the user to stop typing before searching
+	static final long SEARCH_DELAY = 250;
+
 	@SystemService
 	protected
 	SearchManager searchManager;
@@ -50,6 +60,19 @@ public class FragmentSearch extends Fragment {
 	protected String mQuery = "";
 
 	protected SearchView mSearchView;
+
+	private final Handler mHandler = new Handler();
+	private String mPendingQuery = null;
+	private final Runnable mSearchRunnable = new Runnable() {
+		@Override
+		public void run() {
+			doSearch(mPendingQuery);
+		}
+	};
+
+	// Bumped for every new search, older loads give up early
+	private final AtomicInteger mGeneration = new AtomicInteger();
+	private final SearchNarrower mNarrower = new SearchNarrower();
 	
 	public static FragmentSearch_ getInstance(final String initialQuery) {
 		FragmentSearch_ f = new FragmentSearch_();
@@ -71,6 +94,12 @@ public class FragmentSearch extends Fragment {
 		setHasOptionsMenu(true);
 	}
 
+	@Override
+	public void onDestroy() {
+		mHandler.removeCallbacks(mSearchRunnable);
+		super.onDestroy();
+	}
+
 	@Override
 	public void onCreateOptionsMenu(Menu menu, MenuInflater inflater){
 		super.onCreateOptionsMenu(menu, inflater);
@@ -93,13 +122,16 @@ public class FragmentSearch extends Fragment {
 		mSearchView.setOnQueryTextListener(new OnQueryTextListener() {
 			@Override
 			public boolean onQueryTextSubmit(final String query) {
+				mHandler.removeCallbacks(mSearchRunnable);
 				doSearch(query);
 				return true;
 			}
 
 			@Override
 			public boolean onQueryTextChange(final String query) {
-				doSearch(query);
+				mPendingQuery = query;
+				mHandler.removeCallbacks(mSearchRunnable);
+				mHandler.postDelayed(mSearchRunnable, SEARCH_DELAY);
 				return true;
 			}
 		});
@@ -121,9 +153,9 @@ public class FragmentSearch extends Fragment {
 		mCallback = new LoaderCallbacks<Cursor>() {
 			@Override
 			public Loader<Cursor> onCreateLoader(int id, Bundle arg1) {
-				return new CursorLoader(getActivity(), getSearchUri(),
-						getFields(), null, new String[] { mQuery },
-						getSortOrder());
+				return new SearchLoader(getActivity(), getSearchUri(),
+						getFields(), mQuery, getSortOrder(),
+						isNarrowable() ? mNarrower : null, mGeneration);
 			}
 
 			@Override
@@ -141,11 +173,18 @@ public class FragmentSearch extends Fragment {
 	}
 
 	protected void doSearch(final String query) {
-		mQuery = query == null ? "" : query;
+		final String newQuery = query == null ? "" : query;
+		if (newQuery.equals(mQuery) && getLoaderManager().getLoader(0) != null) {
+			// Already showing this
+			return;
+		}
+		mQuery = newQuery;
 
 		// If not loaded yet, let it load
-		if (mCallback != null)
+		if (mCallback != null) {
+			mGeneration.incrementAndGet();
 			getLoaderManager().restartLoader(0, null, mCallback);
+		}
 	}
 
 	/**
@@ -159,14 +198,24 @@ public class FragmentSearch extends Fragment {
 	 * Override to give different search behaviour
 	 */
 	protected String[] getFields() {
-		return Task.Columns.FIELDS;
+		return Task.Columns.SEARCH_FIELDS;
 	}
 
 	/**
-	 * Override to give different search behaviour
+	 * Override to give different search behaviour. Null means order by
+	 * relevance.
 	 */
 	protected String getSortOrder() {
-		return Task.Columns.TITLE;
+		return null;
+	}
+	
+	/**
+	 * Override to give different search behaviour. If true, results are
+	 * narrowed in memory while the user keeps typing. Requires the first field
+	 * to be the task id.
+	 */
+	protected boolean isNarrowable() {
+		return true;
 	}
 	
 	/**
@@ -174,7 +223,7 @@ public class FragmentSearch extends Fragment {
 	 */
 	protected SimpleCursorAdapter getAdapter() {
 		return new SimpleCursorAdapter(getActivity(), R.layout.tasklist_item_rich,
-				null, new String[] { Task.Columns.TITLE, Task.Columns.NOTE,
+				null, new String[] { Task.Columns.TITLE, Task.Columns.SNIPPET,
 				Task.Columns.DUE, Task.Columns.COMPLETED,
 				Task.Columns.LEFT, Task.Columns.RIGHT }, new int[] { android.R.id.text1,
 				android.R.id.text1, R.id.date, R.id.checkbox,
@@ -212,7 +261,7 @@ public class FragmentSearch extends Fragment {
 			@Override
 			public boolean setViewValue(View view, Cursor c, int colIndex) {
 				switch (colIndex) {
-				// Matches order in Task.Columns.Fields
+				// Matches order in Task.Columns.SEARCH_FIELDS
 				case 1:
 					// Title
 					sTemp = c.getString(colIndex);
@@ -232,7 +281,7 @@ public class FragmentSearch extends Fragment {
 					((TitleNoteTextView) view).setTextTitle(sTemp);
 					return true;
 				case 2:
-					// Note
+					// Snippet of note
 					// Only if task it not locked
 					if (c.getInt(9) != 1) {
 						((TitleNoteTextView) view).setTextRest(c
@@ -250,4 +299,82 @@ public class FragmentSearch extends Fragment {
 			}
 		};
 	}
+
+	/**
+	 * Loads search results. Skips loads which have been superseded by a newer
+	 * search, and uses the narrower when the query extends the previous one.
+	 */
+	static class SearchLoader extends CursorLoader {
+		private final String query;
+		private final SearchNarrower narrower;
+		private final AtomicInteger generation;
+		private final int myGeneration;
+
+		public SearchLoader(final Context context, final Uri uri,
+				final String[] projection, final String query,
+				final String sortOrder, final SearchNarrower narrower,
+				final AtomicInteger generation) {
+			super(context, uri, projection, null, new String[] { query },
+					sortOrder);
+			this.query = query;
+			this.narrower = narrower;
+			this.generation = generation;
+			this.myGeneration = generation.get();
+		}
+
+		private boolean isSuperseded() {
+			return myGeneration != generation.get();
+		}
+
+		@Override
+		public Cursor loadInBackground() {
+			if (isSuperseded()) {
+				return null;
+			}
+			if (narrower == null) {
+				return super.loadInBackground();
+			}
+
+			final ContentResolver resolver = getContext().getContentResolver();
+			final Cursor narrowed = narrower.narrow(query);
+			if (narrowed != null) {
+				narrowed.setNotificationUri(resolver, Task.URI);
+				narrowed.registerContentObserver(new ForceLoadContentObserver());
+				narrowed.getCount();
+				return narrowed;
+			}
+
+			final Cursor result = super.loadInBackground();
+			if (result != null && !isSuperseded()
+					&& result.getCount() <= SearchNarrower.MAX_ROWS) {
+				final long[] ids = new long[result.getCount()];
+				while (result.moveToNext()) {
+					ids[result.getPosition()] = result.getLong(0);
+				}
+				final Cursor texts = resolver.query(Task.URI,
+						SearchNarrower.TEXT_FIELDS, Task.Columns._ID + " IN ("
+								+ DAO.arrayToCommaString(ids) + ")", null,
+						null);
+				if (texts != null) {
+					try {
+						narrower.remember(query, result, texts);
+					}
+					finally {
+						texts.close();
+					}
+				}
+				result.moveToPosition(-1);
+			}
+			return result;
+		}
+
+		@Override
+		public void onContentChanged() {
+			// Remembered results are stale now
+			if (narrower != null) {
+				narrower.clear();
+			}
+			super.onContentChanged();
+		}
+	}
 }
@@ -176,6 +176,11 @@ public class FragmentSearchDeleted extends FragmentSearch {
 		super.onCreate(savedInstanceState);
 	}
 
+	@Override
+	protected boolean isNarrowable() {
+		return false;
+	}
+
 	@Override
 	protected Uri getSearchUri() {
 		return Task.URI_DELETED_QUERY;
@@ -0,0 +1,268 @@
+package com.nononsenseapps.notepad.fragments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.nononsenseapps.notepad.database.Keyset;
+import com.nononsenseapps.notepad.database.MyContentProvider;
+import com.nononsenseapps.ui.RowTextCache;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+/**
+ * Loads tasks a page at a time, so the first rows of a long list show
+ * without reading all of it. Further pages are asked for with loadMore and
+ * start after the last loaded row, by the keyset. The pages come as one
+ * cursor which grows.
+ *
+ * On a change everything loaded so far is read again in one query. A page
+ * never ends on a section header, since the place of some headers follows
+ * the clock.
+ */
+public class PagedTaskLoader extends AsyncTaskLoader<Cursor> {
+
+	public static final int PAGE_SIZE = 100;
+
+	/**
+	 * The loaded pages. Pages are shared with the cursor of the next page,
+	 * so a replaced cursor is closed with closeExcept.
+	 */
+	static class PagedCursor extends MergeCursor {
+		final Cursor[] pages;
+		// There may be rows after the last page
+		final boolean hasMore;
+		// Result of a complete reload, not of a page
+		final boolean reloaded;
+
+		PagedCursor(final Cursor[] pages, final boolean hasMore,
+				final boolean reloaded) {
+			super(pages);
+			this.pages = pages;
+			this.hasMore = hasMore;
+			this.reloaded = reloaded;
+		}
+
+		PagedCursor plus(final Cursor page, final boolean more) {
+			if (page == null) {
+				return new PagedCursor(pages, false, false);
+			}
+			final Cursor[] result = Arrays.copyOf(pages, pages.length + 1);
+			result[pages.length] = page;
+			return new PagedCursor(result, more, false);
+		}
+
+		/**
+		 * Closes the pages not also in other.
+		 */
+		void closeExcept(final PagedCursor other) {
+			final List<Cursor> keep = other == null ? new ArrayList<Cursor>()
+					: Arrays.asList(other.pages);
+			for (final Cursor page : pages) {
+				if (page != null && !keep.contains(page)) {
+					page.close();
+				}
+			}
+		}
+	}
+
+	final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+	final Uri mUri;
+	final String[] mProjection;
+	final String mSelection;
+	final String[] mSelectionArgs;
+	final Keyset mKeyset;
+	final RowTextCache mRowTextCache;
+
+	// Only used on the main thread
+	PagedCursor mCursor;
+	boolean mPaging = false;
+
+	// Rows delivered last, read again on a change
+	volatile int mLoadedRows = 0;
+
+	// Guarded by this
+	private PagedCursor mPageAfter = null;
+	private String mPageWhere = null;
+	private String[] mPageArgs = null;
+	private boolean mChanged = false;
+
+	public PagedTaskLoader(final Context context, final Uri uri,
+			final String[] projection, final String selection,
+			final String[] selectionArgs, final Keyset keyset,
+			final RowTextCache rowTextCache) {
+		super(context);
+		mUri = uri;
+		mProjection = projection;
+		mSelection = selection;
+		mSelectionArgs = selectionArgs;
+		mKeyset = keyset;
+		mRowTextCache = rowTextCache;
+	}
+
+	/**
+	 * Loads the page after the loaded rows, if there is one and no page is
+	 * loading already.
+	 */
+	public void loadMore() {
+		if (!isStarted() || mPaging || mCursor == null || !mCursor.hasMore
+				|| mCursor.getCount() == 0) {
+			return;
+		}
+		final ArrayList<String> args = new ArrayList<String>();
+		if (mSelectionArgs != null) {
+			args.addAll(Arrays.asList(mSelectionArgs));
+		}
+		final int position = mCursor.getPosition();
+		mCursor.moveToLast();
+		final String after = mKeyset.after(mCursor, args);
+		mCursor.moveToPosition(position);
+
+		synchronized (this) {
+			mPageAfter = mCursor;
+			mPageWhere = mSelection == null ? after : "(" + mSelection
+					+ ") AND " + after;
+			mPageArgs = args.toArray(new String[args.size()]);
+		}
+		mPaging = true;
+		forceLoad();
+	}
+
+	@Override
+	public Cursor loadInBackground() {
+		final PagedCursor after;
+		final String where;
+		final String[] args;
+		synchronized (this) {
+			// A change makes the loaded pages useless
+			after = mChanged ? null : mPageAfter;
+			where = mPageWhere;
+			args = mPageArgs;
+			mPageAfter = null;
+			mPageWhere = null;
+			mPageArgs = null;
+		}
+
+		if (after != null) {
+			final Cursor page = query(where, args, PAGE_SIZE);
+			return after.plus(page,
+					page != null && page.getCount() >= PAGE_SIZE);
+		}
+
+		// All rows shown so far, in one go
+		final int limit = Math.max(PAGE_SIZE, mLoadedRows);
+		final Cursor c = query(mSelection, mSelectionArgs, limit);
+		if (c == null) {
+			return null;
+		}
+		// All pages come from the same uri, one observer is enough
+		c.registerContentObserver(mObserver);
+		return new PagedCursor(new Cursor[] { c }, c.getCount() >= limit,
+				true);
+	}
+
+	/**
+	 * Reads at least limit rows, more if the last one would be a header.
+	 * The rows are read and styled before returning.
+	 */
+	Cursor query(final String where, final String[] args, final int limit) {
+		int rows = limit;
+		while (true) {
+			final Cursor c = getContext().getContentResolver().query(
+					mUri.buildUpon()
+							.appendQueryParameter(MyContentProvider.QUERY_LIMIT,
+									Integer.toString(rows)).build(),
+					mProjection, where, args, mKeyset.getSortOrder());
+			if (c == null) {
+				return null;
+			}
+			// Fills the window
+			if (c.getCount() < rows || !c.moveToLast() || c.getLong(0) > 0) {
+				if (mRowTextCache != null) {
+					mRowTextCache.fill(c);
+				}
+				return c;
+			}
+			c.close();
+			rows += PAGE_SIZE;
+		}
+	}
+
+	@Override
+	public void onContentChanged() {
+		synchronized (this) {
+			mChanged = true;
+		}
+		super.onContentChanged();
+	}
+
+	@Override
+	public void deliverResult(final Cursor data) {
+		final PagedCursor cursor = (PagedCursor) data;
+		if (isReset()) {
+			// Pages of the old cursor are closed already
+			if (cursor != null) {
+				cursor.close();
+			}
+			return;
+		}
+		final PagedCursor old = mCursor;
+		mCursor = cursor;
+		mPaging = false;
+		if (cursor != null) {
+			mLoadedRows = cursor.getCount();
+			if (cursor.reloaded) {
+				synchronized (this) {
+					mChanged = false;
+				}
+			}
+		}
+
+		if (isStarted()) {
+			super.deliverResult(cursor);
+		}
+
+		if (old != null && old != cursor) {
+			old.closeExcept(cursor);
+		}
+	}
+
+	@Override
+	protected void onStartLoading() {
+		if (mCursor != null) {
+			deliverResult(mCursor);
+		}
+		if (takeContentChanged() || mCursor == null) {
+			forceLoad();
+		}
+	}
+
+	@Override
+	protected void onStopLoading() {
+		cancelLoad();
+	}
+
+	@Override
+	public void onCanceled(final Cursor data) {
+		mPaging = false;
+		if (data != null) {
+			((PagedCursor) data).closeExcept(mCursor);
+		}
+	}
+
+	@Override
+	protected void onReset() {
+		super.onReset();
+		onStopLoading();
+		if (mCursor != null) {
+			mCursor.close();
+		}
+		mCursor = null;
+		mPaging = false;
+	}
+}
@@ -2,6 +2,7 @@ package com.nononsenseapps.notepad.fragments;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Calendar;
 
 import com.github.espiandev.showcaseview.ShowcaseView;
@@ -31,6 +32,7 @@ import com.nononsenseapps.notepad.ActivityTaskHistory;
 import com.nononsenseapps.notepad.ActivityTaskHistory_;
 import com.nononsenseapps.notepad.core.R;
 import com.nononsenseapps.notepad.core.R.layout;
+import com.nononsenseapps.notepad.database.DraftJournal;
 import com.nononsenseapps.notepad.database.Notification;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
@@ -128,6 +130,11 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 						if (mTaskOrg == null) {
 							mTaskOrg = new Task(c);
 						}
+						// Left from a crash, saved on pause
+						if (mDraft != null) {
+							mTask.setText(mDraft.text);
+							mDraft = null;
+						}
 						fillUIFromTask();
 						// Don't want updates while editing
 						// getLoaderManager().destroyLoader(LOADER_EDITOR_TASK);
@@ -215,6 +222,9 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 	long stateId = -1;
 	@InstanceState
 	long stateListId = -1;
+	// Draft of a task which has not been saved yet
+	@InstanceState
+	String stateDraftKey = null;
 	// Dao version of the object this fragment represents
 	private Task mTask;
 	// Version when task was opened
@@ -225,6 +235,14 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 	// unlocked, otherwise good to show
 	private boolean mLocked = true;
 
+	// Write the draft at most this often while typing
+	static final long DRAFT_DELAY = 3000;
+	// Draft found when the editor was opened
+	private DraftJournal.Draft mDraft = null;
+	// Keys claimed by this editor
+	private final ArrayList<String> mDraftKeys = new ArrayList<String>();
+	private boolean mDraftPending = false;
+
 	// This is the notification we are setting a location for
 	private Notification pendingLocationNotification = null;
 
@@ -309,6 +327,9 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 
 		final Bundle args = new Bundle();
 		if (getArguments().getLong(ARG_ITEM_ID, stateId) > 0) {
+			// Before loading, so a draft is not recovered under our feet
+			mDraft = claimDraft(DraftJournal.getKey(getArguments().getLong(
+					ARG_ITEM_ID, stateId)));
 			// Load data from database
 			args.putLong(ARG_ITEM_ID,
 					getArguments().getLong(ARG_ITEM_ID, stateId));
@@ -342,6 +363,14 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 			mTask.dblist = getArguments().getLong(ARG_ITEM_LIST_ID);
 			// New note but start with the text given
 			mTask.setText(getArguments().getString(ARG_ITEM_CONTENT, ""));
+			if (stateDraftKey == null) {
+				stateDraftKey = DraftJournal.getNewKey();
+			}
+			mDraft = claimDraft(stateDraftKey);
+			if (mDraft != null) {
+				mTask.setText(mDraft.text);
+				mDraft = null;
+			}
 			fillUIFromTask();
 		}
 
@@ -417,11 +446,75 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 
 			@Override
 			public void afterTextChanged(Editable s) {
-				setShareIntent(s.toString());
+				// Copying the text and updating the share provider is
+				// expensive. Do it when the user pauses.
+				mShareIntentDirty = true;
+				taskText.removeCallbacks(mShareIntentUpdater);
+				taskText.postDelayed(mShareIntentUpdater, SHARE_INTENT_DELAY);
+
+				// Not reset by typing, so it is written while the user types
+				if (!mDraftPending) {
+					mDraftPending = true;
+					taskText.postDelayed(mDraftWriter, DRAFT_DELAY);
+				}
 			}
 		});
 	}
 
+	private final Runnable mDraftWriter = new Runnable() {
+		@Override
+		public void run() {
+			mDraftPending = false;
+			writeDraft();
+		}
+	};
+
+	private DraftJournal.Draft claimDraft(final String key) {
+		if (!mDraftKeys.contains(key)) {
+			mDraftKeys.add(key);
+		}
+		return DraftJournal.claim(getActivity(), key);
+	}
+
+	/**
+	 * Cheap save of the text, in case the app dies before it is paused
+	 */
+	void writeDraft() {
+		if (mTask == null || isLocked() || taskText == null
+				|| getActivity() == null) {
+			return;
+		}
+		final String key = mTask._id > 0 ? DraftJournal.getKey(mTask._id)
+				: stateDraftKey;
+		if (key == null) {
+			return;
+		}
+		if (!mDraftKeys.contains(key)) {
+			claimDraft(key);
+		}
+		DraftJournal.write(getActivity(), key, mTask._id, mTask.dblist,
+				taskText.getText().toString());
+	}
+
+	// Wait this long after typing before updating the share intent
+	static final long SHARE_INTENT_DELAY = 1000;
+
+	private boolean mShareIntentDirty = false;
+
+	private final Runnable mShareIntentUpdater = new Runnable() {
+		@Override
+		public void run() {
+			updateShareIntentIfDirty();
+		}
+	};
+
+	private void updateShareIntentIfDirty() {
+		if (mShareIntentDirty && taskText != null) {
+			mShareIntentDirty = false;
+			setShareIntent(taskText.getText().toString());
+		}
+	}
+
 	@Click(resName = "dueDateBox")
 	void onDateClick() {
 		final Calendar localTime = Calendar.getInstance();
@@ -765,6 +858,7 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 		menu.findItem(R.id.menu_unlock).setVisible(
 				mTask != null && mTask.locked);
 		menu.findItem(R.id.menu_share).setEnabled(!isLocked());
+		updateShareIntentIfDirty();
 
 		if (getActivity() instanceof MenuStateController) {
 			final boolean visible = ((MenuStateController) getActivity())
@@ -908,7 +1002,16 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 			return;
 		}
 
+		if (taskText != null) {
+			taskText.removeCallbacks(mShareIntentUpdater);
+			taskText.removeCallbacks(mDraftWriter);
+			mDraftPending = false;
+		}
 		saveTask();
+		// Saved for real, or reverted
+		for (final String key : mDraftKeys) {
+			DraftJournal.discard(getActivity(), key);
+		}
 		// Set locked again
 		mLocked = true;
 		// If task is actually locked, remove text
@@ -931,6 +1034,15 @@ public class TaskDetailFragment extends Fragment implements OnDateSetListener {
 		}
 	}
 
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		for (final String key : mDraftKeys) {
+			DraftJournal.release(key);
+		}
+		mDraftKeys.clear();
+	}
+
 	@Override
 	public void onDetach() {
 		super.onDetach();
@@ -3,10 +3,9 @@ package com.nononsenseapps.notepad.fragments;
 import java.security.InvalidParameterException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 
 import org.androidannotations.annotations.AfterViews;
-import org.androidannotations.annotations.Background;
 import org.androidannotations.annotations.EFragment;
 import org.androidannotations.annotations.SystemService;
 import org.androidannotations.annotations.ViewById;
@@ -16,17 +15,22 @@ import com.mobeta.android.dslv.DragSortListView.RemoveListener;
 import com.mobeta.android.dslv.SimpleDragSortCursorAdapter;
 import com.mobeta.android.dslv.DragSortListView;
 import com.mobeta.android.dslv.SimpleDragSortCursorAdapter.ViewBinder;
+import com.nononsenseapps.helpers.StartupPipeline;
 import com.nononsenseapps.helpers.TimeFormatter;
 import com.nononsenseapps.notepad.ActivityMain;
 import com.nononsenseapps.notepad.core.R;
+import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.Keyset;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
 import com.nononsenseapps.notepad.fragments.DialogConfirmBase.DialogConfirmedListener;
 import com.nononsenseapps.notepad.fragments.DialogPassword.PasswordConfirmedListener;
 import com.nononsenseapps.notepad.interfaces.MenuStateController;
 import com.nononsenseapps.notepad.interfaces.OnFragmentInteractionListener;
+import com.nononsenseapps.notepad.services.TaskBulkService;
 import com.nononsenseapps.ui.DateView;
 import com.nononsenseapps.ui.NoteCheckBox;
+import com.nononsenseapps.ui.RowTextCache;
 import com.nononsenseapps.utils.views.TitleNoteTextView;
 
 import android.app.Activity;
@@ -53,7 +57,9 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AbsListView.MultiChoiceModeListener;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemLongClickListener;
 import android.widget.CompoundButton;
@@ -92,6 +98,8 @@ public class TaskListFragment extends Fragment implements
 	private String mSortType = null;
 
 	private int mRowCount = 3;
+	// Styled row texts, made when the tasks are loaded
+	private RowTextCache mRowTextCache = null;
 	private boolean mHideCheckbox = false;
 
 	private String mListType = null;
@@ -226,12 +234,21 @@ public class TaskListFragment extends Fragment implements
 						((TitleNoteTextView) view).useSecondaryColor(!c
 								.isNull(3));
 
+						if (mRowTextCache != null) {
+							// Title and note at once, usually already styled
+							final String title = RowTextCache.getTitle(c);
+							final String rest = mRowTextCache.getRest(c);
+							((TitleNoteTextView) view).setPrebuiltText(title,
+									rest, mRowTextCache.get(c.getLong(0),
+											c.getLong(5), title, rest));
+							return true;
+						}
 					}
 					((TitleNoteTextView) view).setTextTitle(sTemp);
 					return true;
 				case 2:
 					// Note
-					if (!isHeader) {
+					if (!isHeader && mRowTextCache == null) {
 						// Only if task it not locked
 						// or only one line
 						if (c.getInt(9) != 1 && mRowCount > 1) {
@@ -316,6 +333,8 @@ public class TaskListFragment extends Fragment implements
 		mHideCheckbox = prefs.getBoolean(
 				getString(R.string.pref_hidecheckboxes), false);
 
+		mRowTextCache = new RowTextCache(mAdapter.getRowStyler(), mRowCount);
+
 		// mSortType = prefs.getString(getString(R.string.pref_sorttype),
 		// getString(R.string.default_sorttype));
 		// mListType = prefs.getString(getString(R.string.pref_listtype),
@@ -332,7 +351,8 @@ public class TaskListFragment extends Fragment implements
 				else {
 					// What sorting to use
 					Uri targetUri;
-					String sortSpec;
+					String[] projection = Task.Columns.FIELDS;
+					Keyset keyset;
 					if (mListType == null) {
 						mListType = prefs.getString(
 								getString(R.string.pref_listtype),
@@ -346,23 +366,31 @@ public class TaskListFragment extends Fragment implements
 					}
 					if (mSortType.equals(getString(R.string.const_alphabetic))) {
 						targetUri = Task.URI;
-						sortSpec = getString(R.string.const_as_alphabetic,
-								Task.Columns.TITLE);
+						keyset = new Keyset().add(
+								getString(R.string.const_as_alphabetic,
+										Task.Columns.TITLE),
+								Task.Columns.TITLE, false);
 					}
 					else if (mSortType
 							.equals(getString(R.string.const_duedate))) {
 						targetUri = Task.URI_SECTIONED_BY_DATE;
-						sortSpec = null;
+						// Pages continue after the section columns too
+						projection = DAO.joinArrays(Task.Columns.FIELDS,
+								new String[] { Task.SECRET_TYPEID,
+										Task.SECRET_TYPEID2 });
+						keyset = new Keyset().asc(Task.SECRET_TYPEID)
+								.asc(Task.Columns.DUE)
+								.asc(Task.SECRET_TYPEID2);
 					}
 					else if (mSortType
 							.equals(getString(R.string.const_modified))) {
 						targetUri = Task.URI;
-						sortSpec = Task.Columns.UPDATED + " DESC";
+						keyset = new Keyset().desc(Task.Columns.UPDATED);
 					}
 					// manual sorting
 					else {
 						targetUri = Task.URI;
-						sortSpec = Task.Columns.LEFT;
+						keyset = new Keyset().asc(Task.Columns.LEFT);
 					}
 
 					String where = null;
@@ -374,7 +402,8 @@ public class TaskListFragment extends Fragment implements
 					}
 					else {
 						targetUri = Task.URI;
-						sortSpec = Task.Columns.DUE;
+						projection = Task.Columns.FIELDS;
+						keyset = new Keyset().asc(Task.Columns.DUE);
 						whereArgs = null;
 						where = Task.Columns.COMPLETED + " IS NULL";
 						switch ((int) mListId) {
@@ -395,8 +424,9 @@ public class TaskListFragment extends Fragment implements
 						}
 					}
 
-					return new CursorLoader(getActivity(), targetUri,
-							Task.Columns.FIELDS, where, whereArgs, sortSpec);
+					return new PagedTaskLoader(getActivity(), targetUri,
+							projection, where, whereArgs, keyset,
+							mRowTextCache);
 				}
 			}
 
@@ -413,6 +443,7 @@ public class TaskListFragment extends Fragment implements
 				}
 				else {
 					mAdapter.swapCursor(c);
+					StartupPipeline.firstListLoaded();
 				}
 			}
 
@@ -488,6 +519,29 @@ public class TaskListFragment extends Fragment implements
 			}
 		});
 
+		listView.setOnScrollListener(new OnScrollListener() {
+			@Override
+			public void onScrollStateChanged(AbsListView view, int scrollState) {
+			}
+
+			@Override
+			public void onScroll(AbsListView view, int firstVisibleItem,
+					int visibleItemCount, int totalItemCount) {
+				// Next page before the end is reached, but not while a page
+				// would cancel a drag
+				if (totalItemCount == 0
+						|| mAdapter.dragging
+						|| firstVisibleItem + visibleItemCount < totalItemCount
+								- PagedTaskLoader.PAGE_SIZE / 2) {
+					return;
+				}
+				final Loader<Cursor> loader = getLoaderManager().getLoader(1);
+				if (loader instanceof PagedTaskLoader) {
+					((PagedTaskLoader) loader).loadMore();
+				}
+			}
+		});
+
 		listView.setOnItemLongClickListener(new OnItemLongClickListener() {
 			@Override
 			public boolean onItemLongClick(AdapterView<?> arg0, View view,
@@ -500,19 +554,15 @@ public class TaskListFragment extends Fragment implements
 		});
 
 		listView.setMultiChoiceModeListener(new MultiChoiceModeListener() {
-			final HashMap<Long, Task> tasks = new HashMap<Long, Task>();
+			// Only ids are kept, tasks are read when needed
+			final HashSet<Long> tasks = new HashSet<Long>();
+			final HashSet<Long> lockedTasks = new HashSet<Long>();
 			// ActionMode mMode;
 			final PasswordConfirmedListener pListener = new PasswordConfirmedListener() {
 				@Override
-				@Background
 				public void onPasswordConfirmed() {
-					for (final Task t : tasks.values()) {
-						try {
-							t.delete(getActivity());
-						}
-						catch (Exception e) {
-						}
-					}
+					// Deleted in one go in the background
+					TaskBulkService.delete(getActivity(), getIdArray());
 					try {
 						Toast.makeText(
 								getActivity(),
@@ -541,6 +591,7 @@ public class TaskListFragment extends Fragment implements
 				// the CAB is removed. By default, selected items are
 				// deselected/unchecked.
 				tasks.clear();
+				lockedTasks.clear();
 			}
 
 			@Override
@@ -551,6 +602,7 @@ public class TaskListFragment extends Fragment implements
 
 				// Must clear for reuse
 				tasks.clear();
+				lockedTasks.clear();
 
 				// For password
 				mMode = mode;
@@ -582,14 +634,7 @@ public class TaskListFragment extends Fragment implements
 					}
 					finish = true;
 				} else if (itemId == R.id.menu_delete) {
-					boolean locked = false;
-					for (final Task t : tasks.values()) {
-						if (t.locked) {
-							locked = true;
-							break;
-						}
-					}
-					if (locked) {
+					if (!lockedTasks.isEmpty()) {
 						DialogPassword_ delpf = new DialogPassword_();
 						delpf.setListener(pListener);
 						delpf.show(getFragmentManager(), "multi_delete_verify");
@@ -605,9 +650,12 @@ public class TaskListFragment extends Fragment implements
 					}
 				} else if (itemId == R.id.menu_switch_list) {
 					// show move to list dialog
-					DialogMoveToList.getInstance(
-							tasks.keySet().toArray(new Long[tasks.size()]))
-							.show(getFragmentManager(), "move_to_list_dialog");
+					DialogMoveToList.getInstance(getIdArray()).show(
+							getFragmentManager(), "move_to_list_dialog");
+					finish = true;
+				} else if (itemId == R.id.menu_complete) {
+					TaskBulkService.setCompleted(getActivity(), true,
+							getIdArray());
 					finish = true;
 				} else if (itemId == R.id.menu_share) {
 					startActivity(getShareIntent());
@@ -624,11 +672,16 @@ public class TaskListFragment extends Fragment implements
 			public void onItemCheckedStateChanged(ActionMode mode,
 					int position, long id, boolean checked) {
 				if (checked) {
-					tasks.put(id, new Task((Cursor) listView.getAdapter()
-							.getItem(position)));
+					tasks.add(id);
+					final Cursor c = (Cursor) listView.getAdapter().getItem(
+							position);
+					if (c.getInt(c.getColumnIndex(Task.Columns.LOCKED)) == 1) {
+						lockedTasks.add(id);
+					}
 				}
 				else {
 					tasks.remove(id);
+					lockedTasks.remove(id);
 				}
 
 				try {
@@ -649,35 +702,77 @@ public class TaskListFragment extends Fragment implements
 				}
 			}
 
+			long[] getIdArray() {
+				final long[] result = new long[tasks.size()];
+				int i = 0;
+				for (final long id : tasks) {
+					result[i++] = id;
+				}
+				return result;
+			}
+
+			/**
+			 * Reads the selected tasks in one query, in list order.
+			 */
+			Cursor querySelected() {
+				return getActivity().getContentResolver().query(
+						Task.URI,
+						new String[] { Task.Columns.TITLE, Task.Columns.NOTE,
+								Task.Columns.LOCKED },
+						Task.Columns._ID + " IN ("
+								+ DAO.arrayToCommaString(getIdArray()) + ")",
+						null, Task.Columns.DBLIST + "," + Task.Columns.LEFT);
+			}
+
 			String getShareText() {
+				return getShareText(null);
+			}
+
+			/**
+			 * Returns the text of selected tasks. If subject is given, the
+			 * titles are appended to it.
+			 */
+			String getShareText(final StringBuilder subject) {
 				final StringBuilder sb = new StringBuilder();
-				for (Task t : tasks.values()) {
-					if (sb.length() > 0) {
-						sb.append("\n\n");
-					}
-					if (t.locked) {
-						sb.append(t.title);
-					}
-					else {
-						sb.append(t.getText());
+				final Cursor c = querySelected();
+				if (c == null) {
+					return "";
+				}
+				try {
+					while (c.moveToNext()) {
+						final String title = c.getString(0);
+						final String note = c.getString(1);
+						if (sb.length() > 0) {
+							sb.append("\n\n");
+						}
+						sb.append(title);
+						// Only title of locked tasks
+						if (c.getInt(2) != 1 && note != null && !note.isEmpty()) {
+							if (title.length() > 0) {
+								sb.append("\n");
+							}
+							sb.append(note);
+						}
+						if (subject != null) {
+							if (subject.length() > 0) {
+								subject.append(", ");
+							}
+							subject.append(title);
+						}
 					}
 				}
-				return sb.toString();
-			}
-			
-			String getShareSubject() {
-				String result = "";
-				for (Task t: tasks.values()) {
-					result += ", " + t.title;
+				finally {
+					c.close();
 				}
-				return result.length() > 0 ? result.substring(2) : result;
+				return sb.toString();
 			}
 
 			Intent getShareIntent() {
+				final StringBuilder subject = new StringBuilder();
 				final Intent shareIntent = new Intent(Intent.ACTION_SEND);
 				shareIntent.setType("text/plain");
-				shareIntent.putExtra(Intent.EXTRA_TEXT, getShareText());
-				shareIntent.putExtra(Intent.EXTRA_SUBJECT, getShareSubject());
+				shareIntent.putExtra(Intent.EXTRA_TEXT, getShareText(subject));
+				shareIntent.putExtra(Intent.EXTRA_SUBJECT, subject.toString());
 				shareIntent
 						.addFlags(Intent.FLAG_ACTIVITY_CLEAR_WHEN_TASK_RESET);
 				return shareIntent;
@@ -772,6 +867,8 @@ public class TaskListFragment extends Fragment implements
 		final static int headerType = 1;
 		final SharedPreferences prefs;
 		final Context context;
+		// A row is being dragged, the rows must not change
+		boolean dragging = false;
 
 		public SimpleSectionsAdapter(Context context, int layout,
 				int headerLayout, Cursor c, String[] from, int[] to, int flags) {
@@ -793,19 +890,34 @@ public class TaskListFragment extends Fragment implements
 
 		@Override
 		public void remove(int which) {
+			dragging = false;
 			if (removeListener != null) removeListener.remove(which);
 			super.remove(which);
 
 		}
 
+		@Override
+		public void drag(int from, int to) {
+			dragging = true;
+			super.drag(from, to);
+		}
+
 		@Override
 		public void drop(int from, int to) {
+			dragging = false;
 			// Call any listener that has been defined
 			if (dropListener != null) dropListener.drop(from, to);
 			// Call super to handle UI mapping (for smoothness)
 			super.drop(from, to);
 		}
 
+		@Override
+		public Cursor swapCursor(Cursor newCursor) {
+			// Changed rows end the drag
+			dragging = false;
+			return super.swapCursor(newCursor);
+		}
+
 		public void setDropListener(DropListener dropListener) {
 			this.dropListener = dropListener;
 		}
@@ -844,6 +956,18 @@ public class TaskListFragment extends Fragment implements
 			return super.getView(position, convertView, parent);
 		}
 
+		/**
+		 * Returns how the text of rows will be styled, by making a row.
+		 */
+		TitleNoteTextView.Styler getRowStyler() {
+			final View row = LayoutInflater.from(mContext).inflate(
+					mItemLayout, null, false);
+			final TitleNoteTextView view = (TitleNoteTextView) row
+					.findViewById(android.R.id.text1);
+			setPrefsOnView(view);
+			return view.getStyler();
+		}
+
 		private void setPrefsOnView(final TitleNoteTextView view) {
 			view.setTitleFontFamily(Integer.parseInt(prefs.getString(
 					context.getString(R.string.pref_list_title_fontfamily), "1")));
@@ -872,6 +996,9 @@ public class TaskListFragment extends Fragment implements
 		}
 		else if (key.equals(getString(R.string.key_pref_item_max_height))) {
 			mRowCount = prefs.getInt(key, 3);
+			if (mRowTextCache != null) {
+				mRowTextCache.setMaxLines(mRowCount);
+			}
 			reload = true;
 		}
 		else if (key.equals(getString(R.string.pref_hidecheckboxes))) {
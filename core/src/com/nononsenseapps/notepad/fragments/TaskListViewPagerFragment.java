@@ -1,5 +1,7 @@
 package com.nononsenseapps.notepad.fragments;
 
+import java.util.HashMap;
+
 import org.androidannotations.annotations.AfterViews;
 import org.androidannotations.annotations.EFragment;
 import org.androidannotations.annotations.SystemService;
@@ -347,6 +349,11 @@ public class TaskListViewPagerFragment extends Fragment implements
 
 		private long all_id = -2;
 
+		// List ids by position and positions by id. Rebuilt when the data
+		// changes, instead of reading the cursor for every lookup.
+		private long[] ids = new long[0];
+		private final HashMap<Long, Integer> positions = new HashMap<Long, Integer>();
+
 		public SectionsPagerAdapter(final FragmentManager fm,
 				final CursorAdapter wrappedAdapter) {
 			super(fm);
@@ -361,6 +368,7 @@ public class TaskListViewPagerFragment extends Fragment implements
 				@Override
 				public void onInvalidated() {
 					// Probably destroying the loader
+					buildIndex();
 				}
 			};
 
@@ -389,6 +397,37 @@ public class TaskListViewPagerFragment extends Fragment implements
 			// Set all value
 			all_id = prefs.getLong(TaskListFragment.LIST_ALL_ID_PREF_KEY,
 					TaskListFragment.LIST_ID_WEEK);
+			buildIndex();
+		}
+
+		@Override
+		public void notifyDataSetChanged() {
+			// Pager asks for positions of all fragments after this
+			buildIndex();
+			super.notifyDataSetChanged();
+		}
+
+		/**
+		 * Reads the ids of the lists once. Position 0 is always the all_id.
+		 */
+		private void buildIndex() {
+			final Cursor c = wrappedAdapter == null ? null : wrappedAdapter
+					.getCursor();
+			final int count = 1 + (c == null ? 0 : c.getCount());
+			if (ids.length != count) {
+				ids = new long[count];
+			}
+			positions.clear();
+
+			ids[0] = all_id;
+			positions.put(all_id, 0);
+			if (c != null) {
+				final int idIndex = c.getColumnIndex(TaskList.Columns._ID);
+				for (int pos = 1; pos < count && c.moveToPosition(pos - 1); pos++) {
+					ids[pos] = c.getLong(idIndex);
+					positions.put(ids[pos], pos);
+				}
+			}
 		}
 
 		public void destroy() {
@@ -411,22 +450,15 @@ public class TaskListViewPagerFragment extends Fragment implements
 
 		@Override
 		public long getItemId(int position) {
-			long id = all_id;
-			if (wrappedAdapter != null && position > 0) {
-				Cursor c = (Cursor) wrappedAdapter.getItem(position - 1);
-				if (c != null && !c.isAfterLast() && !c.isBeforeFirst()) {
-					id = c.getLong(0);
-				}
+			if (position > 0 && position < ids.length) {
+				return ids[position];
 			}
-			return id;
+			return all_id;
 		}
 
 		@Override
 		public int getCount() {
-			if (wrappedAdapter != null)
-				return 1 + wrappedAdapter.getCount();
-			else
-				return 1;
+			return ids.length;
 		}
 
 		@Override
@@ -482,17 +514,8 @@ public class TaskListViewPagerFragment extends Fragment implements
 		 * Returns a negative number if id wasn't found in adapter
 		 */
 		public int getItemPosition(final long listId) {
-			int length = getCount();
-			int result = POSITION_NONE;
-			int position;
-			for (position = 0; position < length; position++) {
-				if (listId == getItemId(position)) {
-					result = position;
-					break;
-				}
-			}
-
-			return result;
+			final Integer position = positions.get(listId);
+			return position == null ? POSITION_NONE : position;
 		}
 	}
 }
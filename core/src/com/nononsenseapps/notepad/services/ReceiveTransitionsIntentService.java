@@ -6,6 +6,7 @@ import org.androidannotations.annotations.EService;
 import com.nononsenseapps.helpers.NotificationHelper;
 import com.nononsenseapps.notepad.ActivityMain_;
 import com.nononsenseapps.notepad.core.R;
+import com.nononsenseapps.util.GeofenceManager;
 import com.nononsenseapps.util.GeofenceUtils;
 import com.nononsenseapps.util.LocationServiceErrorMessages;
 
@@ -20,6 +21,7 @@ import android.support.v4.content.LocalBroadcastManager;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -96,8 +98,18 @@ public class ReceiveTransitionsIntentService extends IntentService {
 				Log.d("nononsenseapps geofence receivetransition", "Transition");
 
 				// Post a notification
-				List<Geofence> geofences = LocationClient
-						.getTriggeringGeofences(intent);
+				List<Geofence> geofences = new ArrayList<Geofence>();
+				for (Geofence geofence : LocationClient
+						.getTriggeringGeofences(intent)) {
+					if (GeofenceManager.RERANK_ID.equals(geofence
+							.getRequestId())) {
+						// Moved far enough for other fences to be nearer
+						GeofenceManager.update(getApplicationContext());
+					}
+					else {
+						geofences.add(geofence);
+					}
+				}
 				String[] geofenceIds = new String[geofences.size()];
 				long[] notificationIds = new long[geofences.size()];
 				for (int index = 0; index < geofences.size(); index++) {
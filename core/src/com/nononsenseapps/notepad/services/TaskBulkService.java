@@ -0,0 +1,210 @@
+package com.nononsenseapps.notepad.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.MyContentProvider;
+import com.nononsenseapps.notepad.database.Task;
+
+import android.app.IntentService;
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.util.Log;
+
+/**
+ * Deletes, completes, moves or copies many tasks at once, off the UI thread.
+ * Every request is applied as one batch: one transaction, and one
+ * notification when done.
+ */
+public class TaskBulkService extends IntentService {
+
+	private static final String TAG = "nononsenseapps TaskBulkService";
+
+	public static final String ACTION_DELETE = "com.nononsenseapps.notepad.bulk.DELETE";
+	public static final String ACTION_COMPLETE = "com.nononsenseapps.notepad.bulk.COMPLETE";
+	public static final String ACTION_UNCOMPLETE = "com.nononsenseapps.notepad.bulk.UNCOMPLETE";
+	public static final String ACTION_MOVE = "com.nononsenseapps.notepad.bulk.MOVE";
+	public static final String ACTION_COPY = "com.nononsenseapps.notepad.bulk.COPY";
+
+	public static final String EXTRA_TASK_IDS = "task_ids";
+	public static final String EXTRA_LIST_ID = "list_id";
+
+	// Ids per statement. Keeps the sql short.
+	static final int CHUNK_SIZE = 200;
+
+	public TaskBulkService() {
+		super("TaskBulkService");
+	}
+
+	public static void delete(final Context context, final long... taskIds) {
+		start(context, ACTION_DELETE, -1, taskIds);
+	}
+
+	public static void setCompleted(final Context context,
+			final boolean completed, final long... taskIds) {
+		start(context, completed ? ACTION_COMPLETE : ACTION_UNCOMPLETE, -1,
+				taskIds);
+	}
+
+	public static void move(final Context context, final long toListId,
+			final long... taskIds) {
+		start(context, ACTION_MOVE, toListId, taskIds);
+	}
+
+	public static void copy(final Context context, final long toListId,
+			final long... taskIds) {
+		start(context, ACTION_COPY, toListId, taskIds);
+	}
+
+	private static void start(final Context context, final String action,
+			final long listId, final long... taskIds) {
+		if (taskIds == null || taskIds.length == 0) {
+			return;
+		}
+		final Intent intent = new Intent(context, TaskBulkService.class);
+		intent.setAction(action);
+		intent.putExtra(EXTRA_TASK_IDS, taskIds);
+		intent.putExtra(EXTRA_LIST_ID, listId);
+		context.startService(intent);
+	}
+
+	@Override
+	protected void onHandleIntent(final Intent intent) {
+		final String action = intent.getAction();
+		final long[] taskIds = intent.getLongArrayExtra(EXTRA_TASK_IDS);
+		final long listId = intent.getLongExtra(EXTRA_LIST_ID, -1);
+		if (action == null || taskIds == null || taskIds.length == 0) {
+			return;
+		}
+
+		final ArrayList<ContentProviderOperation> ops;
+		if (ACTION_DELETE.equals(action)) {
+			ops = getDeleteOperations(taskIds);
+		}
+		else if (ACTION_COMPLETE.equals(action)) {
+			ops = getCompleteOperations(true, taskIds);
+		}
+		else if (ACTION_UNCOMPLETE.equals(action)) {
+			ops = getCompleteOperations(false, taskIds);
+		}
+		else if (ACTION_MOVE.equals(action) && listId > 0) {
+			ops = getMoveOperations(listId, taskIds);
+		}
+		else if (ACTION_COPY.equals(action) && listId > 0) {
+			ops = getCopyOperations(this, listId, taskIds);
+		}
+		else {
+			Log.d(TAG, "Unknown action: " + action);
+			return;
+		}
+
+		try {
+			getContentResolver().applyBatch(MyContentProvider.AUTHORITY, ops);
+		}
+		catch (Exception e) {
+			// Batch is rolled back as a whole
+			Log.e(TAG, "Bulk " + action + " failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * _id IN (...) for each chunk of ids
+	 */
+	static ArrayList<String> getWhereIdIn(final long... taskIds) {
+		final ArrayList<String> result = new ArrayList<String>();
+		for (int i = 0; i < taskIds.length; i += CHUNK_SIZE) {
+			final long[] chunk = Arrays.copyOfRange(taskIds, i,
+					Math.min(taskIds.length, i + CHUNK_SIZE));
+			result.add(Task.Columns._ID + " IN ("
+					+ DAO.arrayToCommaString(chunk) + ")");
+		}
+		return result;
+	}
+
+	public static ArrayList<ContentProviderOperation> getDeleteOperations(
+			final long... taskIds) {
+		final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		for (final String where : getWhereIdIn(taskIds)) {
+			ops.add(ContentProviderOperation.newDelete(Task.URI)
+					.withSelection(where, null).build());
+		}
+		return ops;
+	}
+
+	public static ArrayList<ContentProviderOperation> getCompleteOperations(
+			final boolean completed, final long... taskIds) {
+		final long now = Calendar.getInstance().getTimeInMillis();
+		final ContentValues values = new ContentValues();
+		values.put(Task.Columns.COMPLETED, completed ? now : null);
+		values.put(Task.Columns.UPDATED, now);
+
+		final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		for (final String where : getWhereIdIn(taskIds)) {
+			// Only touch tasks which actually change
+			ops.add(ContentProviderOperation
+					.newUpdate(Task.URI)
+					.withValues(values)
+					.withSelection(
+							where + " AND " + Task.Columns.COMPLETED
+									+ (completed ? " IS NULL" : " IS NOT NULL"),
+							null).build());
+		}
+		return ops;
+	}
+
+	public static ArrayList<ContentProviderOperation> getMoveOperations(
+			final long toListId, final long... taskIds) {
+		final ContentValues values = new ContentValues();
+		values.put(Task.Columns.DBLIST, toListId);
+
+		final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		for (final String where : getWhereIdIn(taskIds)) {
+			// Moving within the same list would only reorder it
+			ops.add(ContentProviderOperation
+					.newUpdate(Task.URI)
+					.withValues(values)
+					.withSelection(
+							where + " AND " + Task.Columns.DBLIST + " IS NOT ?",
+							new String[] { Long.toString(toListId) }).build());
+		}
+		return ops;
+	}
+
+	/**
+	 * Returns one insert per task. New tasks are placed first in the list, so
+	 * the tasks are inserted last to first to keep their order.
+	 */
+	public static ArrayList<ContentProviderOperation> getCopyOperations(
+			final Context context, final long toListId, final long... taskIds) {
+		final long now = Calendar.getInstance().getTimeInMillis();
+		final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>(
+				taskIds.length);
+		final Cursor c = context.getContentResolver().query(
+				Task.URI,
+				Task.Columns.FIELDS,
+				Task.Columns._ID + " IN (" + DAO.arrayToCommaString(taskIds)
+						+ ")", null, Task.Columns.LEFT + " DESC");
+		if (c == null) {
+			return ops;
+		}
+		try {
+			while (c.moveToNext()) {
+				final Task t = new Task(c);
+				t.resetForInsertion();
+				t.dblist = toListId;
+				t.updated = now;
+				ops.add(ContentProviderOperation.newInsert(Task.URI)
+						.withValues(t.getContent()).build());
+			}
+		}
+		finally {
+			c.close();
+		}
+		return ops;
+	}
+}
@@ -0,0 +1,60 @@
+package com.nononsenseapps.notepad.services;
+
+import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.DatabaseHandler;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TrashPurger;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Purges old tasks from the trash once a day. Work is done by
+ * {@link TrashPurger}.
+ */
+public class TrashPurgeService extends IntentService {
+
+	private static final String TAG = "nononsenseapps TrashPurgeService";
+	private static final int REQUEST_CODE = 38476;
+
+	public TrashPurgeService() {
+		super("TrashPurgeService");
+	}
+
+	/**
+	 * Schedule a daily purge unless one is already scheduled. Inexact, so the
+	 * system can batch it with other alarms. Does not wake the device.
+	 */
+	public static void schedule(final Context context) {
+		final Intent intent = new Intent(context, TrashPurgeService.class);
+		if (PendingIntent.getService(context, REQUEST_CODE, intent,
+				PendingIntent.FLAG_NO_CREATE) != null) {
+			// Already scheduled
+			return;
+		}
+
+		final PendingIntent pendingIntent = PendingIntent.getService(context,
+				REQUEST_CODE, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+		final AlarmManager am = (AlarmManager) context
+				.getSystemService(Context.ALARM_SERVICE);
+		am.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+				SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_HOUR,
+				AlarmManager.INTERVAL_DAY, pendingIntent);
+		Log.d(TAG, "Scheduled purge");
+	}
+
+	@Override
+	protected void onHandleIntent(Intent intent) {
+		final int purged = new TrashPurger(DatabaseHandler.getInstance(this)
+				.getWritableDatabase()).purge();
+
+		if (purged > 0) {
+			DAO.notifyProviderOnChange(this, Task.URI_DELETED_QUERY);
+		}
+	}
+}
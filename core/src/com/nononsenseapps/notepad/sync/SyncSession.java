@@ -0,0 +1,270 @@
+package com.nononsenseapps.notepad.sync;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.MyContentProvider;
+import com.nononsenseapps.notepad.database.RemoteTask;
+import com.nononsenseapps.notepad.database.RemoteTaskList;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+
+/**
+ * Local database access for one sync, through the provider client given to
+ * the sync adapter. Writes are queued, and flush() applies them as one
+ * transaction which notifies observers once. Ids of inserted objects are set
+ * by flush(). Queries only see flushed writes.
+ *
+ * Remote exceptions are thrown as runtime exceptions, since the provider is
+ * in the same process.
+ */
+public class SyncSession {
+
+	private final ContentProviderClient mProvider;
+	// Only released if acquired here
+	private final boolean mRelease;
+
+	private final ArrayList<ContentProviderOperation> mOps = new ArrayList<ContentProviderOperation>();
+	// Object written by each operation, null for deletes
+	private final ArrayList<DAO> mItems = new ArrayList<DAO>();
+	// Queued inserts and their operation
+	private final IdentityHashMap<DAO, Integer> mInserts = new IdentityHashMap<DAO, Integer>();
+	// Remote objects whose dbid is a queued insert, and that insert
+	private final ArrayList<DAO> mLinkedRemotes = new ArrayList<DAO>();
+	private final ArrayList<DAO> mLinkedLocals = new ArrayList<DAO>();
+
+	private long mDbNanos = 0;
+	private int mReads = 0;
+	private int mWrites = 0;
+
+	public SyncSession(final ContentProviderClient provider) {
+		mProvider = provider;
+		mRelease = false;
+	}
+
+	/**
+	 * Acquires a client of its own, call close() when done.
+	 */
+	public SyncSession(final Context context) {
+		mProvider = context.getContentResolver()
+				.acquireContentProviderClient(MyContentProvider.AUTHORITY);
+		mRelease = true;
+	}
+
+	/**
+	 * Releases the client if it was acquired here. Queued writes are lost.
+	 */
+	public void close() {
+		clear();
+		if (mRelease) {
+			mProvider.release();
+		}
+	}
+
+	/**
+	 * Milliseconds spent in the database so far
+	 */
+	public long getDbMillis() {
+		return mDbNanos / 1000000;
+	}
+
+	/**
+	 * Queries made so far
+	 */
+	public int getReads() {
+		return mReads;
+	}
+
+	/**
+	 * Operations applied so far
+	 */
+	public int getWrites() {
+		return mWrites;
+	}
+
+	/**
+	 * The cursor is filled here, so the time is counted.
+	 */
+	public Cursor query(final Uri uri, final String[] projection,
+			final String selection, final String[] selectionArgs,
+			final String sortOrder) {
+		final long start = System.nanoTime();
+		mReads++;
+		try {
+			final Cursor c = mProvider.query(uri, projection, selection,
+					selectionArgs, sortOrder);
+			if (c != null) {
+				c.getCount();
+			}
+			return c;
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Query failed: " + uri, e);
+		}
+		finally {
+			mDbNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Same as Task.save(context, updated)
+	 */
+	public void save(final Task task, final long updated) {
+		task.updated = updated;
+		queue(task, task._id < 1 ? task.getContent() : task
+				.getChangedContent());
+	}
+
+	/**
+	 * Same as TaskList.save(context, updated)
+	 */
+	public void save(final TaskList list, final long updated) {
+		list.updated = updated;
+		queue(list, list.getContent());
+	}
+
+	public void save(final RemoteTask remote) {
+		queue(remote, remote.getContent());
+	}
+
+	public void save(final RemoteTaskList remote) {
+		queue(remote, remote.getContent());
+	}
+
+	/**
+	 * Saves remote with the id of task as dbid, also if task is not inserted
+	 * yet.
+	 */
+	public void save(final RemoteTask remote, final Task task) {
+		remote.dbid = task._id;
+		queue(remote, remote.getContent(), RemoteTask.Columns.DBID, task);
+	}
+
+	/**
+	 * Saves remote with the id of list as dbid, also if list is not inserted
+	 * yet.
+	 */
+	public void save(final RemoteTaskList remote, final TaskList list) {
+		remote.dbid = list._id;
+		queue(remote, remote.getContent(), RemoteTaskList.Columns.DBID, list);
+	}
+
+	public void delete(final DAO item) {
+		if (item._id > 0) {
+			mOps.add(ContentProviderOperation.newDelete(item.getUri()).build());
+			mItems.add(null);
+		}
+	}
+
+	private void queue(final DAO item, final ContentValues values) {
+		queue(item, values, null, null);
+	}
+
+	/**
+	 * Queues an insert or update. If local is a queued insert, its id is put
+	 * in the idColumn.
+	 */
+	private void queue(final DAO item, final ContentValues values,
+			final String idColumn, final DAO local) {
+		final Integer localOp = local == null ? null : mInserts.get(local);
+		if (localOp != null) {
+			values.remove(idColumn);
+		}
+		else if (values.size() == 0) {
+			// Nothing changed
+			return;
+		}
+
+		final ContentProviderOperation.Builder builder;
+		if (item._id > 0) {
+			builder = ContentProviderOperation.newUpdate(item.getUri());
+		}
+		else {
+			builder = ContentProviderOperation.newInsert(item.getBaseUri());
+		}
+		builder.withValues(values);
+		if (localOp != null) {
+			builder.withValueBackReference(idColumn, localOp);
+			mLinkedRemotes.add(item);
+			mLinkedLocals.add(local);
+		}
+
+		final Integer queued = mInserts.get(item);
+		if (queued != null) {
+			// Saved again before being inserted, a reference must point back
+			if (localOp != null && localOp > queued) {
+				throw new IllegalStateException("Insert queued before "
+						+ idColumn);
+			}
+			mOps.set(queued, builder.build());
+		}
+		else {
+			if (item._id < 1) {
+				mInserts.put(item, mOps.size());
+			}
+			mOps.add(builder.build());
+			mItems.add(item);
+		}
+	}
+
+	/**
+	 * Applies the queued writes in one transaction. If it fails, nothing is
+	 * written and the queue is cleared.
+	 */
+	public void flush() {
+		if (mOps.isEmpty()) {
+			return;
+		}
+		final long start = System.nanoTime();
+		try {
+			final ContentProviderResult[] results = mProvider
+					.applyBatch(mOps);
+			mWrites += results.length;
+			for (int i = 0; i < results.length; i++) {
+				final DAO item = mItems.get(i);
+				if (item == null) {
+					continue;
+				}
+				if (item._id < 1 && results[i].uri != null) {
+					item._id = ContentUris.parseId(results[i].uri);
+				}
+				item.setContentSaved();
+			}
+			for (int i = 0; i < mLinkedRemotes.size(); i++) {
+				final DAO remote = mLinkedRemotes.get(i);
+				final long id = mLinkedLocals.get(i)._id;
+				if (remote instanceof RemoteTask) {
+					((RemoteTask) remote).dbid = id;
+				}
+				else {
+					((RemoteTaskList) remote).dbid = id;
+				}
+			}
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Batch failed", e);
+		}
+		finally {
+			clear();
+			mDbNanos += System.nanoTime() - start;
+		}
+	}
+
+	private void clear() {
+		mOps.clear();
+		mItems.clear();
+		mInserts.clear();
+		mLinkedRemotes.clear();
+		mLinkedLocals.clear();
+	}
+}
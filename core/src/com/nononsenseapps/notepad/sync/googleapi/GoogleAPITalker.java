@@ -25,8 +25,11 @@ import android.net.http.AndroidHttpClient;
 
 import com.nononsenseapps.build.Config;
 import com.nononsenseapps.helpers.Log;
-import com.nononsenseapps.utils.time.RFC3339Date;
+import com.nononsenseapps.utils.time.RFC3339Codec;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpDelete;
@@ -42,6 +45,7 @@ import org.json.JSONObject;
 import org.json.JSONTokener;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -49,6 +53,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Helper class that sorts out all XML, JSON, HTTP bullshit for other classes.
@@ -236,6 +241,11 @@ public class GoogleAPITalker {
 	
 	public String accountName = null;
 
+	// Counted for sync metrics
+	private int requestCount = 0;
+	private long bytesSent = 0;
+	private long bytesReceived = 0;
+
 	private static String getAuthToken(AccountManager accountManager,
                                        Account account, String authTokenType, boolean notifyAuthFailure) {
 
@@ -283,6 +293,40 @@ public class GoogleAPITalker {
 		}
 	}
 
+	public int getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Request bodies, not counting headers
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * Response bodies as transferred, before unzipping
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * All requests go through here so they are counted
+	 */
+	private HttpResponse execute(final HttpUriRequest request)
+			throws IOException {
+		requestCount++;
+		if (request instanceof HttpEntityEnclosingRequest) {
+			final HttpEntity entity = ((HttpEntityEnclosingRequest) request)
+					.getEntity();
+			if (entity != null && entity.getContentLength() > 0) {
+				bytesSent += entity.getContentLength();
+			}
+		}
+		return client.execute(request);
+	}
+
 	/*
 	 * User methods
 	 */
@@ -328,7 +372,7 @@ public class GoogleAPITalker {
 
 			try {
 				JSONObject jsonResponse = (JSONObject) new JSONTokener(
-						parseResponse(client.execute(httpget))).nextValue();
+						parseResponse(execute(httpget))).nextValue();
 
 				// Log.d(TAG, jsonResponse.toString());
 				if (jsonResponse.isNull(NEXTPAGETOKEN)) {
@@ -394,7 +438,7 @@ public class GoogleAPITalker {
 		// Log.d(TAG, "request: " + TaskURL(gimpedTask.id, list.id));
 
 		JSONObject jsonResponse = (JSONObject) new JSONTokener(
-				parseResponse(client.execute(httpget))).nextValue();
+				parseResponse(execute(httpget))).nextValue();
 
 		// Log.d(TAG, jsonResponse.toString());
 		result = new GoogleTask(jsonResponse, accountName);
@@ -430,7 +474,7 @@ public class GoogleAPITalker {
 		// Log.d(TAG, "request: " + ListURL(gimpedList.id));
 
 		JSONObject jsonResponse = (JSONObject) new JSONTokener(
-				parseResponse(client.execute(httpget))).nextValue();
+				parseResponse(execute(httpget))).nextValue();
 
 		// Log.d(TAG, jsonResponse.toString());
 		result = new GoogleTaskList(jsonResponse, accountName);
@@ -451,7 +495,7 @@ public class GoogleAPITalker {
 		AndroidHttpClient.modifyRequestToAcceptGzipResponse(httpget);
 
 		JSONObject jsonResponse = (JSONObject) new JSONTokener(
-				parseResponse(client.execute(httpget))).nextValue();
+				parseResponse(execute(httpget))).nextValue();
 
 		// Log.d(TAG, jsonResponse.toString());
 
@@ -490,7 +534,7 @@ public class GoogleAPITalker {
 
 			String stringResponse;
 			try {
-				stringResponse = parseResponse(client.execute(httpget));
+				stringResponse = parseResponse(execute(httpget));
 
 				JSONObject jsonResponse = new JSONObject(stringResponse);
 
@@ -598,7 +642,7 @@ public class GoogleAPITalker {
 			setPostBody(httppost, task);
 		}
 
-		String stringResponse = parseResponse(client.execute(httppost));
+		String stringResponse = parseResponse(execute(httppost));
 
 		// If we deleted the note, we will get an empty response. Return the
 		// same element back.
@@ -617,9 +661,8 @@ public class GoogleAPITalker {
 				// task.etag = jsonResponse.getString("etag");
 				if (jsonResponse.has(GoogleTask.UPDATED)) {
 					try {
-						task.updated = RFC3339Date.parseRFC3339Date(
-								jsonResponse.getString(GoogleTask.UPDATED))
-								.getTime();
+						task.updated = RFC3339Codec.parse(
+								jsonResponse.getString(GoogleTask.UPDATED), 0L);
 					}
 					catch (Exception e) {
 						task.updated = 0L;
@@ -728,7 +771,7 @@ public class GoogleAPITalker {
 			setPostBody(httppost, list);
 		}
 
-		String stringResponse = parseResponse(client.execute(httppost));
+		String stringResponse = parseResponse(execute(httppost));
 
 		// If we deleted the note, we will get an empty response. Return the
 		// same element back.
@@ -746,7 +789,7 @@ public class GoogleAPITalker {
 				list.remoteId = jsonResponse.getString("id");
 				list.title = jsonResponse.getString("title");
 				try {
-					list.updated = RFC3339Date.parseRFC3339Date(jsonResponse.getString("updated")).getTime();
+					list.updated = RFC3339Codec.parse(jsonResponse.getString("updated"), 0L);
 				}
 				catch (Exception e) {
 					list.updated = 0L;
@@ -857,7 +900,7 @@ public class GoogleAPITalker {
      * @throws ClientProtocolException
 	 * @throws PreconditionException
 	 */
-	private static String parseResponse(HttpResponse response)
+	private String parseResponse(HttpResponse response)
 			throws ClientProtocolException, PreconditionException {
 		String page = "";
 		BufferedReader in = null;
@@ -907,9 +950,15 @@ public class GoogleAPITalker {
 			try {
 				if (response.getEntity() != null) {
 					// Only call getContent ONCE
-					InputStream content = AndroidHttpClient
-							.getUngzippedContent(response.getEntity());
+					InputStream content = response.getEntity().getContent();
 					if (content != null) {
+						content = new CountingInputStream(content);
+						final Header encoding = response.getEntity()
+								.getContentEncoding();
+						if (encoding != null
+								&& encoding.getValue().contains("gzip")) {
+							content = new GZIPInputStream(content);
+						}
 						in = new BufferedReader(new InputStreamReader(content));
 						StringBuilder sb = new StringBuilder("");
 						String line;
@@ -940,4 +989,40 @@ public class GoogleAPITalker {
 
 		return page;
 	}
+
+	/**
+	 * Adds what is read to bytesReceived
+	 */
+	private class CountingInputStream extends FilterInputStream {
+
+		CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b >= 0) {
+				bytesReceived++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int count)
+				throws IOException {
+			final int read = super.read(buffer, offset, count);
+			if (read > 0) {
+				bytesReceived += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(final long count) throws IOException {
+			final long skipped = super.skip(count);
+			bytesReceived += skipped;
+			return skipped;
+		}
+	}
 }
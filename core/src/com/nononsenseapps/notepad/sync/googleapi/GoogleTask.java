@@ -27,6 +27,7 @@ import com.nononsenseapps.notepad.database.LegacyDBHelper.NotePad;
 import com.nononsenseapps.notepad.database.RemoteTask;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.util.BiMap;
+import com.nononsenseapps.utils.time.RFC3339Codec;
 import com.nononsenseapps.utils.time.RFC3339Date;
 
 import android.content.ContentValues;
@@ -109,7 +110,7 @@ public class GoogleTask extends RemoteTask {
 		account = accountName;
 		remoteId = jsonTask.getString(ID);
 		try {
-			updated = RFC3339Date.parseRFC3339Date(jsonTask.getString(UPDATED)).getTime();
+			updated = RFC3339Codec.parse(jsonTask.getString(UPDATED), 0L);
 		}
 		catch (Exception e) {
 			updated = 0L;
@@ -27,7 +27,7 @@ import org.json.JSONObject;
 import com.nononsenseapps.notepad.database.RemoteTaskList;
 import com.nononsenseapps.notepad.database.TaskList;
 import com.nononsenseapps.util.BiMap;
-import com.nononsenseapps.utils.time.RFC3339Date;
+import com.nononsenseapps.utils.time.RFC3339Codec;
 
 import android.content.ContentValues;
 import android.database.Cursor;
@@ -63,7 +63,7 @@ public class GoogleTaskList extends RemoteTaskList {
 		account = accountName;
 		
 		try {
-			updated = RFC3339Date.parseRFC3339Date(jsonList.getString("updated")).getTime();
+			updated = RFC3339Codec.parse(jsonList.getString("updated"), 0L);
 		}
 		catch (Exception e) {
 			Log.d(TAG, e.getLocalizedMessage());
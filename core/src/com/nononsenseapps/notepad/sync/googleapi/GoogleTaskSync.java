@@ -20,7 +20,6 @@ import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.content.ContentProviderClient;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.SyncResult;
 import android.database.Cursor;
 import android.os.Bundle;
@@ -28,9 +27,11 @@ import android.preference.PreferenceManager;
 import android.util.Pair;
 
 import com.nononsenseapps.helpers.Log;
+import com.nononsenseapps.notepad.database.SyncMetrics;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
 import com.nononsenseapps.notepad.prefs.SyncPrefs;
+import com.nononsenseapps.notepad.sync.SyncSession;
 import com.nononsenseapps.notepad.sync.googleapi.GoogleAPITalker.PreconditionException;
 import com.nononsenseapps.utils.time.RFC3339Date;
 
@@ -65,8 +66,13 @@ public class GoogleTaskSync {
 		// Initialize necessary stuff
 		final AccountManager accountManager = AccountManager.get(context);
 		final GoogleAPITalker apiTalker = new GoogleAPITalker(context);
+		final SyncSession session = new SyncSession(provider);
+		final SyncMetrics metrics = new SyncMetrics(
+				GoogleTaskList.SERVICENAME, startTime);
+		int taskCount = 0;
 
 		try {
+			metrics.startPhase("connect");
 			boolean connected = apiTalker.initialize(accountManager, account,
 					AUTH_TOKEN_TYPE, NOTIFY_AUTH_FAILURE);
 
@@ -87,43 +93,57 @@ public class GoogleTaskSync {
 //					}
 
 					// Download lists from server
-					Log.d(TAG, "download lists");
+					startPhase(metrics, "download lists");
 					final List<GoogleTaskList> remoteLists = downloadLists(apiTalker);
 
 					// merge with local complement
-					Log.d(TAG, "merge lists");
-					mergeListsWithLocalDB(context, account.name, remoteLists);
+					startPhase(metrics, "merge lists");
+					mergeListsWithLocalDB(session, account.name, remoteLists);
 
 					// Synchronize lists locally
-					Log.d(TAG, "sync lists locally");
+					startPhase(metrics, "sync lists locally");
 					final List<Pair<TaskList, GoogleTaskList>> listPairs = synchronizeListsLocally(
-							context, remoteLists);
+							session, remoteLists);
 
 					// Synchronize lists remotely
-					Log.d(TAG, "sync lists remotely");
-					final List<Pair<TaskList, GoogleTaskList>> syncedPairs = synchronizeListsRemotely(
-							context, listPairs, apiTalker);
+					startPhase(metrics, "sync lists remotely");
+					final List<Pair<TaskList, GoogleTaskList>> syncedPairs;
+					try {
+						syncedPairs = synchronizeListsRemotely(session,
+								listPairs, apiTalker);
+					}
+					finally {
+						// Also what was uploaded before a failure
+						session.flush();
+					}
 
 					// For each list
 					for (Pair<TaskList, GoogleTaskList> syncedPair : syncedPairs) {
 						// Download tasks from server
-						Log.d(TAG, "download tasks");
+						startPhase(metrics, "download tasks");
 						final List<GoogleTask> remoteTasks = downloadChangedTasks(
 								context, apiTalker, syncedPair.second);
 
 						// merge with local complement
-						Log.d(TAG, "merge tasks");
-						mergeTasksWithLocalDB(context, account.name,
+						startPhase(metrics, "merge tasks");
+						mergeTasksWithLocalDB(session, account.name,
 								remoteTasks, syncedPair.first._id);
+						taskCount += remoteTasks.size();
 
-						// Synchronize tasks locally
-						Log.d(TAG, "sync tasks locally");
-						final List<Pair<Task, GoogleTask>> taskPairs = synchronizeTasksLocally(
-								context, remoteTasks, syncedPair);
-						// Synchronize tasks remotely
-						Log.d(TAG, "sync tasks remotely");
-						synchronizeTasksRemotely(context, taskPairs,
-								syncedPair.second, apiTalker);
+						// One transaction for the list
+						try {
+							// Synchronize tasks locally
+							startPhase(metrics, "sync tasks locally");
+							final List<Pair<Task, GoogleTask>> taskPairs = synchronizeTasksLocally(
+									session, remoteTasks, syncedPair);
+							// Synchronize tasks remotely
+							startPhase(metrics, "sync tasks remotely");
+							synchronizeTasksRemotely(session, taskPairs,
+									syncedPair.second, apiTalker);
+						}
+						finally {
+							session.flush();
+						}
 					}
 
 					Log.d(TAG, "Sync Complete!");
@@ -183,13 +203,35 @@ public class GoogleTaskSync {
 			if (apiTalker != null) {
 				apiTalker.closeClient();
 			}
-
+			session.close();
+
+			metrics.set("tasks", taskCount);
+			metrics.set(SyncMetrics.HTTP_REQUESTS, apiTalker.getRequestCount());
+			metrics.set(SyncMetrics.HTTP_BYTES_SENT, apiTalker.getBytesSent());
+			metrics.set(SyncMetrics.HTTP_BYTES_RECEIVED,
+					apiTalker.getBytesReceived());
+			metrics.set(SyncMetrics.DB_TIME, session.getDbMillis());
+			metrics.set(SyncMetrics.DB_READS, session.getReads());
+			metrics.set(SyncMetrics.DB_WRITES, session.getWrites());
+			metrics.set(SyncMetrics.ERRORS, success ? 0 : 1);
+			metrics.save(context);
+
+			Log.d(TAG, "Local database: " + session.getDbMillis() + " ms for "
+					+ taskCount + " tasks, "
+					+ (taskCount == 0 ? 0 : session.getDbMillis() * 1000 / taskCount)
+					+ " ms per 1000");
 			Log.d(TAG, "SyncResult: " + syncResult.toDebugString());
 		}
 
 		return success;
 	}
 
+	private static void startPhase(final SyncMetrics metrics,
+			final String name) {
+		Log.d(TAG, name);
+		metrics.startPhase(name);
+	}
+
 	/**
 	 * Loads the remote lists from the database and merges the two lists. If the
 	 * remote list contains all lists, then this method only adds local db-ids
@@ -199,12 +241,12 @@ public class GoogleTaskSync {
 	 * Since all lists are expected to be downloaded, any non-existing entries
 	 * are assumed to be deleted and marked as such.
 	 */
-	public static void mergeListsWithLocalDB(final Context context,
+	public static void mergeListsWithLocalDB(final SyncSession session,
 			final String account, final List<GoogleTaskList> remoteLists) {
 		Log.d(TAG, "mergeList starting with: " + remoteLists.size());
 
 		final HashMap<String, GoogleTaskList> localVersions = new HashMap<String, GoogleTaskList>();
-		final Cursor c = context.getContentResolver().query(
+		final Cursor c = session.query(
 				GoogleTaskList.URI,
 				GoogleTaskList.Columns.FIELDS,
 				GoogleTaskList.Columns.ACCOUNT + " IS ? AND "
@@ -246,11 +288,11 @@ public class GoogleTaskSync {
 	 * to the items. If it does not contain all of them, this loads whatever
 	 * extra items are known in the db to the list also.
 	 */
-	public static void mergeTasksWithLocalDB(final Context context,
+	public static void mergeTasksWithLocalDB(final SyncSession session,
 			final String account, final List<GoogleTask> remoteTasks,
 			long listDbId) {
 		final HashMap<String, GoogleTask> localVersions = new HashMap<String, GoogleTask>();
-		final Cursor c = context.getContentResolver().query(
+		final Cursor c = session.query(
 				GoogleTask.URI,
 				GoogleTask.Columns.FIELDS,
 				GoogleTask.Columns.LISTDBID + " IS ? AND "
@@ -320,21 +362,19 @@ public class GoogleTaskSync {
 	 * Returns a list of pairs (local, remote).
 	 */
 	public static List<Pair<TaskList, GoogleTaskList>> synchronizeListsLocally(
-			final Context context, final List<GoogleTaskList> remoteLists) {
-		final SharedPreferences settings = PreferenceManager
-				.getDefaultSharedPreferences(context);
+			final SyncSession session, final List<GoogleTaskList> remoteLists) {
 		final ArrayList<Pair<TaskList, GoogleTaskList>> listPairs = new ArrayList<Pair<TaskList, GoogleTaskList>>();
 		// For every list
 		for (final GoogleTaskList remoteList : remoteLists) {
 			// Compare with local
 			Log.d(TAG, "Loading remote lists from db");
-			TaskList localList = loadRemoteListFromDB(context, remoteList);
+			TaskList localList = loadRemoteListFromDB(session, remoteList);
 
 			if (localList == null) {
 				if (remoteList.remotelyDeleted) {
 					Log.d(TAG, "List was remotely deleted1");
 					// Deleted locally AND on server
-					remoteList.delete(context);
+					session.delete(remoteList);
 				}
 				else if (remoteList.isDeleted()) {
 					Log.d(TAG, "List was locally deleted");
@@ -345,19 +385,18 @@ public class GoogleTaskSync {
 					Log.d(TAG, "Inserting new list: " + remoteList.title);
 					localList = new TaskList();
 					localList.title = remoteList.title;
-					localList.save(context, remoteList.updated);
+					session.save(localList, remoteList.updated);
 					// Save id in remote also
-					remoteList.dbid = localList._id;
-					remoteList.save(context);
+					session.save(remoteList, localList);
 				}
 			}
 			else {
 				// If local is newer, update remote object
 				if (remoteList.remotelyDeleted) {
 					Log.d(TAG, "Remote list was deleted2: " + remoteList.title);
-					localList.delete(context);
+					session.delete(localList);
 					localList = null;
-					remoteList.delete(context);
+					session.delete(remoteList);
 				}
 				else if (localList.updated > remoteList.updated) {
 					Log.d(TAG, "Local list newer");
@@ -371,7 +410,7 @@ public class GoogleTaskSync {
 					Log.d(TAG, "Updating local list: " + remoteList.title);
 					// If remote is newer, update local and save to db
 					localList.title = remoteList.title;
-					localList.save(context, remoteList.updated);
+					session.save(localList, remoteList.updated);
 				}
 			}
 			if (!remoteList.remotelyDeleted)
@@ -380,7 +419,7 @@ public class GoogleTaskSync {
 		}
 
 		// Add local lists without a remote version to pairs
-		for (final TaskList tl : loadNewListsFromDB(context, remoteLists.get(0))) {
+		for (final TaskList tl : loadNewListsFromDB(session, remoteLists.get(0))) {
 			Log.d(TAG, "loading new list db: " + tl.title);
 			listPairs.add(new Pair<TaskList, GoogleTaskList>(tl, null));
 		}
@@ -390,7 +429,7 @@ public class GoogleTaskSync {
 	}
 
 	static List<Pair<TaskList, GoogleTaskList>> synchronizeListsRemotely(
-			final Context context,
+			final SyncSession session,
 			final List<Pair<TaskList, GoogleTaskList>> listPairs,
 			final GoogleAPITalker apiTalker) throws ClientProtocolException,
 			IOException, PreconditionException, JSONException {
@@ -404,8 +443,8 @@ public class GoogleTaskSync {
 						apiTalker.accountName);
 				apiTalker.uploadList(newList);
 				// Save to db also
-				newList.save(context);
-				pair.first.save(context, newList.updated);
+				session.save(newList);
+				session.save(pair.first, newList.updated);
 				syncedPair = new Pair<TaskList, GoogleTaskList>(pair.first,
 						newList);
 			}
@@ -420,7 +459,7 @@ public class GoogleTaskSync {
 					// Deleted the default list. Ignore error
 				}
 				// and delete from db if it exists there
-				pair.second.delete(context);
+				session.delete(pair.second);
 				syncedPair = null;
 			}
 			else if (pair.first.updated > pair.second.updated) {
@@ -428,7 +467,7 @@ public class GoogleTaskSync {
 				// should update
 				apiTalker.uploadList(pair.second);
 				// No need to save remote object
-				pair.first.save(context, pair.second.updated);
+				session.save(pair.first, pair.second.updated);
 			}
 			// else remote has already been saved locally, nothing to upload
 			if (syncedPair != null) {
@@ -439,7 +478,7 @@ public class GoogleTaskSync {
 		return syncedPairs;
 	}
 
-	static void synchronizeTasksRemotely(final Context context,
+	static void synchronizeTasksRemotely(final SyncSession session,
 			final List<Pair<Task, GoogleTask>> taskPairs,
 			final GoogleTaskList gTaskList, final GoogleAPITalker apiTalker)
 			throws ClientProtocolException, IOException, PreconditionException,
@@ -451,8 +490,8 @@ public class GoogleTaskSync {
 				final GoogleTask newTask = new GoogleTask(pair.first,
 						apiTalker.accountName);
 				apiTalker.uploadTask(newTask, gTaskList);
-				newTask.save(context);
-				pair.first.save(context, newTask.updated);
+				session.save(newTask);
+				session.save(pair.first, newTask.updated);
 			}
 			// if deleted locally
 			else if (pair.second.isDeleted()) {
@@ -461,23 +500,23 @@ public class GoogleTaskSync {
 				pair.second.remotelydeleted = true;
 				apiTalker.uploadTask(pair.second, gTaskList);
 				// Remove from db
-				pair.second.delete(context);
+				session.delete(pair.second);
 			}
 			// if local updated is different from remote,
 			// should update remote
 			else if (pair.first.updated > pair.second.updated) {
 				apiTalker.uploadTask(pair.second, gTaskList);
 				// No need to save remote object here
-				pair.first.save(context, pair.second.updated);
+				session.save(pair.first, pair.second.updated);
 			}
 		}
 	}
 
-	static TaskList loadRemoteListFromDB(final Context context,
+	static TaskList loadRemoteListFromDB(final SyncSession session,
 			final GoogleTaskList remoteList) {
 		if (remoteList.dbid == null || remoteList.dbid < 1) return null;
 
-		final Cursor c = context.getContentResolver().query(
+		final Cursor c = session.query(
 				TaskList.getUri(remoteList.dbid), TaskList.Columns.FIELDS,
 				null, null, null);
 		TaskList tl = null;
@@ -493,9 +532,9 @@ public class GoogleTaskSync {
 		return tl;
 	}
 
-	static List<TaskList> loadNewListsFromDB(final Context context,
+	static List<TaskList> loadNewListsFromDB(final SyncSession session,
 			final GoogleTaskList remoteList) {
-		final Cursor c = context.getContentResolver().query(TaskList.URI,
+		final Cursor c = session.query(TaskList.URI,
 				TaskList.Columns.FIELDS,
 				GoogleTaskList.getTaskListWithoutRemoteClause(),
 				remoteList.getTaskListWithoutRemoteArgs(), null);
@@ -512,9 +551,9 @@ public class GoogleTaskSync {
 		return lists;
 	}
 
-	static List<Task> loadNewTasksFromDB(final Context context,
+	static List<Task> loadNewTasksFromDB(final SyncSession session,
 			final long listdbid, final String account) {
-		final Cursor c = context.getContentResolver().query(
+		final Cursor c = session.query(
 				Task.URI,
 				Task.Columns.FIELDS,
 				GoogleTask.getTaskWithoutRemoteClause(),
@@ -547,34 +586,49 @@ public class GoogleTaskSync {
 		return remoteTasks;
 	}
 
-	static Task loadRemoteTaskFromDB(final Context context,
-			final GoogleTask remoteTask) {
-		final Cursor c = context.getContentResolver().query(Task.URI,
-				Task.Columns.FIELDS, remoteTask.getTaskWithRemoteClause(),
-				remoteTask.getTaskWithRemoteArgs(), null);
-		Task t = null;
+	/**
+	 * Tasks in the list which have a remote version in the account, by id.
+	 * Remote tasks which were merged have the id as dbid.
+	 */
+	static HashMap<Long, Task> loadRemoteTasksFromDB(
+			final SyncSession session, final long listdbid,
+			final String account) {
+		final Cursor c = session.query(
+				Task.URI,
+				Task.Columns.FIELDS,
+				new StringBuilder(Task.Columns.DBLIST).append(" IS ? AND ")
+						.append(Task.Columns._ID).append(" IN (SELECT ")
+						.append(GoogleTask.Columns.DBID).append(" FROM ")
+						.append(GoogleTask.TABLE_NAME).append(" WHERE ")
+						.append(GoogleTask.Columns.ACCOUNT).append(" IS ?)")
+						.toString(),
+				new String[] { Long.toString(listdbid), account }, null);
+		final HashMap<Long, Task> tasks = new HashMap<Long, Task>();
 		try {
-			if (c.moveToFirst()) {
-				t = new Task(c);
+			while (c.moveToNext()) {
+				final Task t = new Task(c);
+				tasks.put(t._id, t);
 			}
 		}
 		finally {
 			if (c != null) c.close();
 		}
 
-		return t;
+		return tasks;
 	}
 
 	public static List<Pair<Task, GoogleTask>> synchronizeTasksLocally(
-			final Context context, final List<GoogleTask> remoteTasks,
+			final SyncSession session, final List<GoogleTask> remoteTasks,
 			final Pair<TaskList, GoogleTaskList> listPair) {
-		final SharedPreferences settings = PreferenceManager
-				.getDefaultSharedPreferences(context);
 		final ArrayList<Pair<Task, GoogleTask>> taskPairs = new ArrayList<Pair<Task, GoogleTask>>();
+		// One query instead of one per task
+		final HashMap<Long, Task> localTasks = loadRemoteTasksFromDB(session,
+				listPair.first._id, listPair.second.account);
 		// For every list
 		for (final GoogleTask remoteTask : remoteTasks) {
 			// Compare with local
-			Task localTask = loadRemoteTaskFromDB(context, remoteTask);
+			Task localTask = remoteTask.dbid == null ? null : localTasks
+					.get(remoteTask.dbid);
 
 			// When no local version was found, either
 			// a) it was deleted by the user or
@@ -583,7 +637,7 @@ public class GoogleTaskSync {
 				if (remoteTask.remotelydeleted) {
 					Log.d(TAG, "slocal: task was remotely deleted1: " + remoteTask.title);
 					// Nothing to do
-					remoteTask.delete(context);
+					session.delete(remoteTask);
 				}
 				else if (remoteTask.isDeleted()) {
 					Log.d(TAG, "slocal: task was locally deleted: " + remoteTask.remoteId);
@@ -611,10 +665,9 @@ public class GoogleTaskSync {
 						localTask.completed = remoteTask.updated;
 					}
 
-					localTask.save(context, remoteTask.updated);
+					session.save(localTask, remoteTask.updated);
 					// Save id in remote also
-					remoteTask.dbid = localTask._id;
-					remoteTask.save(context);
+					session.save(remoteTask, localTask);
 				}
 			}
 			else {
@@ -626,9 +679,9 @@ public class GoogleTaskSync {
 				// Remote is newer
 				else if (remoteTask.remotelydeleted) {
 					Log.d(TAG, "slocal: task was remotely deleted2: " + remoteTask.title);
-					localTask.delete(context);
+					session.delete(localTask);
 					localTask = null;
-					remoteTask.delete(context);
+					session.delete(remoteTask);
 				}
 				else if (localTask.updated.equals(remoteTask.updated)) {
 					// Nothing to do, we are already updated
@@ -664,7 +717,7 @@ public class GoogleTaskSync {
 						localTask.completed = null;
 					}
 
-					localTask.save(context, remoteTask.updated);
+					session.save(localTask, remoteTask.updated);
 				}
 			}
 			if (remoteTask.remotelydeleted) {
@@ -686,7 +739,7 @@ public class GoogleTaskSync {
 		}
 
 		// Add local lists without a remote version to pairs
-		for (final Task t : loadNewTasksFromDB(context, listPair.first._id,
+		for (final Task t : loadNewTasksFromDB(session, listPair.first._id,
 				listPair.second.account)) {
 			//Log.d("nononsenseapps gtasksync", "adding local only: " + t.title);
 			taskPairs.add(new Pair<Task, GoogleTask>(t, null));
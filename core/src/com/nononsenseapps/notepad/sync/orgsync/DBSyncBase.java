@@ -6,6 +6,7 @@ import android.database.Cursor;
 import android.util.Log;
 import android.util.Pair;
 
+import com.nononsenseapps.notepad.database.DAO;
 import com.nononsenseapps.notepad.database.RemoteTask;
 import com.nononsenseapps.notepad.database.RemoteTaskList;
 import com.nononsenseapps.notepad.database.Task;
@@ -32,12 +33,46 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 	protected Context context;
 	private ContentResolver resolver;
 
+	// Counted for sync metrics, reset by resetCounts()
+	protected int dbReads = 0;
+	protected int dbWrites = 0;
+	protected int filesParsed = 0;
+
 	public DBSyncBase(final Context context) {
 		this.context = context;
 		this.resolver = context.getContentResolver();
 
 	}
 
+	protected void resetCounts() {
+		dbReads = 0;
+		dbWrites = 0;
+		filesParsed = 0;
+	}
+
+	/**
+	 * Saves the item and counts it
+	 */
+	protected void save(final DAO item) {
+		item.save(context);
+		dbWrites++;
+	}
+
+	/**
+	 * Deletes the item and counts it
+	 */
+	protected void delete(final DAO item) {
+		item.delete(context);
+		dbWrites++;
+	}
+
+	private OrgFile parseRemoteFile(final String filename) throws IOException,
+			ParseException {
+		filesParsed++;
+		return OrgFile.createFromBufferedReader(filename,
+				getRemoteFile(filename));
+	}
+
 	/**
 	 * Reads the database and the OrgFile. Returns the matching Tasks and Nodes.
      *
@@ -120,6 +155,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 
 	private HashMap<Long, RemoteTask> getRemoteTasks(final TaskList list) {
 		final HashMap<Long, RemoteTask> map = new HashMap<Long, RemoteTask>();
+		dbReads++;
 		final Cursor c = resolver.query(
 				RemoteTask.URI,
 				RemoteTask.Columns.FIELDS,
@@ -143,6 +179,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 
 	private HashMap<Long, Task> getTasks(final TaskList list) {
 		final HashMap<Long, Task> map = new HashMap<Long, Task>();
+		dbReads++;
 		final Cursor c = resolver.query(Task.URI, Task.Columns.FIELDS,
 				Task.Columns.DBLIST + " IS ?",
 				new String[] { Long.toString(list._id) }, null);
@@ -189,8 +226,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 			OrgFile file = null;
 			// Can be null
 			if (remote != null && filenames.remove(remote.remoteId)) {
-				file = OrgFile.createFromBufferedReader(remote.remoteId,
-						getRemoteFile(remote.remoteId));
+				file = parseRemoteFile(remote.remoteId);
 			}
 			String l = list.title;
 			String r = null;
@@ -210,8 +246,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 			OrgFile file = null;
 			// Can be null
 			if (remote != null && filenames.remove(remote.remoteId)) {
-				file = OrgFile.createFromBufferedReader(remote.remoteId,
-						getRemoteFile(remote.remoteId));
+				file = parseRemoteFile(remote.remoteId);
 			}
 			String l = null;
 			String r = null;
@@ -229,8 +264,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 		for (String filename : filenames) {
 			TaskList list = null;
 			RemoteTaskList remote = null;
-			OrgFile file = OrgFile.createFromBufferedReader(filename,
-					getRemoteFile(filename));
+			OrgFile file = parseRemoteFile(filename);
 			String l = null;
 			String r = null;
 			String f = null;
@@ -250,6 +284,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 	 */
 	private HashMap<Long, RemoteTaskList> getRemoteTaskLists() {
 		final HashMap<Long, RemoteTaskList> map = new HashMap<Long, RemoteTaskList>();
+		dbReads++;
 		final Cursor c = resolver.query(RemoteTaskList.URI,
 				RemoteTaskList.Columns.FIELDS, RemoteTaskList.Columns.SERVICE
 						+ " IS ? AND " + RemoteTask.Columns.ACCOUNT + " IS ?",
@@ -274,6 +309,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 	 */
 	private HashMap<Long, TaskList> getLists() {
 		final HashMap<Long, TaskList> map = new HashMap<Long, TaskList>();
+		dbReads++;
 		final Cursor c = resolver.query(TaskList.URI, TaskList.Columns.FIELDS,
 				null, null, null);
 		try {
@@ -328,7 +364,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 			file.setFilename(OrgConverter.getTitleAsFilename(list));
 		}
 		dbEntry.remoteId = file.getFilename();
-		dbEntry.save(context);
+		save(dbEntry);
 	}
 
 	/**
@@ -339,6 +375,7 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 	 * @return Number of deletions made.
 	 */
 	private int deleteRemoteTasksIn(final long listdbid) {
+		dbWrites++;
 		return context.getContentResolver().delete(
 				RemoteTask.URI,
 				RemoteTask.Columns.SERVICE + " IS ? AND " + RemoteTask.Columns
@@ -360,11 +397,11 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 	protected void deleteLocal(final TaskList list, final RemoteTaskList dbEntry) {
 		long listdbid = -1;
 		if (list != null) {
-			list.delete(context);
+			delete(list);
 			listdbid = list._id;
 		}
 		if (dbEntry != null) {
-			dbEntry.delete(context);
+			delete(dbEntry);
 			listdbid = dbEntry.dbid;
 		}
 		// Tasks are deleted automatically, but not the
@@ -382,10 +419,10 @@ public abstract class DBSyncBase implements SynchronizerInterface {
 	 */
 	protected void deleteLocal(final Task task, final RemoteTask dbEntry) {
 		if (task != null) {
-			task.delete(context);
+			delete(task);
 		}
 		if (dbEntry != null) {
-			dbEntry.delete(context);
+			delete(dbEntry);
 		}
 	}
 }
@@ -5,6 +5,7 @@ import android.util.Pair;
 
 import com.nononsenseapps.notepad.database.RemoteTask;
 import com.nononsenseapps.notepad.database.RemoteTaskList;
+import com.nononsenseapps.notepad.database.SyncMetrics;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
 
@@ -24,6 +25,9 @@ public abstract class Synchronizer extends DBSyncBase implements
 	public static final int SAVEORG = 0x10;
 	public static final String TAG = "OrgSynchronizer";
 
+	private int filesWritten = 0;
+	private SyncMetrics lastMetrics = null;
+
 	public Synchronizer(Context context) {
 		super(context);
 	}
@@ -35,9 +39,45 @@ public abstract class Synchronizer extends DBSyncBase implements
 	 * @throws ParseException
 	 */
 	public void fullSync() throws IOException, ParseException {
-		// For all pairs of files and db entries
-		final List<Pair<OrgFile, Pair<RemoteTaskList, TaskList>>> pairs = getFilesAndDBEntries();
+		final SyncMetrics metrics = new SyncMetrics(getServiceName());
+		resetCounts();
+		filesWritten = 0;
+		boolean success = false;
+		try {
+			metrics.startPhase("read files");
+			// For all pairs of files and db entries
+			final List<Pair<OrgFile, Pair<RemoteTaskList, TaskList>>> pairs = getFilesAndDBEntries();
+
+			metrics.startPhase("merge");
+			syncPairs(pairs);
+			success = true;
+		}
+		finally {
+			metrics.set(SyncMetrics.DB_READS, dbReads);
+			metrics.set(SyncMetrics.DB_WRITES, dbWrites);
+			metrics.set(SyncMetrics.FILES_PARSED, filesParsed);
+			metrics.set(SyncMetrics.FILES_WRITTEN, filesWritten);
+			metrics.set(SyncMetrics.ERRORS, success ? 0 : 1);
+			metrics.save(context);
+			lastMetrics = metrics;
+		}
+	}
+
+	/**
+	 * Metrics of the latest fullSync, null before the first
+	 */
+	public SyncMetrics getLastMetrics() {
+		return lastMetrics;
+	}
+
+	private void writeRemoteFile(final OrgFile file) throws IOException {
+		filesWritten++;
+		putRemoteFile(file);
+	}
 
+	private void syncPairs(
+			final List<Pair<OrgFile, Pair<RemoteTaskList, TaskList>>> pairs)
+			throws IOException {
 		for (Pair<OrgFile, Pair<RemoteTaskList, TaskList>> pair : pairs) {
 			OrgFile file = pair.first;
 			RemoteTaskList dbEntry = pair.second.first;
@@ -53,14 +93,14 @@ public abstract class Synchronizer extends DBSyncBase implements
 					syncTasks(context, list, file);
 
 					// Save file
-					putRemoteFile(file);
+					writeRemoteFile(file);
 
                     // If name was not available, rename list as well
                     if (!file.getFilename().equals(OrgConverter
                             .getTitleAsFilename(list))) {
                         list.title = file.getFilename().substring(0,
                                 file.getFilename().length() - 4);
-                        list.save(context);
+                        save(list);
                     }
 
 					// Create DbEntry
@@ -69,7 +109,7 @@ public abstract class Synchronizer extends DBSyncBase implements
 					dbEntry.account = getAccountName();
 					dbEntry.service = getServiceName();
 					OrgConverter.toRemoteFromFile(dbEntry, file);
-					dbEntry.save(context);
+					save(dbEntry);
 
 				} else {
 					// NEW CREATE DB LIST
@@ -77,6 +117,7 @@ public abstract class Synchronizer extends DBSyncBase implements
 					list = new TaskList();
 					OrgConverter.toListFromFile(list, file);
 					list.save(context, file.lastModified());
+					dbWrites++;
 
 					// Create DbEntry
 					dbEntry = new RemoteTaskList();
@@ -84,12 +125,12 @@ public abstract class Synchronizer extends DBSyncBase implements
 					dbEntry.account = getAccountName();
 					dbEntry.service = getServiceName();
 					OrgConverter.toRemoteFromFile(dbEntry, file);
-					dbEntry.save(context);
+					save(dbEntry);
 
 					// Now do the tasks
 					if (syncTasks(context, list, file)) {
 						// Something changed in the file.
-						putRemoteFile(file);
+						writeRemoteFile(file);
 					}
 				}
 			} else {
@@ -121,19 +162,19 @@ public abstract class Synchronizer extends DBSyncBase implements
 						}
 						if (0 < (shouldSave & SAVEDB)) {
                             // UPDATE LIST DB
-                            list.save(context);
+                            save(list);
 						}
                         if (shouldSave != SAVENONE) {
                             OrgConverter.toRemoteFromFile(dbEntry, file);
                             dbEntry.updated = Calendar.getInstance()
                                     .getTimeInMillis();
-                            dbEntry.save(context);
+                            save(dbEntry);
                         }
 
 						// In both cases, sync tasks
 						if (syncTasks(context, list, file) || shouldSaveFile) {
 							// Something changed in the file.
-							putRemoteFile(file);
+							writeRemoteFile(file);
 						}
 					}
 				}
@@ -240,7 +281,7 @@ public abstract class Synchronizer extends DBSyncBase implements
 					dbEntry.account = getAccountName();
 					dbEntry.service = getServiceName();
 					OrgConverter.toRemoteFromNode(dbEntry, node);
-					dbEntry.save(context);
+					save(dbEntry);
 
 					shouldUpdateFile = true;
 				} else {
@@ -249,7 +290,7 @@ public abstract class Synchronizer extends DBSyncBase implements
 					task = new Task();
 					task.dblist = list._id;
 					OrgConverter.toTaskFromNode(task, node);
-					task.save(context);
+					save(task);
 
 					dbEntry = new RemoteTask();
 					dbEntry.dbid = task._id;
@@ -258,7 +299,7 @@ public abstract class Synchronizer extends DBSyncBase implements
 					dbEntry.service = getServiceName();
 					shouldUpdateFile = OrgConverter.toRemoteFromNode(dbEntry,
 							node);
-					dbEntry.save(context);
+					save(dbEntry);
 
 					replaceNotifications(task, node);
 				}
@@ -286,12 +327,12 @@ public abstract class Synchronizer extends DBSyncBase implements
 							shouldUpdateFile = true;
 						}
 						if (0 < (shouldSave & SAVEDB)) {
-							task.save(context);
+							save(task);
 						}
                         if (0 < shouldSave) {
                             // Remember this version for later
                             OrgConverter.toRemoteFromNode(dbEntry, node);
-                            dbEntry.save(context);
+                            save(dbEntry);
                         }
                     }
 				}
@@ -24,6 +24,8 @@ import com.nononsenseapps.helpers.TimeFormatter;
 import com.nononsenseapps.notepad.NotePadBroadcastReceiver;
 import com.nononsenseapps.notepad.widget.ListWidgetProvider;
 import com.nononsenseapps.notepad.core.R;
+import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.Keyset;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.fragments.TaskDetailFragment;
 import com.nononsenseapps.notepad.prefs.MainPrefs;
@@ -33,7 +35,6 @@ import com.nononsenseapps.utils.views.TitleNoteTextView;
 import android.appwidget.AppWidgetManager;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.media.audiofx.BassBoost.Settings;
 import android.net.Uri;
 import android.os.Binder;
@@ -62,7 +63,7 @@ public class ListWidgetService extends RemoteViewsService {
 			RemoteViewsService.RemoteViewsFactory {
 		private Context mContext;
 		// private HeaderCursor mCursor;
-		private Cursor mCursor;
+		private WidgetRows mRows;
 		private int mAppWidgetId;
 		private SimpleDateFormat mDateFormatter = null;
 		private SimpleDateFormat weekdayFormatter;
@@ -83,15 +84,13 @@ public class ListWidgetService extends RemoteViewsService {
 
 		@Override
 		public void onDestroy() {
-			if (mCursor != null) {
-				mCursor.close();
-			}
+			mRows = null;
 		}
 
 		@Override
 		public int getCount() {
-			if (mCursor != null)
-				return mCursor.getCount();
+			if (mRows != null)
+				return mRows.getCount();
 			else
 				return 0;
 		}
@@ -135,8 +134,10 @@ public class ListWidgetService extends RemoteViewsService {
 			}
 
 			RemoteViews rv = null;
-			if (mCursor.moveToPosition(position)) {
-				if (mCursor.getLong(0) < 1) {
+			final WidgetRows.Row row = mRows == null ? null : mRows
+					.get(position);
+			if (row != null) {
+				if (row.isHeader()) {
 					// Header
 					// if (mCursor.getViewType() == HeaderCursor.headerType) {
 					final int itemId = R.layout.widgetlist_header;
@@ -144,7 +145,7 @@ public class ListWidgetService extends RemoteViewsService {
 					rv.setTextColor(android.R.id.text1, primaryTextColor);
 					rv.setBoolean(itemId, "setClickable", false);
 
-					sTemp = mCursor.getString(1);
+					sTemp = row.title;
 					if (Task.HEADER_KEY_OVERDUE.equals(sTemp)) {
 						sTemp = mContext
 								.getString(R.string.date_header_overdue);
@@ -159,8 +160,7 @@ public class ListWidgetService extends RemoteViewsService {
 					else if (Task.HEADER_KEY_PLUS2.equals(sTemp)
 							|| Task.HEADER_KEY_PLUS3.equals(sTemp)
 							|| Task.HEADER_KEY_PLUS4.equals(sTemp)) {
-						sTemp = weekdayFormatter.format(new Date(mCursor
-								.getLong(4)));
+						sTemp = weekdayFormatter.format(new Date(row.due));
 					}
 					else if (Task.HEADER_KEY_LATER.equals(sTemp)) {
 						sTemp = mContext.getString(R.string.date_header_future);
@@ -199,13 +199,13 @@ public class ListWidgetService extends RemoteViewsService {
 							isCheckboxHidden ? View.GONE : View.VISIBLE);
 
 					// Date
-					if (mCursor.isNull(4)) {
+					if (row.due == null) {
 						rv.setTextViewText(R.id.dueDate, "");
 						isDateHidden = true;
 					}
 					else {
 						rv.setTextViewText(R.id.dueDate, mDateFormatter
-								.format(new Date(mCursor.getLong(4))));
+								.format(new Date(row.due)));
 					}
 					rv.setViewVisibility(R.id.dueDate, isDateHidden ? View.GONE
 							: View.VISIBLE);
@@ -215,19 +215,18 @@ public class ListWidgetService extends RemoteViewsService {
 					rv.setTextColor(android.R.id.text1, primaryTextColor);
 					rv.setInt(android.R.id.text1, "setMaxLines", rows);
 					// Only if task it not locked
-					if (mCursor.getInt(9) != 1) {
+					if (!row.locked) {
 						rv.setTextViewText(
 								android.R.id.text1,
-								TitleNoteTextView.getStyledText(
-										mCursor.getString(1),
-										mCursor.getString(2), 1.0f, 1, 0));
+								TitleNoteTextView.getStyledText(row.title,
+										row.note, 1.0f, 1, 0));
 					}
 					else {
 						// Just title
 						rv.setTextViewText(
 								android.R.id.text1,
-								TitleNoteTextView.getStyledText(
-										mCursor.getString(1), 1.0f, 1, 0));
+								TitleNoteTextView.getStyledText(row.title,
+										1.0f, 1, 0));
 					}
 
 					// Set the click intent
@@ -236,7 +235,7 @@ public class ListWidgetService extends RemoteViewsService {
 						final Intent clickIntent = new Intent();
 						clickIntent
 								.setAction(Intent.ACTION_EDIT)
-								.setData(Task.getUri(mCursor.getLong(0)))
+								.setData(Task.getUri(row.id))
 								.putExtra(TaskDetailFragment.ARG_ITEM_LIST_ID,
 										listId);
 						rv.setOnClickFillInIntent(R.id.widget_item, clickIntent);
@@ -245,7 +244,7 @@ public class ListWidgetService extends RemoteViewsService {
 						final Intent fillInIntent = new Intent();
 						fillInIntent.setAction(ListWidgetProvider.CLICK_ACTION);
 						fillInIntent.putExtra(ListWidgetProvider.EXTRA_NOTE_ID,
-								mCursor.getLong(0));
+								row.id);
 						fillInIntent.putExtra(ListWidgetProvider.EXTRA_LIST_ID,
 								listId);
 						rv.setOnClickFillInIntent(R.id.widget_item,
@@ -260,15 +259,14 @@ public class ListWidgetService extends RemoteViewsService {
 							false)) {
 						completeIntent
 								.setAction(Intent.ACTION_EDIT)
-								.setData(Task.getUri(mCursor.getLong(0)))
+								.setData(Task.getUri(row.id))
 								.putExtra(TaskDetailFragment.ARG_ITEM_LIST_ID,
 										listId);
 					}
 					else {
 						completeIntent.setAction(
 								ListWidgetProvider.COMPLETE_ACTION).putExtra(
-								ListWidgetProvider.EXTRA_NOTE_ID,
-								mCursor.getLong(0));
+								ListWidgetProvider.EXTRA_NOTE_ID, row.id);
 
 					}
 					rv.setOnClickFillInIntent(R.id.completedCheckBoxDark,
@@ -308,10 +306,8 @@ public class ListWidgetService extends RemoteViewsService {
 			// content provider
 			final long identityToken = Binder.clearCallingIdentity();
 
-			// Refresh the cursor
-			if (mCursor != null) {
-				mCursor.close();
-			}
+			// Read again from the first page
+			mRows = null;
 
 			// (re)load dateformatter in case preferences changed
 			mDateFormatter = TimeFormatter.getLocalFormatterMicro(mContext);
@@ -324,7 +320,8 @@ public class ListWidgetService extends RemoteViewsService {
 				final long listId = widgetPrefs.getLong(
 						ListWidgetConfig.KEY_LIST,
 						ListWidgetConfig.ALL_LISTS_ID);
-				final String sortSpec;
+				String[] projection = Task.Columns.FIELDS;
+				final Keyset keyset;
 				final String sortType = widgetPrefs.getString(
 						ListWidgetConfig.KEY_SORT_TYPE,
 						mContext.getString(R.string.default_sorttype));
@@ -332,25 +329,29 @@ public class ListWidgetService extends RemoteViewsService {
 				if (sortType.equals(mContext
 						.getString(R.string.const_possubsort)) && listId > 0) {
 					targetUri = Task.URI;
-					sortSpec = Task.Columns.LEFT;
+					keyset = new Keyset().asc(Task.Columns.LEFT);
 				}
 				else if (sortType.equals(mContext
 						.getString(R.string.const_modified))) {
 					targetUri = Task.URI;
-					sortSpec = Task.Columns.UPDATED + " DESC";
+					keyset = new Keyset().desc(Task.Columns.UPDATED);
 				}
 				// due date sorting
 				else if (sortType.equals(mContext
 						.getString(R.string.const_duedate))) {
 					targetUri = Task.URI_SECTIONED_BY_DATE;
-					sortSpec = null;
+					projection = DAO.joinArrays(Task.Columns.FIELDS,
+							new String[] { Task.SECRET_TYPEID,
+									Task.SECRET_TYPEID2 });
+					keyset = new Keyset().asc(Task.SECRET_TYPEID)
+							.asc(Task.Columns.DUE).asc(Task.SECRET_TYPEID2);
 				}
 				// Alphabetic
 				else {
 					targetUri = Task.URI;
-					sortSpec = mContext.getString(R.string.const_as_alphabetic,
-							Task.Columns.TITLE);
-					;
+					keyset = new Keyset().add(mContext.getString(
+							R.string.const_as_alphabetic, Task.Columns.TITLE),
+							Task.Columns.TITLE, false);
 				}
 
 				String listWhere = null;
@@ -365,8 +366,12 @@ public class ListWidgetService extends RemoteViewsService {
 					listArg = null;
 				}
 
-				mCursor = mContext.getContentResolver().query(targetUri,
-						Task.Columns.FIELDS, listWhere, listArg, sortSpec);
+				// A page at a time, however many tasks there are
+				mRows = new WidgetRows(mContext, targetUri, projection,
+						listWhere, listArg, keyset, widgetPrefs.getInt(
+								ListWidgetConfig.KEY_TITLEROWS,
+								ListWidgetConfig.DEFAULT_ROWS));
+				mRows.reload();
 
 			}
 			// Restore the identity - not sure if it's needed since we're going
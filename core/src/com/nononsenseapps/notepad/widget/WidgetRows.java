@@ -0,0 +1,169 @@
+package com.nononsenseapps.notepad.widget;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.nononsenseapps.notepad.database.Keyset;
+import com.nononsenseapps.notepad.database.MyContentProvider;
+import com.nononsenseapps.notepad.database.Task;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Binder;
+
+/**
+ * The tasks shown in a list widget, read a page at a time as the launcher
+ * asks for rows. Pages continue after the last read row by the keyset. Rows
+ * are copied out of the cursor, so no cursor stays open between updates, and
+ * only as much of the note is read as the widget can show.
+ */
+class WidgetRows {
+
+	// A widget screen and the next one
+	static final int PAGE_SIZE = 40;
+	// Characters of the note read per line of the widget
+	static final int CHARS_PER_LINE = 200;
+
+	static class Row {
+		final long id;
+		final String title;
+		final String note;
+		final Long due;
+		final boolean locked;
+
+		Row(final Cursor c) {
+			id = c.getLong(0);
+			title = c.getString(1);
+			note = c.getString(2);
+			due = c.isNull(4) ? null : c.getLong(4);
+			locked = c.getInt(9) == 1;
+		}
+
+		boolean isHeader() {
+			return id < 1;
+		}
+	}
+
+	private final Context context;
+	private final Uri uri;
+	private final String[] projection;
+	private final String where;
+	private final String[] whereArgs;
+	private final Keyset keyset;
+
+	private final ArrayList<Row> rows = new ArrayList<Row>();
+	private int count = 0;
+	// Where clause and arguments of the next page, null after the last
+	private String nextWhere = null;
+	private String[] nextArgs = null;
+
+	/**
+	 * Projection must start with Task.Columns.FIELDS and have the columns of
+	 * keyset.
+	 */
+	WidgetRows(final Context context, final Uri uri,
+			final String[] projection, final String where,
+			final String[] whereArgs, final Keyset keyset, final int lines) {
+		this.context = context;
+		this.uri = uri;
+		this.projection = projection.clone();
+		this.projection[2] = "substr(" + Task.Columns.NOTE + ",1,"
+				+ lines * CHARS_PER_LINE + ") AS " + Task.Columns.NOTE;
+		this.where = where;
+		this.whereArgs = whereArgs;
+		this.keyset = keyset;
+	}
+
+	/**
+	 * Counts the rows and reads the first page.
+	 */
+	void reload() {
+		rows.clear();
+		count = 0;
+		nextWhere = null;
+		nextArgs = null;
+
+		final Cursor c = context.getContentResolver().query(uri,
+				new String[] { "COUNT(1)" }, where, whereArgs, null);
+		if (c == null) {
+			return;
+		}
+		try {
+			if (c.moveToFirst()) {
+				count = c.getInt(0);
+			}
+		}
+		finally {
+			c.close();
+		}
+		if (count > 0) {
+			readPage(where, whereArgs);
+		}
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the row at position, reading pages up to it if needed. Null
+	 * if the rows changed since they were counted.
+	 */
+	Row get(final int position) {
+		if (position >= rows.size() && nextWhere != null) {
+			// Asked for by the launcher, read as the app
+			final long identityToken = Binder.clearCallingIdentity();
+			try {
+				while (position >= rows.size() && nextWhere != null) {
+					readPage(nextWhere, nextArgs);
+				}
+			}
+			finally {
+				Binder.restoreCallingIdentity(identityToken);
+			}
+		}
+		return position < rows.size() ? rows.get(position) : null;
+	}
+
+	private void readPage(final String pageWhere, final String[] pageArgs) {
+		nextWhere = null;
+		nextArgs = null;
+		final Cursor c = context.getContentResolver().query(
+				uri.buildUpon()
+						.appendQueryParameter(MyContentProvider.QUERY_LIMIT,
+								Integer.toString(PAGE_SIZE)).build(),
+				projection, pageWhere, pageArgs, keyset.getSortOrder());
+		if (c == null) {
+			return;
+		}
+		try {
+			while (c.moveToNext()) {
+				rows.add(new Row(c));
+			}
+			if (c.getCount() == PAGE_SIZE && rows.size() < count) {
+				final ArrayList<String> args = new ArrayList<String>();
+				if (whereArgs != null) {
+					args.addAll(Arrays.asList(whereArgs));
+				}
+				// Not after a header, whose place may follow the clock. It
+				// is read again with the next page.
+				c.moveToLast();
+				while (c.getLong(0) < 1 && c.getPosition() > 0) {
+					rows.remove(rows.size() - 1);
+					c.moveToPrevious();
+				}
+				final String after = keyset.after(c, args);
+				nextWhere = where == null ? after : "(" + where + ") AND "
+						+ after;
+				// The list id of the sectioned view must come first, or not
+				// at all
+				nextArgs = args.isEmpty() ? null : args
+						.toArray(new String[args.size()]);
+			}
+		}
+		finally {
+			c.close();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.nononsenseapps.ui;
+
+import com.nononsenseapps.utils.views.TitleNoteTextView;
+
+import android.database.Cursor;
+import android.util.LruCache;
+
+/**
+ * Styled and linkified text of task rows, so binding a row is a single
+ * setText. Entries are keyed by task id and only used if the task has the same
+ * updated time as when the text was made.
+ *
+ * fill() is meant to be called on the loader's thread with a fresh cursor,
+ * get() while binding. Both are thread safe.
+ */
+public class RowTextCache {
+
+	// Rows kept in memory
+	static final int MAX_ROWS = 500;
+	// Characters per shown line kept of the note. The rest is never visible.
+	static final int CHARS_PER_LINE = 200;
+
+	private static class Entry {
+		final long updated;
+		final String title;
+		final String rest;
+		final CharSequence text;
+
+		Entry(final long updated, final String title, final String rest,
+				final CharSequence text) {
+			this.updated = updated;
+			this.title = title;
+			this.rest = rest;
+			this.text = text;
+		}
+	}
+
+	private final LruCache<Long, Entry> entries = new LruCache<Long, Entry>(
+			MAX_ROWS);
+	private final TitleNoteTextView.Styler styler;
+	private volatile int maxLines;
+
+	public RowTextCache(final TitleNoteTextView.Styler styler,
+			final int maxLines) {
+		this.styler = styler;
+		this.maxLines = maxLines;
+	}
+
+	/**
+	 * Number of lines a row shows. Changing it clears the cache.
+	 */
+	public void setMaxLines(final int maxLines) {
+		if (this.maxLines != maxLines) {
+			this.maxLines = maxLines;
+			entries.evictAll();
+		}
+	}
+
+	/**
+	 * Title of the row, as shown. Cursor must have the projection
+	 * Task.Columns.FIELDS, as for all methods here taking a cursor.
+	 */
+	public static String getTitle(final Cursor c) {
+		final String title = c.getString(1);
+		return title == null ? "" : title;
+	}
+
+	/**
+	 * Text below the title, as shown. Nothing for locked tasks or if rows are
+	 * only one line.
+	 */
+	public String getRest(final Cursor c) {
+		final String note = c.getString(2);
+		if (note == null || c.getInt(9) == 1 || maxLines < 2) {
+			return "";
+		}
+		return trim(note, maxLines - 1);
+	}
+
+	/**
+	 * Styled text for a task row, from getTitle() and getRest(). Made now if
+	 * it was not cached.
+	 */
+	public CharSequence get(final long id, final long updated,
+			final String title, final String rest) {
+		final Entry entry = entries.get(id);
+		if (entry != null && entry.updated == updated
+				&& entry.title.equals(title) && entry.rest.equals(rest)) {
+			return entry.text;
+		}
+		return put(id, updated, title, rest);
+	}
+
+	/**
+	 * Makes the text of the first MAX_ROWS tasks in the cursor. Headers are
+	 * skipped. Leaves the cursor before the first row.
+	 */
+	public void fill(final Cursor c) {
+		c.moveToPosition(-1);
+		int count = 0;
+		while (count < MAX_ROWS && c.moveToNext()) {
+			if (c.getLong(0) < 1) {
+				// Header
+				continue;
+			}
+			get(c.getLong(0), c.getLong(5), getTitle(c), getRest(c));
+			count++;
+		}
+		c.moveToPosition(-1);
+	}
+
+	private CharSequence put(final long id, final long updated,
+			final String title, final String rest) {
+		final CharSequence text = styler.style(title, rest);
+		entries.put(id, new Entry(updated, title, rest, text));
+		return text;
+	}
+
+	/**
+	 * Keeps at most lines lines, and CHARS_PER_LINE characters per line. Lines
+	 * after that can't be seen in the row anyway. Words are not cut, so links
+	 * in what is kept stay whole.
+	 */
+	static String trim(final String note, final int lines) {
+		final int maxChars = lines * CHARS_PER_LINE;
+		int end = -1;
+		for (int i = 0; i < lines; i++) {
+			end = note.indexOf('\n', end + 1);
+			if (end < 0) {
+				end = note.length();
+				break;
+			}
+		}
+		if (end > maxChars) {
+			end = maxChars;
+			if (!Character.isWhitespace(note.charAt(end))) {
+				// Back to the start of the word, or past it if it is all
+				int start = end;
+				while (start > 0
+						&& !Character.isWhitespace(note.charAt(start - 1))) {
+					start--;
+				}
+				if (start > 0) {
+					end = start;
+				}
+				else {
+					while (end < note.length()
+							&& !Character.isWhitespace(note.charAt(end))) {
+						end++;
+					}
+				}
+			}
+		}
+		return end < note.length() ? note.substring(0, end) : note;
+	}
+}
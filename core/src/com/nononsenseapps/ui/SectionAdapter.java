@@ -1,6 +1,7 @@
 package com.nononsenseapps.ui;
 
 import java.security.InvalidParameterException;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -34,6 +35,16 @@ public class SectionAdapter extends BaseAdapter {
 
 	private String state = "";
 
+	// Index of non-empty sections, rebuilt when something changes.
+	// Position of each section's header, in order.
+	private boolean indexValid = false;
+	private int indexCount = 0;
+	private int indexSize = 0;
+	private int[] indexStarts = new int[0];
+	private int[] indexHeaderPos = new int[0];
+	private Adapter[] indexAdapters = new Adapter[0];
+	private final HashMap<String, Integer> indexPositions = new HashMap<String, Integer>();
+
 	/**
 	 * A section adapter works in two ways. First, like a normal adapter. In
 	 * that case you give the constructor a regular adapter and the
@@ -108,24 +119,83 @@ public class SectionAdapter extends BaseAdapter {
 		if (headers == null) {
 			throw new InvalidParameterException(ERRORMSG);
 		}
-		// Top is always a section
-		// Sorting matters!
-		for (int headerPos = 0; headerPos < headers.getCount(); headerPos++) {
-			Adapter adapter = sections.get(headers.getItem(headerPos));
-			// Ignore headers that are empty
-			if (adapter.getCount() > 0) {
-				if (position == 0)
-					return headers.getItem(headerPos);
-
-				position -= 1;
+		final int i = findSection(position);
+		return i < 0 ? null : headers.getItem(indexHeaderPos[i]);
+	}
 
-				if (position < adapter.getCount())
-					return headers.getItem(headerPos);
+	/**
+	 * Get the position of a section's header, or -1 if the section is empty
+	 * or not present.
+	 */
+	public int getSectionPosition(final String section) {
+		if (headers == null) {
+			throw new InvalidParameterException(ERRORMSG);
+		}
+		buildIndex();
+		final Integer pos = indexPositions.get(section);
+		return pos == null ? -1 : pos;
+	}
 
-				position -= adapter.getCount();
+	/**
+	 * Rebuilds the index if needed. Empty sections are not shown, and not
+	 * indexed.
+	 */
+	private void buildIndex() {
+		if (indexValid) {
+			return;
+		}
+		final int count = headers.getCount();
+		if (indexStarts.length < count) {
+			indexStarts = new int[count];
+			indexHeaderPos = new int[count];
+			indexAdapters = new Adapter[count];
+		}
+		indexPositions.clear();
+
+		int n = 0;
+		int total = 0;
+		for (int headerPos = 0; headerPos < count; headerPos++) {
+			final String header = headers.getItem(headerPos);
+			final Adapter adapter = sections.get(header);
+			if (adapter != null && adapter.getCount() > 0) {
+				indexStarts[n] = total;
+				indexHeaderPos[n] = headerPos;
+				indexAdapters[n] = adapter;
+				indexPositions.put(header, total);
+				n++;
+				total += adapter.getCount() + 1;
 			}
 		}
-		return null;
+		// Don't hold on to removed adapters
+		Arrays.fill(indexAdapters, n, indexAdapters.length, null);
+		indexSize = n;
+		indexCount = total;
+		indexValid = true;
+	}
+
+	/**
+	 * Returns the index of the section containing position, or -1.
+	 */
+	private int findSection(final int position) {
+		buildIndex();
+		if (position < 0 || position >= indexCount) {
+			return -1;
+		}
+		final int i = Arrays.binarySearch(indexStarts, 0, indexSize, position);
+		// Not a header, so the section starting before it
+		return i >= 0 ? i : -i - 2;
+	}
+
+	@Override
+	public void notifyDataSetChanged() {
+		indexValid = false;
+		super.notifyDataSetChanged();
+	}
+
+	@Override
+	public void notifyDataSetInvalidated() {
+		indexValid = false;
+		super.notifyDataSetInvalidated();
 	}
 
 	/**
@@ -167,6 +237,7 @@ public class SectionAdapter extends BaseAdapter {
 		if (comp != null) {
 			headers.sort(comp);
 		}
+		indexValid = false;
 	}
 
 	public void removeSection(String section, Comparator<String> comp) {
@@ -186,6 +257,7 @@ public class SectionAdapter extends BaseAdapter {
 		}
 
 		sectionIds.remove(section);
+		indexValid = false;
 	}
 
 	public void swapCursor(Cursor data) {
@@ -201,24 +273,13 @@ public class SectionAdapter extends BaseAdapter {
 		if (wrappedAdapter != null) {
 			return wrappedAdapter.getItem(position);
 		} else {
-			// Top is always a section
-			// Sorting matters!
-			for (int headerPos = 0; headerPos < headers.getCount(); headerPos++) {
-				Adapter adapter = sections.get(headers.getItem(headerPos));
-				// Ignore headers that are empty
-				if (adapter.getCount() > 0) {
-					if (position == 0)
-						return headers.getItem(headerPos);
-
-					position -= 1;
-
-					if (position < adapter.getCount())
-						return adapter.getItem(position);
-
-					position -= adapter.getCount();
-				}
-			}
-			return null;
+			final int i = findSection(position);
+			if (i < 0)
+				return null;
+			// Top of a section is its header
+			if (position == indexStarts[i])
+				return headers.getItem(indexHeaderPos[i]);
+			return indexAdapters[i].getItem(position - indexStarts[i] - 1);
 		}
 	}
 
@@ -228,14 +289,8 @@ public class SectionAdapter extends BaseAdapter {
 			return wrappedAdapter.getCount();
 		} else {
 			// total together all sections, plus one for each section header
-			int total = 0;
-			for (Adapter adapter : this.sections.values()) {
-				// Ignore headers that are empty
-				if (adapter.getCount() > 0) {
-					total += adapter.getCount() + 1;
-				}
-			}
-			return total;
+			buildIndex();
+			return indexCount;
 		}
 	}
 
@@ -253,25 +308,12 @@ public class SectionAdapter extends BaseAdapter {
 		if (wrappedAdapter != null) {
 			return wrappedAdapter.getItemViewType(position);
 		} else {
-			// Top is always a section
-			// Sorting matters!
-			for (int i = 0; i < headers.getCount(); i++) {
-				Adapter adapter = sections.get(headers.getItem(i));
-				// Ignore headers that are empty
-				if (adapter.getCount() > 0) {
-					if (position == 0)
-						return TYPE_SECTION_HEADER;
-
-					position -= 1;
-
-					if (position < adapter.getCount())
-						return TYPE_ITEM;
-
-					position -= adapter.getCount();
-				}
-			}
+			final int i = findSection(position);
 			// Could not be found
-			return -1;
+			if (i < 0)
+				return -1;
+			return position == indexStarts[i] ? TYPE_SECTION_HEADER
+					: TYPE_ITEM;
 		}
 	}
 
@@ -289,27 +331,15 @@ public class SectionAdapter extends BaseAdapter {
 		if (wrappedAdapter != null) {
 			return wrappedAdapter.getView(position, convertView, parent);
 		} else {
-			// Top is always a section
-			// Sorting matters!
-			for (int headerPos = 0; headerPos < headers.getCount(); headerPos++) {
-				Adapter adapter = sections.get(headers.getItem(headerPos));
-				// Ignore headers that are empty
-				if (adapter.getCount() > 0) {
-					if (position == 0) {
-						return headers.getView(headerPos, convertView, parent);
-					}
-
-					position -= 1;
-
-					if (position < adapter.getCount())
-						return adapter.getView(position, convertView, parent);
-
-					position -= adapter.getCount();
-				}
-			}
-
+			final int i = findSection(position);
 			// None could be found
-			return null;
+			if (i < 0)
+				return null;
+			if (position == indexStarts[i]) {
+				return headers.getView(indexHeaderPos[i], convertView, parent);
+			}
+			return indexAdapters[i].getView(position - indexStarts[i] - 1,
+					convertView, parent);
 		}
 	}
 
@@ -318,24 +348,12 @@ public class SectionAdapter extends BaseAdapter {
 		if (wrappedAdapter != null) {
 			return wrappedAdapter.getItemId(position);
 		} else {
-			// Top is always a section
-			// Sorting matters!
-			for (int headerPos = 0; headerPos < headers.getCount(); headerPos++) {
-				Adapter adapter = sections.get(headers.getItem(headerPos));
-				// Ignore headers that are empty
-				if (adapter.getCount() > 0) {
-					if (position == 0)
-						return headers.getItemId(headerPos);
-
-					position -= 1;
-
-					if (position < adapter.getCount())
-						return adapter.getItemId(position);
-
-					position -= adapter.getCount();
-				}
-			}
-			return -1;
+			final int i = findSection(position);
+			if (i < 0)
+				return -1;
+			if (position == indexStarts[i])
+				return headers.getItemId(indexHeaderPos[i]);
+			return indexAdapters[i].getItemId(position - indexStarts[i] - 1);
 		}
 	}
 
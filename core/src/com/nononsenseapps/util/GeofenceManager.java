@@ -0,0 +1,480 @@
+package com.nononsenseapps.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.location.Location;
+import android.support.v4.content.LocalBroadcastManager;
+import android.util.Log;
+
+import com.nononsenseapps.notepad.core.R;
+import com.nononsenseapps.notepad.database.Notification;
+
+/**
+ * Keeps location reminders registered with Location Services. The platform
+ * allows about 100 geofences per app, so at most MAX_FENCES are registered:
+ * the ones nearest the last known location.
+ *
+ * One more fence is put around the current location, reaching to the nearest
+ * fence which was left out. Leaving it means the picked fences are out of
+ * date, and update() is called again by ReceiveTransitionsIntentService.
+ *
+ * Which fences are registered is kept in preferences, so an update only sends
+ * the difference. All removes and adds of an update use one connection.
+ */
+public class GeofenceManager {
+
+	private static final String TAG = "nononsenseapps GeofenceManager";
+
+	// Some room is left below the limit of the platform
+	public static final int MAX_FENCES = 90;
+	// Request id of the fence around the current location
+	public static final String RERANK_ID = "rerank";
+	// Smallest radius of the re-rank fence in meters
+	static final float MIN_RERANK_RADIUS = 500f;
+	// Same as the fences made before
+	static final int RESPONSIVENESS = 5 * 1000;
+	// As LocationStatusCodes.SUCCESS
+	public static final int STATUS_SUCCESS = 0;
+
+	private static final String PREFS_NAME = "geofences";
+	private static final String KEY_REGISTERED = "registered";
+
+	/**
+	 * A circular region. Fences are equal if all fields are.
+	 */
+	public static class Fence {
+		public final String id;
+		public final double latitude;
+		public final double longitude;
+		public final float radius;
+
+		public Fence(final String id, final double latitude,
+				final double longitude, final float radius) {
+			this.id = id;
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.radius = radius;
+		}
+
+		/**
+		 * Unique for the id and the region
+		 */
+		String getKey() {
+			return id + ":" + latitude + ":" + longitude + ":" + radius;
+		}
+
+		/**
+		 * Meters from location to the edge, negative if inside
+		 */
+		float distanceTo(final Location location) {
+			final float[] result = new float[1];
+			Location.distanceBetween(location.getLatitude(),
+					location.getLongitude(), latitude, longitude, result);
+			return result[0] - radius;
+		}
+	}
+
+	/**
+	 * Location Services, or a fake in tests. Results may be delivered before
+	 * the methods return.
+	 */
+	public interface FenceClient {
+		public interface Listener {
+			void onConnected();
+
+			/**
+			 * Connecting failed, or the connection was lost before the
+			 * last result. Resolution starts an activity which may fix the
+			 * error, and may be null.
+			 */
+			void onConnectionFailed(int errorCode, PendingIntent resolution);
+
+			/**
+			 * Result of a remove or add, STATUS_SUCCESS or an error of
+			 * LocationStatusCodes
+			 */
+			void onResult(int statusCode);
+		}
+
+		void connect(Listener listener);
+
+		/**
+		 * Only valid while connected. May return null.
+		 */
+		Location getLastLocation();
+
+		void removeFences(List<String> ids);
+
+		/**
+		 * Transitions of RERANK_ID should be exits, others both entries and
+		 * exits. Fences with an existing id replace it.
+		 */
+		void addFences(List<Fence> fences);
+
+		void disconnect();
+	}
+
+	private static GeofenceManager sInstance = null;
+
+	private final Context mContext;
+	private final FenceClient mClient;
+	private final int mMaxFences;
+
+	private boolean mInProgress = false;
+	// Fences to use in the next update, if one was asked for while running
+	private List<Fence> mPending = null;
+	// Run when no update is running or pending
+	private final ArrayList<Runnable> mWhenDone = new ArrayList<Runnable>();
+
+	public GeofenceManager(final Context context, final FenceClient client,
+			final int maxFences) {
+		mContext = context.getApplicationContext();
+		mClient = client;
+		mMaxFences = maxFences;
+	}
+
+	private static synchronized GeofenceManager getInstance(
+			final Context context) {
+		if (sInstance == null) {
+			sInstance = new GeofenceManager(context,
+					new PlayServicesFenceClient(context), MAX_FENCES);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Registers the nearest location reminders and removes the others. Done
+	 * by GeofenceUpdateService, which keeps the process running until Location
+	 * Services has answered.
+	 */
+	public static void update(final Context context) {
+		GeofenceUpdateService.start(context);
+	}
+
+	/**
+	 * Registers the nearest of fences. Call on the main thread. whenDone runs
+	 * once no update is running.
+	 */
+	static void update(final Context context, final List<Fence> fences,
+			final Runnable whenDone) {
+		getInstance(context).update(fences, whenDone);
+	}
+
+	/**
+	 * Call when Location Services has forgotten all fences, like after a
+	 * reboot.
+	 */
+	public static void reset(final Context context) {
+		getInstance(context).clearRegistered();
+	}
+
+	/**
+	 * All reminders with a location
+	 */
+	static List<Fence> loadFences(final Context context) {
+		final ArrayList<Fence> result = new ArrayList<Fence>();
+		final Cursor c = context.getContentResolver().query(
+				Notification.URI,
+				new String[] { Notification.Columns._ID,
+						Notification.Columns.LATITUDE,
+						Notification.Columns.LONGITUDE,
+						Notification.Columns.RADIUS },
+				Notification.Columns.RADIUS + " IS NOT NULL AND "
+						+ Notification.Columns.LATITUDE + " IS NOT NULL AND "
+						+ Notification.Columns.LONGITUDE + " IS NOT NULL",
+				null, null);
+		if (c == null) {
+			return result;
+		}
+		try {
+			while (c.moveToNext()) {
+				result.add(new Fence(Long.toString(c.getLong(0)), c
+						.getDouble(1), c.getDouble(2), (float) c.getDouble(3)));
+			}
+		}
+		finally {
+			c.close();
+		}
+		return result;
+	}
+
+	/**
+	 * As update(fences). whenDone runs once no update is running, which may be
+	 * before this returns.
+	 */
+	public void update(final List<Fence> fences, final Runnable whenDone) {
+		synchronized (this) {
+			mWhenDone.add(whenDone);
+		}
+		update(fences);
+	}
+
+	/**
+	 * Registers the nearest of fences and removes the rest. If an update is
+	 * running, this one is done after it.
+	 */
+	public void update(final List<Fence> fences) {
+		synchronized (this) {
+			if (mInProgress) {
+				mPending = fences;
+				return;
+			}
+			mInProgress = true;
+		}
+
+		try {
+			connect(fences);
+		}
+		catch (RuntimeException e) {
+			// Play services missing or similar
+			Log.e(TAG, "Could not update geofences: " + e.getMessage());
+			finish();
+		}
+	}
+
+	private void connect(final List<Fence> fences) {
+		mClient.connect(new FenceClient.Listener() {
+			// Set once connected
+			private List<Fence> adds;
+			private Set<String> wanted;
+			// Registered keys of the fences being removed
+			private Set<String> removedKeys;
+			private boolean removing;
+			private int status = STATUS_SUCCESS;
+
+			@Override
+			public void onConnected() {
+				final Location location = mClient.getLastLocation();
+				final List<Fence> picked = selectNearest(fences, location,
+						mMaxFences);
+				final Fence rerank = getRerankFence(fences, picked, location);
+				if (rerank != null) {
+					picked.add(rerank);
+				}
+
+				final Set<String> registered = getRegistered();
+				final HashSet<String> wantedIds = new HashSet<String>();
+				wanted = new HashSet<String>();
+				adds = new ArrayList<Fence>();
+				for (final Fence fence : picked) {
+					wantedIds.add(fence.id);
+					wanted.add(fence.getKey());
+					if (!registered.contains(fence.getKey())) {
+						adds.add(fence);
+					}
+				}
+				final ArrayList<String> removes = new ArrayList<String>();
+				removedKeys = new HashSet<String>();
+				for (final String key : registered) {
+					final String id = key.substring(0, key.indexOf(':'));
+					if (!wantedIds.contains(id)) {
+						removes.add(id);
+						removedKeys.add(key);
+					}
+				}
+
+				Log.d(TAG, "Registered: " + registered.size() + ", removing: "
+						+ removes.size() + ", adding: " + adds.size());
+				if (!removes.isEmpty()) {
+					removing = true;
+					mClient.removeFences(removes);
+				}
+				else {
+					add();
+				}
+			}
+
+			private void add() {
+				removing = false;
+				if (!adds.isEmpty()) {
+					mClient.addFences(adds);
+				}
+				else {
+					done();
+				}
+			}
+
+			@Override
+			public void onResult(final int statusCode) {
+				if (removing) {
+					if (statusCode == STATUS_SUCCESS) {
+						removedKeys.clear();
+					}
+					else {
+						// Still registered, so removed again next time
+						Log.e(TAG, "Removing geofences failed: " + statusCode);
+						wanted.addAll(removedKeys);
+					}
+					add();
+				}
+				else {
+					status = statusCode;
+					done();
+				}
+			}
+
+			private void done() {
+				mClient.disconnect();
+				if (status == STATUS_SUCCESS) {
+					setRegistered(wanted);
+					broadcast(new Intent(GeofenceUtils.ACTION_GEOFENCES_ADDED));
+				}
+				else {
+					forgetAdds();
+					final StringBuilder ids = new StringBuilder();
+					for (final Fence fence : adds) {
+						if (ids.length() > 0) {
+							ids.append(GeofenceUtils.GEOFENCE_ID_DELIMITER);
+						}
+						ids.append(fence.id);
+					}
+					broadcast(new Intent(GeofenceUtils.ACTION_GEOFENCE_ERROR)
+							.putExtra(GeofenceUtils.EXTRA_GEOFENCE_STATUS,
+									mContext.getString(
+											R.string.add_geofences_result_failure,
+											status, ids.toString())));
+				}
+				finish();
+			}
+
+			/**
+			 * Adds may have been partly done, so all are sent next time.
+			 * Fences which may not have been removed are kept, so they are
+			 * removed next time.
+			 */
+			private void forgetAdds() {
+				if (removedKeys.isEmpty()) {
+					clearRegistered();
+				}
+				else {
+					setRegistered(removedKeys);
+				}
+			}
+
+			@Override
+			public void onConnectionFailed(final int errorCode,
+					final PendingIntent resolution) {
+				if (adds != null) {
+					// Lost while sending
+					forgetAdds();
+				}
+				broadcast(new Intent(GeofenceUtils.ACTION_CONNECTION_ERROR)
+						.putExtra(GeofenceUtils.EXTRA_CONNECTION_ERROR_CODE,
+								errorCode)
+						.putExtra(GeofenceUtils.EXTRA_CONNECTION_RESOLUTION,
+								resolution));
+				finish();
+			}
+		});
+	}
+
+	private void finish() {
+		final List<Fence> pending;
+		final ArrayList<Runnable> whenDone = new ArrayList<Runnable>();
+		synchronized (this) {
+			mInProgress = false;
+			pending = mPending;
+			mPending = null;
+			if (pending == null) {
+				whenDone.addAll(mWhenDone);
+				mWhenDone.clear();
+			}
+		}
+		if (pending != null) {
+			update(pending);
+		}
+		for (final Runnable runnable : whenDone) {
+			runnable.run();
+		}
+	}
+
+	private void broadcast(final Intent intent) {
+		LocalBroadcastManager.getInstance(mContext).sendBroadcast(
+				intent.addCategory(GeofenceUtils.CATEGORY_LOCATION_SERVICES));
+	}
+
+	/**
+	 * The at most max fences nearest to location, nearest first. Without a
+	 * location, the newest are picked.
+	 */
+	public static List<Fence> selectNearest(final List<Fence> fences,
+			final Location location, final int max) {
+		final ArrayList<Fence> sorted = new ArrayList<Fence>(fences);
+		if (location == null) {
+			Collections.sort(sorted, new Comparator<Fence>() {
+				@Override
+				public int compare(final Fence lhs, final Fence rhs) {
+					return Long.valueOf(rhs.id).compareTo(Long.valueOf(lhs.id));
+				}
+			});
+		}
+		else {
+			final HashMap<Fence, Float> distances = new HashMap<Fence, Float>();
+			for (final Fence fence : sorted) {
+				distances.put(fence, fence.distanceTo(location));
+			}
+			Collections.sort(sorted, new Comparator<Fence>() {
+				@Override
+				public int compare(final Fence lhs, final Fence rhs) {
+					return distances.get(lhs).compareTo(distances.get(rhs));
+				}
+			});
+		}
+		return new ArrayList<Fence>(sorted.subList(0,
+				Math.min(max, sorted.size())));
+	}
+
+	/**
+	 * A fence around location reaching the nearest fence not picked. Null if
+	 * all are picked or the location is unknown.
+	 */
+	static Fence getRerankFence(final List<Fence> fences,
+			final List<Fence> picked, final Location location) {
+		if (location == null || picked.size() >= fences.size()) {
+			return null;
+		}
+		final HashSet<String> pickedIds = new HashSet<String>();
+		for (final Fence fence : picked) {
+			pickedIds.add(fence.id);
+		}
+		float nearest = Float.MAX_VALUE;
+		for (final Fence fence : fences) {
+			if (!pickedIds.contains(fence.id)) {
+				nearest = Math.min(nearest, fence.distanceTo(location));
+			}
+		}
+		return new Fence(RERANK_ID, location.getLatitude(),
+				location.getLongitude(), Math.max(MIN_RERANK_RADIUS, nearest));
+	}
+
+	private SharedPreferences getPrefs() {
+		return mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+	}
+
+	/**
+	 * Keys of the fences which are registered
+	 */
+	public Set<String> getRegistered() {
+		return new HashSet<String>(getPrefs().getStringSet(KEY_REGISTERED,
+				Collections.<String> emptySet()));
+	}
+
+	private void setRegistered(final Set<String> keys) {
+		getPrefs().edit().putStringSet(KEY_REGISTERED, keys).commit();
+	}
+
+	public void clearRegistered() {
+		getPrefs().edit().remove(KEY_REGISTERED).commit();
+	}
+}
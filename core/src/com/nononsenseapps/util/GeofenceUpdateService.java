@@ -0,0 +1,93 @@
+package com.nononsenseapps.util;
+
+import java.util.List;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.PowerManager;
+
+/**
+ * Runs GeofenceManager updates asked for by receivers, services and the
+ * database. Those return before Location Services answers, so this keeps the
+ * process, and the device, awake until it has. Reminders are read on a
+ * background thread, the fences are sent from the main thread.
+ */
+public class GeofenceUpdateService extends Service {
+
+	// Released when the service stops, or after this long
+	private static final long WAKE_TIMEOUT_MS = 60 * 1000;
+
+	private static PowerManager.WakeLock sWakeLock = null;
+
+	private Handler mHandler;
+
+	/**
+	 * Like WakefulBroadcastReceiver.startWakefulService, the device is kept
+	 * awake from here, not only once the service has started.
+	 */
+	public static void start(final Context context) {
+		synchronized (GeofenceUpdateService.class) {
+			if (sWakeLock == null) {
+				final PowerManager pm = (PowerManager) context
+						.getApplicationContext().getSystemService(
+								Context.POWER_SERVICE);
+				sWakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
+						"nononsenseapps GeofenceUpdateService");
+				sWakeLock.setReferenceCounted(false);
+			}
+			sWakeLock.acquire(WAKE_TIMEOUT_MS);
+		}
+		context.startService(new Intent(context, GeofenceUpdateService.class));
+	}
+
+	@Override
+	public void onCreate() {
+		super.onCreate();
+		mHandler = new Handler();
+	}
+
+	@Override
+	public int onStartCommand(final Intent intent, final int flags,
+			final int startId) {
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final List<GeofenceManager.Fence> fences = GeofenceManager
+						.loadFences(GeofenceUpdateService.this);
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						GeofenceManager.update(GeofenceUpdateService.this,
+								fences, new Runnable() {
+									@Override
+									public void run() {
+										// Only stops after the latest start
+										stopSelf(startId);
+									}
+								});
+					}
+				});
+			}
+		}).start();
+		// Started again by the next change, and on boot
+		return START_NOT_STICKY;
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		synchronized (GeofenceUpdateService.class) {
+			if (sWakeLock != null && sWakeLock.isHeld()) {
+				sWakeLock.release();
+			}
+		}
+	}
+
+	@Override
+	public IBinder onBind(final Intent intent) {
+		return null;
+	}
+}
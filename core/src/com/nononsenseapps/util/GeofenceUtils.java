@@ -65,6 +65,10 @@ public final class GeofenceUtils {
     public static final String EXTRA_CONNECTION_ERROR_CODE =
             "com.example.android.geofence.EXTRA_CONNECTION_ERROR_CODE";
 
+    // PendingIntent of an activity which may resolve a connection error
+    public static final String EXTRA_CONNECTION_RESOLUTION =
+            "com.example.android.geofence.EXTRA_CONNECTION_RESOLUTION";
+
     public static final String EXTRA_CONNECTION_ERROR_MESSAGE =
             "com.example.android.geofence.EXTRA_CONNECTION_ERROR_MESSAGE";
 
@@ -0,0 +1,152 @@
+package com.nononsenseapps.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GooglePlayServicesClient.ConnectionCallbacks;
+import com.google.android.gms.common.GooglePlayServicesClient.OnConnectionFailedListener;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.LocationClient;
+import com.google.android.gms.location.LocationClient.OnAddGeofencesResultListener;
+import com.google.android.gms.location.LocationClient.OnRemoveGeofencesResultListener;
+import com.google.android.gms.location.LocationStatusCodes;
+import com.nononsenseapps.notepad.services.ReceiveTransitionsIntentService;
+
+/**
+ * GeofenceManager's connection to Location Services, using one LocationClient
+ * for all requests between connect() and disconnect().
+ */
+class PlayServicesFenceClient implements GeofenceManager.FenceClient,
+		ConnectionCallbacks, OnConnectionFailedListener,
+		OnAddGeofencesResultListener, OnRemoveGeofencesResultListener {
+
+	private final Context mContext;
+	private LocationClient mLocationClient = null;
+	private Listener mListener = null;
+
+	PlayServicesFenceClient(final Context context) {
+		mContext = context.getApplicationContext();
+	}
+
+	@Override
+	public void connect(final Listener listener) {
+		mListener = listener;
+		mLocationClient = new LocationClient(mContext, this, this);
+		mLocationClient.connect();
+	}
+
+	@Override
+	public Location getLastLocation() {
+		return mLocationClient.getLastLocation();
+	}
+
+	@Override
+	public void removeFences(final List<String> ids) {
+		mLocationClient.removeGeofences(ids, this);
+	}
+
+	@Override
+	public void addFences(final List<GeofenceManager.Fence> fences) {
+		final ArrayList<Geofence> geofences = new ArrayList<Geofence>(
+				fences.size());
+		for (final GeofenceManager.Fence fence : fences) {
+			final int transitions;
+			if (GeofenceManager.RERANK_ID.equals(fence.id)) {
+				transitions = Geofence.GEOFENCE_TRANSITION_EXIT;
+			}
+			else {
+				transitions = Geofence.GEOFENCE_TRANSITION_ENTER
+						| Geofence.GEOFENCE_TRANSITION_EXIT;
+			}
+			geofences.add(new Geofence.Builder()
+					.setCircularRegion(fence.latitude, fence.longitude,
+							fence.radius).setRequestId(fence.id)
+					.setNotificationResponsiveness(
+							GeofenceManager.RESPONSIVENESS)
+					.setTransitionTypes(transitions)
+					.setExpirationDuration(Geofence.NEVER_EXPIRE).build());
+		}
+		mLocationClient.addGeofences(geofences, getPendingIntent(), this);
+	}
+
+	@Override
+	public void disconnect() {
+		mListener = null;
+		if (mLocationClient != null) {
+			mLocationClient.disconnect();
+			mLocationClient = null;
+		}
+	}
+
+	/**
+	 * Same as the one fences were registered with before, so those are
+	 * replaced and removed too
+	 */
+	private PendingIntent getPendingIntent() {
+		return PendingIntent.getService(mContext, 0, new Intent(mContext,
+				ReceiveTransitionsIntentService.class),
+				PendingIntent.FLAG_UPDATE_CURRENT);
+	}
+
+	@Override
+	public void onConnected(final Bundle bundle) {
+		mListener.onConnected();
+	}
+
+	/**
+	 * Only called if Play services dropped the connection, so a request may
+	 * never get its result
+	 */
+	@Override
+	public void onDisconnected() {
+		Log.e(GeofenceUtils.APPTAG, "Geofence connection lost");
+		mLocationClient = null;
+		if (mListener != null) {
+			final Listener listener = mListener;
+			mListener = null;
+			listener.onConnectionFailed(ConnectionResult.INTERNAL_ERROR, null);
+		}
+	}
+
+	@Override
+	public void onConnectionFailed(final ConnectionResult result) {
+		Log.e(GeofenceUtils.APPTAG,
+				"Geofence connection failed: " + result.getErrorCode());
+		mLocationClient = null;
+		if (mListener != null) {
+			final Listener listener = mListener;
+			mListener = null;
+			listener.onConnectionFailed(result.getErrorCode(),
+					result.getResolution());
+		}
+	}
+
+	@Override
+	public void onAddGeofencesResult(final int statusCode, final String[] ids) {
+		if (statusCode != LocationStatusCodes.SUCCESS) {
+			Log.e(GeofenceUtils.APPTAG, "Adding geofences failed: "
+					+ statusCode);
+		}
+		mListener.onResult(statusCode);
+	}
+
+	@Override
+	public void onRemoveGeofencesByRequestIdsResult(final int statusCode,
+			final String[] ids) {
+		mListener.onResult(statusCode);
+	}
+
+	@Override
+	public void onRemoveGeofencesByPendingIntentResult(final int statusCode,
+			final PendingIntent intent) {
+		mListener.onResult(statusCode);
+	}
+}
@@ -0,0 +1,73 @@
+package com.nononsenseapps.notepad.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import android.content.Context;
+
+/**
+ * Timings of an earlier run on the same device, kept in a file in the app's
+ * external files directory. Missing baselines are recorded. Delete the file
+ * to start over after an intended change.
+ */
+class Baselines {
+
+	// Slower than the baseline by this factor and SLACK_US fails
+	static final double TOLERANCE = 1.5;
+	static final long SLACK_US = 2000;
+
+	private final File file;
+	private final Properties values = new Properties();
+	private final StringBuilder regressions = new StringBuilder();
+
+	Baselines(final Context context, final String name) throws IOException {
+		File dir = context.getExternalFilesDir(null);
+		if (dir == null) {
+			dir = context.getFilesDir();
+		}
+		file = new File(dir, name);
+		if (file.exists()) {
+			final FileInputStream in = new FileInputStream(file);
+			try {
+				values.load(in);
+			}
+			finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Compares micros with the baseline of key, or records it.
+	 */
+	void check(final String key, final long micros) {
+		final String baseline = values.getProperty(key);
+		if (baseline == null) {
+			values.setProperty(key, Long.toString(micros));
+		}
+		else if (micros > Long.parseLong(baseline) * TOLERANCE + SLACK_US) {
+			regressions.append(key).append(": ").append(micros)
+					.append(" us, baseline ").append(baseline).append(" us\n");
+		}
+	}
+
+	void save(final String comment) throws IOException {
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			values.store(out, comment);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the keys slower than their baseline, one per line.
+	 */
+	String getRegressions() {
+		return regressions.toString();
+	}
+}
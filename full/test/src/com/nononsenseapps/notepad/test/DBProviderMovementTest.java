@@ -5,9 +5,11 @@ import java.util.HashSet;
 import java.util.Random;
 
 import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.MyContentProvider;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -422,6 +424,51 @@ public class DBProviderMovementTest extends AndroidTestCase {
 		deleteList(tl);
 	}
 
+	private Task getEdgeTask(final long listId, final String order) {
+		final Cursor c = resolver.query(Task.URI, Task.Columns.FIELDS,
+				Task.Columns.DBLIST + " IS ?",
+				new String[] { Long.toString(listId) }, order + " LIMIT 1");
+		assertCursorGood(c);
+		assertTrue(c.moveToFirst());
+		final Task t = new Task(c);
+		c.close();
+		return t;
+	}
+
+	/**
+	 * Benchmark. Moves tasks from last to first in a long list. Only the moves
+	 * themselves are timed.
+	 */
+	public void testMoveSpeed() throws Exception {
+		final TaskList tl = insertList();
+		final int count = 5000;
+		final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>(
+				count);
+		for (int i = 0; i < count; i++) {
+			final Task t = new Task();
+			t.title = "Task" + i;
+			t.dblist = tl._id;
+			ops.add(ContentProviderOperation.newInsert(Task.URI)
+					.withValues(t.getContent()).build());
+		}
+		resolver.applyBatch(MyContentProvider.AUTHORITY, ops);
+
+		final int moves = 100;
+		long nanos = 0;
+		for (int i = 0; i < moves; i++) {
+			final Task first = getEdgeTask(tl._id, Task.Columns.LEFT);
+			final Task last = getEdgeTask(tl._id, Task.Columns.LEFT + " DESC");
+			final long start = System.nanoTime();
+			assertTrue(0 < last.moveTo(resolver, first));
+			nanos += System.nanoTime() - start;
+		}
+		Log.d("nononsenseapps test", "Moves per second in a list of " + count
+				+ ": " + (moves * 1000000000L / Math.max(1, nanos)));
+
+		assertTaskLeftRightAreSequential(tl._id);
+		deleteList(tl);
+	}
+
 	public void testMoveTaskToList() {
 		final TaskList tl = insertList();
 		final TaskList tl2 = insertList();
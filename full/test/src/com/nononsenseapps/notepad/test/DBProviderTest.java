@@ -1,13 +1,17 @@
 package com.nononsenseapps.notepad.test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 
 import com.nononsenseapps.notepad.database.DatabaseHandler;
 import com.nononsenseapps.notepad.database.LegacyDBHelper;
+import com.nononsenseapps.notepad.database.MyContentProvider;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
+import com.nononsenseapps.notepad.services.TaskBulkService;
+import com.nononsenseapps.utils.time.RFC3339Date;
 
 import android.content.ContentResolver;
 import android.content.ContentValues;
@@ -17,6 +21,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.test.AndroidTestCase;
 import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
 
 public class DBProviderTest extends AndroidTestCase {
 
@@ -124,4 +129,244 @@ public class DBProviderTest extends AndroidTestCase {
 				Task.Columns.HISTORY_COLUMNS, Task.Columns.HIST_TASK_ID
 						+ " IS ?", new String[] { Long.toString(t._id) }, 0);
 	}
+
+	@SmallTest
+	public void testTaskQueryLimit() {
+		final TaskList list = getNewList();
+		insertSomeTasks(list, 5);
+
+		final Uri limited = Task.URI.buildUpon()
+				.appendQueryParameter(MyContentProvider.QUERY_LIMIT, "2")
+				.build();
+		assertUriReturnsResult(limited, Task.Columns.FIELDS,
+				Task.Columns.DBLIST + " IS ?",
+				new String[] { Long.toString(list._id) }, 2);
+		assertUriReturnsResult(Task.URI, Task.Columns.FIELDS,
+				Task.Columns.DBLIST + " IS ?",
+				new String[] { Long.toString(list._id) }, 5);
+
+		list.delete(context);
+	}
+
+	@SmallTest
+	public void testLegacyTaskURI() {
+		final TaskList list = getNewList();
+		final List<Task> tasks = insertSomeTasks(list, 3);
+		final Task done = tasks.get(1);
+		done.setAsCompleted();
+		done.save(context);
+		final Task noDue = tasks.get(2);
+		noDue.due = null;
+		noDue.save(context);
+
+		final String[] projection = new String[] {
+				LegacyDBHelper.NotePad.Notes._ID,
+				LegacyDBHelper.NotePad.Notes.COLUMN_NAME_TITLE,
+				LegacyDBHelper.NotePad.Notes.COLUMN_NAME_DUE_DATE,
+				LegacyDBHelper.NotePad.Notes.COLUMN_NAME_GTASKS_STATUS };
+		final String selection = LegacyDBHelper.NotePad.Notes.COLUMN_NAME_LIST
+				+ " IS ?";
+		final String[] args = new String[] { Long.toString(list._id) };
+
+		final Cursor c = resolver.query(
+				LegacyDBHelper.NotePad.Notes.CONTENT_URI, projection,
+				selection, args, LegacyDBHelper.NotePad.Notes._ID);
+		assertEquals(3, c.getCount());
+		assertTrue(Arrays.equals(projection, c.getColumnNames()));
+		c.moveToFirst();
+		assertEquals(tasks.get(0).title, c.getString(1));
+		assertEquals(RFC3339Date.asRFC3339(tasks.get(0).due), c.getString(2));
+		assertEquals("needsAction", c.getString(3));
+		assertEquals(Cursor.FIELD_TYPE_STRING, c.getType(2));
+		c.moveToNext();
+		assertEquals("completed", c.getString(3));
+		c.moveToNext();
+		assertFalse(c.isNull(2));
+		assertEquals("", c.getString(2));
+		c.close();
+
+		final Uri limited = LegacyDBHelper.NotePad.Notes.CONTENT_URI
+				.buildUpon()
+				.appendQueryParameter(MyContentProvider.QUERY_LIMIT, "2")
+				.build();
+		assertUriReturnsResult(limited, projection, selection, args, 2);
+
+		// Legacy flags are selectable, and nothing is deleted or hidden
+		assertUriReturnsResult(LegacyDBHelper.NotePad.Notes.CONTENT_URI,
+				projection, selection + " AND "
+						+ LegacyDBHelper.NotePad.Notes.COLUMN_NAME_DELETED
+						+ " IS NOT 1 AND "
+						+ LegacyDBHelper.NotePad.Notes.COLUMN_NAME_HIDDEN
+						+ " IS NOT 1 AND "
+						+ LegacyDBHelper.NotePad.Notes.COLUMN_NAME_MODIFIED
+						+ " IS 0 AND "
+						+ LegacyDBHelper.NotePad.Notes.COLUMN_NAME_INDENTLEVEL
+						+ " IS 0 AND "
+						+ LegacyDBHelper.NotePad.Notes.COLUMN_NAME_MODIFICATION_DATE
+						+ " > 0", args, 3);
+
+		list.delete(context);
+	}
+
+	@SmallTest
+	public void testSearchRanking() {
+		final TaskList list = getNewList();
+		final Task inNote = new Task();
+		inNote.title = "unrelated";
+		inNote.note = "a long note which mentions zebrafish only once";
+		inNote.dblist = list._id;
+		inNote.save(context);
+		final Task inTitle = new Task();
+		inTitle.title = "zebrafish";
+		inTitle.note = "zebrafish zebrafish";
+		inTitle.dblist = list._id;
+		inTitle.save(context);
+
+		// Null sort order means by relevance
+		final Cursor c = resolver.query(Task.URI_SEARCH,
+				Task.Columns.SEARCH_FIELDS, null, new String[] { "zebra" },
+				null);
+		assertEquals("Prefix search should match both tasks", 2, c.getCount());
+		c.moveToFirst();
+		assertEquals("Title hit should rank first", inTitle._id, c.getLong(0));
+		c.moveToNext();
+		assertTrue("Should be a snippet of the note",
+				c.getString(2).contains("zebrafish"));
+		c.close();
+
+		list.delete(context);
+		assertUriReturnsResult(Task.URI_SEARCH, Task.Columns.SEARCH_FIELDS,
+				null, new String[] { "zebra" }, 0);
+	}
+
+	@SmallTest
+	public void testBulkOperations() throws Exception {
+		final TaskList list = getNewList();
+		final TaskList otherList = getNewList();
+		final ArrayList<Task> tasks = insertSomeTasks(list, 450);
+		final long[] ids = new long[tasks.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = tasks.get(i)._id;
+		}
+		final String inList = Task.Columns.DBLIST + " IS ?";
+		final String[] listArg = new String[] { Long.toString(list._id) };
+		final String[] otherListArg = new String[] { Long.toString(otherList._id) };
+
+		resolver.applyBatch(MyContentProvider.AUTHORITY,
+				TaskBulkService.getCompleteOperations(true, ids));
+		assertUriReturnsResult(Task.URI, Task.Columns.FIELDS, inList + " AND "
+				+ Task.Columns.COMPLETED + " IS NOT NULL", listArg, ids.length);
+
+		resolver.applyBatch(MyContentProvider.AUTHORITY,
+				TaskBulkService.getCopyOperations(context, otherList._id,
+						Arrays.copyOf(ids, 10)));
+		assertUriReturnsResult(Task.URI, Task.Columns.FIELDS, inList,
+				otherListArg, 10);
+
+		resolver.applyBatch(MyContentProvider.AUTHORITY,
+				TaskBulkService.getMoveOperations(otherList._id,
+						Arrays.copyOf(ids, 20)));
+		assertUriReturnsResult(Task.URI, Task.Columns.FIELDS, inList,
+				otherListArg, 30);
+
+		final long start = System.currentTimeMillis();
+		resolver.applyBatch(MyContentProvider.AUTHORITY,
+				TaskBulkService.getDeleteOperations(ids));
+		Log.d("nononsenseapps test", "Bulk deleted " + ids.length
+				+ " tasks in " + (System.currentTimeMillis() - start) + " ms");
+		assertUriReturnsResult(Task.URI, Task.Columns.FIELDS, inList, listArg,
+				0);
+		// Only the copies remain
+		assertUriReturnsResult(Task.URI, Task.Columns.FIELDS, inList,
+				otherListArg, 10);
+
+		list.delete(context);
+		otherList.delete(context);
+	}
+
+	private int countHistory(final Task t) {
+		final Cursor c = resolver.query(Task.URI_TASK_HISTORY,
+				Task.Columns.HISTORY_COLUMNS, Task.Columns.HIST_TASK_ID
+						+ " IS ?", new String[] { Long.toString(t._id) }, null);
+		final int count = c.getCount();
+		c.close();
+		return count;
+	}
+
+	private Task readTask(final long id) {
+		final Cursor c = resolver.query(Task.getUri(id), Task.Columns.FIELDS,
+				null, null, null);
+		c.moveToFirst();
+		final Task t = new Task(c);
+		c.close();
+		return t;
+	}
+
+	@SmallTest
+	public void testSaveOnlyChanged() {
+		final TaskList list = getNewList();
+		final Task t = insertSomeTasks(list, 1).get(0);
+		t.due = 12345L;
+		t.save(context);
+
+		final Task read = readTask(t._id);
+		assertEquals("Nothing changed since read", 0, read
+				.getChangedContent().size());
+		final int history = countHistory(read);
+
+		read.setAsCompleted();
+		assertEquals("Only completed changed", 1, read.getChangedContent()
+				.size());
+		assertTrue(read.getChangedContent().containsKey(
+				Task.Columns.COMPLETED));
+		read.save(context);
+		assertEquals("Completing should not add history", history,
+				countHistory(read));
+
+		final Task again = readTask(t._id);
+		assertNotNull(again.completed);
+		assertEquals("Due date should be untouched", Long.valueOf(12345L),
+				again.due);
+		assertEquals(t.note, again.note);
+
+		list.delete(context);
+	}
+
+	/**
+	 * Benchmark. Toggles completion of tasks with long notes, which only
+	 * writes the completed and updated columns.
+	 */
+	@SmallTest
+	public void testCompletionToggleSpeed() {
+		final TaskList list = getNewList();
+		final StringBuilder note = new StringBuilder();
+		while (note.length() < 20000) {
+			note.append("a rather long note with many words in it ");
+		}
+		final ArrayList<Task> tasks = new ArrayList<Task>();
+		for (int i = 0; i < 20; i++) {
+			final Task t = new Task();
+			t.title = "toggle" + i;
+			t.note = note.toString();
+			t.dblist = list._id;
+			t.save(context);
+			tasks.add(readTask(t._id));
+		}
+
+		final long start = System.currentTimeMillis();
+		int toggles = 0;
+		for (int round = 0; round < 5; round++) {
+			for (final Task t : tasks) {
+				t.completed = t.completed == null ? Long.valueOf(round + 1)
+						: null;
+				assertEquals(1, t.save(context));
+				toggles++;
+			}
+		}
+		final long time = Math.max(1, System.currentTimeMillis() - start);
+		Log.d("nononsenseapps test", "Completion toggles per second: "
+				+ (1000 * toggles / time));
+
+		list.delete(context);
+	}
 }
@@ -0,0 +1,200 @@
+package com.nononsenseapps.notepad.test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Random;
+
+import com.nononsenseapps.notepad.database.MyContentProvider;
+import com.nononsenseapps.notepad.database.Notification;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+import com.nononsenseapps.notepad.sync.googleapi.GoogleTask;
+import com.nononsenseapps.notepad.sync.googleapi.GoogleTaskList;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+
+/**
+ * Fills the database through the provider with lists and tasks like a heavy
+ * user would have: long notes, edit history, reminders, Google Tasks rows and
+ * some tasks in the trash. The same seed gives the same content.
+ *
+ * Everything made is recognized by PREFIX and ACCOUNT, and removed by clean.
+ */
+public class DataGenerator {
+
+	public static final String PREFIX = "111aaGenerated";
+	public static final String ACCOUNT = "generated@example.com";
+
+	// Searchable words, every task has a few of them
+	public static final String[] WORDS = { "buy", "milk", "call", "mom",
+			"work", "meeting", "report", "world", "word", "garden", "paint",
+			"fence", "book", "flight", "dentist", "project", "review", "bank",
+			"car", "insurance", "birthday", "present", "laundry", "email" };
+
+	// Operations per applyBatch
+	static final int BATCH = 500;
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	public final int listCount;
+	public final int taskCount;
+
+	// Shares of the tasks
+	public double completed = 0.3;
+	public double withDue = 0.5;
+	public double edited = 0.1;
+	public double withReminder = 0.1;
+	public double synced = 0.8;
+	public double deleted = 0.05;
+	// Words in a note, up to
+	public int noteWords = 300;
+
+	public final ArrayList<TaskList> lists = new ArrayList<TaskList>();
+	public final ArrayList<GoogleTaskList> remoteLists = new ArrayList<GoogleTaskList>();
+	// Tasks not in the trash
+	public final ArrayList<Long> taskIds = new ArrayList<Long>();
+
+	private final Random random;
+
+	public DataGenerator(final long seed, final int listCount,
+			final int taskCount) {
+		this.random = new Random(seed);
+		this.listCount = listCount;
+		this.taskCount = taskCount;
+	}
+
+	public void generate(final Context context) throws RemoteException,
+			OperationApplicationException {
+		final ContentResolver resolver = context.getContentResolver();
+		final long now = Calendar.getInstance().getTimeInMillis();
+
+		for (int i = 0; i < listCount; i++) {
+			final TaskList list = new TaskList();
+			list.title = PREFIX + " " + i;
+			list.save(context, now - DAY);
+			lists.add(list);
+
+			final GoogleTaskList remote = new GoogleTaskList(list, ACCOUNT);
+			remote.remoteId = PREFIX + "list" + i;
+			remote.save(context, list.updated);
+			remoteLists.add(remote);
+		}
+
+		// Spread evenly, in the order they are inserted
+		final ArrayList<ContentProviderOperation> ops = new ArrayList<ContentProviderOperation>();
+		for (int i = 0; i < taskCount; i++) {
+			final Task task = new Task();
+			task.dblist = lists.get(i % listCount)._id;
+			task.title = PREFIX + " " + i + " " + words(2 + random.nextInt(4));
+			task.note = words(random.nextInt(noteWords + 1));
+			task.updated = now - DAY - random.nextInt(365) * DAY;
+			if (random.nextDouble() < completed) {
+				task.completed = task.updated;
+			}
+			if (random.nextDouble() < withDue) {
+				task.due = now + (random.nextInt(60) - 20) * DAY;
+			}
+			ops.add(ContentProviderOperation.newInsert(Task.URI)
+					.withValues(task.getContent()).build());
+			if (ops.size() == BATCH || i == taskCount - 1) {
+				for (final ContentProviderResult result : resolver.applyBatch(
+						MyContentProvider.AUTHORITY, ops)) {
+					taskIds.add(ContentUris.parseId(result.uri));
+				}
+				ops.clear();
+			}
+		}
+
+		for (int i = 0; i < taskIds.size(); i++) {
+			final long id = taskIds.get(i);
+			if (random.nextDouble() < edited) {
+				// Adds to the history
+				final ContentValues values = new ContentValues();
+				values.put(Task.Columns.NOTE, words(random.nextInt(noteWords + 1)));
+				ops.add(ContentProviderOperation
+						.newUpdate(ContentUris.withAppendedId(Task.URI, id))
+						.withValues(values).build());
+			}
+			if (random.nextDouble() < withReminder) {
+				final Notification reminder = new Notification(id);
+				reminder.time = now + random.nextInt(30) * DAY;
+				ops.add(ContentProviderOperation.newInsert(Notification.URI)
+						.withValues(reminder.getContent()).build());
+			}
+			if (random.nextDouble() < synced) {
+				final GoogleTask remote = new GoogleTask(ACCOUNT);
+				remote.dbid = id;
+				remote.listdbid = lists.get(i % listCount)._id;
+				remote.remoteId = PREFIX + "task" + i;
+				remote.updated = now - DAY;
+				ops.add(ContentProviderOperation.newInsert(GoogleTask.URI)
+						.withValues(remote.getContent()).build());
+			}
+			applyIfFull(resolver, ops);
+		}
+		apply(resolver, ops);
+
+		// Last, so tasks in the trash had history, reminders and remote rows
+		final ArrayList<Long> trashed = new ArrayList<Long>();
+		for (final Long id : taskIds) {
+			if (random.nextDouble() < deleted) {
+				trashed.add(id);
+				ops.add(ContentProviderOperation.newDelete(
+						ContentUris.withAppendedId(Task.URI, id)).build());
+				applyIfFull(resolver, ops);
+			}
+		}
+		apply(resolver, ops);
+		taskIds.removeAll(trashed);
+	}
+
+	private void applyIfFull(final ContentResolver resolver,
+			final ArrayList<ContentProviderOperation> ops)
+			throws RemoteException, OperationApplicationException {
+		if (ops.size() >= BATCH) {
+			apply(resolver, ops);
+		}
+	}
+
+	private void apply(final ContentResolver resolver,
+			final ArrayList<ContentProviderOperation> ops)
+			throws RemoteException, OperationApplicationException {
+		if (!ops.isEmpty()) {
+			resolver.applyBatch(MyContentProvider.AUTHORITY, ops);
+			ops.clear();
+		}
+	}
+
+	public String words(final int count) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				sb.append(i % 12 == 0 ? ".\n" : " ");
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Removes everything generated, also from the trash.
+	 */
+	public static void clean(final Context context) {
+		final ContentResolver resolver = context.getContentResolver();
+		final String[] prefix = new String[] { PREFIX + "%" };
+		resolver.delete(TaskList.URI, TaskList.Columns.TITLE + " LIKE ?",
+				prefix);
+		resolver.delete(Task.URI_DELETED_QUERY, Task.Columns.TITLE
+				+ " LIKE ?", prefix);
+		resolver.delete(GoogleTask.URI, GoogleTask.Columns.ACCOUNT + " IS ?",
+				new String[] { ACCOUNT });
+		resolver.delete(GoogleTaskList.URI, GoogleTaskList.Columns.ACCOUNT
+				+ " IS ?", new String[] { ACCOUNT });
+	}
+}
@@ -0,0 +1,132 @@
+package com.nononsenseapps.notepad.test;
+
+import java.io.FileOutputStream;
+
+import com.nononsenseapps.notepad.database.DraftJournal;
+import com.nononsenseapps.notepad.database.DraftJournal.Draft;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+public class DraftJournalTest extends AndroidTestCase {
+
+	private Context context;
+	private TaskList list;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		context = getContext();
+		list = new TaskList();
+		list.title = "111aaDraftList";
+		list.save(context);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		list.delete(context);
+	}
+
+	private Task insertTask(final String text) {
+		final Task t = new Task();
+		t.setText(text);
+		t.dblist = list._id;
+		t.save(context);
+		return t;
+	}
+
+	private Task loadTask(final long id) {
+		final Cursor c = context.getContentResolver().query(Task.getUri(id),
+				Task.Columns.FIELDS, null, null, null);
+		try {
+			return c.moveToFirst() ? new Task(c) : null;
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	@SmallTest
+	public void testWriteAndClaim() {
+		final String key = DraftJournal.getNewKey();
+		final String text = "Title\nBody with åäö";
+		DraftJournal.writeNow(context, key, new Draft(-1, list._id, 1234,
+				text));
+
+		final Draft draft = DraftJournal.claim(context, key);
+		DraftJournal.release(key);
+		DraftJournal.discardNow(context, key);
+
+		assertNotNull(draft);
+		assertEquals(-1, draft.taskId);
+		assertEquals(list._id, draft.listId);
+		assertEquals(1234, draft.time);
+		assertEquals(text, draft.text);
+
+		assertNull(DraftJournal.claim(context, key));
+		DraftJournal.release(key);
+	}
+
+	@SmallTest
+	public void testIncompleteDraftIgnored() throws Exception {
+		final String key = DraftJournal.getNewKey();
+		DraftJournal.writeNow(context, key, new Draft(-1, list._id, 1234,
+				"complete"));
+		// Cut off in the middle of the text
+		final long length = DraftJournal.getFile(context, key).length();
+		final FileOutputStream fos = new FileOutputStream(
+				DraftJournal.getFile(context, key), true);
+		fos.getChannel().truncate(length - 3);
+		fos.close();
+
+		assertNull(DraftJournal.claim(context, key));
+		DraftJournal.release(key);
+		DraftJournal.discardNow(context, key);
+	}
+
+	@SmallTest
+	public void testRecover() {
+		final Task task = insertTask("Saved title\nSaved note");
+		final String taskKey = DraftJournal.getKey(task._id);
+		DraftJournal.writeNow(context, taskKey, new Draft(task._id, list._id,
+				System.currentTimeMillis(), "Typed title\nTyped note"));
+
+		final String newKey = DraftJournal.getNewKey();
+		DraftJournal.writeNow(context, newKey, new Draft(-1, list._id,
+				System.currentTimeMillis(), "Never saved"));
+
+		// Open editors are left alone
+		final Task openTask = insertTask("Open");
+		final String openKey = DraftJournal.getKey(openTask._id);
+		DraftJournal.writeNow(context, openKey, new Draft(openTask._id,
+				list._id, System.currentTimeMillis(), "Still typing"));
+		DraftJournal.claim(context, openKey);
+
+		assertEquals(2, DraftJournal.recoverNow(context));
+
+		final Task recovered = loadTask(task._id);
+		assertEquals("Typed title", recovered.title);
+		assertEquals("Typed note", recovered.note);
+		assertFalse(DraftJournal.getFile(context, taskKey).exists());
+		assertFalse(DraftJournal.getFile(context, newKey).exists());
+
+		final Cursor c = context.getContentResolver().query(Task.URI,
+				Task.Columns.FIELDS, Task.Columns.TITLE + " IS ?",
+				new String[] { "Never saved" }, null);
+		assertEquals(1, c.getCount());
+		c.close();
+
+		assertEquals("Open", loadTask(openTask._id).title);
+		assertTrue(DraftJournal.getFile(context, openKey).exists());
+		DraftJournal.release(openKey);
+		DraftJournal.discardNow(context, openKey);
+
+		// Nothing left to do
+		assertEquals(0, DraftJournal.recoverNow(context));
+	}
+}
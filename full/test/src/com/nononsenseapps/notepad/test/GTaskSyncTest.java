@@ -7,12 +7,14 @@ import java.util.List;
 
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
+import com.nononsenseapps.notepad.sync.SyncSession;
 import com.nononsenseapps.notepad.sync.googleapi.GoogleTask;
 import com.nononsenseapps.notepad.sync.googleapi.GoogleTaskList;
 import com.nononsenseapps.notepad.sync.googleapi.GoogleTaskSync;
 
 import android.database.Cursor;
 import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
 import android.test.suitebuilder.annotation.SmallTest;
 import android.util.Log;
 import android.util.Pair;
@@ -38,6 +40,8 @@ public class GTaskSyncTest extends AndroidTestCase {
 	int localTaskNewestCount = 0;
 	int remoteTaskNewestCount = 0;
 
+	SyncSession session;
+
 	@Override
 	public void setUp() throws Exception {
 		super.setUp();
@@ -115,6 +119,8 @@ public class GTaskSyncTest extends AndroidTestCase {
 		remoteListNewestCount++;
 
 		remoteOnlyCount = 2;
+
+		session = new SyncSession(mContext);
 	}
 
 	void addTasks(final TaskList l, final GoogleTaskList gl) {
@@ -181,6 +187,7 @@ public class GTaskSyncTest extends AndroidTestCase {
 	@Override
 	public void tearDown() throws Exception {
 		super.tearDown();
+		session.close();
 		// remote items that were inserted
 		mContext.getContentResolver().delete(GoogleTaskList.URI,
 				GoogleTaskList.Columns.ACCOUNT + " IS ?",
@@ -270,7 +277,7 @@ public class GTaskSyncTest extends AndroidTestCase {
 	@SmallTest
 	public void testMergeLists() {
 		// Verify that merge works
-		GoogleTaskSync.mergeListsWithLocalDB(mContext, account,
+		GoogleTaskSync.mergeListsWithLocalDB(session, account,
 				remoteListsSubset);
 
 		assertEquals("mergeLists result does not equal real result!",
@@ -283,7 +290,7 @@ public class GTaskSyncTest extends AndroidTestCase {
 		final TaskList tl = localLists.get(0);
 		final GoogleTaskList gl = remoteListsInDB.get(0);
 		List<GoogleTask> remoteTasks = remoteTasksSubSet.get(gl);
-		GoogleTaskSync.mergeTasksWithLocalDB(mContext, account, remoteTasks,
+		GoogleTaskSync.mergeTasksWithLocalDB(session, account, remoteTasks,
 				tl._id);
 
 		Log.d("nononsenseapps gtasktest",
@@ -314,11 +321,12 @@ public class GTaskSyncTest extends AndroidTestCase {
 	public void testSyncListsLocally() {
 		int initialSize = remoteListsSubset.size();
 		// Two is remote only, one old and one new
-		GoogleTaskSync.mergeListsWithLocalDB(mContext, account,
+		GoogleTaskSync.mergeListsWithLocalDB(session, account,
 				remoteListsSubset);
 
 		List<Pair<TaskList, GoogleTaskList>> pairs = GoogleTaskSync
-				.synchronizeListsLocally(mContext, remoteListsSubset);
+				.synchronizeListsLocally(session, remoteListsSubset);
+		session.flush();
 
 		assertNotNull(pairs);
 		// for (Pair<TaskList, GoogleTaskList> pair : pairs) {
@@ -386,12 +394,13 @@ public class GTaskSyncTest extends AndroidTestCase {
 		final GoogleTaskList gl = remoteListsInDB.get(0);
 
 		List<GoogleTask> remoteTasks = remoteTasksSubSet.get(gl);
-		GoogleTaskSync.mergeTasksWithLocalDB(mContext, account, remoteTasks,
+		GoogleTaskSync.mergeTasksWithLocalDB(session, account, remoteTasks,
 				tl._id);
 
 		List<Pair<Task, GoogleTask>> pairs = GoogleTaskSync
-				.synchronizeTasksLocally(mContext, remoteTasks,
+				.synchronizeTasksLocally(session, remoteTasks,
 						new Pair<TaskList, GoogleTaskList>(tl, gl));
+		session.flush();
 
 		assertNotNull(pairs);
 		assertEquals("Synced pairs have wrong length", localOnlyCount + localTaskNewestCount, pairs.size());
@@ -458,6 +467,40 @@ public class GTaskSyncTest extends AndroidTestCase {
 		assertEquals("rUpdate time incorrect", 0, remoteNewestCount);
 	}
 	
+	@LargeTest
+	public void testSyncTasksLocallySpeed() {
+		final TaskList tl = localLists.get(0);
+		final GoogleTaskList gl = remoteListsInDB.get(0);
+
+		// New on the server
+		final int count = 1000;
+		final List<GoogleTask> remoteTasks = new ArrayList<GoogleTask>();
+		for (int i = 0; i < count; i++) {
+			final GoogleTask gt = new GoogleTask(account);
+			gt.title = balleRemote + i;
+			gt.notes = balleRemote + i;
+			gt.remoteId = balleRemote + "speed" + i;
+			gt.updated = Calendar.getInstance().getTimeInMillis();
+			remoteTasks.add(gt);
+		}
+
+		final long start = System.nanoTime();
+		GoogleTaskSync.mergeTasksWithLocalDB(session, account, remoteTasks,
+				tl._id);
+		GoogleTaskSync.synchronizeTasksLocally(session, remoteTasks,
+				new Pair<TaskList, GoogleTaskList>(tl, gl));
+		session.flush();
+		final long total = (System.nanoTime() - start) / 1000000;
+
+		Log.d("nononsenseapps gtasksync", "Local sync of " + count
+				+ " tasks: " + session.getDbMillis() + " ms in database, "
+				+ total + " ms total");
+		for (final GoogleTask gt : remoteTasks) {
+			assertNotNull("Local id was not set", gt.dbid);
+			assertTrue("Local id was not set", gt.dbid > 0);
+		}
+	}
+
 	@SmallTest
 	public void testSyncTasksLocallyCompleteBug() {
 		// TODO
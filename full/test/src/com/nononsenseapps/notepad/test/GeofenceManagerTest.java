@@ -0,0 +1,247 @@
+package com.nononsenseapps.notepad.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import android.location.Location;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.nononsenseapps.util.GeofenceManager;
+import com.nononsenseapps.util.GeofenceManager.Fence;
+import com.nononsenseapps.util.GeofenceManager.FenceClient;
+
+public class GeofenceManagerTest extends AndroidTestCase {
+
+	/**
+	 * Keeps the registered fences in memory and answers at once
+	 */
+	static class FakeFenceClient implements FenceClient {
+		// As LocationStatusCodes.GEOFENCE_NOT_AVAILABLE
+		static final int ERROR = 1000;
+		final HashSet<String> registered = new HashSet<String>();
+		Location location = null;
+		boolean failAdds = false;
+		boolean failRemoves = false;
+		boolean dropAdds = false;
+		int connections = 0;
+		int requests = 0;
+		Fence lastRerank = null;
+		private Listener listener;
+		private boolean connected = false;
+
+		@Override
+		public void connect(final Listener listener) {
+			assertFalse("Already connected", connected);
+			this.listener = listener;
+			connected = true;
+			connections++;
+			listener.onConnected();
+		}
+
+		@Override
+		public Location getLastLocation() {
+			assertTrue(connected);
+			return location;
+		}
+
+		@Override
+		public void removeFences(final List<String> ids) {
+			assertTrue(connected);
+			requests++;
+			if (failRemoves) {
+				listener.onResult(ERROR);
+				return;
+			}
+			registered.removeAll(ids);
+			listener.onResult(GeofenceManager.STATUS_SUCCESS);
+		}
+
+		@Override
+		public void addFences(final List<Fence> fences) {
+			assertTrue(connected);
+			requests++;
+			if (dropAdds) {
+				// Like Play services going away
+				connected = false;
+				listener.onConnectionFailed(8, null);
+				return;
+			}
+			if (!failAdds) {
+				for (final Fence fence : fences) {
+					registered.add(fence.id);
+					if (GeofenceManager.RERANK_ID.equals(fence.id)) {
+						lastRerank = fence;
+					}
+				}
+			}
+			listener.onResult(failAdds ? ERROR
+					: GeofenceManager.STATUS_SUCCESS);
+		}
+
+		@Override
+		public void disconnect() {
+			connected = false;
+		}
+	}
+
+	private FakeFenceClient client;
+	private GeofenceManager manager;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		client = new FakeFenceClient();
+		manager = new GeofenceManager(getContext(), client, 3);
+		manager.clearRegistered();
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		manager.clearRegistered();
+	}
+
+	private static Location getLocation(final double latitude,
+			final double longitude) {
+		final Location location = new Location("test");
+		location.setLatitude(latitude);
+		location.setLongitude(longitude);
+		return location;
+	}
+
+	/**
+	 * Fences along the equator, i degrees east
+	 */
+	private static List<Fence> getFences(final int count) {
+		final ArrayList<Fence> fences = new ArrayList<Fence>();
+		for (int i = 1; i <= count; i++) {
+			fences.add(new Fence(Integer.toString(i), 0, i, 100));
+		}
+		return fences;
+	}
+
+	private static HashSet<String> ids(final String... ids) {
+		final HashSet<String> result = new HashSet<String>();
+		for (final String id : ids) {
+			result.add(id);
+		}
+		return result;
+	}
+
+	@SmallTest
+	public void testSelectNearest() {
+		final List<Fence> fences = getFences(5);
+		List<Fence> picked = GeofenceManager.selectNearest(fences,
+				getLocation(0, 4.1), 2);
+		assertEquals(2, picked.size());
+		assertEquals("4", picked.get(0).id);
+		assertEquals("5", picked.get(1).id);
+
+		// Newest without a location
+		picked = GeofenceManager.selectNearest(fences, null, 2);
+		assertEquals("5", picked.get(0).id);
+		assertEquals("4", picked.get(1).id);
+
+		assertEquals(5, GeofenceManager.selectNearest(fences, null, 10)
+				.size());
+	}
+
+	@SmallTest
+	public void testOnlyNearestRegistered() {
+		client.location = getLocation(0, 0);
+		manager.update(getFences(10));
+
+		assertEquals(ids("1", "2", "3", GeofenceManager.RERANK_ID),
+				client.registered);
+		assertEquals(1, client.connections);
+		assertEquals(1, client.requests);
+		// Reaches the nearest fence left out
+		assertTrue(client.lastRerank.radius > 400000);
+		assertTrue(client.lastRerank.radius < 500000);
+	}
+
+	@SmallTest
+	public void testRerankSendsDifference() {
+		client.location = getLocation(0, 0);
+		manager.update(getFences(10));
+
+		client.location = getLocation(0, 9);
+		manager.update(getFences(10));
+		assertEquals(ids("8", "9", "10", GeofenceManager.RERANK_ID),
+				client.registered);
+		// One remove and one add over one connection
+		assertEquals(2, client.connections);
+		assertEquals(3, client.requests);
+
+		// Nothing changed, nothing sent
+		manager.update(getFences(10));
+		assertEquals(3, client.requests);
+	}
+
+	@SmallTest
+	public void testDeletedFenceRemoved() {
+		client.location = getLocation(0, 0);
+		manager.update(getFences(2));
+		assertEquals(ids("1", "2"), client.registered);
+
+		final List<Fence> fences = getFences(2);
+		fences.remove(0);
+		manager.update(fences);
+		assertEquals(ids("2"), client.registered);
+	}
+
+	@SmallTest
+	public void testMovedFenceReplaced() {
+		manager.update(getFences(1));
+		final List<Fence> moved = new ArrayList<Fence>();
+		moved.add(new Fence("1", 10, 10, 100));
+		manager.update(moved);
+		assertEquals(2, client.requests);
+		assertEquals(ids("1"), client.registered);
+	}
+
+	@SmallTest
+	public void testFailedAddRetried() {
+		client.failAdds = true;
+		manager.update(getFences(2));
+		assertTrue(manager.getRegistered().isEmpty());
+
+		client.failAdds = false;
+		manager.update(getFences(2));
+		assertEquals(ids("1", "2"), client.registered);
+		assertEquals(2, manager.getRegistered().size());
+	}
+
+	@SmallTest
+	public void testLostConnectionNotStuck() {
+		client.dropAdds = true;
+		manager.update(getFences(2));
+		assertTrue(manager.getRegistered().isEmpty());
+
+		client.dropAdds = false;
+		manager.update(getFences(2));
+		assertEquals(2, client.connections);
+		assertEquals(ids("1", "2"), client.registered);
+	}
+
+	@SmallTest
+	public void testFailedRemoveRetried() {
+		manager.update(getFences(2));
+		assertEquals(ids("1", "2"), client.registered);
+
+		client.failRemoves = true;
+		final List<Fence> fences = getFences(2);
+		fences.remove(0);
+		manager.update(fences);
+		// Still registered, so still remembered
+		assertEquals(ids("1", "2"), client.registered);
+		assertEquals(2, manager.getRegistered().size());
+
+		client.failRemoves = false;
+		manager.update(fences);
+		assertEquals(ids("2"), client.registered);
+		assertEquals(1, manager.getRegistered().size());
+	}
+}
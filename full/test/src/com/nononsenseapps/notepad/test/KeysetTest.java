@@ -0,0 +1,137 @@
+package com.nononsenseapps.notepad.test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import com.nononsenseapps.notepad.database.DAO;
+import com.nononsenseapps.notepad.database.Keyset;
+import com.nononsenseapps.notepad.database.MyContentProvider;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.MediumTest;
+
+/**
+ * Reading a list a page at a time must give the same rows as reading it at
+ * once, in every sort order of the task list.
+ */
+public class KeysetTest extends AndroidTestCase {
+
+	static final String PREFIX = "111aaKeysetTest";
+	static final int TASKS = 200;
+	// Small, so pages end everywhere, also right before headers
+	static final int PAGE = 7;
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	private TaskList list;
+	private String[] listArg;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		list = new TaskList();
+		list.title = PREFIX;
+		list.save(getContext());
+		listArg = new String[] { Long.toString(list._id) };
+
+		// Equal and missing values in every sort column
+		final Random random = new Random(42);
+		final long now = Calendar.getInstance().getTimeInMillis();
+		for (int i = 0; i < TASKS; i++) {
+			final Task task = new Task();
+			task.dblist = list._id;
+			task.title = (random.nextBoolean() ? "a" : "A") + random.nextInt(10);
+			if (random.nextInt(3) == 0) {
+				task.completed = now;
+			}
+			if (random.nextBoolean()) {
+				// Not today, where the header follows the clock
+				task.due = now + (random.nextBoolean() ? -1 : 1)
+						* (1 + random.nextInt(10)) * DAY;
+			}
+			task.save(getContext(), now + random.nextInt(5));
+		}
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		getContext().getContentResolver().delete(TaskList.URI,
+				TaskList.Columns.TITLE + " IS ?", new String[] { PREFIX });
+	}
+
+	private List<String> read(final Uri uri, final String[] projection,
+			final String where, final String[] args, final Keyset keyset,
+			final int limit, final List<String> rows) {
+		final Cursor c = getContext().getContentResolver().query(
+				limit < 1 ? uri : uri.buildUpon()
+						.appendQueryParameter(MyContentProvider.QUERY_LIMIT,
+								Integer.toString(limit)).build(), projection,
+				where, args, keyset.getSortOrder());
+		try {
+			while (c.moveToNext()) {
+				// Headers all have the same id
+				rows.add(c.getLong(0) + " " + c.getString(1));
+			}
+			if (limit > 0 && c.getCount() == limit) {
+				final ArrayList<String> nextArgs = new ArrayList<String>();
+				for (final String arg : listArg) {
+					nextArgs.add(arg);
+				}
+				c.moveToLast();
+				final String after = keyset.after(c, nextArgs);
+				read(uri, projection, Task.Columns.DBLIST + " IS ? AND "
+						+ after, nextArgs.toArray(new String[nextArgs.size()]),
+						keyset, limit, rows);
+			}
+		}
+		finally {
+			c.close();
+		}
+		return rows;
+	}
+
+	private void assertPages(final Uri uri, final String[] projection,
+			final Keyset keyset) {
+		final String where = Task.Columns.DBLIST + " IS ?";
+		final List<String> all = read(uri, projection, where, listArg, keyset,
+				0, new ArrayList<String>());
+		final List<String> paged = read(uri, projection, where, listArg,
+				keyset, PAGE, new ArrayList<String>());
+		assertTrue(all.size() >= TASKS);
+		assertEquals(keyset.getSortOrder(), all, paged);
+	}
+
+	@MediumTest
+	public void testManual() {
+		assertPages(Task.URI, Task.Columns.FIELDS,
+				new Keyset().asc(Task.Columns.LEFT));
+	}
+
+	@MediumTest
+	public void testAlphabetic() {
+		assertPages(Task.URI, Task.Columns.FIELDS, new Keyset().add(
+				Task.Columns.TITLE + " COLLATE NOCASE", Task.Columns.TITLE,
+				false));
+	}
+
+	@MediumTest
+	public void testModified() {
+		assertPages(Task.URI, Task.Columns.FIELDS,
+				new Keyset().desc(Task.Columns.UPDATED));
+	}
+
+	@MediumTest
+	public void testSectioned() {
+		assertPages(Task.URI_SECTIONED_BY_DATE, DAO.joinArrays(
+				Task.Columns.FIELDS, new String[] { Task.SECRET_TYPEID,
+						Task.SECRET_TYPEID2 }),
+				new Keyset().asc(Task.SECRET_TYPEID).asc(Task.Columns.DUE)
+						.asc(Task.SECRET_TYPEID2));
+	}
+}
@@ -0,0 +1,251 @@
+package com.nononsenseapps.notepad.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+import com.nononsenseapps.notepad.sync.SyncSession;
+import com.nononsenseapps.notepad.sync.googleapi.GoogleTask;
+import com.nononsenseapps.notepad.sync.googleapi.GoogleTaskList;
+import com.nononsenseapps.notepad.sync.googleapi.GoogleTaskSync;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+import android.util.Pair;
+
+/**
+ * Latency of common provider operations in databases made by DataGenerator.
+ * Slow, run on its own:
+ *
+ * adb shell am instrument -w -e class
+ * com.nononsenseapps.notepad.test.LoadTest
+ * com.nononsenseapps.notepad.test/android.test.InstrumentationTestRunner
+ *
+ * The median of each operation is compared to a baseline from an earlier run
+ * on the same device, kept in BASELINES. See Baselines.
+ */
+public class LoadTest extends AndroidTestCase {
+
+	private static final String TAG = "nononsenseapps LoadTest";
+
+	static final String BASELINES = "load_baselines.properties";
+	static final int REPEATS = 15;
+	static final int SYNC_REPEATS = 3;
+	static final long SEED = 42;
+
+	private ContentResolver resolver;
+	private Baselines baselines;
+
+	/**
+	 * One timed run of an operation. Work done before start() is not
+	 * counted.
+	 */
+	private abstract class Operation {
+		long start;
+
+		void start() {
+			start = System.nanoTime();
+		}
+
+		abstract void run(int i) throws Exception;
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		resolver = getContext().getContentResolver();
+		// From an aborted run
+		DataGenerator.clean(getContext());
+		baselines = new Baselines(getContext(), BASELINES);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		DataGenerator.clean(getContext());
+	}
+
+	/**
+	 * Runs op repeats times and compares the median with the baseline.
+	 */
+	private void measure(final int size, final String name, final int repeats,
+			final Operation op) throws Exception {
+		final long[] micros = new long[repeats];
+		for (int i = 0; i < repeats; i++) {
+			op.start = 0;
+			op.run(i);
+			if (op.start == 0) {
+				throw new IllegalStateException(name + " never started");
+			}
+			micros[i] = (System.nanoTime() - op.start) / 1000;
+		}
+		Arrays.sort(micros);
+		final long median = micros[repeats / 2];
+		Log.d(TAG, size + " tasks, " + name + ": median " + median
+				+ " us, max " + micros[repeats - 1] + " us");
+		baselines.check(size + "." + name, median);
+	}
+
+	private Task getEdgeTask(final long listId, final String order) {
+		final Cursor c = resolver.query(Task.URI, Task.Columns.FIELDS,
+				Task.Columns.DBLIST + " IS ?",
+				new String[] { Long.toString(listId) }, order + " LIMIT 1");
+		try {
+			assertTrue(c.moveToFirst());
+			return new Task(c);
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	private void load(final int size, final int lists) throws Exception {
+		final DataGenerator generator = new DataGenerator(SEED, lists, size);
+		final long generateStart = System.nanoTime();
+		generator.generate(getContext());
+		Log.d(TAG, "Generated " + size + " tasks in " + lists + " lists in "
+				+ (System.nanoTime() - generateStart) / 1000000 + " ms");
+
+		final TaskList list = generator.lists.get(0);
+		final GoogleTaskList remoteList = generator.remoteLists.get(0);
+		final String[] listArg = new String[] { Long.toString(list._id) };
+		final List<Uri> inserted = new ArrayList<Uri>();
+
+		measure(size, "insert", REPEATS, new Operation() {
+			@Override
+			void run(final int i) {
+				final Task task = new Task();
+				task.dblist = list._id;
+				task.title = DataGenerator.PREFIX + " new " + i;
+				task.note = generator.words(50);
+				start();
+				inserted.add(resolver.insert(Task.URI, task.getContent()));
+			}
+		});
+
+		measure(size, "move", REPEATS, new Operation() {
+			@Override
+			void run(final int i) {
+				final Task first = getEdgeTask(list._id, Task.Columns.LEFT);
+				final Task last = getEdgeTask(list._id, Task.Columns.LEFT
+						+ " DESC");
+				start();
+				assertTrue(0 < last.moveTo(resolver, first));
+			}
+		});
+
+		measure(size, "complete", REPEATS, new Operation() {
+			@Override
+			void run(final int i) {
+				final ContentValues values = new ContentValues();
+				values.put(Task.Columns.COMPLETED, Calendar.getInstance()
+						.getTimeInMillis());
+				final Uri uri = ContentUris.withAppendedId(Task.URI,
+						generator.taskIds.get(i * generator.taskIds.size()
+								/ REPEATS));
+				start();
+				resolver.update(uri, values, null, null);
+			}
+		});
+
+		measure(size, "delete", REPEATS, new Operation() {
+			@Override
+			void run(final int i) {
+				start();
+				assertEquals(1, resolver.delete(inserted.get(i), null, null));
+			}
+		});
+
+		measure(size, "sectioned query", REPEATS, new Operation() {
+			@Override
+			void run(final int i) {
+				start();
+				final Cursor c = resolver.query(Task.URI_SECTIONED_BY_DATE,
+						Task.Columns.FIELDS, Task.Columns.DBLIST + " IS ?",
+						listArg, null);
+				// Fills the window, as the list does
+				c.getCount();
+				c.close();
+			}
+		});
+
+		measure(size, "search", REPEATS, new Operation() {
+			@Override
+			void run(final int i) {
+				start();
+				final Cursor c = resolver.query(Task.URI_SEARCH,
+						Task.Columns.SEARCH_FIELDS, null,
+						new String[] { DataGenerator.WORDS[i
+								% DataGenerator.WORDS.length] }, null);
+				c.getCount();
+				c.close();
+			}
+		});
+
+		measure(size, "sync merge", SYNC_REPEATS, new Operation() {
+			@Override
+			void run(final int i) throws Exception {
+				// Everything changed on the server
+				final List<GoogleTask> remoteTasks = new ArrayList<GoogleTask>();
+				final Cursor c = resolver.query(GoogleTask.URI,
+						GoogleTask.Columns.FIELDS, GoogleTask.Columns.LISTDBID
+								+ " IS ?", listArg, null);
+				try {
+					while (c.moveToNext()) {
+						final GoogleTask remote = new GoogleTask(c);
+						remote.title = DataGenerator.PREFIX + " remote " + i;
+						remote.notes = generator.words(50);
+						remote.updated = Calendar.getInstance()
+								.getTimeInMillis();
+						remoteTasks.add(remote);
+					}
+				}
+				finally {
+					c.close();
+				}
+
+				final SyncSession session = new SyncSession(getContext());
+				start();
+				try {
+					GoogleTaskSync.mergeTasksWithLocalDB(session,
+							DataGenerator.ACCOUNT, remoteTasks, list._id);
+					GoogleTaskSync.synchronizeTasksLocally(session,
+							remoteTasks, new Pair<TaskList, GoogleTaskList>(
+									list, remoteList));
+					session.flush();
+				}
+				finally {
+					session.close();
+				}
+			}
+		});
+
+		baselines.save("LoadTest medians in microseconds");
+		assertTrue("Slower than baseline:\n" + baselines.getRegressions(),
+				baselines.getRegressions().length() == 0);
+	}
+
+	@LargeTest
+	public void testLoad1k() throws Exception {
+		load(1000, 5);
+	}
+
+	@LargeTest
+	public void testLoad10k() throws Exception {
+		load(10000, 20);
+	}
+
+	@LargeTest
+	public void testLoad100k() throws Exception {
+		load(100000, 100);
+	}
+}
@@ -8,6 +8,7 @@ import android.test.suitebuilder.annotation.SmallTest;
 
 import com.nononsenseapps.notepad.database.RemoteTask;
 import com.nononsenseapps.notepad.database.RemoteTaskList;
+import com.nononsenseapps.notepad.database.SyncMetrics;
 import com.nononsenseapps.notepad.database.Task;
 import com.nononsenseapps.notepad.database.TaskList;
 import com.nononsenseapps.notepad.sync.orgsync.OrgConverter;
@@ -50,6 +51,8 @@ public class OrgSyncTest extends AndroidTestCase {
         resolver.delete(Task.URI, null, null);
         resolver.delete(RemoteTaskList.URI, null, null);
         resolver.delete(RemoteTask.URI, null, null);
+        resolver.delete(SyncMetrics.URI, SyncMetrics.Columns.SERVICE + " IS ?",
+                new String[] { ACCOUNT });
 
         File d = new File(DIR);
         for (File f : d.listFiles()) {
@@ -224,6 +227,40 @@ public class OrgSyncTest extends AndroidTestCase {
         }
     }
 
+    /**
+     * Files and database writes of a sync are counted and saved.
+     */
+    public void testMetrics() {
+        testFreshSimple();
+
+        TestSynchronizer synchronizer = new TestSynchronizer(getContext());
+        try {
+            synchronizer.fullSync();
+        } catch (Exception e) {
+            assertTrue(e.getLocalizedMessage(), false);
+        }
+
+        final SyncMetrics metrics = synchronizer.getLastMetrics();
+        assertEquals(1, metrics.get(SyncMetrics.FILES_PARSED));
+        assertEquals(synchronizer.getPutRemoteCount(),
+                metrics.get(SyncMetrics.FILES_WRITTEN));
+        assertEquals(0, metrics.get(SyncMetrics.DB_WRITES));
+        assertTrue(metrics.get(SyncMetrics.DB_READS) > 0);
+        assertEquals(0, metrics.get(SyncMetrics.ERRORS));
+
+        final Cursor c = getContext().getContentResolver().query(
+                SyncMetrics.URI, SyncMetrics.Columns.FIELDS,
+                SyncMetrics.Columns.RUN + " IS ? AND "
+                        + SyncMetrics.Columns.SERVICE + " IS ?",
+                new String[] { Long.toString(metrics.run), ACCOUNT }, null);
+        try {
+            // Phases and the total as well
+            assertTrue(c.getCount() > 5);
+        } finally {
+            c.close();
+        }
+    }
+
     /**
      * Nothing has changed here.
      * Tested flow branches:
@@ -0,0 +1,71 @@
+package com.nononsenseapps.notepad.test;
+
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.nononsenseapps.notepad.database.QueryProfiler;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+
+public class QueryProfilerTest extends AndroidTestCase {
+
+	private final QueryProfiler profiler = QueryProfiler.getInstance();
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		profiler.setEnabled(getContext(), false, 0);
+	}
+
+	private void queryTasks() {
+		final Cursor c = getContext().getContentResolver().query(Task.URI,
+				Task.Columns.FIELDS, Task.Columns.DBLIST + " IS ?",
+				new String[] { "1" }, Task.Columns.LEFT);
+		c.close();
+	}
+
+	@SmallTest
+	public void testStopped() {
+		profiler.setEnabled(getContext(), false, 0);
+		profiler.reset();
+		queryTasks();
+		assertFalse(profiler.dump().contains("query " + Task.BASEURICODE));
+	}
+
+	@SmallTest
+	public void testSlowQueryPlan() {
+		// Everything is slow
+		profiler.setEnabled(getContext(), true, 0);
+		profiler.reset();
+		queryTasks();
+
+		final String dump = profiler.dump();
+		assertTrue(dump, dump.contains("query " + Task.BASEURICODE + ": 1,"));
+		assertTrue(dump, dump.contains("selection: " + Task.Columns.DBLIST
+				+ " IS ?"));
+		assertTrue(dump, dump.contains("sort: " + Task.Columns.LEFT));
+		// Some step of the plan reads the table
+		assertTrue(dump, dump.contains("plan:"));
+		assertTrue(dump, dump.substring(dump.indexOf("plan:")).contains(
+				Task.TABLE_NAME));
+	}
+
+	@SmallTest
+	public void testWritesCounted() {
+		profiler.setEnabled(getContext(), true, 1000);
+		profiler.reset();
+		final TaskList list = new TaskList();
+		list.title = "111aaTestingProfiler";
+		list.save(getContext());
+		list.delete(getContext());
+
+		final String dump = profiler.dump();
+		assertTrue(dump, dump.contains("insert " + TaskList.BASEURICODE
+				+ ": 1,"));
+		assertTrue(dump, dump.contains("delete " + TaskList.BASEITEMCODE
+				+ ": 1,"));
+		// Nothing was that slow
+		assertFalse(dump, dump.contains("selection:"));
+	}
+}
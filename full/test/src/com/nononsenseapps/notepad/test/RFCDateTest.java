@@ -1,13 +1,19 @@
 package com.nononsenseapps.notepad.test;
 
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
 
 import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
 import android.util.Log;
 
+import com.nononsenseapps.utils.time.RFC3339Codec;
 import com.nononsenseapps.utils.time.RFC3339Date;
 
 public class RFCDateTest extends AndroidTestCase {
@@ -71,4 +77,185 @@ public class RFCDateTest extends AndroidTestCase {
 		}
 	
 	}
+
+	private static final String[] ZONES = { "UTC", "Europe/Stockholm",
+			"America/New_York", "Asia/Kolkata", "Australia/Adelaide" };
+
+	@SmallTest
+	public void testCodecParse() {
+		final long utc = 1361453696000L; // 2013-02-21T13:34:56Z
+		assertEquals(utc, RFC3339Codec.parse("2013-02-21T13:34:56Z"));
+		assertEquals(utc + 789, RFC3339Codec.parse("2013-02-21T13:34:56.789Z"));
+		assertEquals(utc + 500, RFC3339Codec.parse("2013-02-21T13:34:56.5Z"));
+		// Only milliseconds are kept
+		assertEquals(utc + 123,
+				RFC3339Codec.parse("2013-02-21T13:34:56.123456Z"));
+		assertEquals(utc, RFC3339Codec.parse("2013-02-21T15:34:56+02:00"));
+		assertEquals(utc, RFC3339Codec.parse("2013-02-21T15:34:56+0200"));
+		assertEquals(utc, RFC3339Codec.parse("2013-02-21T08:04:56-05:30"));
+		assertEquals(utc - 13 * 3600000L - 34 * 60000L - 56000L,
+				RFC3339Codec.parse("2013-02-21"));
+		assertEquals(951782400000L, RFC3339Codec.parse("2000-02-29T00:00:00Z"));
+
+		final String[] invalid = { null, "", "2013", "2013-02-21T13:34Z",
+				"2013-02-29T13:34:56Z", "2013-13-01T13:34:56Z",
+				"2013-02-21T24:00:00Z", "2013-02-21T13:34:56",
+				"2013-02-21T13:34:56.Z", "2013-02-21T13:34:56+2",
+				"2013-02-21T13:34:56Zjunk", "2013/02/21T13:34:56Z",
+				"2o13-02-21T13:34:56Z" };
+		for (final String text : invalid) {
+			assertEquals(text, RFC3339Codec.INVALID, RFC3339Codec.parse(text));
+			assertEquals(text, -1L, RFC3339Codec.parse(text, -1L));
+		}
+		assertNull(RFC3339Date.parseRFC3339Date("not a date"));
+	}
+
+	@SmallTest
+	public void testCodecSameAsSimpleDateFormat() throws ParseException {
+		final Random random = new Random(1);
+		for (final String id : ZONES) {
+			final TimeZone tz = TimeZone.getTimeZone(id);
+			final SimpleDateFormat local = new SimpleDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ssZ");
+			local.setTimeZone(tz);
+			final SimpleDateFormat utc = new SimpleDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+			utc.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+			for (int i = 0; i < 1000; i++) {
+				// Between 1970 and 2100
+				final long time = (long) (random.nextDouble() * 4102444800000L);
+				final String text = local.format(new Date(time));
+				assertEquals(text, RFC3339Codec.format(time, tz));
+				assertEquals(time / 1000 * 1000, RFC3339Codec.parse(text));
+				assertEquals(local.parse(text).getTime(),
+						RFC3339Codec.parse(text));
+
+				final String utcText = utc.format(new Date(time));
+				assertEquals(utcText, RFC3339Codec.formatUTC(time));
+				assertEquals(time, RFC3339Codec.parse(utcText));
+			}
+		}
+	}
+
+	@SmallTest
+	public void testZuluDate() {
+		final TimeZone tz = TimeZone.getTimeZone("America/New_York");
+		// 2013-02-21T22:00-05:00 is the 22nd in UTC
+		final long time = RFC3339Codec.parse("2013-02-21T22:00:00-05:00");
+		assertEquals("2013-02-21T00:00:00Z",
+				RFC3339Codec.formatZuluDate(time, tz));
+		assertEquals("2013-02-22T00:00:00Z",
+				RFC3339Codec.formatZuluDate(time, TimeZone.getTimeZone("UTC")));
+	}
+
+	@SmallTest
+	public void testCombineDateAndTime() {
+		final TimeZone tz = TimeZone.getTimeZone("Europe/Stockholm");
+		final long local = RFC3339Codec.parse("2001-01-01T13:34:00+01:00");
+
+		// Time of local is kept, date is taken from the text
+		assertEquals(RFC3339Codec.parse("2013-02-21T13:34:00+01:00"),
+				RFC3339Codec.combineDateAndTime("2013-02-21T00:00:00.000Z",
+						local, tz));
+		// Summer time
+		assertEquals(RFC3339Codec.parse("2013-07-21T13:34:00+02:00"),
+				RFC3339Codec.combineDateAndTime("2013-07-21T00:00:00.000Z",
+						local, tz));
+		// No time
+		assertEquals(RFC3339Codec.parse("2013-02-21T23:59:00+01:00"),
+				RFC3339Codec.combineDateAndTime("2013-02-21T00:00:00.000Z",
+						RFC3339Codec.INVALID, tz));
+		// 02:30 does not exist on the day summer time starts
+		final long night = RFC3339Codec.parse("2001-01-01T02:30:00+01:00");
+		assertEquals(RFC3339Codec.parse("2013-03-31T03:30:00+02:00"),
+				RFC3339Codec.combineDateAndTime("2013-03-31T00:00:00.000Z",
+						night, tz));
+		assertEquals(RFC3339Codec.INVALID,
+				RFC3339Codec.combineDateAndTime("bad", local, tz));
+		assertNull(RFC3339Date.combineDateAndTime("bad", null));
+	}
+
+	@SmallTest
+	public void testCombineWhenStandardOffsetChanged() {
+		// Went from -11:00 to +13:00 by skipping 2011-12-30
+		final TimeZone tz = TimeZone.getTimeZone("Pacific/Apia");
+		final long midnight = RFC3339Codec.parse("2013-01-01T00:00:00+14:00");
+		assertEquals(RFC3339Codec.parse("2011-06-15T12:00:00-11:00"),
+				RFC3339Codec.combineDateAndTime("2011-06-15T00:00:00.000Z",
+						midnight + 12 * 3600000L, tz));
+
+		final Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		final Calendar cal = Calendar.getInstance(tz);
+		for (long day = RFC3339Codec.parse("2010-01-01"); day < RFC3339Codec
+				.parse("2013-01-01"); day += 24 * 3600000L) {
+			utc.setTimeInMillis(day);
+			final String text = RFC3339Codec.formatUTC(day);
+			for (int hour = 0; hour < 24; hour++) {
+				cal.clear();
+				cal.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH),
+						utc.get(Calendar.DAY_OF_MONTH), hour, 30);
+				assertEquals(text + " " + hour, cal.getTimeInMillis(),
+						RFC3339Codec.combineDateAndTime(text, midnight + hour
+								* 3600000L + 30 * 60000L, tz));
+			}
+		}
+	}
+
+	/**
+	 * Compares with SimpleDateFormat. Check the log for results.
+	 */
+	@LargeTest
+	public void testCodecSpeed() throws ParseException {
+		final int count = 20000;
+		final String[] texts = new String[count];
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			texts[i] = RFC3339Codec.formatUTC(start - i * 97531L);
+		}
+
+		long sum = 0;
+		// Warm up
+		for (int i = 0; i < count; i++) {
+			sum += RFC3339Codec.parse(texts[i]);
+			sum += RFC3339Date.parseRFC3339Date(texts[i]).getTime();
+		}
+
+		long before = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			final SimpleDateFormat s = new SimpleDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+			s.setTimeZone(TimeZone.getTimeZone("UTC"));
+			sum += s.parse(texts[i]).getTime();
+		}
+		final long oldParse = System.nanoTime() - before;
+
+		before = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			sum += RFC3339Codec.parse(texts[i]);
+		}
+		final long newParse = System.nanoTime() - before;
+
+		final TimeZone tz = TimeZone.getDefault();
+		before = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			final SimpleDateFormat s = new SimpleDateFormat(
+					"yyyy-MM-dd'T'HH:mm:ssZ");
+			sum += s.format(new Date(start - i * 97531L)).length();
+		}
+		final long oldFormat = System.nanoTime() - before;
+
+		before = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			sum += RFC3339Codec.format(start - i * 97531L, tz).length();
+		}
+		final long newFormat = System.nanoTime() - before;
+
+		Log.d(TAG, "Parse ns/op, SimpleDateFormat: " + (oldParse / count)
+				+ ", codec: " + (newParse / count));
+		Log.d(TAG, "Format ns/op, SimpleDateFormat: " + (oldFormat / count)
+				+ ", codec: " + (newFormat / count) + " (" + sum + ")");
+		assertTrue("Codec parse slower than SimpleDateFormat",
+				newParse < oldParse);
+	}
 }
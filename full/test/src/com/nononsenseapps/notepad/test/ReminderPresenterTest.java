@@ -0,0 +1,135 @@
+package com.nononsenseapps.notepad.test;
+
+import java.util.Calendar;
+
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.nononsenseapps.helpers.ReminderPresenter;
+import com.nononsenseapps.notepad.database.Notification;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+
+public class ReminderPresenterTest extends AndroidTestCase {
+
+	private static final long HOUR = 60 * 60 * 1000;
+
+	private TaskList list;
+	private Task task;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		list = new TaskList();
+		list.title = "111aaTestingReminders";
+		list.save(getContext());
+		task = new Task();
+		task.title = "testReminder";
+		task.note = "testNote";
+		task.dblist = list._id;
+		task.save(getContext());
+
+		// Start from what is already in the database
+		ReminderPresenter.present(getContext(), true);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		// Notifications are deleted with the task
+		list.delete(getContext());
+		ReminderPresenter.present(getContext(), true);
+	}
+
+	private Notification insertReminder(final long time) {
+		final Notification not = new Notification(task._id);
+		not.time = time;
+		not.save(getContext(), false);
+		return not;
+	}
+
+	private boolean exists(final Notification not) {
+		final Cursor c = getContext().getContentResolver().query(
+				not.getUri(), Notification.Columns.FIELDS, null, null, null);
+		try {
+			return c.getCount() > 0;
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	@SmallTest
+	public void testLatestPerTask() {
+		final long now = Calendar.getInstance().getTimeInMillis();
+		final Notification older = insertReminder(now - 2 * HOUR);
+		final Notification latest = insertReminder(now - HOUR);
+
+		assertEquals(1, ReminderPresenter.present(getContext(), true));
+		assertTrue(ReminderPresenter.getPosted(getContext()).contains(
+				latest._id));
+		assertFalse(ReminderPresenter.getPosted(getContext()).contains(
+				older._id));
+		// Replaced reminders without repeats are deleted
+		assertFalse(exists(older));
+		assertTrue(exists(latest));
+	}
+
+	@SmallTest
+	public void testReplacedRepeatRescheduled() {
+		final long now = Calendar.getInstance().getTimeInMillis();
+		final Notification repeating = new Notification(task._id);
+		repeating.time = now - 2 * HOUR;
+		repeating.repeats = Notification.mon | Notification.tue
+				| Notification.wed | Notification.thu | Notification.fri
+				| Notification.sat | Notification.sun;
+		repeating.save(getContext(), false);
+		insertReminder(now - HOUR);
+
+		ReminderPresenter.present(getContext(), true);
+		final Cursor c = getContext().getContentResolver().query(
+				repeating.getUri(), Notification.Columns.FIELDS, null, null,
+				null);
+		try {
+			assertTrue(c.moveToFirst());
+			// Same time tomorrow
+			assertTrue(new Notification(c).time > now);
+			assertTrue(new Notification(c).time < now + 24 * HOUR);
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	@SmallTest
+	public void testOnlyChangesPosted() {
+		final Notification not = insertReminder(Calendar.getInstance()
+				.getTimeInMillis() - HOUR);
+
+		assertEquals(1, ReminderPresenter.present(getContext(), true));
+		// Nothing changed
+		assertEquals(0, ReminderPresenter.present(getContext(), true));
+
+		task.title = "testReminderChanged";
+		task.save(getContext());
+		assertEquals(1, ReminderPresenter.present(getContext(), true));
+		assertEquals(0, ReminderPresenter.present(getContext(), true));
+		assertTrue(ReminderPresenter.getPosted(getContext()).contains(not._id));
+	}
+
+	@SmallTest
+	public void testNoLongerDueCancelled() {
+		final Notification not = insertReminder(Calendar.getInstance()
+				.getTimeInMillis() - HOUR);
+		ReminderPresenter.present(getContext(), true);
+		assertTrue(ReminderPresenter.getPosted(getContext()).contains(not._id));
+
+		// Snoozed
+		not.time = Calendar.getInstance().getTimeInMillis() + HOUR;
+		not.save(getContext(), false);
+		assertEquals(0, ReminderPresenter.present(getContext(), true));
+		assertFalse(ReminderPresenter.getPosted(getContext()).contains(
+				not._id));
+	}
+}
@@ -0,0 +1,152 @@
+package com.nononsenseapps.notepad.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.nononsenseapps.notepad.database.DatabaseHandler;
+import com.nononsenseapps.notepad.database.SQLUtils;
+import com.nononsenseapps.notepad.database.Task;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+/**
+ * The benchmarks in bench run on the JVM with copies of the schema and of
+ * some statements. Those must be what the app creates and runs, or the
+ * benchmarks measure something else. On a failure, follow the instructions at
+ * the top of the file.
+ */
+public class SchemaTest extends AndroidTestCase {
+
+	static final String PREFIX = "schema_test_";
+	// Packaged from bench/src into the test apk
+	static final String BENCH = "com/nononsenseapps/bench/";
+
+	private SQLiteDatabase db;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		getContext().deleteDatabase(PREFIX + DatabaseHandler.DATABASE_NAME);
+		db = new DatabaseHandler(getContext(), PREFIX).getReadableDatabase();
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		db.close();
+		getContext().deleteDatabase(PREFIX + DatabaseHandler.DATABASE_NAME);
+	}
+
+	/**
+	 * Statements of a file in bench, without comments
+	 */
+	private List<String> readBench(final String name) throws IOException {
+		final InputStream in = getClass().getClassLoader()
+				.getResourceAsStream(BENCH + name);
+		assertNotNull(name + " is not in the test apk", in);
+		final List<String> statements = new ArrayList<String>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				in, "UTF-8"));
+		try {
+			StringBuilder sb = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (sb.length() == 0
+						&& (line.trim().isEmpty() || line.trim()
+								.startsWith("--"))) {
+					continue;
+				}
+				sb.append(line).append('\n');
+				final String sql = sb.toString().trim();
+				if (sql.endsWith(";")
+						&& (!sql.toUpperCase().startsWith("CREATE TRIGGER") || sql
+								.toUpperCase().endsWith("END;"))) {
+					statements.add(sql);
+					sb = new StringBuilder();
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return statements;
+	}
+
+	/**
+	 * As SQLite stores it in sqlite_master
+	 */
+	private static String normalize(final String sql) {
+		String result = sql.trim().replaceAll("\\s+", " ");
+		if (result.endsWith(";")) {
+			result = result.substring(0, result.length() - 1).trim();
+		}
+		return result.replaceFirst("^CREATE TEMP ", "CREATE ").replaceFirst(
+				" IF NOT EXISTS ", " ");
+	}
+
+	/**
+	 * Tables of the search index are made by SQLite, with quoted names
+	 */
+	private static boolean isMadeBySQLite(final String sql) {
+		return sql.startsWith("CREATE TABLE '")
+				|| sql.startsWith("CREATE TABLE \"");
+	}
+
+	@SmallTest
+	public void testSchemaOfBench() throws IOException {
+		final TreeSet<String> expected = new TreeSet<String>();
+		for (final String sql : readBench("schema.sql")) {
+			final String normalized = normalize(sql);
+			if (!isMadeBySQLite(normalized)) {
+				expected.add(normalized);
+			}
+		}
+		if (!SQLUtils.supportsFTS4Options(db)) {
+			// The search index of older devices
+			assertTrue(expected.remove(normalize(Task
+					.getCREATE_FTS4_TABLE(true))));
+			expected.add(normalize(Task.getCREATE_FTS4_TABLE(false)));
+		}
+
+		final TreeSet<String> actual = new TreeSet<String>();
+		final Cursor c = db.rawQuery("SELECT sql FROM sqlite_master"
+				+ " WHERE sql IS NOT NULL AND name IS NOT 'android_metadata'"
+				+ " UNION SELECT sql FROM sqlite_temp_master"
+				+ " WHERE sql IS NOT NULL", null);
+		try {
+			while (c.moveToNext()) {
+				final String normalized = normalize(c.getString(0));
+				if (!isMadeBySQLite(normalized)) {
+					actual.add(normalized);
+				}
+			}
+		}
+		finally {
+			c.close();
+		}
+
+		final TreeSet<String> missing = new TreeSet<String>(actual);
+		missing.removeAll(expected);
+		final TreeSet<String> extra = new TreeSet<String>(expected);
+		extra.removeAll(actual);
+		assertTrue("schema.sql differs from DatabaseHandler.onCreate."
+				+ "\nNot in schema.sql: " + missing + "\nNot created: " + extra,
+				missing.isEmpty() && extra.isEmpty());
+	}
+
+	@SmallTest
+	public void testMoveItemOfBench() throws IOException {
+		final List<String> moves = readBench("move_item.sql");
+		assertEquals(2, moves.size());
+		assertEquals(Task.SQL_MOVE_ITEM_LEFT, moves.get(0));
+		assertEquals(Task.SQL_MOVE_ITEM_RIGHT, moves.get(1));
+	}
+}
@@ -0,0 +1,72 @@
+package com.nononsenseapps.notepad.test;
+
+import com.nononsenseapps.notepad.database.SearchNarrower;
+import com.nononsenseapps.notepad.database.Task;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+public class SearchNarrowerTest extends AndroidTestCase {
+
+	private SearchNarrower narrower;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		narrower = new SearchNarrower();
+
+		final MatrixCursor result = new MatrixCursor(new String[] {
+				Task.Columns._ID, Task.Columns.TITLE });
+		final MatrixCursor texts = new MatrixCursor(
+				SearchNarrower.TEXT_FIELDS);
+		addTask(result, texts, 1, "Buy milk", "from the store");
+		addTask(result, texts, 2, "Build shed", "Buy wood first");
+		addTask(result, texts, 3, "Bus tickets", null);
+		narrower.remember("bu", result, texts);
+	}
+
+	private void addTask(final MatrixCursor result, final MatrixCursor texts,
+			final long id, final String title, final String note) {
+		result.addRow(new Object[] { id, title });
+		texts.addRow(new Object[] { id, title, note });
+	}
+
+	private long[] ids(final Cursor c) {
+		assertNotNull(c);
+		final long[] ids = new long[c.getCount()];
+		while (c.moveToNext()) {
+			ids[c.getPosition()] = c.getLong(0);
+		}
+		c.close();
+		return ids;
+	}
+
+	@SmallTest
+	public void testNarrowPrefix() {
+		final long[] ids = ids(narrower.narrow("buy"));
+		assertEquals(2, ids.length);
+		assertEquals("Should keep previous order", 1, ids[0]);
+		assertEquals(2, ids[1]);
+	}
+
+	@SmallTest
+	public void testNarrowWords() {
+		final long[] ids = ids(narrower.narrow("bu WOOD"));
+		// Only the last word is a prefix, "bu" is not a word anywhere
+		assertEquals(0, ids.length);
+	}
+
+	@SmallTest
+	public void testNoNarrowing() {
+		assertNull("Not an extension", narrower.narrow("mi"));
+		assertNull("Same query", narrower.narrow("bu"));
+		assertNull("Syntax", narrower.narrow("bu*"));
+		assertNull("Syntax", narrower.narrow("bu OR milk"));
+		assertNull("Ends with space", narrower.narrow("bu "));
+
+		narrower.clear();
+		assertNull("Cleared", narrower.narrow("buy"));
+	}
+}
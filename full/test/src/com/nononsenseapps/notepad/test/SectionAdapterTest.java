@@ -0,0 +1,93 @@
+package com.nononsenseapps.notepad.test;
+
+import com.nononsenseapps.ui.SectionAdapter;
+
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
+import android.widget.SimpleCursorAdapter;
+
+public class SectionAdapterTest extends AndroidTestCase {
+
+	static final String TAG = "nononsenseapps SectionAdapterTest";
+
+	static final int LISTS = 200;
+	static final int TASKS_PER_LIST = 10;
+
+	private SectionAdapter adapter;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		adapter = new SectionAdapter(getContext(), null);
+		for (int list = 0; list < LISTS; list++) {
+			// Every tenth list is empty and should not be shown
+			final int count = list % 10 == 0 ? 0 : TASKS_PER_LIST;
+			adapter.addSection(list, getSectionName(list),
+					getListAdapter(list, count), null);
+		}
+	}
+
+	private static String getSectionName(final int list) {
+		return String.format("list%03d", list);
+	}
+
+	private SimpleCursorAdapter getListAdapter(final int list, final int count) {
+		final MatrixCursor c = new MatrixCursor(new String[] { "_id", "title" });
+		for (int i = 0; i < count; i++) {
+			c.addRow(new Object[] { list * 1000 + i, "task" + i });
+		}
+		return new SimpleCursorAdapter(getContext(),
+				android.R.layout.simple_list_item_1, c,
+				new String[] { "title" }, new int[] { android.R.id.text1 }, 0);
+	}
+
+	@SmallTest
+	public void testIndex() {
+		final int nonEmpty = LISTS - LISTS / 10;
+		assertEquals(nonEmpty * (TASKS_PER_LIST + 1), adapter.getCount());
+
+		assertEquals(-1, adapter.getSectionPosition(getSectionName(0)));
+		assertEquals(0, adapter.getSectionPosition(getSectionName(1)));
+		assertEquals(TASKS_PER_LIST + 1,
+				adapter.getSectionPosition(getSectionName(2)));
+
+		// Header, then tasks of list 1
+		assertEquals(SectionAdapter.TYPE_SECTION_HEADER,
+				adapter.getItemViewType(0));
+		assertEquals(SectionAdapter.TYPE_ITEM, adapter.getItemViewType(1));
+		assertEquals(1000, adapter.getItemId(1));
+		assertEquals(1009, adapter.getItemId(TASKS_PER_LIST));
+		assertEquals(getSectionName(1), adapter.getSection(TASKS_PER_LIST));
+		assertEquals(getSectionName(2), adapter.getSection(TASKS_PER_LIST + 1));
+		assertEquals(Long.valueOf(199),
+				adapter.getSectionIdOfPos(adapter.getCount() - 1));
+		assertNull(adapter.getSection(adapter.getCount()));
+
+		// Index follows changes
+		adapter.removeSection(getSectionName(1), null);
+		assertEquals(getSectionName(2), adapter.getSection(0));
+		assertEquals(2000, adapter.getItemId(1));
+	}
+
+	/**
+	 * Microbenchmark. Every position is looked up as the list view does when
+	 * it is scrolled through.
+	 */
+	@SmallTest
+	public void testLookupSpeed() {
+		final int count = adapter.getCount();
+		final long start = System.nanoTime();
+		long sum = 0;
+		for (int pos = 0; pos < count; pos++) {
+			sum += adapter.getItemViewType(pos);
+			sum += adapter.getItemId(pos);
+			sum += adapter.getSection(pos).length();
+		}
+		final long micros = (System.nanoTime() - start) / 1000;
+		Log.d(TAG, "Looked up " + count + " positions in " + LISTS
+				+ " lists in " + micros + " us");
+		assertTrue(sum != 0);
+	}
+}
@@ -0,0 +1,91 @@
+package com.nononsenseapps.notepad.test;
+
+import java.util.Arrays;
+
+import com.nononsenseapps.helpers.StartupPipeline;
+import com.nononsenseapps.notepad.ActivityMain_;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+/**
+ * Time from the start of ActivityMain to its first loaded task list, as
+ * StartupPipeline reports it. Run on its own:
+ *
+ * adb shell am instrument -w -e class
+ * com.nononsenseapps.notepad.test.StartupTest
+ * com.nononsenseapps.notepad.test/android.test.InstrumentationTestRunner
+ *
+ * The first start is compared to its baseline separately, the later ones find
+ * the database open and the classes loaded. Starting the process is not
+ * included. For that, run
+ *
+ * adb shell am force-stop com.nononsenseapps.notepad
+ * adb shell am start -W -n
+ * com.nononsenseapps.notepad/.ActivityMain_
+ *
+ * and read "First list after" in the log with tag "nononsenseapps startup".
+ */
+public class StartupTest extends InstrumentationTestCase {
+
+	private static final String TAG = "nononsenseapps StartupTest";
+
+	static final String BASELINES = "startup_baselines.properties";
+	static final int REPEATS = 10;
+	static final long TIMEOUT_MS = 10000;
+
+	/**
+	 * Starts the activity, and returns the microseconds until it showed a
+	 * list.
+	 */
+	private long start() throws InterruptedException {
+		final Instrumentation instrumentation = getInstrumentation();
+		final Intent intent = new Intent(Intent.ACTION_MAIN)
+				.setClassName(instrumentation.getTargetContext(),
+						ActivityMain_.class.getName())
+				.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+						| Intent.FLAG_ACTIVITY_CLEAR_TASK);
+		final Activity activity = instrumentation.startActivitySync(intent);
+		try {
+			final long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+			long micros;
+			while ((micros = StartupPipeline.getTimeToFirstList()) < 0) {
+				assertTrue("No list was loaded",
+						SystemClock.uptimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			return micros;
+		}
+		finally {
+			activity.finish();
+			instrumentation.waitForIdleSync();
+		}
+	}
+
+	@LargeTest
+	public void testTimeToFirstList() throws Exception {
+		final Baselines baselines = new Baselines(getInstrumentation()
+				.getTargetContext(), BASELINES);
+
+		final long first = start();
+		final long[] micros = new long[REPEATS];
+		for (int i = 0; i < REPEATS; i++) {
+			micros[i] = start();
+		}
+		Arrays.sort(micros);
+		final long median = micros[REPEATS / 2];
+		Log.d(TAG, "First list: first start " + first + " us, then median "
+				+ median + " us, max " + micros[REPEATS - 1] + " us");
+
+		baselines.check("first", first);
+		baselines.check("median", median);
+		baselines.save("StartupTest times to first list in microseconds");
+		assertTrue("Slower than baseline:\n" + baselines.getRegressions(),
+				baselines.getRegressions().length() == 0);
+	}
+}
@@ -0,0 +1,106 @@
+package com.nononsenseapps.notepad.test;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.nononsenseapps.notepad.database.DatabaseHandler;
+import com.nononsenseapps.notepad.database.SyncMetrics;
+
+public class SyncMetricsTest extends AndroidTestCase {
+
+	private static final String SERVICE = "111aaTestingMetrics";
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		getContext().getContentResolver().delete(SyncMetrics.URI,
+				SyncMetrics.Columns.SERVICE + " IS ?", new String[] { SERVICE });
+	}
+
+	private Cursor query() {
+		return getContext().getContentResolver().query(SyncMetrics.URI,
+				SyncMetrics.Columns.FIELDS,
+				SyncMetrics.Columns.SERVICE + " IS ?",
+				new String[] { SERVICE },
+				SyncMetrics.Columns.RUN + "," + SyncMetrics.Columns._ID);
+	}
+
+	@SmallTest
+	public void testPhasesAdded() throws InterruptedException {
+		final SyncMetrics metrics = new SyncMetrics(SERVICE, 1);
+		metrics.startPhase("a");
+		Thread.sleep(5);
+		metrics.startPhase("b");
+		metrics.startPhase("a");
+		Thread.sleep(5);
+		metrics.endPhase();
+		metrics.add("count", 2);
+		metrics.add("count", 3);
+
+		assertTrue(metrics.get("a" + SyncMetrics.PHASE_SUFFIX) >= 10);
+		assertEquals(5, metrics.get("count"));
+		assertEquals(0, metrics.get("missing"));
+	}
+
+	@SmallTest
+	public void testSaved() {
+		final SyncMetrics metrics = new SyncMetrics(SERVICE, 1);
+		metrics.set("first", 7);
+		metrics.set("second", 8);
+		metrics.save(getContext());
+
+		final Cursor c = query();
+		try {
+			// In order, with the total last
+			assertEquals(3, c.getCount());
+			c.moveToFirst();
+			assertEquals(1, c.getLong(1));
+			assertEquals("first", c.getString(3));
+			assertEquals(7, c.getLong(4));
+			c.moveToNext();
+			assertEquals("second", c.getString(3));
+			c.moveToNext();
+			assertEquals(SyncMetrics.TOTAL, c.getString(3));
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	@SmallTest
+	public void testTrimmed() {
+		// Runs older than any real sync, so they are the ones trimmed
+		for (int run = 1; run <= 5; run++) {
+			final SyncMetrics metrics = new SyncMetrics(SERVICE, run);
+			metrics.set("value", run);
+			metrics.save(getContext());
+		}
+		final SQLiteDatabase db = DatabaseHandler.getInstance(getContext())
+				.getWritableDatabase();
+		final Cursor all = db.rawQuery("SELECT COUNT(DISTINCT "
+				+ SyncMetrics.Columns.RUN + ") FROM " + SyncMetrics.TABLE_NAME,
+				null);
+		final int runs;
+		try {
+			all.moveToFirst();
+			runs = all.getInt(0);
+		}
+		finally {
+			all.close();
+		}
+
+		// Keep the three latest test runs
+		SyncMetrics.trim(db, runs - 2);
+		final Cursor c = query();
+		try {
+			assertEquals(2 * 3, c.getCount());
+			c.moveToFirst();
+			assertEquals(3, c.getLong(1));
+		}
+		finally {
+			c.close();
+		}
+	}
+}
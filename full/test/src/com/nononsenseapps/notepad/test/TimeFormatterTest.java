@@ -0,0 +1,135 @@
+package com.nononsenseapps.notepad.test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
+
+import com.nononsenseapps.helpers.TimeFormatter;
+import com.nononsenseapps.notepad.core.R;
+
+public class TimeFormatterTest extends AndroidTestCase {
+
+	static final String TAG = "nononsenseapps timeformattertest";
+
+	// Thu Feb 21 13:34:56 2013 UTC
+	static final long atime = 1361453696000L;
+
+	private Context context;
+	private SharedPreferences prefs;
+	private String localeKey;
+	private String oldLocale;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		context = getContext();
+		prefs = PreferenceManager.getDefaultSharedPreferences(context);
+		localeKey = context.getString(R.string.pref_locale);
+		oldLocale = prefs.getString(localeKey, "");
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		prefs.edit().putString(localeKey, oldLocale).commit();
+	}
+
+	@SmallTest
+	public void testFormattersAreCopies() {
+		final SimpleDateFormat a = TimeFormatter
+				.getLocalFormatterWeekday(context);
+		final SimpleDateFormat b = TimeFormatter
+				.getLocalFormatterWeekday(context);
+		assertNotSame(a, b);
+		assertEquals(a.format(new Date(atime)), b.format(new Date(atime)));
+	}
+
+	@SmallTest
+	public void testLocaleChange() {
+		prefs.edit().putString(localeKey, "en_US").commit();
+		assertEquals(
+				new SimpleDateFormat("MMMM", Locale.US).format(new Date(atime)),
+				TimeFormatter.getLocalDateString(context, "MMMM", atime));
+
+		prefs.edit().putString(localeKey, "sv_SE").commit();
+		assertEquals(
+				new SimpleDateFormat("MMMM", new Locale("sv", "SE"))
+						.format(new Date(atime)),
+				TimeFormatter.getLocalDateString(context, "MMMM", atime));
+	}
+
+	@SmallTest
+	public void testThreads() throws InterruptedException {
+		final String expected = TimeFormatter.getLocalDateStringLong(context,
+				atime);
+		final int threadCount = 4;
+		final boolean[] ok = new boolean[threadCount];
+		final Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					boolean result = true;
+					for (int j = 0; j < 2000; j++) {
+						result &= expected.equals(TimeFormatter
+								.getLocalDateStringLong(context, atime));
+						// Something else in between
+						TimeFormatter.getLocalDateStringShort(context, atime
+								+ j * 3600000L);
+					}
+					ok[index] = result;
+				}
+			});
+			threads[i].start();
+		}
+		for (int i = 0; i < threadCount; i++) {
+			threads[i].join();
+			assertTrue("Thread " + i + " got a garbled date", ok[i]);
+		}
+	}
+
+	/**
+	 * The cost of formatting a date per row, compared with creating a
+	 * formatter for each. Check the log for results.
+	 */
+	@LargeTest
+	public void testRowFormattingSpeed() {
+		final int rows = 2000;
+		final String pattern = context
+				.getString(R.string.dateformat_long_1).replace("localtime",
+						"HH:mm");
+		int sum = 0;
+		// Warm up
+		for (int i = 0; i < 100; i++) {
+			sum += TimeFormatter.getLocalDateStringLong(context, atime + i)
+					.length();
+		}
+
+		long before = System.nanoTime();
+		for (int i = 0; i < rows; i++) {
+			sum += new SimpleDateFormat(pattern, Locale.getDefault()).format(
+					new Date(atime + i * 60000L)).length();
+		}
+		final long uncached = System.nanoTime() - before;
+
+		before = System.nanoTime();
+		for (int i = 0; i < rows; i++) {
+			sum += TimeFormatter.getLocalDateStringLong(context,
+					atime + i * 60000L).length();
+		}
+		final long cached = System.nanoTime() - before;
+
+		Log.d(TAG, "Row formatting ns/row, new formatter: "
+				+ (uncached / rows) + ", cached: " + (cached / rows) + " ("
+				+ sum + ")");
+	}
+}
@@ -0,0 +1,100 @@
+package com.nononsenseapps.notepad.test;
+
+import com.nononsenseapps.notepad.database.DatabaseHandler;
+import com.nononsenseapps.notepad.database.LegacyDBHelper;
+import com.nononsenseapps.notepad.database.Task;
+import com.nononsenseapps.notepad.database.TaskList;
+import com.nononsenseapps.notepad.database.TrashPurger;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+public class TrashPurgeTest extends AndroidTestCase {
+
+	static final String PREFIX = "trashpurge_test_";
+
+	private Context context;
+	private SQLiteDatabase db;
+	private TaskList list;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		context = getContext();
+		context.deleteDatabase(PREFIX + LegacyDBHelper.LEGACY_DATABASE_NAME);
+		context.deleteDatabase(PREFIX + DatabaseHandler.DATABASE_NAME);
+		db = new DatabaseHandler(context, PREFIX).getWritableDatabase();
+
+		list = new TaskList();
+		list.title = "purgelist";
+		list.insert(context, db);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		super.tearDown();
+		db.close();
+		context.deleteDatabase(PREFIX + LegacyDBHelper.LEGACY_DATABASE_NAME);
+		context.deleteDatabase(PREFIX + DatabaseHandler.DATABASE_NAME);
+	}
+
+	private void insertAndDeleteTasks(final int count) {
+		for (int i = 0; i < count; i++) {
+			final Task t = new Task();
+			t.title = "purgeTask" + i;
+			t.note = "purgeNote" + i;
+			t.dblist = list._id;
+			t.insert(context, db);
+		}
+		db.delete(Task.TABLE_NAME, Task.Columns.DBLIST + " IS ?",
+				new String[] { Long.toString(list._id) });
+	}
+
+	private int count(final String table) {
+		final Cursor c = db.rawQuery("SELECT COUNT(1) FROM " + table, null);
+		try {
+			c.moveToFirst();
+			return c.getInt(0);
+		}
+		finally {
+			c.close();
+		}
+	}
+
+	@SmallTest
+	public void testPurgeByCount() {
+		insertAndDeleteTasks(25);
+		assertEquals(25, count(Task.DELETE_TABLE_NAME));
+
+		// Small batches to exercise the loop
+		final int purged = new TrashPurger(db, 365, 10, 4).purge();
+
+		assertEquals("Should purge all but the newest", 15, purged);
+		assertEquals(10, count(Task.DELETE_TABLE_NAME));
+		assertEquals("Search table should follow the trash", 10,
+				count(Task.FTS3_DELETE_TABLE_NAME));
+	}
+
+	@SmallTest
+	public void testPurgeByAge() {
+		insertAndDeleteTasks(5);
+		db.execSQL("UPDATE " + Task.DELETE_TABLE_NAME + " SET "
+				+ Task.Columns.TRIG_DELETED + " = datetime('now', '-10 days')");
+		insertAndDeleteTasks(3);
+
+		final int purged = new TrashPurger(db, 7, 100, 100).purge();
+
+		assertEquals("Should purge only old tasks", 5, purged);
+		assertEquals(3, count(Task.DELETE_TABLE_NAME));
+	}
+
+	@SmallTest
+	public void testNothingToPurge() {
+		insertAndDeleteTasks(3);
+		assertEquals(0, new TrashPurger(db).purge());
+		assertEquals(3, count(Task.DELETE_TABLE_NAME));
+	}
+}
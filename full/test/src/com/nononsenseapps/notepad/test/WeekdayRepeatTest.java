@@ -0,0 +1,165 @@
+package com.nononsenseapps.notepad.test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.nononsenseapps.notepad.database.Notification;
+import com.nononsenseapps.utils.time.RFC3339Codec;
+import com.nononsenseapps.utils.time.WeekdayRepeat;
+
+public class WeekdayRepeatTest extends AndroidTestCase {
+
+	private static final long MINUTE = 60 * 1000;
+	private static final long HOUR = 60 * MINUTE;
+
+	// Zones with daylight savings north and south, a half hour change, and
+	// none at all
+	private static final String[] ZONES = { "Europe/Stockholm",
+			"America/New_York", "Australia/Sydney", "Australia/Lord_Howe",
+			"America/Sao_Paulo", "Asia/Kolkata", "UTC" };
+
+	private static final int[] CALENDAR_DAYS = { Calendar.MONDAY,
+			Calendar.TUESDAY, Calendar.WEDNESDAY, Calendar.THURSDAY,
+			Calendar.FRIDAY, Calendar.SATURDAY, Calendar.SUNDAY };
+
+	private static long getTime(final TimeZone tz, final int year,
+			final int month, final int day, final int hour, final int minute) {
+		final GregorianCalendar gc = new GregorianCalendar(tz);
+		gc.clear();
+		gc.set(year, month, day, hour, minute);
+		return gc.getTimeInMillis();
+	}
+
+	/**
+	 * Same thing with a Calendar, building each day from its fields
+	 */
+	private static long getCalendarNext(final int days, final long time,
+			final long now, final TimeZone tz) {
+		final GregorianCalendar org = new GregorianCalendar(tz);
+		org.setTimeInMillis(time);
+		final GregorianCalendar today = new GregorianCalendar(tz);
+		today.setTimeInMillis(now);
+
+		for (int i = 0; i <= 7; i++) {
+			final GregorianCalendar gc = new GregorianCalendar(tz);
+			gc.clear();
+			gc.set(today.get(Calendar.YEAR), today.get(Calendar.MONTH),
+					today.get(Calendar.DAY_OF_MONTH) + i,
+					org.get(Calendar.HOUR_OF_DAY), org.get(Calendar.MINUTE));
+			final int weekday = gc.get(Calendar.DAY_OF_WEEK);
+			boolean on = false;
+			for (int d = 0; d < 7; d++) {
+				on |= CALENDAR_DAYS[d] == weekday && 0 < (days & (1 << d));
+			}
+			if (on && gc.getTimeInMillis() > now) {
+				return gc.getTimeInMillis();
+			}
+		}
+		return RFC3339Codec.INVALID;
+	}
+
+	@SmallTest
+	public void testWeekdays() {
+		final TimeZone tz = TimeZone.getTimeZone("UTC");
+		// A monday
+		final long monday = getTime(tz, 2013, Calendar.MAY, 13, 8, 0);
+		final long nineAM = getTime(tz, 2013, Calendar.JANUARY, 1, 9, 0);
+
+		// Later today
+		assertEquals(monday + HOUR, WeekdayRepeat.next(WeekdayRepeat.MONDAY,
+				nineAM, monday, tz));
+		// Already passed, so next week
+		assertEquals(monday + HOUR + 7 * 24 * HOUR, WeekdayRepeat.next(
+				WeekdayRepeat.MONDAY, nineAM, monday + 2 * HOUR, tz));
+		// Not on the exact time either
+		assertEquals(monday + HOUR + 7 * 24 * HOUR, WeekdayRepeat.next(
+				WeekdayRepeat.MONDAY, nineAM, monday + HOUR, tz));
+		assertEquals(monday + HOUR + 6 * 24 * HOUR, WeekdayRepeat.next(
+				WeekdayRepeat.MONDAY | WeekdayRepeat.SUNDAY, nineAM, monday
+						+ 2 * HOUR, tz));
+		assertEquals(monday + HOUR + 24 * HOUR, WeekdayRepeat.next(
+				WeekdayRepeat.ALL, nineAM, monday + 2 * HOUR, tz));
+
+		assertEquals(RFC3339Codec.INVALID,
+				WeekdayRepeat.next(0, nineAM, monday, tz));
+	}
+
+	@SmallTest
+	public void testNotificationWeekdays() {
+		final Notification not = new Notification(1);
+		not.repeats = Notification.mon | Notification.wed | Notification.sun;
+		assertEquals(WeekdayRepeat.MONDAY | WeekdayRepeat.WEDNESDAY
+				| WeekdayRepeat.SUNDAY, not.getWeekdays());
+		// Not a weekday
+		not.repeats = Notification.locationRepeat;
+		assertEquals(0, not.getWeekdays());
+	}
+
+	@SmallTest
+	public void testSameTimeAcrossDaylightSavings() {
+		final TimeZone tz = TimeZone.getTimeZone("Europe/Stockholm");
+		// Clocks went forward at 02:00 on 2013-03-31
+		long time = getTime(tz, 2013, Calendar.MARCH, 30, 9, 0);
+		long next = WeekdayRepeat.next(WeekdayRepeat.ALL, time, time, tz);
+		assertEquals(getTime(tz, 2013, Calendar.MARCH, 31, 9, 0), next);
+		assertEquals(23 * HOUR, next - time);
+
+		// And back at 03:00 on 2013-10-27
+		time = getTime(tz, 2013, Calendar.OCTOBER, 26, 9, 0);
+		next = WeekdayRepeat.next(WeekdayRepeat.ALL, time, time, tz);
+		assertEquals(getTime(tz, 2013, Calendar.OCTOBER, 27, 9, 0), next);
+		assertEquals(25 * HOUR, next - time);
+	}
+
+	@SmallTest
+	public void testSkippedAndRepeatedTimes() {
+		final TimeZone tz = TimeZone.getTimeZone("Europe/Stockholm");
+		// 02:30 did not happen on 2013-03-31, so an hour later
+		long time = getTime(tz, 2013, Calendar.MARCH, 30, 2, 30);
+		long next = WeekdayRepeat.next(WeekdayRepeat.ALL, time, time, tz);
+		assertEquals(getTime(tz, 2013, Calendar.MARCH, 31, 3, 30), next);
+		// Next day as normal
+		assertEquals(getTime(tz, 2013, Calendar.APRIL, 1, 2, 30),
+				WeekdayRepeat.next(WeekdayRepeat.ALL, time, next, tz));
+
+		// 02:30 happened twice on 2013-10-27, the second is used
+		time = getTime(tz, 2013, Calendar.OCTOBER, 26, 2, 30);
+		next = WeekdayRepeat.next(WeekdayRepeat.ALL, time, time, tz);
+		assertEquals(time + 25 * HOUR, next);
+	}
+
+	@LargeTest
+	public void testSameAsCalendar() {
+		final Random random = new Random(42);
+		final long start = getTime(TimeZone.getTimeZone("UTC"), 2012,
+				Calendar.JANUARY, 1, 0, 0);
+		final long twoYears = 2 * 365 * 24 * HOUR;
+		for (final String zone : ZONES) {
+			final TimeZone tz = TimeZone.getTimeZone(zone);
+			for (int i = 0; i < 2000; i++) {
+				final int days = 1 + random.nextInt(WeekdayRepeat.ALL);
+				// Whole minutes, like the editor sets
+				final long time = start + random.nextInt(24 * 60) * MINUTE;
+				final long now = start
+						+ (long) (random.nextDouble() * twoYears);
+				assertEquals(zone + " days " + days + " time " + time
+						+ " now " + now, getCalendarNext(days, time, now, tz),
+						WeekdayRepeat.next(days, time, now, tz));
+			}
+			// Every hour around the changes of a year, daily
+			for (long now = start; now < start + twoYears / 2; now += HOUR
+					+ MINUTE) {
+				final long time = start + 2 * HOUR + 30 * MINUTE;
+				assertEquals(zone + " now " + now, getCalendarNext(
+						WeekdayRepeat.ALL, time, now, tz), WeekdayRepeat.next(
+						WeekdayRepeat.ALL, time, now, tz));
+			}
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package com.nononsenseapps.utils.time;
+
+import java.util.TimeZone;
+
+/**
+ * Parses and formats RFC3339 dates without SimpleDateFormat or Calendar.
+ * Parsing reads the characters straight into epoch milliseconds and creates
+ * no objects. All methods are static and thread safe.
+ *
+ * Accepted input is date "T" time offset, like 2013-02-21T13:34:56.789Z or
+ * 2013-02-21T13:34:56+02:00. Fractions are optional and any digits after the
+ * milliseconds are ignored. The offset may be written without a colon. A date
+ * alone is taken as midnight UTC.
+ */
+public final class RFC3339Codec {
+
+	// Returned when the text can't be parsed
+	public static final long INVALID = Long.MIN_VALUE;
+
+	static final long SECOND = 1000L;
+	static final long MINUTE = 60 * SECOND;
+	static final long HOUR = 60 * MINUTE;
+	static final long DAY = 24 * HOUR;
+
+	private RFC3339Codec() {
+	}
+
+	/**
+	 * Returns milliseconds since the epoch, or INVALID.
+	 */
+	public static long parse(final CharSequence text) {
+		if (text == null) {
+			return INVALID;
+		}
+		final int length = text.length();
+		if (length < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+			return INVALID;
+		}
+
+		final int year = digits(text, 0, 4);
+		final int month = digits(text, 5, 2);
+		final int day = digits(text, 8, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1
+				|| day > daysInMonth(year, month)) {
+			return INVALID;
+		}
+		final long date = daysFromCivil(year, month, day) * DAY;
+		if (length == 10) {
+			return date;
+		}
+
+		// Time, seconds are required
+		if (length < 20 || !isSeparator(text.charAt(10))
+				|| text.charAt(13) != ':' || text.charAt(16) != ':') {
+			return INVALID;
+		}
+		final int hour = digits(text, 11, 2);
+		final int minute = digits(text, 14, 2);
+		final int second = digits(text, 17, 2);
+		// 60 is a leap second
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0
+				|| second > 60) {
+			return INVALID;
+		}
+
+		int pos = 19;
+		int millis = 0;
+		if (text.charAt(pos) == '.') {
+			pos++;
+			final int start = pos;
+			while (pos < length && isDigit(text.charAt(pos))) {
+				if (pos - start < 3) {
+					millis = millis * 10 + (text.charAt(pos) - '0');
+				}
+				pos++;
+			}
+			if (pos == start) {
+				return INVALID;
+			}
+			// Scale .1 and .12 to milliseconds
+			for (int i = pos - start; i < 3; i++) {
+				millis *= 10;
+			}
+		}
+
+		final long offset = parseOffset(text, pos);
+		if (offset == INVALID) {
+			return INVALID;
+		}
+		return date + hour * HOUR + minute * MINUTE + second * SECOND + millis
+				- offset;
+	}
+
+	/**
+	 * Same as parse, but returns defaultValue instead of INVALID.
+	 */
+	public static long parse(final CharSequence text, final long defaultValue) {
+		final long result = parse(text);
+		return result == INVALID ? defaultValue : result;
+	}
+
+	/**
+	 * Offset in milliseconds of the offset starting at pos, which must end
+	 * the text.
+	 */
+	private static long parseOffset(final CharSequence text, final int pos) {
+		final int length = text.length();
+		if (pos >= length) {
+			return INVALID;
+		}
+		final char c = text.charAt(pos);
+		if (c == 'Z' || c == 'z') {
+			return pos + 1 == length ? 0 : INVALID;
+		}
+		if (c != '+' && c != '-') {
+			return INVALID;
+		}
+
+		final int hours = digits(text, pos + 1, 2);
+		final int minutes;
+		if (length == pos + 6 && text.charAt(pos + 3) == ':') {
+			minutes = digits(text, pos + 4, 2);
+		}
+		else if (length == pos + 5) {
+			minutes = digits(text, pos + 3, 2);
+		}
+		else {
+			return INVALID;
+		}
+		if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+			return INVALID;
+		}
+		final long offset = hours * HOUR + minutes * MINUTE;
+		return c == '-' ? -offset : offset;
+	}
+
+	/**
+	 * Formats as UTC with milliseconds, like 2013-02-21T13:34:56.789Z
+	 */
+	public static String formatUTC(final long time) {
+		final char[] buf = new char[24];
+		writeDateTime(buf, time);
+		buf[19] = '.';
+		writeDigits(buf, 20, 3, (int) floorMod(time, SECOND));
+		buf[23] = 'Z';
+		return new String(buf);
+	}
+
+	/**
+	 * Formats in the time zone without fractions and with a numeric offset
+	 * without colon, like 2013-02-21T15:34:56+0200. Same as the
+	 * "yyyy-MM-dd'T'HH:mm:ssZ" pattern of SimpleDateFormat.
+	 */
+	public static String format(final long time, final TimeZone tz) {
+		final int offset = tz.getOffset(time);
+		final char[] buf = new char[24];
+		writeDateTime(buf, time + offset);
+		final int offsetMinutes = Math.abs(offset) / (int) MINUTE;
+		buf[19] = offset < 0 ? '-' : '+';
+		writeDigits(buf, 20, 2, offsetMinutes / 60);
+		writeDigits(buf, 22, 2, offsetMinutes % 60);
+		return new String(buf);
+	}
+
+	/**
+	 * The date of time in the time zone, at midnight UTC. For example
+	 * 2013-02-21T13:34 local time gives 2013-02-21T00:00:00Z.
+	 */
+	public static String formatZuluDate(final long time, final TimeZone tz) {
+		final char[] buf = new char[20];
+		writeDateTime(buf, floorDiv(time + tz.getOffset(time), DAY) * DAY);
+		buf[19] = 'Z';
+		return new String(buf);
+	}
+
+	/**
+	 * Combines the UTC date of text with the wall clock time of localTime in
+	 * the time zone. If localTime is INVALID, the time is 23:59. Returns
+	 * INVALID if text can't be parsed.
+	 */
+	public static long combineDateAndTime(final CharSequence text,
+			final long localTime, final TimeZone tz) {
+		final long utc = parse(text);
+		if (utc == INVALID) {
+			return INVALID;
+		}
+		final long date = floorDiv(utc, DAY) * DAY;
+		final long timeOfDay;
+		if (localTime == INVALID) {
+			timeOfDay = 23 * HOUR + 59 * MINUTE;
+		}
+		else {
+			timeOfDay = floorMod(localTime + tz.getOffset(localTime), DAY);
+		}
+		return wallToUtc(date + timeOfDay, tz);
+	}
+
+	/**
+	 * Milliseconds of the wall clock time given as if it was UTC. Like a
+	 * lenient Calendar, times skipped by a change of offset use the offset
+	 * before the change, so they end up later. Times which happen twice are
+	 * taken the second time.
+	 */
+	static long wallToUtc(final long wall, final TimeZone tz) {
+		// The raw offset is today's, the standard offset may have been another
+		final long approx = wall - tz.getOffset(wall - tz.getRawOffset());
+		// Changes of offset are at most a day
+		final int before = tz.getOffset(approx - DAY);
+		final int after = tz.getOffset(approx + DAY);
+		final long result = wall - after;
+		// In a gap, result is before the change
+		return tz.getOffset(result) == after ? result : wall - before;
+	}
+
+	/**
+	 * Writes yyyy-MM-ddTHH:mm:ss into the first 19 characters
+	 */
+	private static void writeDateTime(final char[] buf, final long time) {
+		final long days = floorDiv(time, DAY);
+		final int civil = civilFromDays(days);
+		writeDigits(buf, 0, 4, civil / 10000);
+		buf[4] = '-';
+		writeDigits(buf, 5, 2, (civil / 100) % 100);
+		buf[7] = '-';
+		writeDigits(buf, 8, 2, civil % 100);
+		buf[10] = 'T';
+
+		final int ms = (int) (time - days * DAY);
+		writeDigits(buf, 11, 2, ms / (int) HOUR);
+		buf[13] = ':';
+		writeDigits(buf, 14, 2, (ms / (int) MINUTE) % 60);
+		buf[16] = ':';
+		writeDigits(buf, 17, 2, (ms / (int) SECOND) % 60);
+	}
+
+	private static void writeDigits(final char[] buf, final int pos,
+			final int count, int value) {
+		for (int i = pos + count - 1; i >= pos; i--) {
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	/**
+	 * Value of count digits at pos, or -1
+	 */
+	private static int digits(final CharSequence text, final int pos,
+			final int count) {
+		if (pos + count > text.length()) {
+			return -1;
+		}
+		int result = 0;
+		for (int i = pos; i < pos + count; i++) {
+			final char c = text.charAt(i);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isSeparator(final char c) {
+		return c == 'T' || c == 't' || c == ' ';
+	}
+
+	static boolean isLeapYear(final int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	static int daysInMonth(final int year, final int month) {
+		switch (month) {
+		case 2:
+			return isLeapYear(year) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * Days since 1970-01-01 in the proleptic Gregorian calendar. From Howard
+	 * Hinnant's date algorithms.
+	 */
+	static long daysFromCivil(int year, final int month, final int day) {
+		year -= month <= 2 ? 1 : 0;
+		final long era = (year >= 0 ? year : year - 399) / 400;
+		final long yearOfEra = year - era * 400;
+		final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5
+				+ day - 1;
+		final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra
+				/ 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Inverse of daysFromCivil. Returns the date packed as yyyyMMdd.
+	 */
+	static int civilFromDays(long days) {
+		days += 719468;
+		final long era = (days >= 0 ? days : days - 146096) / 146097;
+		final long dayOfEra = days - era * 146097;
+		final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+				- dayOfEra / 146096) / 365;
+		final long dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		final long mp = (5 * dayOfYear + 2) / 153;
+		final int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		final int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+		return year * 10000 + month * 100 + day;
+	}
+
+	static long floorDiv(final long x, final long y) {
+		final long q = x / y;
+		return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+	}
+
+	static long floorMod(final long x, final long y) {
+		return x - floorDiv(x, y) * y;
+	}
+}
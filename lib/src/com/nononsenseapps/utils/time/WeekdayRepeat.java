@@ -0,0 +1,82 @@
+package com.nononsenseapps.utils.time;
+
+import java.util.TimeZone;
+
+/**
+ * Finds the next occurrence of a wall clock time on a set of weekdays. Days
+ * are counted in the time zone, not as 24 hour steps, so the time of day
+ * stays the same across daylight savings. Uses lookup tables and epoch
+ * arithmetic only, and creates no objects.
+ *
+ * Weekdays are a bit mask with Monday as the lowest bit.
+ */
+public final class WeekdayRepeat {
+
+	public static final int MONDAY = 0x01;
+	public static final int TUESDAY = 0x02;
+	public static final int WEDNESDAY = 0x04;
+	public static final int THURSDAY = 0x08;
+	public static final int FRIDAY = 0x10;
+	public static final int SATURDAY = 0x20;
+	public static final int SUNDAY = 0x40;
+	public static final int ALL = 0x7f;
+
+	private static final long MINUTE = RFC3339Codec.MINUTE;
+	private static final long DAY = RFC3339Codec.DAY;
+
+	// 1970-01-01 was a Thursday, Monday is 0
+	private static final int EPOCH_WEEKDAY = 3;
+
+	// DAYS_UNTIL[days][weekday] is the number of days from weekday to the
+	// first of days, weekday included. Unused for an empty mask.
+	private static final byte[][] DAYS_UNTIL = new byte[ALL + 1][7];
+
+	static {
+		for (int days = 1; days <= ALL; days++) {
+			for (int weekday = 0; weekday < 7; weekday++) {
+				int until = 0;
+				while ((days & (1 << ((weekday + until) % 7))) == 0) {
+					until++;
+				}
+				DAYS_UNTIL[days][weekday] = (byte) until;
+			}
+		}
+	}
+
+	private WeekdayRepeat() {
+	}
+
+	/**
+	 * Returns the first time after now which is on one of days, at the wall
+	 * clock hour and minute that time has in the zone. Returns
+	 * RFC3339Codec.INVALID if days is empty.
+	 */
+	public static long next(final int days, final long time, final long now,
+			final TimeZone tz) {
+		final int mask = days & ALL;
+		if (mask == 0) {
+			return RFC3339Codec.INVALID;
+		}
+
+		final long timeOfDay = RFC3339Codec.floorMod(
+				time + tz.getOffset(time), DAY) / MINUTE * MINUTE;
+		final long today = RFC3339Codec.floorDiv(now + tz.getOffset(now), DAY);
+		final int weekday = getWeekday(today);
+
+		long day = today + DAYS_UNTIL[mask][weekday];
+		long result = RFC3339Codec.wallToUtc(day * DAY + timeOfDay, tz);
+		if (result <= now) {
+			// Only possible today, so look from tomorrow
+			day = today + 1 + DAYS_UNTIL[mask][(weekday + 1) % 7];
+			result = RFC3339Codec.wallToUtc(day * DAY + timeOfDay, tz);
+		}
+		return result;
+	}
+
+	/**
+	 * Monday is 0 and Sunday 6, for days since the epoch
+	 */
+	static int getWeekday(final long day) {
+		return (int) RFC3339Codec.floorMod(day + EPOCH_WEEKDAY, 7);
+	}
+}
@@ -8,13 +8,15 @@ import android.text.Editable;
 import android.text.Layout;
 import android.text.Selection;
 import android.text.Spannable;
+import android.text.SpannableString;
 import android.text.Spanned;
+import android.text.TextUtils;
 import android.text.TextWatcher;
-import android.text.method.ArrowKeyMovementMethod;
 import android.text.style.ClickableSpan;
 import android.text.style.RelativeSizeSpan;
 import android.text.style.StyleSpan;
 import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
 import android.text.util.Linkify;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -40,6 +42,14 @@ public class StyledEditText extends EditText {
 	private int mTitleFontStyle;
 	private boolean mLinkify;
 
+	// Range changed since the last restyle, -1 if none
+	private int mChangeStart = -1;
+	private int mChangeEnd = -1;
+	// Everything must be restyled, like after setText
+	private boolean mRestyleAll = true;
+	// End of the title as currently styled
+	private int mTitleEnd = -1;
+
 	public StyledEditText(Context context, AttributeSet attrs) {
 		super(context, attrs);
 		TypedArray a = context.getTheme().obtainStyledAttributes(attrs,
@@ -74,6 +84,20 @@ public class StyledEditText extends EditText {
 			@Override
 			public void onTextChanged(CharSequence s, int start, int before,
 					int count) {
+				if (start == 0 && count == s.length()) {
+					// All replaced
+					mRestyleAll = true;
+				}
+				else if (mChangeStart < 0) {
+					mChangeStart = start;
+					mChangeEnd = start + count;
+				}
+				else {
+					// Several changes before afterTextChanged
+					mChangeStart = Math.min(mChangeStart, start);
+					mChangeEnd = Math.max(mChangeEnd + count - before, start
+							+ count);
+				}
 			}
 
 			@Override
@@ -83,16 +107,76 @@ public class StyledEditText extends EditText {
 
 			@Override
 			public void afterTextChanged(Editable s) {
-				spannify(s);
-				if (mLinkify) {
-					Linkify.addLinks(StyledEditText.this, Linkify.ALL);
-					// Links shouldnt steal click focus
-					// But text must still be selectable etc
-					setMovementMethod(new ArrowKeyMovementMethod());
+				if (mRestyleAll) {
+					restyle(s, 0, s.length());
 				}
+				else if (mChangeStart >= 0) {
+					restyle(s, Math.min(mChangeStart, s.length()),
+							Math.min(mChangeEnd, s.length()));
+				}
+				mRestyleAll = false;
+				mChangeStart = -1;
+				mChangeEnd = -1;
 			}
 		});
 	}
+
+	/**
+	 * Only what is needed after a change of [start, end) is redone. The title
+	 * if the first line was touched, and links in the changed paragraphs.
+	 */
+	private void restyle(final Spannable s, final int start, final int end) {
+		if (mRestyleAll) {
+			// Clear this first, or it will multiply!
+			for (RelativeSizeSpan rs : s.getSpans(0, s.length(),
+					RelativeSizeSpan.class)) {
+				s.removeSpan(rs);
+			}
+			mTitleEnd = -1;
+		}
+		if (mTitleEnd < 0 || start <= mTitleEnd) {
+			spannify(s);
+		}
+
+		if (mLinkify) {
+			linkify(s, TextUtils.lastIndexOf(s, '\n', start - 1) + 1,
+					indexOfNewline(s, end));
+		}
+	}
+
+	private static int indexOfNewline(final CharSequence s, final int from) {
+		final int i = TextUtils.indexOf(s, '\n', from);
+		return i < 0 ? s.length() : i;
+	}
+
+	/**
+	 * Replaces the links between start and end. Links can't span several
+	 * lines, so only whole paragraphs need to be given.
+	 */
+	private static void linkify(final Spannable s, final int start,
+			final int end) {
+		for (URLSpan span : s.getSpans(start, end, URLSpan.class)) {
+			final int spanStart = s.getSpanStart(span);
+			final int spanEnd = s.getSpanEnd(span);
+			if (spanStart >= start && spanEnd <= end) {
+				s.removeSpan(span);
+			}
+		}
+		if (start >= end) {
+			return;
+		}
+
+		final SpannableString paragraph = new SpannableString(s.subSequence(
+				start, end).toString());
+		if (Linkify.addLinks(paragraph, Linkify.ALL)) {
+			for (URLSpan span : paragraph.getSpans(0, paragraph.length(),
+					URLSpan.class)) {
+				s.setSpan(span, start + paragraph.getSpanStart(span), start
+						+ paragraph.getSpanEnd(span),
+						Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+			}
+		}
+	}
 	
 	/**
 	 * 
@@ -183,19 +267,13 @@ public class StyledEditText extends EditText {
 	 */
 	public void setLinkify(final boolean clickable) {
 		this.mLinkify = clickable;
+		mRestyleAll = true;
 	}
 
 	private void spannify(final Spannable s) {
-		// Clear this first, or it will multiply!
-		for (RelativeSizeSpan rs : s.getSpans(0, s.length(),
-				RelativeSizeSpan.class)) {
-			s.removeSpan(rs);
-		}
-
-		int titleEnd = s.toString().indexOf("\n");
-		if (titleEnd < 0) {
-			titleEnd = s.toString().length();
-		}
+		// Does not copy the text, unlike toString
+		final int titleEnd = indexOfNewline(s, 0);
+		mTitleEnd = titleEnd;
 
 		if (titleEnd > 0) {
 			s.setSpan(titleStyleSpan, 0, titleEnd,
@@ -205,9 +283,13 @@ public class StyledEditText extends EditText {
 			s.setSpan(titleFamilySpan, 0, titleEnd,
 					Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
 			
-			if (titleEnd < s.toString().length()) {
-				s.setSpan(bodyFamilySpan, titleEnd, s.toString().length(),
-						Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+			// Inclusive, so it grows when typing at the end
+			if (titleEnd < s.length()) {
+				s.setSpan(bodyFamilySpan, titleEnd, s.length(),
+						Spannable.SPAN_EXCLUSIVE_INCLUSIVE);
+			}
+			else {
+				s.removeSpan(bodyFamilySpan);
 			}
 		}
 	}
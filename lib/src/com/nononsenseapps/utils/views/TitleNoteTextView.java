@@ -98,39 +98,95 @@ public class TitleNoteTextView extends TextView {
 	public void setStyledText(final String styledText) {
 		if (styledText != null) {
 			this.mStyledText = styledText;
+			// Links are added to the spannable, so the movement method is
+			// left alone and links dont steal click focus everywhere
+			setText(getStyler().style(mStyledText), BufferType.SPANNABLE);
+		}
+	}
+
+	/**
+	 * Shows text made by this view's Styler earlier, for example on a
+	 * background thread. Same result as setTextTitle followed by setTextRest,
+	 * but the spans and links are not created again.
+	 */
+	public void setPrebuiltText(final String title, final String rest,
+			final CharSequence styled) {
+		this.mTitle = title;
+		this.mRest = rest;
+		this.mStyledText = styled.toString();
+		setText(styled, BufferType.SPANNABLE);
+	}
+
+	/**
+	 * Returns a Styler which styles text the way this view is currently
+	 * configured.
+	 */
+	public Styler getStyler() {
+		return new Styler(titleStyleSpan, titleSizeSpan, titleFamilySpan,
+				bodyFamilySpan, mLinkify);
+	}
 
-			int titleEnd = mStyledText.indexOf("\n");
+	/**
+	 * Makes the styled text shown by a TitleNoteTextView. Does not touch any
+	 * view, so it is safe to use from any thread.
+	 */
+	public static class Styler {
+		final Object titleStyleSpan;
+		final Object titleSizeSpan;
+		final Object titleFamilySpan;
+		final Object bodyFamilySpan;
+		final boolean linkify;
+
+		Styler(final Object titleStyleSpan, final Object titleSizeSpan,
+				final Object titleFamilySpan, final Object bodyFamilySpan,
+				final boolean linkify) {
+			this.titleStyleSpan = titleStyleSpan;
+			this.titleSizeSpan = titleSizeSpan;
+			this.titleFamilySpan = titleFamilySpan;
+			this.bodyFamilySpan = bodyFamilySpan;
+			this.linkify = linkify;
+		}
+
+		/**
+		 * Title and rest as setTextTitle and setTextRest would combine them
+		 */
+		public Spannable style(final String title, final String rest) {
+			// Make sure title does not end with a newline
+			final String t = title.endsWith("\n") ? title.substring(0,
+					title.length() - 1) : title;
+			// Make sure rest starts with a new line
+			final String r = rest.length() == 0 || rest.startsWith("\n") ? rest
+					: "\n" + rest;
+			return style(t + r);
+		}
+
+		public Spannable style(final String styledText) {
+			int titleEnd = styledText.indexOf("\n");
 			if (titleEnd < 0) {
-				titleEnd = mStyledText.length();
+				titleEnd = styledText.length();
 			}
 
-			// Need to link first so we can avoid the title
+			final SpannableString text = new SpannableString(styledText);
+			// Emtpy title, no styling
 			if (titleEnd > 0) {
-				SpannableString text = new SpannableString(mStyledText);
 				text.setSpan(titleStyleSpan, 0, titleEnd,
 						Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
 				text.setSpan(titleSizeSpan, 0, titleEnd,
 						Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
 				text.setSpan(titleFamilySpan, 0, titleEnd,
 						Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-				
-				if (titleEnd < mStyledText.length()) {
-					text.setSpan(bodyFamilySpan, titleEnd, mStyledText.length(),
+
+				if (titleEnd < styledText.length()) {
+					text.setSpan(bodyFamilySpan, titleEnd,
+							styledText.length(),
 							Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
 				}
-				
-				setText(text, BufferType.SPANNABLE);
-				
-				if (mLinkify) {
-					Linkify.addLinks(this, Linkify.ALL);
-					// Make sure links dont steal click focus everywhere
-					setMovementMethod(null);
+
+				if (linkify) {
+					Linkify.addLinks(text, Linkify.ALL);
 				}
 			}
-			else {
-				// Emtpy string
-				setText(new SpannableString(mStyledText), BufferType.SPANNABLE);
-			}
+			return text;
 		}
 	}
 